@@ -1,6 +1,6 @@
 package it.univr.analyticprices;
 
-import net.finmath.functions.NormalDistribution;
+import it.univr.numerics.NormalFunctions;
 
 public class AnalyticPrices {
 	
@@ -29,9 +29,10 @@ public class AnalyticPrices {
 
 	    // Limit case: r ≈ 0 
 	    if (Math.abs(interestRate) < 1e-8) {
-	        double phiA = Math.exp(-0.5 * a * a) / Math.sqrt(2.0 * Math.PI);
-	        double PhiA = NormalDistribution.cumulativeDistribution(a);
-	        double PhiMinusA = NormalDistribution.cumulativeDistribution(-a);
+	        double phiA = NormalFunctions.density(a);
+	        // a >= 0: Φ(-a) is the lower tail, computed directly
+	        double PhiMinusA = NormalFunctions.cumulativeDistribution(-a);
+	        double PhiA = 1.0 - PhiMinusA;
 
 	        // Limit of the σ²/(2r) term as r → 0
 	        double limitTerm = spotPrice * (
@@ -49,14 +50,18 @@ public class AnalyticPrices {
 	    double d = (interestRate + 0.5 * volatility * volatility)
 	               * maturity / (volatility * sqrtMaturity);
 
-	    double term1 = spotPrice * NormalDistribution.cumulativeDistribution(d);
+	    // Φ(d) and Φ(-d) from the lower tail Φ(-|d|) (one exponential), and Φ(d - σ√T)
+	    double lowerTail = NormalFunctions.cumulativeDistribution(-Math.abs(d));
+	    double PhiD = d > 0 ? 1.0 - lowerTail : lowerTail;
+	    double PhiMinusD = d > 0 ? lowerTail : 1.0 - lowerTail;
+
+	    double term1 = spotPrice * PhiD;
 	    double term2 = -discountFactor * spotPrice
-	                   * NormalDistribution.cumulativeDistribution(d - volatility * sqrtMaturity);
+	                   * NormalFunctions.cumulativeDistribution(d - volatility * sqrtMaturity);
 
-	    double bracket = NormalDistribution.cumulativeDistribution(
+	    double bracket = NormalFunctions.cumulativeDistribution(
 	                            -d + 2.0 * interestRate * sqrtMaturity / volatility)
-	                   - Math.exp(interestRate * maturity)
-	                     * NormalDistribution.cumulativeDistribution(-d);
+	                   - PhiMinusD / discountFactor;
 
 	    double term3 = discountFactor * (volatility * volatility) / (2.0 * interestRate)
 	                   * spotPrice * bracket;
@@ -85,9 +90,10 @@ public class AnalyticPrices {
 	    // Limit case: r ≈ 0 
 	    if (Math.abs(interestRate) < 1e-8) {
 	        double a = 0.5 * volatility * sqrtMaturity; // a = σ√T / 2
-	        double phiA = Math.exp(-0.5 * a * a) / Math.sqrt(2.0 * Math.PI);
-	        double PhiA = NormalDistribution.cumulativeDistribution(a);
-	        double PhiMinusA = NormalDistribution.cumulativeDistribution(-a);
+	        double phiA = NormalFunctions.density(a);
+	        // a >= 0: Φ(-a) is the lower tail, computed directly
+	        double PhiMinusA = NormalFunctions.cumulativeDistribution(-a);
+	        double PhiA = 1.0 - PhiMinusA;
 
 	        // Limit as r → 0 of the σ²/(2r) term (analytically derived)
 	        double limitTerm = spotPrice * (
@@ -105,13 +111,17 @@ public class AnalyticPrices {
 	    double d = (interestRate + 0.5 * volatility * volatility)
 	               * maturity / (volatility * sqrtMaturity);
 
-	    double term1 = -spotPrice * NormalDistribution.cumulativeDistribution(-d);
+	    // Φ(-d) and Φ(d) from the lower tail Φ(-|d|) (one exponential), and Φ(-d + σ√T)
+	    double lowerTail = NormalFunctions.cumulativeDistribution(-Math.abs(d));
+	    double PhiD = d > 0 ? 1.0 - lowerTail : lowerTail;
+	    double PhiMinusD = d > 0 ? lowerTail : 1.0 - lowerTail;
+
+	    double term1 = -spotPrice * PhiMinusD;
 	    double term2 =  discountFactor * spotPrice
-	                   * NormalDistribution.cumulativeDistribution(-d + volatility * sqrtMaturity);
+	                   * NormalFunctions.cumulativeDistribution(-d + volatility * sqrtMaturity);
 
-	    double bracket = Math.exp(interestRate * maturity)
-	                   * NormalDistribution.cumulativeDistribution(d)
-	                   - NormalDistribution.cumulativeDistribution(d - 2.0 * interestRate * sqrtMaturity / volatility);
+	    double bracket = PhiD / discountFactor
+	                   - NormalFunctions.cumulativeDistribution(d - 2.0 * interestRate * sqrtMaturity / volatility);
 
 	    double term3 = discountFactor * (volatility * volatility) / (2.0 * interestRate)
 	                   * spotPrice * bracket;
@@ -131,12 +141,14 @@ public class AnalyticPrices {
 	 */
 	public static double continuouslyMonitoredLookbackCallFixedStrike(
 			double spotPrice,double riskFreeRate, double volatility, double maturity, double strike) {
+		if(strike > spotPrice) {
+			return continuouslyMonitoredLookbackCallFixedStrikeOutOfTheMoney(spotPrice, riskFreeRate, volatility, maturity, strike);
+		}
 		/*
-		 * We compute the price via the put-call parity for lookbacks (see for example the book 
-		 * "Options, Futures, and Other Derivatives" by Hull)
+		 * For K <= S0 the maximum is above the strike: we compute the price via the put-call parity for lookbacks
+		 * (see for example the book "Options, Futures, and Other Derivatives" by Hull)
 		 */
-		double sMaxStar = Math.max(spotPrice, strike);
-		double valueFloatingPut = continuouslyMonitoredLookbackPutFloatingStrike(sMaxStar, riskFreeRate,  volatility, maturity);
+		double valueFloatingPut = continuouslyMonitoredLookbackPutFloatingStrike(spotPrice, riskFreeRate,  volatility, maturity);
 		return valueFloatingPut + spotPrice - strike * Math.exp(-riskFreeRate*maturity);  
 	}
 
@@ -151,13 +163,73 @@ public class AnalyticPrices {
 	 */
 	public static double continuouslyMonitoredLookbackPutFixedStrike(
 			double spotPrice,double riskFreeRate, double volatility, double maturity, double strike) {
+		if(strike < spotPrice) {
+			return continuouslyMonitoredLookbackPutFixedStrikeOutOfTheMoney(spotPrice, riskFreeRate, volatility, maturity, strike);
+		}
 		/*
-		 * We compute the price via the put-call parity for lookbacks (see for example the book 
-		 * "Options, Futures, and Other Derivatives" by Hull)
+		 * For K >= S0 the minimum is below the strike: we compute the price via the put-call parity for lookbacks
+		 * (see for example the book "Options, Futures, and Other Derivatives" by Hull)
 		 */
-		double sMaxStar = Math.min(spotPrice, strike);
-		double valueFloatingPut = continuouslyMonitoredLookbackCallFloatingStrike(sMaxStar, riskFreeRate,  volatility, maturity);
-		return valueFloatingPut + strike * Math.exp(-riskFreeRate*maturity) - spotPrice;
+		double valueFloatingCall = continuouslyMonitoredLookbackCallFloatingStrike(spotPrice, riskFreeRate,  volatility, maturity);
+		return valueFloatingCall + strike * Math.exp(-riskFreeRate*maturity) - spotPrice;
+	}
+
+	/*
+	 * Closed form of the fixed-strike lookback call with continuous monitoring for K > S0 (Conze and Viswanathan,
+	 * 1991), where the parity does not apply: the payoff is zero unless the maximum crosses the strike.
+	 */
+	private static double continuouslyMonitoredLookbackCallFixedStrikeOutOfTheMoney(
+			double spotPrice, double riskFreeRate, double volatility, double maturity, double strike) {
+		if (maturity <= 0.0 || volatility <= 0.0) {
+			return 0.0;
+		}
+		double sqrtMaturity = Math.sqrt(maturity);
+		double discountFactor = Math.exp(-riskFreeRate * maturity);
+		double logMoneyness = Math.log(spotPrice / strike);
+		double d1 = (logMoneyness + (riskFreeRate + 0.5 * volatility * volatility) * maturity) / (volatility * sqrtMaturity);
+		double PhiD1 = NormalFunctions.cumulativeDistribution(d1);
+		double vanilla = spotPrice * PhiD1
+				- strike * discountFactor * NormalFunctions.cumulativeDistribution(d1 - volatility * sqrtMaturity);
+
+		// Limit case: r ≈ 0, limit of the σ²/(2r) term
+		if (Math.abs(riskFreeRate) < 1e-8) {
+			return vanilla + spotPrice * ((0.5 * volatility * volatility * maturity + logMoneyness) * PhiD1
+					+ volatility * sqrtMaturity * NormalFunctions.density(d1));
+		}
+
+		double exponent = -2.0 * riskFreeRate / (volatility * volatility);
+		double bracket = PhiD1 - discountFactor * Math.exp(exponent * logMoneyness)
+				* NormalFunctions.cumulativeDistribution(d1 - 2.0 * riskFreeRate * sqrtMaturity / volatility);
+		return vanilla + (volatility * volatility) / (2.0 * riskFreeRate) * spotPrice * bracket;
+	}
+
+	/*
+	 * Closed form of the fixed-strike lookback put with continuous monitoring for K < S0 (Conze and Viswanathan,
+	 * 1991), where the parity does not apply: the payoff is zero unless the minimum crosses the strike.
+	 */
+	private static double continuouslyMonitoredLookbackPutFixedStrikeOutOfTheMoney(
+			double spotPrice, double riskFreeRate, double volatility, double maturity, double strike) {
+		if (maturity <= 0.0 || volatility <= 0.0) {
+			return 0.0;
+		}
+		double sqrtMaturity = Math.sqrt(maturity);
+		double discountFactor = Math.exp(-riskFreeRate * maturity);
+		double logMoneyness = Math.log(spotPrice / strike);
+		double d1 = (logMoneyness + (riskFreeRate + 0.5 * volatility * volatility) * maturity) / (volatility * sqrtMaturity);
+		double PhiMinusD1 = NormalFunctions.cumulativeDistribution(-d1);
+		double vanilla = strike * discountFactor * NormalFunctions.cumulativeDistribution(-d1 + volatility * sqrtMaturity)
+				- spotPrice * PhiMinusD1;
+
+		// Limit case: r ≈ 0, limit of the σ²/(2r) term
+		if (Math.abs(riskFreeRate) < 1e-8) {
+			return vanilla + spotPrice * (volatility * sqrtMaturity * NormalFunctions.density(d1)
+					- (0.5 * volatility * volatility * maturity + logMoneyness) * PhiMinusD1);
+		}
+
+		double exponent = -2.0 * riskFreeRate / (volatility * volatility);
+		double bracket = discountFactor * Math.exp(exponent * logMoneyness)
+				* NormalFunctions.cumulativeDistribution(-d1 + 2.0 * riskFreeRate * sqrtMaturity / volatility) - PhiMinusD1;
+		return vanilla + (volatility * volatility) / (2.0 * riskFreeRate) * spotPrice * bracket;
 	}
 	
 	
@@ -169,7 +241,10 @@ public class AnalyticPrices {
 	 *
 	 * <p>The price is obtained via the Broadie–Glasserman–Kou (1999) continuity
 	 * correction, linking the discrete-monitoring case to the continuous
-	 * analytic formula.</p>
+	 * analytic formula: the running extremum of the continuous contract is
+	 * shifted by {@code e^{±θ}}, {@code θ = β σ sqrt(T/m)}. The shifted contract is a
+	 * seasoned one (its running extremum differs from the spot), whose price follows
+	 * from the out-of-the-money fixed-strike price with the strike at the extremum.</p>
 	 *
 	 * @param spotPrice Initial underlying value {@code S0}.
 	 * @param riskFreeRate Constant risk-free rate {@code r}.
@@ -181,7 +256,10 @@ public class AnalyticPrices {
 	public static double discretelyMonitoredLookbackPutFloatingStrike(final double spotPrice, final double riskFreeRate, 
 			final double volatility, final double maturity, final int numberOfFixingDates)  {
 		double theta = beta*volatility*Math.sqrt(maturity/numberOfFixingDates);
-		double V = continuouslyMonitoredLookbackPutFloatingStrike(spotPrice*Math.exp(theta), riskFreeRate, volatility, maturity);
+		// Continuously monitored put with running maximum S0 e^θ: the payoff max(M, S0 e^θ) - S(T)
+		double runningMaximum = spotPrice*Math.exp(theta);
+		double V = continuouslyMonitoredLookbackCallFixedStrikeOutOfTheMoney(spotPrice, riskFreeRate, volatility, maturity, runningMaximum)
+				+ runningMaximum*Math.exp(-riskFreeRate*maturity) - spotPrice;
 		double V_m = Math.exp(-theta)*V+(Math.exp(-theta)-1)*spotPrice;
 		return V_m;
 	}
@@ -189,8 +267,10 @@ public class AnalyticPrices {
 	public static double discretelyMonitoredLookbackCallFloatingStrike(final double spotPrice, final double riskFreeRate, 
 			final double volatility, final double maturity, final int numberOfFixingDates)  {
 		double theta = beta*volatility*Math.sqrt(maturity/numberOfFixingDates);
-		double V = continuouslyMonitoredLookbackCallFloatingStrike(spotPrice*Math.exp(-theta), 
-				riskFreeRate, volatility, maturity);
+		// Continuously monitored call with running minimum S0 e^-θ: the payoff S(T) - min(m, S0 e^-θ)
+		double runningMinimum = spotPrice*Math.exp(-theta);
+		double V = continuouslyMonitoredLookbackPutFixedStrikeOutOfTheMoney(spotPrice, riskFreeRate, volatility, maturity, runningMinimum)
+				+ spotPrice - runningMinimum*Math.exp(-riskFreeRate*maturity);
 		double V_m = Math.exp(theta)*V-(Math.exp(theta)-1)*spotPrice;
 		return V_m;
 	}
@@ -199,6 +279,10 @@ public class AnalyticPrices {
 	 *
 	 * <p>Payoff: {@code max(max_i S(t_i) - K, 0)}, where the maximum is observed only
 	 * at discrete monitoring dates.</p>
+	 *
+	 * <p>For {@code K <= S0} the price follows by parity from the floating-strike put; for {@code K > S0} the
+	 * continuity correction shifts the strike: {@code e^{-θ} C(K e^{θ})}, with {@code C} the continuously
+	 * monitored price and {@code θ = β σ sqrt(T/m)}.</p>
 	 * 
 	 * @param spotPrice Initial underlying value {@code S0}.
 	 * @param riskFreeRate Constant risk-free rate {@code r}.
@@ -210,13 +294,26 @@ public class AnalyticPrices {
 	 */
 	public static double discretelyMonitoredLookbackCallFixedStrike(double spotPrice,double riskFreeRate, 
 			double volatility, double maturity, double strike, int numberOfFixingDates) {
-		double V = discretelyMonitoredLookbackPutFloatingStrike(Math.max(spotPrice, strike), riskFreeRate, volatility, maturity, numberOfFixingDates);
+		if(strike > spotPrice) {
+			double theta = beta*volatility*Math.sqrt(maturity/numberOfFixingDates);
+			return Math.exp(-theta)*continuouslyMonitoredLookbackCallFixedStrikeOutOfTheMoney(spotPrice, riskFreeRate, volatility, maturity, strike*Math.exp(theta));
+		}
+		double V = discretelyMonitoredLookbackPutFloatingStrike(spotPrice, riskFreeRate, volatility, maturity, numberOfFixingDates);
 		return V + spotPrice - Math.exp(-riskFreeRate*maturity)*strike;
 	}
 
+	/**
+	 * Approximate price of a discretely monitored fixed-strike lookback put: by parity from the floating-strike
+	 * call for {@code K >= S0}, by the continuity correction {@code e^{θ} P(K e^{-θ})} for {@code K < S0}.
+	 * See {@link #discretelyMonitoredLookbackCallFixedStrike(double, double, double, double, double, int)}.
+	 */
 	public static double discretelyMonitoredLookbackPutFixedStrike(double spotPrice,double riskFreeRate, 
 			double volatility, double maturity, double strike, int numberOfFixingDates) {
-		double V = discretelyMonitoredLookbackCallFloatingStrike(Math.max(spotPrice, strike), riskFreeRate, volatility, maturity, numberOfFixingDates);
+		if(strike < spotPrice) {
+			double theta = beta*volatility*Math.sqrt(maturity/numberOfFixingDates);
+			return Math.exp(theta)*continuouslyMonitoredLookbackPutFixedStrikeOutOfTheMoney(spotPrice, riskFreeRate, volatility, maturity, strike*Math.exp(-theta));
+		}
+		double V = discretelyMonitoredLookbackCallFloatingStrike(spotPrice, riskFreeRate, volatility, maturity, numberOfFixingDates);
 		double V_m = V - spotPrice + strike * Math.exp(-riskFreeRate*maturity);
 		return V_m;
 	}
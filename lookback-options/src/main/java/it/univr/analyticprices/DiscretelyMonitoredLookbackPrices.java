@@ -0,0 +1,312 @@
+package it.univr.analyticprices;
+
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Near-exact prices of discretely monitored lookback options under Black–Scholes dynamics, obtained by a
+ * Fourier recursion over the monitoring dates.
+ *
+ * <p>With {@code m} equidistant monitoring dates {@code t_i = i T / m} (including {@code t_0 = 0}), the log-returns
+ * {@code X_i = log(S(t_i)/S(t_{i-1}))} are i.i.d. normal with mean {@code (r - σ²/2) T/m} and variance {@code σ² T/m}.
+ * By the Spitzer–Lindley identity, the maximum of the partial sums {@code max_k (X_1 + ... + X_k)} has the same law as
+ * {@code W_m}, where {@code W_0 = 0} and {@code W_k = max(W_{k-1} + X_k, 0)}. The law of {@code W_k} is propagated on a
+ * uniform grid: the convolution with the law of {@code X_k} is done by FFT, the projection {@code max(·, 0)} collapses
+ * the mass on the negative half-line onto zero. The running minimum is handled in the same way with the increments
+ * {@code -X_i}. The cost is {@code O(m N log N)} for a grid of {@code N} points.
+ *
+ * <p>Contrary to the Broadie–Glasserman–Kou continuity correction used in
+ * {@link AnalyticPrices#discretelyMonitoredLookbackCallFixedStrike(double, double, double, double, double, int)} and
+ * in the other {@code discretelyMonitoredLookback*} methods, the recursion is accurate also for a small number of
+ * monitoring dates (weekly or monthly fixings). Its only error is the one of the grid, which is chosen with at least
+ * {@value #POINTS_PER_STANDARD_DEVIATION} points per standard deviation of a single increment and reduced by
+ * Richardson extrapolation.
+ *
+ * <p>All four payoffs are priced from the law of the maximum (or minimum) of the log-returns:
+ * <ul>
+ *   <li>floating-strike put: {@code e^{-rT} S0 E[e^{W}] - S0};</li>
+ *   <li>floating-strike call: {@code S0 - e^{-rT} S0 E[e^{-W'}]};</li>
+ *   <li>fixed-strike call: {@code e^{-rT} E[(S0 e^{W} - K)^+]};</li>
+ *   <li>fixed-strike put: {@code e^{-rT} E[(K - S0 e^{-W'})^+]},</li>
+ * </ul>
+ * where {@code W} is the maximum of the partial sums of the {@code X_i} and {@code W'} the one of the {@code -X_i}.
+ */
+public class DiscretelyMonitoredLookbackPrices {
+
+	// Grid points per standard deviation of one increment
+	private static final int POINTS_PER_STANDARD_DEVIATION = 4;
+	// Width of the truncated distributions, in standard deviations
+	private static final double NUMBER_OF_STANDARD_DEVIATIONS = 10.0;
+	// Bounds on the number of grid points (powers of two)
+	private static final int MINIMUM_NUMBER_OF_GRID_POINTS = 1 << 10;
+	private static final int MAXIMUM_NUMBER_OF_GRID_POINTS = 1 << 16;
+
+	/**
+	 * Price of a discretely monitored floating-strike lookback call.
+	 *
+	 * <p>Payoff: {@code S(T) - min_i S(t_i)}.</p>
+	 *
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param numberOfFixingDates Number of discrete monitoring dates {@code m}.
+	 * @return Price of the discretely monitored floating-strike lookback call.
+	 */
+	public static double lookbackCallFloatingStrike(double spotPrice, double riskFreeRate, double volatility,
+			double maturity, int numberOfFixingDates) {
+		double expectation = expectationOfMaximum(-getDrift(riskFreeRate, volatility, maturity, numberOfFixingDates),
+				volatility * Math.sqrt(maturity / numberOfFixingDates), numberOfFixingDates, x -> Math.exp(-x));
+		return spotPrice - Math.exp(-riskFreeRate * maturity) * spotPrice * expectation;
+	}
+
+	/**
+	 * Price of a discretely monitored floating-strike lookback put.
+	 *
+	 * <p>Payoff: {@code max_i S(t_i) - S(T)}.</p>
+	 *
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param numberOfFixingDates Number of discrete monitoring dates {@code m}.
+	 * @return Price of the discretely monitored floating-strike lookback put.
+	 */
+	public static double lookbackPutFloatingStrike(double spotPrice, double riskFreeRate, double volatility,
+			double maturity, int numberOfFixingDates) {
+		double expectation = expectationOfMaximum(getDrift(riskFreeRate, volatility, maturity, numberOfFixingDates),
+				volatility * Math.sqrt(maturity / numberOfFixingDates), numberOfFixingDates, Math::exp);
+		return Math.exp(-riskFreeRate * maturity) * spotPrice * expectation - spotPrice;
+	}
+
+	/**
+	 * Price of a discretely monitored fixed-strike lookback call.
+	 *
+	 * <p>Payoff: {@code max(max_i S(t_i) - K, 0)}.</p>
+	 *
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param strike              Fixed strike {@code K}.
+	 * @param numberOfFixingDates Number of discrete monitoring dates {@code m}.
+	 * @return Price of the discretely monitored fixed-strike lookback call.
+	 */
+	public static double lookbackCallFixedStrike(double spotPrice, double riskFreeRate, double volatility,
+			double maturity, double strike, int numberOfFixingDates) {
+		double expectation = expectationOfMaximum(getDrift(riskFreeRate, volatility, maturity, numberOfFixingDates),
+				volatility * Math.sqrt(maturity / numberOfFixingDates), numberOfFixingDates,
+				x -> Math.max(spotPrice * Math.exp(x) - strike, 0.0));
+		return Math.exp(-riskFreeRate * maturity) * expectation;
+	}
+
+	/**
+	 * Price and delta of a discretely monitored fixed-strike lookback call, from one recursion.
+	 *
+	 * <p>The law of the maximum of the log-returns does not depend on {@code S0} and {@code K}, so the price and its
+	 * derivative in the strike (a central difference of relative size {@code strikeShift}) are read from the same
+	 * law. The delta follows from the homogeneity of degree one of the price in {@code (S0, K)}:
+	 * {@code C = S0 ∂C/∂S0 + K ∂C/∂K}.</p>
+	 *
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param strike              Fixed strike {@code K}.
+	 * @param numberOfFixingDates Number of discrete monitoring dates {@code m}.
+	 * @param strikeShift         Relative shift of the strike of the central difference.
+	 * @return Price and delta of the discretely monitored fixed-strike lookback call.
+	 */
+	public static double[] lookbackCallFixedStrikeValueAndDelta(double spotPrice, double riskFreeRate, double volatility,
+			double maturity, double strike, int numberOfFixingDates, double strikeShift) {
+		double strikeUp = strike * (1.0 + strikeShift);
+		double strikeDown = strike * (1.0 - strikeShift);
+		double[] expectations = expectationsOfMaximum(getDrift(riskFreeRate, volatility, maturity, numberOfFixingDates),
+				volatility * Math.sqrt(maturity / numberOfFixingDates), numberOfFixingDates,
+				x -> Math.max(spotPrice * Math.exp(x) - strike, 0.0),
+				x -> Math.max(spotPrice * Math.exp(x) - strikeUp, 0.0),
+				x -> Math.max(spotPrice * Math.exp(x) - strikeDown, 0.0));
+		double discountFactor = Math.exp(-riskFreeRate * maturity);
+		double value = discountFactor * expectations[0];
+		double strikeDerivative = discountFactor * (expectations[1] - expectations[2]) / (strikeUp - strikeDown);
+		return new double[] { value, (value - strike * strikeDerivative) / spotPrice };
+	}
+
+	/**
+	 * Price of a discretely monitored fixed-strike lookback put.
+	 *
+	 * <p>Payoff: {@code max(K - min_i S(t_i), 0)}.</p>
+	 *
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param strike              Fixed strike {@code K}.
+	 * @param numberOfFixingDates Number of discrete monitoring dates {@code m}.
+	 * @return Price of the discretely monitored fixed-strike lookback put.
+	 */
+	public static double lookbackPutFixedStrike(double spotPrice, double riskFreeRate, double volatility,
+			double maturity, double strike, int numberOfFixingDates) {
+		double expectation = expectationOfMaximum(-getDrift(riskFreeRate, volatility, maturity, numberOfFixingDates),
+				volatility * Math.sqrt(maturity / numberOfFixingDates), numberOfFixingDates,
+				x -> Math.max(strike - spotPrice * Math.exp(-x), 0.0));
+		return Math.exp(-riskFreeRate * maturity) * expectation;
+	}
+
+	/**
+	 * Price of a discretely monitored lookback with the given payoff.
+	 *
+	 * @param payoff              The lookback payoff.
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param strike              Fixed strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfFixingDates Number of discrete monitoring dates {@code m}.
+	 * @return Price of the discretely monitored lookback.
+	 */
+	public static double getPrice(LookbackPayoff payoff, double spotPrice, double riskFreeRate, double volatility,
+			double maturity, double strike, int numberOfFixingDates) {
+		switch(payoff) {
+		case CALL_FIXED_STRIKE:
+			return lookbackCallFixedStrike(spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+		case PUT_FIXED_STRIKE:
+			return lookbackPutFixedStrike(spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+		case CALL_FLOATING_STRIKE:
+			return lookbackCallFloatingStrike(spotPrice, riskFreeRate, volatility, maturity, numberOfFixingDates);
+		case PUT_FLOATING_STRIKE:
+			return lookbackPutFloatingStrike(spotPrice, riskFreeRate, volatility, maturity, numberOfFixingDates);
+		default:
+			throw new IllegalArgumentException("Unknown payoff " + payoff);
+		}
+	}
+
+	/*
+	 * Mean of the log-return between two monitoring dates.
+	 */
+	private static double getDrift(double riskFreeRate, double volatility, double maturity, int numberOfFixingDates) {
+		if(numberOfFixingDates <= 0) {
+			throw new IllegalArgumentException("The number of fixing dates must be positive.");
+		}
+		return (riskFreeRate - 0.5 * volatility * volatility) * maturity / numberOfFixingDates;
+	}
+
+	/**
+	 * Computes {@code E[f(W_m)]}, where {@code W_m = max(0, X_1, X_1 + X_2, ..., X_1 + ... + X_m)} and the
+	 * {@code X_i} are i.i.d. normal, by the Lindley recursion {@code W_k = max(W_{k-1} + X_k, 0)} on a uniform grid.
+	 *
+	 * <p>The grid error is of second order in the grid spacing {@code h}, hence the recursion is run on two grids
+	 * (spacing {@code h} and {@code h/2}) and the results are combined by Richardson extrapolation.
+	 *
+	 * @param drift             Mean of one increment.
+	 * @param standardDeviation Standard deviation of one increment.
+	 * @param numberOfSteps     Number of increments {@code m}.
+	 * @param function          The function {@code f}.
+	 * @return The expectation.
+	 */
+	static double expectationOfMaximum(double drift, double standardDeviation, int numberOfSteps, DoubleUnaryOperator function) {
+		return expectationsOfMaximum(drift, standardDeviation, numberOfSteps, function)[0];
+	}
+
+	/*
+	 * Computes E[f(W_m)] for several functions f on the same law of W_m (see expectationOfMaximum).
+	 */
+	private static double[] expectationsOfMaximum(double drift, double standardDeviation, int numberOfSteps, DoubleUnaryOperator... functions) {
+		double[] expectations = new double[functions.length];
+		if(!(standardDeviation > 0.0)) {
+			// Deterministic increments: the maximum is attained at 0 or at the last date
+			for(int i = 0; i < functions.length; i++) {
+				expectations[i] = functions[i].applyAsDouble(Math.max(0.0, drift * numberOfSteps));
+			}
+			return expectations;
+		}
+
+		// Grid on [-lowerWidth, upperWidth]
+		double lowerWidth = Math.abs(drift) + NUMBER_OF_STANDARD_DEVIATIONS * standardDeviation;
+		double upperWidth = Math.max(0.0, drift * numberOfSteps)
+				+ NUMBER_OF_STANDARD_DEVIATIONS * standardDeviation * Math.sqrt(numberOfSteps) + lowerWidth;
+		double requiredPoints = (lowerWidth + upperWidth) * POINTS_PER_STANDARD_DEVIATION / standardDeviation;
+		int numberOfGridPoints = MINIMUM_NUMBER_OF_GRID_POINTS;
+		while(numberOfGridPoints < requiredPoints && numberOfGridPoints < MAXIMUM_NUMBER_OF_GRID_POINTS) {
+			numberOfGridPoints <<= 1;
+		}
+
+		double[] coarseExpectations = expectationsOfMaximumOnGrid(drift, standardDeviation, numberOfSteps, functions,
+				lowerWidth, upperWidth, numberOfGridPoints);
+		double[] fineExpectations = expectationsOfMaximumOnGrid(drift, standardDeviation, numberOfSteps, functions,
+				lowerWidth, upperWidth, 2 * numberOfGridPoints);
+		for(int i = 0; i < functions.length; i++) {
+			expectations[i] = (4.0 * fineExpectations[i] - coarseExpectations[i]) / 3.0;
+		}
+		return expectations;
+	}
+
+	/*
+	 * Lindley recursion on the grid x_j = (j - zeroIndex) h, h = (lowerWidth + upperWidth) / numberOfGridPoints.
+	 */
+	private static double[] expectationsOfMaximumOnGrid(double drift, double standardDeviation, int numberOfSteps, DoubleUnaryOperator[] functions,
+			double lowerWidth, double upperWidth, int numberOfGridPoints) {
+		double gridSpacing = (lowerWidth + upperWidth) / numberOfGridPoints;
+		int zeroIndex = (int) Math.ceil(lowerWidth / gridSpacing);
+
+		FastFourierTransform fourierTransform = new FastFourierTransform(numberOfGridPoints);
+
+		// Transform of the (normalized, discretized) law of one increment, stored in wrap-around order
+		double[] kernelReal = new double[numberOfGridPoints];
+		double[] kernelImaginary = new double[numberOfGridPoints];
+		double kernelMass = 0.0;
+		for(int j = 0; j < numberOfGridPoints; j++) {
+			int offset = j < numberOfGridPoints / 2 ? j : j - numberOfGridPoints;
+			double standardized = (offset * gridSpacing - drift) / standardDeviation;
+			kernelReal[j] = Math.exp(-0.5 * standardized * standardized);
+			kernelMass += kernelReal[j];
+		}
+		for(int j = 0; j < numberOfGridPoints; j++) {
+			kernelReal[j] /= kernelMass;
+		}
+		fourierTransform.transform(kernelReal, kernelImaginary, false);
+
+		// Law of W_0 = 0
+		double[] probabilitiesReal = new double[numberOfGridPoints];
+		double[] probabilitiesImaginary = new double[numberOfGridPoints];
+		probabilitiesReal[zeroIndex] = 1.0;
+
+		for(int step = 0; step < numberOfSteps; step++) {
+			// Convolution with the law of the increment
+			Arrays.fill(probabilitiesImaginary, 0.0);
+			fourierTransform.transform(probabilitiesReal, probabilitiesImaginary, false);
+			for(int j = 0; j < numberOfGridPoints; j++) {
+				double real = probabilitiesReal[j] * kernelReal[j] - probabilitiesImaginary[j] * kernelImaginary[j];
+				double imaginary = probabilitiesReal[j] * kernelImaginary[j] + probabilitiesImaginary[j] * kernelReal[j];
+				probabilitiesReal[j] = real;
+				probabilitiesImaginary[j] = imaginary;
+			}
+			fourierTransform.transform(probabilitiesReal, probabilitiesImaginary, true);
+
+			// Projection max(., 0): the mass on the negative half-line collapses onto zero
+			double massAtZero = 0.0;
+			for(int j = 0; j <= zeroIndex; j++) {
+				massAtZero += Math.max(probabilitiesReal[j], 0.0);
+				probabilitiesReal[j] = 0.0;
+			}
+			probabilitiesReal[zeroIndex] = massAtZero;
+			for(int j = zeroIndex + 1; j < numberOfGridPoints; j++) {
+				// Remove the round-off noise of the transforms
+				probabilitiesReal[j] = Math.max(probabilitiesReal[j], 0.0);
+			}
+		}
+
+		double[] expectations = new double[functions.length];
+		double totalMass = 0.0;
+		for(int j = zeroIndex; j < numberOfGridPoints; j++) {
+			for(int i = 0; i < functions.length; i++) {
+				expectations[i] += probabilitiesReal[j] * functions[i].applyAsDouble((j - zeroIndex) * gridSpacing);
+			}
+			totalMass += probabilitiesReal[j];
+		}
+		for(int i = 0; i < functions.length; i++) {
+			expectations[i] /= totalMass;
+		}
+		return expectations;
+	}
+}
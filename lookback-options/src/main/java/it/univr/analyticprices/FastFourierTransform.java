@@ -0,0 +1,92 @@
+package it.univr.analyticprices;
+
+/**
+ * In-place iterative radix-2 fast Fourier transform on split real/imaginary arrays.
+ *
+ * <p>The bit-reversal permutation and the twiddle factors are precomputed at construction, so that
+ * {@link #transform(double[], double[], boolean)} performs no allocation and can be called repeatedly
+ * (e.g. once per monitoring date in {@link DiscretelyMonitoredLookbackPrices}).
+ */
+final class FastFourierTransform {
+
+	private final int length;
+	private final int[] bitReversal;
+	private final double[] cosines;
+	private final double[] sines;
+
+	/**
+	 * Prepares the transform of the given length.
+	 *
+	 * @param length The length of the transform, a power of two.
+	 */
+	FastFourierTransform(int length) {
+		if(length < 2 || Integer.bitCount(length) != 1) {
+			throw new IllegalArgumentException("The length of the transform must be a power of two.");
+		}
+		this.length = length;
+
+		int numberOfBits = Integer.numberOfTrailingZeros(length);
+		bitReversal = new int[length];
+		for(int i = 0; i < length; i++) {
+			bitReversal[i] = Integer.reverse(i) >>> (32 - numberOfBits);
+		}
+
+		cosines = new double[length / 2];
+		sines = new double[length / 2];
+		for(int i = 0; i < length / 2; i++) {
+			cosines[i] = Math.cos(2.0 * Math.PI * i / length);
+			sines[i] = Math.sin(2.0 * Math.PI * i / length);
+		}
+	}
+
+	int getLength() {
+		return length;
+	}
+
+	/**
+	 * Transforms the arrays in place. The forward transform uses {@code exp(-2 π i j k / N)}, the inverse
+	 * transform uses {@code exp(+2 π i j k / N)} and divides by {@code N}.
+	 *
+	 * @param real      The real parts.
+	 * @param imaginary The imaginary parts.
+	 * @param inverse   True for the inverse transform.
+	 */
+	void transform(double[] real, double[] imaginary, boolean inverse) {
+		// Bit-reversal permutation
+		for(int i = 0; i < length; i++) {
+			int j = bitReversal[i];
+			if(j > i) {
+				double swap = real[i]; real[i] = real[j]; real[j] = swap;
+				swap = imaginary[i]; imaginary[i] = imaginary[j]; imaginary[j] = swap;
+			}
+		}
+
+		// Butterflies
+		double sign = inverse ? 1.0 : -1.0;
+		for(int size = 2; size <= length; size <<= 1) {
+			int halfSize = size >>> 1;
+			int twiddleStride = length / size;
+			for(int start = 0; start < length; start += size) {
+				for(int k = 0; k < halfSize; k++) {
+					double twiddleReal = cosines[k * twiddleStride];
+					double twiddleImaginary = sign * sines[k * twiddleStride];
+					int even = start + k;
+					int odd = even + halfSize;
+					double oddReal = real[odd] * twiddleReal - imaginary[odd] * twiddleImaginary;
+					double oddImaginary = real[odd] * twiddleImaginary + imaginary[odd] * twiddleReal;
+					real[odd] = real[even] - oddReal;
+					imaginary[odd] = imaginary[even] - oddImaginary;
+					real[even] += oddReal;
+					imaginary[even] += oddImaginary;
+				}
+			}
+		}
+
+		if(inverse) {
+			for(int i = 0; i < length; i++) {
+				real[i] /= length;
+				imaginary[i] /= length;
+			}
+		}
+	}
+}
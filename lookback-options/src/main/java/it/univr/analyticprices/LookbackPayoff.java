@@ -0,0 +1,156 @@
+package it.univr.analyticprices;
+
+/**
+ * The four lookback payoffs priced by this project.
+ *
+ * <p>Every payoff is a function of the terminal value {@code S_T}, of the running maximum {@code M_T}
+ * and of the running minimum {@code m_T} of the underlying (and of the strike {@code K} for the
+ * fixed-strike versions):
+ * <ul>
+ *   <li>{@link #CALL_FIXED_STRIKE}: {@code max(M_T - K, 0)};</li>
+ *   <li>{@link #PUT_FIXED_STRIKE}: {@code max(K - m_T, 0)};</li>
+ *   <li>{@link #CALL_FLOATING_STRIKE}: {@code S_T - m_T};</li>
+ *   <li>{@link #PUT_FLOATING_STRIKE}: {@code M_T - S_T}.</li>
+ * </ul>
+ */
+public enum LookbackPayoff {
+
+	CALL_FIXED_STRIKE,
+	PUT_FIXED_STRIKE,
+	CALL_FLOATING_STRIKE,
+	PUT_FLOATING_STRIKE;
+
+	/**
+	 * Returns the payoff at maturity.
+	 *
+	 * @param terminalValue The terminal value {@code S_T}.
+	 * @param maximum       The running maximum {@code M_T}.
+	 * @param minimum       The running minimum {@code m_T}.
+	 * @param strike        The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The payoff.
+	 */
+	public double getPayoff(double terminalValue, double maximum, double minimum, double strike) {
+		switch(this) {
+		case CALL_FIXED_STRIKE:
+			return Math.max(maximum - strike, 0.0);
+		case PUT_FIXED_STRIKE:
+			return Math.max(strike - minimum, 0.0);
+		case CALL_FLOATING_STRIKE:
+			return Math.max(terminalValue - minimum, 0.0);
+		case PUT_FLOATING_STRIKE:
+			return Math.max(maximum - terminalValue, 0.0);
+		default:
+			throw new IllegalStateException("Unknown payoff " + this);
+		}
+	}
+
+	/**
+	 * Returns the derivatives of the payoff at maturity with respect to the terminal value, the running maximum
+	 * and the running minimum (at the kinks, which have probability zero, the derivatives are set to zero).
+	 *
+	 * @param terminalValue The terminal value {@code S_T}.
+	 * @param maximum       The running maximum {@code M_T}.
+	 * @param minimum       The running minimum {@code m_T}.
+	 * @param strike        The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param derivatives   Array of length 3 receiving the derivatives with respect to {@code S_T}, {@code M_T}
+	 *                      and {@code m_T}.
+	 */
+	public void getPayoffDerivatives(double terminalValue, double maximum, double minimum, double strike, double[] derivatives) {
+		derivatives[0] = 0.0;
+		derivatives[1] = 0.0;
+		derivatives[2] = 0.0;
+		switch(this) {
+		case CALL_FIXED_STRIKE:
+			derivatives[1] = maximum > strike ? 1.0 : 0.0;
+			break;
+		case PUT_FIXED_STRIKE:
+			derivatives[2] = strike > minimum ? -1.0 : 0.0;
+			break;
+		case CALL_FLOATING_STRIKE:
+			if(terminalValue > minimum) {
+				derivatives[0] = 1.0;
+				derivatives[2] = -1.0;
+			}
+			break;
+		case PUT_FLOATING_STRIKE:
+			if(maximum > terminalValue) {
+				derivatives[0] = -1.0;
+				derivatives[1] = 1.0;
+			}
+			break;
+		default:
+			throw new IllegalStateException("Unknown payoff " + this);
+		}
+	}
+
+	/**
+	 * Returns true if the payoff depends on the running maximum, false if it depends on the running minimum.
+	 *
+	 * @return True for {@link #CALL_FIXED_STRIKE} and {@link #PUT_FLOATING_STRIKE}.
+	 */
+	public boolean isOnMaximum() {
+		return this == CALL_FIXED_STRIKE || this == PUT_FLOATING_STRIKE;
+	}
+
+	/**
+	 * Returns true for the fixed-strike payoffs.
+	 *
+	 * @return True for {@link #CALL_FIXED_STRIKE} and {@link #PUT_FIXED_STRIKE}.
+	 */
+	public boolean isFixedStrike() {
+		return this == CALL_FIXED_STRIKE || this == PUT_FIXED_STRIKE;
+	}
+
+	/**
+	 * Returns the analytic Black–Scholes price of the payoff with continuous monitoring, as given by
+	 * {@link AnalyticPrices}.
+	 *
+	 * @param spotPrice    Initial underlying value {@code S0}.
+	 * @param riskFreeRate Constant risk-free rate {@code r}.
+	 * @param volatility   {@code σ}.
+	 * @param maturity     Time to maturity {@code T}.
+	 * @param strike       The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The analytic price.
+	 */
+	public double getContinuouslyMonitoredPrice(double spotPrice, double riskFreeRate, double volatility, double maturity, double strike) {
+		switch(this) {
+		case CALL_FIXED_STRIKE:
+			return AnalyticPrices.continuouslyMonitoredLookbackCallFixedStrike(spotPrice, riskFreeRate, volatility, maturity, strike);
+		case PUT_FIXED_STRIKE:
+			return AnalyticPrices.continuouslyMonitoredLookbackPutFixedStrike(spotPrice, riskFreeRate, volatility, maturity, strike);
+		case CALL_FLOATING_STRIKE:
+			return AnalyticPrices.continuouslyMonitoredLookbackCallFloatingStrike(spotPrice, riskFreeRate, volatility, maturity);
+		case PUT_FLOATING_STRIKE:
+			return AnalyticPrices.continuouslyMonitoredLookbackPutFloatingStrike(spotPrice, riskFreeRate, volatility, maturity);
+		default:
+			throw new IllegalStateException("Unknown payoff " + this);
+		}
+	}
+
+	/**
+	 * Returns the Broadie–Glasserman–Kou approximation of the Black–Scholes price of the payoff with
+	 * discrete monitoring, as given by {@link AnalyticPrices}.
+	 *
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param strike              The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfFixingDates Number of discrete monitoring dates.
+	 * @return The approximated analytic price.
+	 */
+	public double getDiscretelyMonitoredPrice(double spotPrice, double riskFreeRate, double volatility, double maturity, double strike, int numberOfFixingDates) {
+		switch(this) {
+		case CALL_FIXED_STRIKE:
+			return AnalyticPrices.discretelyMonitoredLookbackCallFixedStrike(spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+		case PUT_FIXED_STRIKE:
+			return AnalyticPrices.discretelyMonitoredLookbackPutFixedStrike(spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+		case CALL_FLOATING_STRIKE:
+			return AnalyticPrices.discretelyMonitoredLookbackCallFloatingStrike(spotPrice, riskFreeRate, volatility, maturity, numberOfFixingDates);
+		case PUT_FLOATING_STRIKE:
+			return AnalyticPrices.discretelyMonitoredLookbackPutFloatingStrike(spotPrice, riskFreeRate, volatility, maturity, numberOfFixingDates);
+		default:
+			throw new IllegalStateException("Unknown payoff " + this);
+		}
+	}
+}
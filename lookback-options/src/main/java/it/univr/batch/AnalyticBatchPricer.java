@@ -0,0 +1,57 @@
+package it.univr.batch;
+
+import java.util.stream.IntStream;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Prices a {@link LookbackTradeBatch} with the analytic formulas of
+ * {@link it.univr.analyticprices.AnalyticPrices}: the continuously monitored formulas for trades with
+ * {@code 0} monitoring intervals, the Broadie–Glasserman–Kou approximation otherwise.
+ *
+ * <p>The loop reads the columns of the batch in place and writes the prices into a {@link LookbackResultBatch},
+ * without creating objects per trade. {@link #priceInParallel(LookbackTradeBatch, LookbackResultBatch, int)}
+ * splits both batches into slices sharing their memory and prices the slices in parallel.
+ */
+public class AnalyticBatchPricer {
+
+	/**
+	 * Prices all the trades of a batch.
+	 *
+	 * @param trades  The trades.
+	 * @param results The batch receiving trade identifiers and prices, with at least as many entries as trades.
+	 */
+	public void price(LookbackTradeBatch trades, LookbackResultBatch results) {
+		for(int index = 0; index < trades.getNumberOfTrades(); index++) {
+			LookbackPayoff payoff = trades.getPayoff(index);
+			double spotPrice = trades.getSpotPrice(index);
+			double strike = trades.getStrike(index);
+			double maturity = trades.getMaturity(index);
+			double riskFreeRate = trades.getRiskFreeRate(index);
+			double volatility = trades.getVolatility(index);
+			int numberOfFixingDates = trades.getNumberOfFixingDates(index);
+
+			double value = numberOfFixingDates == 0
+					? payoff.getContinuouslyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike)
+					: payoff.getDiscretelyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+			results.setResult(index, trades.getTradeId(index), value);
+		}
+	}
+
+	/**
+	 * Prices all the trades of a batch in parallel, on slices of the given size.
+	 *
+	 * @param trades         The trades.
+	 * @param results        The batch receiving trade identifiers and prices, with at least as many entries as trades.
+	 * @param tradesPerSlice Number of trades priced by each task.
+	 */
+	public void priceInParallel(LookbackTradeBatch trades, LookbackResultBatch results, int tradesPerSlice) {
+		int numberOfTrades = trades.getNumberOfTrades();
+		int numberOfSlices = (numberOfTrades + tradesPerSlice - 1) / tradesPerSlice;
+		IntStream.range(0, numberOfSlices).parallel().forEach(slice -> {
+			int from = slice * tradesPerSlice;
+			int to = Math.min(from + tradesPerSlice, numberOfTrades);
+			price(trades.slice(from, to), results.slice(from, to));
+		});
+	}
+}
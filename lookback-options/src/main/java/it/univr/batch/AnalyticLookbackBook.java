@@ -0,0 +1,522 @@
+package it.univr.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Book of lookback positions on one underlying, valued with the analytic formulas of
+ * {@link it.univr.analyticprices.AnalyticPrices} and kept up to date on market data ticks without revaluing every
+ * position.
+ *
+ * <p>The contracts start at the spot of the trades. The book keeps the running maximum {@code M} and minimum
+ * {@code m} of the spot since then: the continuously monitored contracts observe every spot set on the book, the
+ * discretely monitored ones the spots recorded as fixings ({@link #setFixing()}). A seasoned contract is priced with
+ * the unseasoned fixed-strike prices {@code C(S, X)} and {@code P(S, X)} (discount factor {@code D = e^{-rT}}):
+ * <ul>
+ *   <li>fixed-strike call: {@code C(S, K)} for {@code K > M}, else {@code C(S, M) + (M - K) D};</li>
+ *   <li>fixed-strike put: {@code P(S, K)} for {@code K < m}, else {@code P(S, m) + (K - m) D};</li>
+ *   <li>floating-strike put: {@code C(S, M) + M D - S}, floating-strike call: {@code P(S, m) + S - m D}.</li>
+ * </ul>
+ * The contracts with the same maturity and number of fixings form a <i>group</i>. For the fixed strikes on the money
+ * side of the running extremum the value is linear in the strike, so the book reads it from prefix sums by strike of
+ * the quantities and of the quantities times the strikes, which do not depend on the market data, and one price
+ * {@code C(S, M)} or {@code P(S, m)} per group. Only the contracts with the strike beyond the running extremum are
+ * priced one by one.
+ *
+ * <p>Value and Greeks (delta, vega and rho, by central differences) are kept per group and summed into the book
+ * incrementally:
+ * <ul>
+ *   <li>a spot tick ({@link #setSpotPrice(double)}) marks all the groups as changed, and the next read reprices
+ *       them, in {@code O(log n)} per group plus the contracts beyond the running extremum;</li>
+ *   <li>a change of volatility or rate of a maturity marks only the groups of that maturity.</li>
+ * </ul>
+ * The totals updated by differences accumulate rounding errors over many changes; {@link #revalue()} rebuilds them.
+ * The time to maturity does not roll: the book revalues the contracts at their trade maturities. The class is not
+ * thread safe.
+ */
+public class AnalyticLookbackBook {
+
+	// Relative bump of the spot and bumps of volatility and rate of the central differences
+	private static final double SPOT_SHIFT = 1E-5;
+	private static final double VOLATILITY_SHIFT = 1E-5;
+	private static final double RATE_SHIFT = 1E-5;
+
+	private final long[] tradeIds;
+	private final LookbackPayoff[] payoffs;
+	private final double[] strikes;
+	private final double[] quantities;
+	private final int[] groupIndices;
+
+	private final Group[] groups;
+
+	private double spotPrice;
+	// Running extrema of the spots and of the fixings
+	private double runningMaximum;
+	private double runningMinimum;
+	private double fixingMaximum;
+	private double fixingMinimum;
+
+	// Sums of the values and Greeks of the groups
+	private double value;
+	private double delta;
+	private double vega;
+	private double rho;
+
+	/*
+	 * Contracts with the same maturity and number of fixings: market data, the fixed strikes in ascending order with
+	 * the prefix sums of their quantities, and the last value and Greeks of the group.
+	 */
+	private static final class Group {
+		final double maturity;
+		final int numberOfFixingDates;
+		double volatility;
+		double riskFreeRate;
+		final Strikes calls = new Strikes();
+		final Strikes puts = new Strikes();
+		double floatingCallQuantity;
+		double floatingPutQuantity;
+		int numberOfContracts;
+
+		boolean isValueValid;
+		boolean isGreeksValid;
+		double value;
+		double delta;
+		double vega;
+		double rho;
+
+		Group(double maturity, int numberOfFixingDates, double volatility, double riskFreeRate) {
+			this.maturity=maturity;
+			this.numberOfFixingDates=numberOfFixingDates;
+			this.volatility=volatility;
+			this.riskFreeRate=riskFreeRate;
+		}
+	}
+
+	/*
+	 * Fixed strikes of one payoff of a group, ascending, with their quantities and the sums of q and q K of the first
+	 * i strikes at position i.
+	 */
+	private static final class Strikes {
+		final List<Integer> contracts = new ArrayList<>();
+		double[] strikes;
+		double[] quantities;
+		double[] quantitySums;
+		double[] strikeSums;
+
+		void build(double[] allStrikes, double[] allQuantities) {
+			contracts.sort((first, second) -> Double.compare(allStrikes[first], allStrikes[second]));
+			strikes = new double[contracts.size()];
+			quantities = new double[contracts.size()];
+			quantitySums = new double[contracts.size() + 1];
+			strikeSums = new double[contracts.size() + 1];
+			for(int i = 0; i < strikes.length; i++) {
+				strikes[i] = allStrikes[contracts.get(i)];
+				quantities[i] = allQuantities[contracts.get(i)];
+				quantitySums[i + 1] = quantitySums[i] + quantities[i];
+				strikeSums[i + 1] = strikeSums[i] + quantities[i] * strikes[i];
+			}
+		}
+
+		/*
+		 * Number of strikes K < level (or K <= level).
+		 */
+		int getNumberBelow(double level, boolean isInclusive) {
+			int low = 0;
+			int high = strikes.length;
+			while(low < high) {
+				int middle = (low + high) >>> 1;
+				if(strikes[middle] < level || (isInclusive && strikes[middle] == level)) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * Creates the book of one unit of every trade of a batch. See {@link #AnalyticLookbackBook(LookbackTradeBatch, double[])}.
+	 *
+	 * @param trades The trades.
+	 */
+	public AnalyticLookbackBook(LookbackTradeBatch trades) {
+		this(trades, getUnitQuantities(trades.getNumberOfTrades()));
+	}
+
+	/**
+	 * Creates the book of the trades of a batch. The trades must have the same spot, which is the initial running
+	 * maximum and minimum of the book, and the trades with the same maturity and number of fixings the same
+	 * volatility and rate.
+	 *
+	 * @param trades     The trades.
+	 * @param quantities The quantities (notionals) of the trades, negative for short positions.
+	 */
+	public AnalyticLookbackBook(LookbackTradeBatch trades, double[] quantities) {
+		int numberOfContracts = trades.getNumberOfTrades();
+		if(quantities.length != numberOfContracts) {
+			throw new IllegalArgumentException("The book has " + numberOfContracts + " trades and " + quantities.length + " quantities.");
+		}
+		this.tradeIds = new long[numberOfContracts];
+		this.payoffs = new LookbackPayoff[numberOfContracts];
+		this.strikes = new double[numberOfContracts];
+		this.quantities = quantities.clone();
+		this.groupIndices = new int[numberOfContracts];
+		this.spotPrice = numberOfContracts > 0 ? trades.getSpotPrice(0) : 0.0;
+		this.runningMaximum = spotPrice;
+		this.runningMinimum = spotPrice;
+		this.fixingMaximum = spotPrice;
+		this.fixingMinimum = spotPrice;
+
+		// Contracts and groups
+		Map<String, Integer> groupIndexByKey = new LinkedHashMap<>();
+		List<Group> groupList = new ArrayList<>();
+		for(int index = 0; index < numberOfContracts; index++) {
+			if(trades.getSpotPrice(index) != spotPrice) {
+				throw new IllegalArgumentException("The trades of the book must have the same spot (trade " + trades.getTradeId(index) + ").");
+			}
+			double maturity = trades.getMaturity(index);
+			int numberOfFixingDates = trades.getNumberOfFixingDates(index);
+			Integer groupIndex = groupIndexByKey.get(maturity + "/" + numberOfFixingDates);
+			if(groupIndex == null) {
+				groupIndex = groupList.size();
+				groupIndexByKey.put(maturity + "/" + numberOfFixingDates, groupIndex);
+				groupList.add(new Group(maturity, numberOfFixingDates, trades.getVolatility(index), trades.getRiskFreeRate(index)));
+			}
+			Group group = groupList.get(groupIndex);
+			group.numberOfContracts++;
+			if(trades.getVolatility(index) != group.volatility || trades.getRiskFreeRate(index) != group.riskFreeRate) {
+				throw new IllegalArgumentException("The trades with maturity " + maturity + " and " + numberOfFixingDates
+						+ " fixings must have the same volatility and rate (trade " + trades.getTradeId(index) + ").");
+			}
+
+			LookbackPayoff payoff = trades.getPayoff(index);
+			tradeIds[index] = trades.getTradeId(index);
+			payoffs[index] = payoff;
+			strikes[index] = trades.getStrike(index);
+			groupIndices[index] = groupIndex;
+			switch(payoff) {
+			case CALL_FIXED_STRIKE:
+				group.calls.contracts.add(index);
+				break;
+			case PUT_FIXED_STRIKE:
+				group.puts.contracts.add(index);
+				break;
+			case CALL_FLOATING_STRIKE:
+				group.floatingCallQuantity += quantities[index];
+				break;
+			case PUT_FLOATING_STRIKE:
+				group.floatingPutQuantity += quantities[index];
+				break;
+			default:
+				throw new IllegalStateException("Unknown payoff " + payoff);
+			}
+		}
+		this.groups = groupList.toArray(new Group[0]);
+		for(Group group : groups) {
+			group.calls.build(strikes, this.quantities);
+			group.puts.build(strikes, this.quantities);
+		}
+
+		revalue();
+	}
+
+	/**
+	 * Sets the spot and updates the running extrema of the continuously monitored contracts. The groups are repriced
+	 * when value or Greeks are read.
+	 *
+	 * @param spotPrice The new spot {@code S}.
+	 */
+	public void setSpotPrice(double spotPrice) {
+		this.spotPrice=spotPrice;
+		runningMaximum = Math.max(runningMaximum, spotPrice);
+		runningMinimum = Math.min(runningMinimum, spotPrice);
+		for(Group group : groups) {
+			group.isValueValid = false;
+			group.isGreeksValid = false;
+		}
+	}
+
+	/**
+	 * Records the current spot as a fixing of the discretely monitored contracts, updating their running extrema.
+	 */
+	public void setFixing() {
+		fixingMaximum = Math.max(fixingMaximum, spotPrice);
+		fixingMinimum = Math.min(fixingMinimum, spotPrice);
+		for(Group group : groups) {
+			if(group.numberOfFixingDates != 0) {
+				group.isValueValid = false;
+				group.isGreeksValid = false;
+			}
+		}
+	}
+
+	/**
+	 * Sets the volatility of the contracts with a given maturity, marking only their groups for repricing.
+	 *
+	 * @param maturity   The maturity {@code T}.
+	 * @param volatility The new volatility {@code σ}.
+	 * @return The number of contracts whose values changed.
+	 */
+	public int setVolatility(double maturity, double volatility) {
+		int numberOfContracts = 0;
+		for(Group group : groups) {
+			if(group.maturity == maturity) {
+				group.volatility = volatility;
+				group.isValueValid = false;
+				group.isGreeksValid = false;
+				numberOfContracts += group.numberOfContracts;
+			}
+		}
+		return numberOfContracts;
+	}
+
+	/**
+	 * Sets the risk-free rate of the contracts with a given maturity, marking only their groups for repricing.
+	 *
+	 * @param maturity     The maturity {@code T}.
+	 * @param riskFreeRate The new rate {@code r}.
+	 * @return The number of contracts whose values changed.
+	 */
+	public int setRiskFreeRate(double maturity, double riskFreeRate) {
+		int numberOfContracts = 0;
+		for(Group group : groups) {
+			if(group.maturity == maturity) {
+				group.riskFreeRate = riskFreeRate;
+				group.isValueValid = false;
+				group.isGreeksValid = false;
+				numberOfContracts += group.numberOfContracts;
+			}
+		}
+		return numberOfContracts;
+	}
+
+	/**
+	 * Returns the value of the book.
+	 *
+	 * @return The sum of the values of the positions.
+	 */
+	public double getValue() {
+		for(Group group : groups) {
+			if(!group.isValueValid) {
+				double groupValue = getGroupValue(group, spotPrice, group.volatility, group.riskFreeRate);
+				value += groupValue - group.value;
+				group.value = groupValue;
+				group.isValueValid = true;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the delta of the book, the derivative of its value by the spot at fixed running extrema.
+	 *
+	 * @return The delta.
+	 */
+	public double getDelta() {
+		updateGreeks();
+		return delta;
+	}
+
+	/**
+	 * Returns the vega of the book, the derivative of its value by the volatility of all the maturities.
+	 *
+	 * @return The vega.
+	 */
+	public double getVega() {
+		updateGreeks();
+		return vega;
+	}
+
+	/**
+	 * Returns the rho of the book, the derivative of its value by the rate of all the maturities.
+	 *
+	 * @return The rho.
+	 */
+	public double getRho() {
+		updateGreeks();
+		return rho;
+	}
+
+	/**
+	 * Returns the value of a position at the current market data and running extrema.
+	 *
+	 * @param index Index of the trade in the batch of the book.
+	 * @return The value of the position (quantity times the price of the contract).
+	 */
+	public double getValue(int index) {
+		Group group = groups[groupIndices[index]];
+		double maximum = getMaximum(group);
+		double minimum = getMinimum(group);
+		double discountFactor = Math.exp(-group.riskFreeRate * group.maturity);
+		double strike = strikes[index];
+		double price;
+		switch(payoffs[index]) {
+		case CALL_FIXED_STRIKE:
+			price = strike > maximum
+					? getPrice(LookbackPayoff.CALL_FIXED_STRIKE, group, spotPrice, group.volatility, group.riskFreeRate, strike)
+					: getPrice(LookbackPayoff.CALL_FIXED_STRIKE, group, spotPrice, group.volatility, group.riskFreeRate, maximum) + (maximum - strike) * discountFactor;
+			break;
+		case PUT_FIXED_STRIKE:
+			price = strike < minimum
+					? getPrice(LookbackPayoff.PUT_FIXED_STRIKE, group, spotPrice, group.volatility, group.riskFreeRate, strike)
+					: getPrice(LookbackPayoff.PUT_FIXED_STRIKE, group, spotPrice, group.volatility, group.riskFreeRate, minimum) + (strike - minimum) * discountFactor;
+			break;
+		case CALL_FLOATING_STRIKE:
+			price = getPrice(LookbackPayoff.PUT_FIXED_STRIKE, group, spotPrice, group.volatility, group.riskFreeRate, minimum) + spotPrice - minimum * discountFactor;
+			break;
+		case PUT_FLOATING_STRIKE:
+			price = getPrice(LookbackPayoff.CALL_FIXED_STRIKE, group, spotPrice, group.volatility, group.riskFreeRate, maximum) + maximum * discountFactor - spotPrice;
+			break;
+		default:
+			throw new IllegalStateException("Unknown payoff " + payoffs[index]);
+		}
+		return quantities[index] * price;
+	}
+
+	/**
+	 * Reprices all the groups and rebuilds the sums of the book, discarding the rounding errors accumulated by the
+	 * incremental updates.
+	 */
+	public void revalue() {
+		value = 0.0;
+		delta = 0.0;
+		vega = 0.0;
+		rho = 0.0;
+		for(Group group : groups) {
+			group.value = 0.0;
+			group.delta = 0.0;
+			group.vega = 0.0;
+			group.rho = 0.0;
+			group.isValueValid = false;
+			group.isGreeksValid = false;
+		}
+		getValue();
+		updateGreeks();
+	}
+
+	public double getSpotPrice() {
+		return spotPrice;
+	}
+
+	/**
+	 * Returns the running maximum of the spot, observed by the continuously monitored contracts.
+	 *
+	 * @return The running maximum {@code M}.
+	 */
+	public double getRunningMaximum() {
+		return runningMaximum;
+	}
+
+	/**
+	 * Returns the running minimum of the spot, observed by the continuously monitored contracts.
+	 *
+	 * @return The running minimum {@code m}.
+	 */
+	public double getRunningMinimum() {
+		return runningMinimum;
+	}
+
+	public int getNumberOfContracts() {
+		return tradeIds.length;
+	}
+
+	public int getNumberOfGroups() {
+		return groups.length;
+	}
+
+	public long getTradeId(int index) {
+		return tradeIds[index];
+	}
+
+	/*
+	 * Reprices the Greeks of the changed groups and updates the sums of the book by their differences.
+	 */
+	private void updateGreeks() {
+		for(Group group : groups) {
+			if(group.isGreeksValid) {
+				continue;
+			}
+			double volatility = group.volatility;
+			double riskFreeRate = group.riskFreeRate;
+			double spotShift = SPOT_SHIFT * spotPrice;
+			double groupDelta = (getGroupValue(group, spotPrice + spotShift, volatility, riskFreeRate)
+					- getGroupValue(group, spotPrice - spotShift, volatility, riskFreeRate)) / (2.0 * spotShift);
+			double groupVega = (getGroupValue(group, spotPrice, volatility + VOLATILITY_SHIFT, riskFreeRate)
+					- getGroupValue(group, spotPrice, volatility - VOLATILITY_SHIFT, riskFreeRate)) / (2.0 * VOLATILITY_SHIFT);
+			double groupRho = (getGroupValue(group, spotPrice, volatility, riskFreeRate + RATE_SHIFT)
+					- getGroupValue(group, spotPrice, volatility, riskFreeRate - RATE_SHIFT)) / (2.0 * RATE_SHIFT);
+			delta += groupDelta - group.delta;
+			vega += groupVega - group.vega;
+			rho += groupRho - group.rho;
+			group.delta = groupDelta;
+			group.vega = groupVega;
+			group.rho = groupRho;
+			group.isGreeksValid = true;
+		}
+	}
+
+	/*
+	 * Value of the contracts of a group at a spot, volatility and rate, at the running extrema of the group.
+	 */
+	private double getGroupValue(Group group, double spotPrice, double volatility, double riskFreeRate) {
+		double maximum = getMaximum(group);
+		double minimum = getMinimum(group);
+		double discountFactor = Math.exp(-riskFreeRate * group.maturity);
+		double callOnMaximum = getPrice(LookbackPayoff.CALL_FIXED_STRIKE, group, spotPrice, volatility, riskFreeRate, maximum);
+		double putOnMinimum = getPrice(LookbackPayoff.PUT_FIXED_STRIKE, group, spotPrice, volatility, riskFreeRate, minimum);
+
+		// Floating strikes
+		double groupValue = group.floatingPutQuantity * (callOnMaximum + maximum * discountFactor - spotPrice)
+				+ group.floatingCallQuantity * (putOnMinimum + spotPrice - minimum * discountFactor);
+
+		// Fixed-strike calls: linear in K for K <= M, priced one by one beyond
+		Strikes calls = group.calls;
+		int numberOfCallsOnMaximum = calls.getNumberBelow(maximum, true);
+		groupValue += calls.quantitySums[numberOfCallsOnMaximum] * (callOnMaximum + maximum * discountFactor)
+				- calls.strikeSums[numberOfCallsOnMaximum] * discountFactor;
+		for(int i = numberOfCallsOnMaximum; i < calls.strikes.length; i++) {
+			groupValue += calls.quantities[i] * getPrice(LookbackPayoff.CALL_FIXED_STRIKE, group, spotPrice, volatility, riskFreeRate, calls.strikes[i]);
+		}
+
+		// Fixed-strike puts: priced one by one for K < m, linear in K beyond
+		Strikes puts = group.puts;
+		int numberOfPutsBelowMinimum = puts.getNumberBelow(minimum, false);
+		for(int i = 0; i < numberOfPutsBelowMinimum; i++) {
+			groupValue += puts.quantities[i] * getPrice(LookbackPayoff.PUT_FIXED_STRIKE, group, spotPrice, volatility, riskFreeRate, puts.strikes[i]);
+		}
+		int numberOfPuts = puts.strikes.length;
+		groupValue += (puts.quantitySums[numberOfPuts] - puts.quantitySums[numberOfPutsBelowMinimum]) * (putOnMinimum - minimum * discountFactor)
+				+ (puts.strikeSums[numberOfPuts] - puts.strikeSums[numberOfPutsBelowMinimum]) * discountFactor;
+		return groupValue;
+	}
+
+	private double getMaximum(Group group) {
+		return group.numberOfFixingDates == 0 ? runningMaximum : fixingMaximum;
+	}
+
+	private double getMinimum(Group group) {
+		return group.numberOfFixingDates == 0 ? runningMinimum : fixingMinimum;
+	}
+
+	/*
+	 * Unseasoned price of a fixed-strike lookback of a group.
+	 */
+	private static double getPrice(LookbackPayoff payoff, Group group, double spotPrice, double volatility, double riskFreeRate, double strike) {
+		return group.numberOfFixingDates == 0
+				? payoff.getContinuouslyMonitoredPrice(spotPrice, riskFreeRate, volatility, group.maturity, strike)
+				: payoff.getDiscretelyMonitoredPrice(spotPrice, riskFreeRate, volatility, group.maturity, strike, group.numberOfFixingDates);
+	}
+
+	private static double[] getUnitQuantities(int numberOfTrades) {
+		double[] quantities = new double[numberOfTrades];
+		Arrays.fill(quantities, 1.0);
+		return quantities;
+	}
+}
@@ -0,0 +1,173 @@
+package it.univr.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reading and writing of {@link LookbackTradeBatch} and {@link LookbackResultBatch} files.
+ *
+ * <p>A file is a 32-byte header (magic number, format version, content type, number of records, little-endian)
+ * followed by the columns of the batch. Files are written through a {@link FileChannel} and read by mapping them
+ * in memory: the batch returned by {@link #readTrades(Path)} or {@link #readResults(Path)} reads the columns
+ * directly from the mapped file, so opening a file of millions of trades costs no parsing and no copy; only the
+ * payoff column, one byte per trade, is scanned to reject invalid payoffs. Files are mapped as a whole, so they must
+ * be smaller than 2 GB (about 40 million trades); larger files are read in chunks by {@link LookbackBookPipeline}.
+ */
+public final class LookbackBatchFiles {
+
+	// Header: magic number "LKBT", version, content type, reserved, number of records, reserved
+	private static final int MAGIC_NUMBER = 0x4C4B4254;
+	private static final int FORMAT_VERSION = 1;
+	static final int HEADER_SIZE = 32;
+	private static final int TRADES = 1;
+	private static final int RESULTS = 2;
+
+	private LookbackBatchFiles() {
+	}
+
+	/**
+	 * Writes a batch of trades.
+	 *
+	 * @param file  The file (created or overwritten).
+	 * @param batch The trades.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void writeTrades(Path file, LookbackTradeBatch batch) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			LookbackTradeBatch.writeFully(channel, getHeader(TRADES, batch.getNumberOfTrades()));
+			batch.writeTo(channel);
+		}
+	}
+
+	/**
+	 * Writes a batch of results.
+	 *
+	 * @param file  The file (created or overwritten).
+	 * @param batch The results.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void writeResults(Path file, LookbackResultBatch batch) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			LookbackTradeBatch.writeFully(channel, getHeader(RESULTS, batch.getNumberOfResults()));
+			batch.writeTo(channel);
+		}
+	}
+
+	/**
+	 * Maps a file of trades in memory (read only).
+	 *
+	 * @param file The file.
+	 * @return The batch, backed by the mapped file.
+	 * @throws IOException If the file cannot be read or is not a file of trades.
+	 */
+	public static LookbackTradeBatch readTrades(Path file) throws IOException {
+		ByteBuffer buffer = map(file);
+		int numberOfTrades = readHeader(file, buffer, TRADES, LookbackTradeBatch.BYTES_PER_TRADE);
+		LookbackTradeBatch batch = LookbackTradeBatch.wrap(buffer, numberOfTrades);
+		batch.checkPayoffs();
+		return batch;
+	}
+
+	/**
+	 * Maps a file of results in memory (read only).
+	 *
+	 * @param file The file.
+	 * @return The batch, backed by the mapped file.
+	 * @throws IOException If the file cannot be read or is not a file of results.
+	 */
+	public static LookbackResultBatch readResults(Path file) throws IOException {
+		ByteBuffer buffer = map(file);
+		int numberOfResults = readHeader(file, buffer, RESULTS, LookbackResultBatch.BYTES_PER_RESULT);
+		return LookbackResultBatch.wrap(buffer, numberOfResults);
+	}
+
+	/*
+	 * Maps the whole file; the mapping stays valid after the channel is closed.
+	 */
+	private static MappedByteBuffer map(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to be mapped in memory: read it in chunks with LookbackBookPipeline.");
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Reads the header of a file of trades from a channel, without mapping the file.
+	 *
+	 * @param file    The file (for the messages).
+	 * @param channel The channel of the file.
+	 * @return The number of trades; the columns start at {@link #HEADER_SIZE}.
+	 * @throws IOException If the file cannot be read or is not a file of trades.
+	 */
+	static long readTradesHeader(Path file, FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		while(header.hasRemaining()) {
+			if(channel.read(header, header.position()) < 0) {
+				break;
+			}
+		}
+		header.flip();
+		return readHeader(file, header, channel.size(), TRADES, LookbackTradeBatch.BYTES_PER_TRADE);
+	}
+
+	/**
+	 * Writes the header of a file of results to a channel; the columns follow at {@link #HEADER_SIZE}.
+	 *
+	 * @param channel         The channel of the file.
+	 * @param numberOfResults The number of results.
+	 * @throws IOException If the channel fails.
+	 */
+	static void writeResultsHeader(FileChannel channel, long numberOfResults) throws IOException {
+		ByteBuffer header = getHeader(RESULTS, numberOfResults);
+		while(header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+	}
+
+	private static ByteBuffer getHeader(int contentType, long numberOfRecords) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC_NUMBER).putInt(FORMAT_VERSION).putInt(contentType).putInt(0).putLong(numberOfRecords).putLong(0L);
+		header.flip();
+		return header;
+	}
+
+	/*
+	 * Checks the header, leaves the buffer positioned on the first column and returns the number of records.
+	 */
+	private static int readHeader(Path file, ByteBuffer buffer, int contentType, int bytesPerRecord) throws IOException {
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		long numberOfRecords = readHeader(file, buffer, buffer.capacity(), contentType, bytesPerRecord);
+		if(numberOfRecords > Integer.MAX_VALUE / bytesPerRecord) {
+			throw new IOException(file + " has too many records (" + numberOfRecords + ") to be mapped in memory: read it in chunks with LookbackBookPipeline.");
+		}
+		buffer.position(HEADER_SIZE);
+		return (int) numberOfRecords;
+	}
+
+	/*
+	 * Checks the header at the start of a buffer against the size of the file and returns the number of records.
+	 */
+	private static long readHeader(Path file, ByteBuffer buffer, long fileSize, int contentType, int bytesPerRecord) throws IOException {
+		if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC_NUMBER) {
+			throw new IOException(file + " is not a lookback batch file.");
+		}
+		if(buffer.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Unsupported batch format version " + buffer.getInt(4) + " in " + file + ".");
+		}
+		if(buffer.getInt(8) != contentType) {
+			throw new IOException(file + " does not contain " + (contentType == TRADES ? "trades." : "results."));
+		}
+		long numberOfRecords = buffer.getLong(16);
+		if(numberOfRecords < 0 || numberOfRecords > (fileSize - HEADER_SIZE) / bytesPerRecord) {
+			throw new IOException(file + " is truncated.");
+		}
+		return numberOfRecords;
+	}
+}
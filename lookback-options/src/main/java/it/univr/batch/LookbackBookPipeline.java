@@ -0,0 +1,310 @@
+package it.univr.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Values a file of trades of any size into a file of results with a streaming pipeline of three stages, each on its
+ * own threads and connected by bounded queues:
+ * <ol>
+ *   <li>a reader, which reads the file chunk by chunk with positional reads (no mapping of the whole file);</li>
+ *   <li>a grouper, which sorts the trades of a chunk by spot, rate, volatility, maturity and number of monitoring
+ *       intervals, so that the trades sharing model and grid are priced together;</li>
+ *   <li>a number of pricing threads, which price the groups with a {@link LookbackGroupPricer} and write the results
+ *       of the chunk at their positions in the output file, in any order.</li>
+ * </ol>
+ * The chunks are taken from a fixed pool and returned to it once written: the memory used does not depend on the
+ * size of the file, and a slow stage blocks the previous ones instead of letting the queues grow. The output file
+ * has the format of {@link LookbackBatchFiles#writeResults(java.nio.file.Path, LookbackResultBatch)}, with the
+ * results in the order of the trades.
+ *
+ * <p>Groups are formed within a chunk: the larger the chunk, the more trades share the work of a group.
+ */
+public class LookbackBookPipeline {
+
+	// Marks the end of the trades in the queues
+	private static final Chunk END = new Chunk();
+
+	private final LookbackGroupPricer pricer;
+	private final int chunkSize;
+	private final int numberOfPricingThreads;
+	private final int queueCapacity;
+
+	private long numberOfGroups;
+
+	/**
+	 * Creates the pipeline.
+	 *
+	 * @param pricer                 The pricer of the groups.
+	 * @param chunkSize              Number of trades per chunk.
+	 * @param numberOfPricingThreads Number of pricing threads.
+	 * @param queueCapacity          Number of chunks each queue between two stages can hold.
+	 */
+	public LookbackBookPipeline(LookbackGroupPricer pricer, int chunkSize, int numberOfPricingThreads, int queueCapacity) {
+		if(chunkSize <= 0 || numberOfPricingThreads <= 0 || queueCapacity <= 0) {
+			throw new IllegalArgumentException("Chunk size, number of pricing threads and queue capacity must be positive.");
+		}
+		this.pricer=pricer;
+		this.chunkSize=chunkSize;
+		this.numberOfPricingThreads=numberOfPricingThreads;
+		this.queueCapacity=queueCapacity;
+	}
+
+	/**
+	 * Values all the trades of a file.
+	 *
+	 * @param tradeFile  The file of trades, as written by {@link LookbackBatchFiles#writeTrades(Path, LookbackTradeBatch)}.
+	 * @param resultFile The file of results (created or overwritten).
+	 * @return The number of trades valued.
+	 * @throws IOException          If a file cannot be read or written.
+	 * @throws InterruptedException If the calling thread is interrupted (the pipeline is stopped).
+	 */
+	public long run(Path tradeFile, Path resultFile) throws IOException, InterruptedException {
+		try(FileChannel input = FileChannel.open(tradeFile, StandardOpenOption.READ);
+				FileChannel output = FileChannel.open(resultFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long numberOfTrades = LookbackBatchFiles.readTradesHeader(tradeFile, input);
+			LookbackBatchFiles.writeResultsHeader(output, numberOfTrades);
+
+			// Every chunk is either free, in a queue or held by one of the threads
+			int numberOfChunks = 2 * queueCapacity + numberOfPricingThreads + 2;
+			BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(numberOfChunks);
+			for(int chunk = 0; chunk < numberOfChunks; chunk++) {
+				freeChunks.add(new Chunk(chunkSize));
+			}
+			BlockingQueue<Chunk> readChunks = new ArrayBlockingQueue<>(queueCapacity);
+			BlockingQueue<Chunk> groupedChunks = new ArrayBlockingQueue<>(queueCapacity);
+
+			AtomicReference<Throwable> failure = new AtomicReference<>();
+			AtomicLong groups = new AtomicLong();
+			List<StageThread> threads = new ArrayList<>();
+
+			threads.add(new StageThread(() -> {
+				for(long from = 0; from < numberOfTrades; from += chunkSize) {
+					Chunk chunk = freeChunks.take();
+					int count = (int) Math.min(chunkSize, numberOfTrades - from);
+					chunk.from = from;
+					chunk.trades = LookbackTradeBatch.read(input, LookbackBatchFiles.HEADER_SIZE, numberOfTrades, from, count, chunk.tradeBuffer);
+					readChunks.put(chunk);
+				}
+				readChunks.put(END);
+			}, "lookback-reader"));
+
+			threads.add(new StageThread(() -> {
+				for(Chunk chunk = readChunks.take(); chunk != END; chunk = readChunks.take()) {
+					chunk.group();
+					groupedChunks.put(chunk);
+				}
+				for(int thread = 0; thread < numberOfPricingThreads; thread++) {
+					groupedChunks.put(END);
+				}
+			}, "lookback-grouper"));
+
+			for(int thread = 0; thread < numberOfPricingThreads; thread++) {
+				threads.add(new StageThread(() -> {
+					for(Chunk chunk = groupedChunks.take(); chunk != END; chunk = groupedChunks.take()) {
+						int count = chunk.trades.getNumberOfTrades();
+						for(int group = 0; group < chunk.numberOfGroups; group++) {
+							pricer.price(chunk.trades, chunk.order, chunk.groupStarts[group], chunk.groupStarts[group + 1], chunk.results);
+						}
+						chunk.results.slice(0, count).writeTo(output, LookbackBatchFiles.HEADER_SIZE, numberOfTrades, chunk.from);
+						groups.addAndGet(chunk.numberOfGroups);
+						freeChunks.put(chunk);
+					}
+				}, "lookback-pricer-" + thread));
+			}
+
+			startAndJoin(threads, failure);
+			numberOfGroups = groups.get();
+			return numberOfTrades;
+		}
+	}
+
+	/**
+	 * Returns the number of groups priced by the last run (summed over the chunks).
+	 *
+	 * @return The number of groups.
+	 */
+	public long getNumberOfGroups() {
+		return numberOfGroups;
+	}
+
+	/*
+	 * Runs the stages; the first failure interrupts all of them and is rethrown.
+	 */
+	private static void startAndJoin(List<StageThread> threads, AtomicReference<Throwable> failure) throws IOException, InterruptedException {
+		for(StageThread thread : threads) {
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler((failedThread, exception) -> {
+				if(failure.compareAndSet(null, exception)) {
+					threads.forEach(Thread::interrupt);
+				}
+			});
+		}
+		threads.forEach(Thread::start);
+		try {
+			for(StageThread thread : threads) {
+				thread.join();
+			}
+		}
+		catch(InterruptedException e) {
+			threads.forEach(Thread::interrupt);
+			throw e;
+		}
+
+		Throwable exception = failure.get();
+		if(exception instanceof StageException) {
+			exception = exception.getCause();
+		}
+		if(exception instanceof IOException) {
+			throw (IOException) exception;
+		}
+		if(exception instanceof RuntimeException) {
+			throw (RuntimeException) exception;
+		}
+		if(exception instanceof Error) {
+			throw (Error) exception;
+		}
+		if(exception != null) {
+			throw new IOException("The valuation pipeline failed.", exception);
+		}
+	}
+
+	/*
+	 * A body of a stage, which may block and fail.
+	 */
+	@FunctionalInterface
+	private interface Stage {
+		void run() throws IOException, InterruptedException;
+	}
+
+	/*
+	 * A thread running a stage; checked exceptions are rethrown unchecked to reach the exception handler.
+	 */
+	private static final class StageThread extends Thread {
+
+		private final Stage stage;
+
+		StageThread(Stage stage, String name) {
+			super(name);
+			this.stage=stage;
+		}
+
+		@Override
+		public void run() {
+			try {
+				stage.run();
+			}
+			catch(IOException | InterruptedException e) {
+				throw new StageException(e);
+			}
+		}
+	}
+
+	/*
+	 * Carries a checked exception of a stage to the exception handler.
+	 */
+	private static final class StageException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		StageException(Exception cause) {
+			super(cause);
+		}
+	}
+
+	/*
+	 * Trades of consecutive positions of the file, with the buffers of their results and grouping.
+	 */
+	private static final class Chunk {
+
+		private final ByteBuffer tradeBuffer;
+		private final LookbackResultBatch results;
+		// Indices of the trades sorted by group, and start of every group in it (plus the end)
+		private final int[] order;
+		private final int[] buffer;
+		private final int[] groupStarts;
+
+		private long from;
+		private LookbackTradeBatch trades;
+		private int numberOfGroups;
+
+		Chunk() {
+			this.tradeBuffer=null;
+			this.results=null;
+			this.order=null;
+			this.buffer=null;
+			this.groupStarts=null;
+		}
+
+		Chunk(int chunkSize) {
+			this.tradeBuffer=ByteBuffer.allocateDirect(chunkSize * LookbackTradeBatch.BYTES_PER_TRADE);
+			this.results=LookbackResultBatch.allocate(chunkSize);
+			this.order=new int[chunkSize];
+			this.buffer=new int[chunkSize];
+			this.groupStarts=new int[chunkSize + 1];
+		}
+
+		/*
+		 * Sorts the trades by group (bottom-up merge sort on the indices) and finds the starts of the groups.
+		 */
+		void group() {
+			int count = trades.getNumberOfTrades();
+			for(int index = 0; index < count; index++) {
+				order[index] = index;
+			}
+			int[] source = order;
+			int[] target = buffer;
+			for(int width = 1; width < count; width *= 2) {
+				for(int left = 0; left < count; left += 2 * width) {
+					int middle = Math.min(left + width, count);
+					int right = Math.min(left + 2 * width, count);
+					int i = left;
+					int j = middle;
+					for(int k = left; k < right; k++) {
+						target[k] = i < middle && (j >= right || compare(source[i], source[j]) <= 0) ? source[i++] : source[j++];
+					}
+				}
+				int[] swap = source;
+				source = target;
+				target = swap;
+			}
+			if(source != order) {
+				System.arraycopy(source, 0, order, 0, count);
+			}
+
+			numberOfGroups = 0;
+			for(int position = 0; position < count; position++) {
+				if(position == 0 || compare(order[position - 1], order[position]) != 0) {
+					groupStarts[numberOfGroups++] = position;
+				}
+			}
+			groupStarts[numberOfGroups] = count;
+		}
+
+		private int compare(int first, int second) {
+			int comparison = Double.compare(trades.getSpotPrice(first), trades.getSpotPrice(second));
+			if(comparison == 0) {
+				comparison = Double.compare(trades.getRiskFreeRate(first), trades.getRiskFreeRate(second));
+			}
+			if(comparison == 0) {
+				comparison = Double.compare(trades.getVolatility(first), trades.getVolatility(second));
+			}
+			if(comparison == 0) {
+				comparison = Double.compare(trades.getMaturity(first), trades.getMaturity(second));
+			}
+			if(comparison == 0) {
+				comparison = Integer.compare(trades.getNumberOfFixingDates(first), trades.getNumberOfFixingDates(second));
+			}
+			return comparison;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package it.univr.batch;
+
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.montecarlo.BlackScholesLookbackSimulation;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Prices a group of trades of a {@link LookbackTradeBatch} which share spot, rate, volatility, maturity and number of
+ * monitoring intervals, sharing the work which depends only on these.
+ *
+ * <p>Two implementations are provided:
+ * <ul>
+ *   <li>{@link #analytic()}: the prices of {@link AnalyticBatchPricer}. The contracts start at the spot, so the
+ *       floating-strike prices and the in-the-money fixed-strike prices (by the parity with the floating strike)
+ *       follow from the two floating-strike prices on a spot of 1: two closed-form evaluations per group, plus one
+ *       per out-of-the-money fixed-strike trade;</li>
+ *   <li>{@link #monteCarlo(int, int, int)}: one {@link BlackScholesLookbackSimulation} per group, whose terminal
+ *       values and extrema price all the trades of the group.</li>
+ * </ul>
+ * Implementations are used by several threads at once and must not keep state between calls.
+ */
+public abstract class LookbackGroupPricer {
+
+	/**
+	 * Returns the analytic group pricer.
+	 *
+	 * @return The pricer.
+	 */
+	public static LookbackGroupPricer analytic() {
+		return new AnalyticGroupPricer();
+	}
+
+	/**
+	 * Returns the Monte Carlo group pricer: one simulation per group, on an equidistant grid, with the same random
+	 * numbers for every group.
+	 *
+	 * @param numberOfTimeSteps Number of time steps of the grid (the monitoring dates of the trades are mapped to it).
+	 * @param numberOfPaths     Number of paths.
+	 * @param seed              Seed of the random numbers.
+	 * @return The pricer.
+	 */
+	public static LookbackGroupPricer monteCarlo(int numberOfTimeSteps, int numberOfPaths, int seed) {
+		return new MonteCarloGroupPricer(numberOfTimeSteps, numberOfPaths, seed);
+	}
+
+	/**
+	 * Prices the trades {@code order[from], ..., order[to - 1]} of a batch, which belong to the same group, writing
+	 * identifier and price of trade {@code i} at position {@code i} of the results.
+	 *
+	 * @param trades  The trades.
+	 * @param order   Indices of the trades, grouped.
+	 * @param from    First position of the group in {@code order}.
+	 * @param to      Position after the last of the group in {@code order}.
+	 * @param results The results, with as many entries as trades.
+	 */
+	public abstract void price(LookbackTradeBatch trades, int[] order, int from, int to, LookbackResultBatch results);
+
+	/*
+	 * Analytic prices from the floating-strike prices on a spot of 1 (the parities of AnalyticPrices), and from the
+	 * fixed-strike formulas for the strikes out of the money.
+	 */
+	private static final class AnalyticGroupPricer extends LookbackGroupPricer {
+
+		@Override
+		public void price(LookbackTradeBatch trades, int[] order, int from, int to, LookbackResultBatch results) {
+			int first = order[from];
+			double spotPrice = trades.getSpotPrice(first);
+			double riskFreeRate = trades.getRiskFreeRate(first);
+			double volatility = trades.getVolatility(first);
+			double maturity = trades.getMaturity(first);
+			int numberOfFixingDates = trades.getNumberOfFixingDates(first);
+
+			double callUnitValue = getUnitValue(LookbackPayoff.CALL_FLOATING_STRIKE, riskFreeRate, volatility, maturity, numberOfFixingDates);
+			double putUnitValue = getUnitValue(LookbackPayoff.PUT_FLOATING_STRIKE, riskFreeRate, volatility, maturity, numberOfFixingDates);
+			double discountFactor = Math.exp(-riskFreeRate * maturity);
+
+			for(int position = from; position < to; position++) {
+				int index = order[position];
+				double strike = trades.getStrike(index);
+				double value;
+				switch(trades.getPayoff(index)) {
+				case CALL_FLOATING_STRIKE:
+					value = spotPrice * callUnitValue;
+					break;
+				case PUT_FLOATING_STRIKE:
+					value = spotPrice * putUnitValue;
+					break;
+				case CALL_FIXED_STRIKE:
+					value = strike > spotPrice
+							? getPrice(LookbackPayoff.CALL_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates)
+							: spotPrice * putUnitValue + spotPrice - strike * discountFactor;
+					break;
+				case PUT_FIXED_STRIKE:
+					value = strike < spotPrice
+							? getPrice(LookbackPayoff.PUT_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates)
+							: spotPrice * callUnitValue + strike * discountFactor - spotPrice;
+					break;
+				default:
+					throw new IllegalStateException("Unknown payoff " + trades.getPayoff(index));
+				}
+				results.setResult(index, trades.getTradeId(index), value);
+			}
+		}
+
+		private static double getUnitValue(LookbackPayoff payoff, double riskFreeRate, double volatility, double maturity, int numberOfFixingDates) {
+			return getPrice(payoff, 1.0, riskFreeRate, volatility, maturity, 0.0, numberOfFixingDates);
+		}
+
+		private static double getPrice(LookbackPayoff payoff, double spotPrice, double riskFreeRate, double volatility, double maturity, double strike,
+				int numberOfFixingDates) {
+			return numberOfFixingDates == 0
+					? payoff.getContinuouslyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike)
+					: payoff.getDiscretelyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+		}
+	}
+
+	/*
+	 * Monte Carlo prices from one simulation of the group.
+	 */
+	private static final class MonteCarloGroupPricer extends LookbackGroupPricer {
+
+		private final int numberOfTimeSteps;
+		private final int numberOfPaths;
+		private final int seed;
+
+		MonteCarloGroupPricer(int numberOfTimeSteps, int numberOfPaths, int seed) {
+			this.numberOfTimeSteps=numberOfTimeSteps;
+			this.numberOfPaths=numberOfPaths;
+			this.seed=seed;
+		}
+
+		@Override
+		public void price(LookbackTradeBatch trades, int[] order, int from, int to, LookbackResultBatch results) {
+			int first = order[from];
+			double maturity = trades.getMaturity(first);
+			BrownianMotionFromMersenneRandomNumbers brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+					new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps), 1, numberOfPaths, seed);
+			BlackScholesLookbackSimulation simulation = new BlackScholesLookbackSimulation(trades.getSpotPrice(first), trades.getRiskFreeRate(first),
+					trades.getVolatility(first), brownianMotion, trades.getNumberOfFixingDates(first));
+
+			for(int position = from; position < to; position++) {
+				int index = order[position];
+				results.setResult(index, trades.getTradeId(index), simulation.getValue(trades.getPayoff(index), trades.getStrike(index)));
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package it.univr.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Batch of priced lookback trades, stored column by column in a {@link ByteBuffer}: the trade identifiers
+ * ({@code long}) followed by the prices ({@code double}), little-endian. As for {@link LookbackTradeBatch}, the
+ * buffer can be a memory-mapped file and {@link #slice(int, int)} shares the memory of the batch.
+ */
+public class LookbackResultBatch {
+
+	// Size in bytes of the columns of one result
+	static final int BYTES_PER_RESULT = Long.BYTES + Double.BYTES;
+	// Largest batch: its columns fit in one buffer, so that the byte offsets of the columns fit in an int
+	static final int MAXIMUM_NUMBER_OF_RESULTS = Integer.MAX_VALUE / BYTES_PER_RESULT;
+
+	private final int numberOfResults;
+	// Views of the columns (absolute little-endian access by byte offset)
+	private final ByteBuffer tradeIds;
+	private final ByteBuffer values;
+
+	private LookbackResultBatch(int numberOfResults, ByteBuffer tradeIds, ByteBuffer values) {
+		this.numberOfResults=numberOfResults;
+		this.tradeIds=tradeIds;
+		this.values=values;
+	}
+
+	/**
+	 * Allocates an empty batch in a direct buffer.
+	 *
+	 * @param numberOfResults The number of results, at most {@link #MAXIMUM_NUMBER_OF_RESULTS}.
+	 * @return The batch.
+	 */
+	public static LookbackResultBatch allocate(int numberOfResults) {
+		checkNumberOfResults(numberOfResults);
+		return wrap(ByteBuffer.allocateDirect(numberOfResults * BYTES_PER_RESULT), numberOfResults);
+	}
+
+	/**
+	 * Creates a batch on the columns stored in a buffer, from its current position. The buffer is not copied.
+	 *
+	 * @param buffer          The buffer.
+	 * @param numberOfResults The number of results, at most {@link #MAXIMUM_NUMBER_OF_RESULTS}.
+	 * @return The batch.
+	 */
+	public static LookbackResultBatch wrap(ByteBuffer buffer, int numberOfResults) {
+		checkNumberOfResults(numberOfResults);
+		if(buffer.remaining() < (long) numberOfResults * BYTES_PER_RESULT) {
+			throw new IllegalArgumentException("The buffer is too small for " + numberOfResults + " results.");
+		}
+		ByteBuffer columns = buffer.slice();
+		return new LookbackResultBatch(numberOfResults,
+				LookbackTradeBatch.getColumn(columns, 0, numberOfResults * Long.BYTES),
+				LookbackTradeBatch.getColumn(columns, numberOfResults * Long.BYTES, numberOfResults * Double.BYTES));
+	}
+
+	/**
+	 * Returns the batch of the results {@code from, ..., to - 1}, sharing the memory of this batch.
+	 *
+	 * @param from Index of the first result (inclusive).
+	 * @param to   Index of the last result (exclusive).
+	 * @return The slice.
+	 */
+	public LookbackResultBatch slice(int from, int to) {
+		if(from < 0 || to > numberOfResults || from > to) {
+			throw new IndexOutOfBoundsException("Invalid slice [" + from + ", " + to + ") of a batch of " + numberOfResults + " results.");
+		}
+		return new LookbackResultBatch(to - from,
+				LookbackTradeBatch.getColumn(tradeIds, from * Long.BYTES, (to - from) * Long.BYTES),
+				LookbackTradeBatch.getColumn(values, from * Double.BYTES, (to - from) * Double.BYTES));
+	}
+
+	/**
+	 * Writes a result.
+	 *
+	 * @param index   Index of the result in the batch.
+	 * @param tradeId Identifier of the trade.
+	 * @param value   The price.
+	 */
+	public void setResult(int index, long tradeId, double value) {
+		tradeIds.putLong(index * Long.BYTES, tradeId);
+		values.putDouble(index * Double.BYTES, value);
+	}
+
+	/**
+	 * Writes the columns of the batch to a channel, in the layout read by {@link #wrap(ByteBuffer, int)}.
+	 *
+	 * @param channel The channel.
+	 * @throws IOException If the channel fails.
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		LookbackTradeBatch.writeFully(channel, tradeIds.duplicate());
+		LookbackTradeBatch.writeFully(channel, values.duplicate());
+	}
+
+	/**
+	 * Writes the columns of the batch at the positions of the results {@code from, ..., from + n - 1} of a file of
+	 * results, with positional writes (several batches can be written concurrently).
+	 *
+	 * @param channel         The channel of the file.
+	 * @param columnsStart    Position in the file of the first column.
+	 * @param numberOfResults Number of results of the file.
+	 * @param from            Index in the file of the first result of the batch.
+	 * @throws IOException If the channel fails.
+	 */
+	void writeTo(FileChannel channel, long columnsStart, long numberOfResults, long from) throws IOException {
+		writeFully(channel, tradeIds.duplicate(), columnsStart + from * Long.BYTES);
+		writeFully(channel, values.duplicate(), columnsStart + numberOfResults * Long.BYTES + from * Double.BYTES);
+	}
+
+	public int getNumberOfResults() {
+		return numberOfResults;
+	}
+
+	public long getTradeId(int index) {
+		return tradeIds.getLong(index * Long.BYTES);
+	}
+
+	public double getValue(int index) {
+		return values.getDouble(index * Double.BYTES);
+	}
+
+	private static void checkNumberOfResults(int numberOfResults) {
+		if(numberOfResults < 0 || numberOfResults > MAXIMUM_NUMBER_OF_RESULTS) {
+			throw new IllegalArgumentException("A batch holds between 0 and " + MAXIMUM_NUMBER_OF_RESULTS + " results, not " + numberOfResults + ".");
+		}
+	}
+
+	/*
+	 * Writes all the remaining bytes of a buffer to a channel, from a position.
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+}
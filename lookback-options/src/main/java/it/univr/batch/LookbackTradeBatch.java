@@ -0,0 +1,286 @@
+package it.univr.batch;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.montecarlo.LookbackOption;
+
+/**
+ * Batch of single-asset lookback trades under Black–Scholes, stored column by column (struct of arrays) in a
+ * {@link ByteBuffer}.
+ *
+ * <p>The buffer contains, for {@code n} trades and in this order, the columns
+ * <ul>
+ *   <li>trade identifier ({@code long});</li>
+ *   <li>spot, strike, maturity, risk-free rate and volatility ({@code double});</li>
+ *   <li>number of monitoring intervals, {@code 0} for continuous monitoring ({@code int});</li>
+ *   <li>ordinal of the {@link LookbackPayoff} ({@code byte}),</li>
+ * </ul>
+ * little-endian, each column starting where the previous one ends (the 8-byte columns come first, so every column
+ * is aligned to its element size). The buffer can be a memory-mapped file (see {@link LookbackBatchFiles}): the
+ * columns are then read in place, without parsing. {@link #slice(int, int)} returns a batch of consecutive trades
+ * sharing the same memory, so that a batch can be split among pricing threads without copies.
+ */
+public class LookbackTradeBatch {
+
+	// Size in bytes of the columns of one trade
+	static final int BYTES_PER_TRADE = 6 * Long.BYTES + Integer.BYTES + 1;
+	// Largest batch: its columns fit in one buffer, so that the byte offsets of the columns fit in an int
+	static final int MAXIMUM_NUMBER_OF_TRADES = Integer.MAX_VALUE / BYTES_PER_TRADE;
+	// Payoffs by ordinal (values() returns a new array at every call)
+	private static final LookbackPayoff[] PAYOFFS = LookbackPayoff.values();
+
+	private final int numberOfTrades;
+	// Views of the columns (absolute little-endian access by byte offset)
+	private final ByteBuffer tradeIds;
+	private final ByteBuffer spotPrices;
+	private final ByteBuffer strikes;
+	private final ByteBuffer maturities;
+	private final ByteBuffer riskFreeRates;
+	private final ByteBuffer volatilities;
+	private final ByteBuffer numbersOfFixingDates;
+	private final ByteBuffer payoffs;
+
+	private LookbackTradeBatch(int numberOfTrades, ByteBuffer tradeIds, ByteBuffer spotPrices, ByteBuffer strikes,
+			ByteBuffer maturities, ByteBuffer riskFreeRates, ByteBuffer volatilities, ByteBuffer numbersOfFixingDates, ByteBuffer payoffs) {
+		this.numberOfTrades=numberOfTrades;
+		this.tradeIds=tradeIds;
+		this.spotPrices=spotPrices;
+		this.strikes=strikes;
+		this.maturities=maturities;
+		this.riskFreeRates=riskFreeRates;
+		this.volatilities=volatilities;
+		this.numbersOfFixingDates=numbersOfFixingDates;
+		this.payoffs=payoffs;
+	}
+
+	/**
+	 * Allocates an empty batch in a direct buffer.
+	 *
+	 * @param numberOfTrades The number of trades, at most {@link #MAXIMUM_NUMBER_OF_TRADES}.
+	 * @return The batch.
+	 */
+	public static LookbackTradeBatch allocate(int numberOfTrades) {
+		checkNumberOfTrades(numberOfTrades);
+		return wrap(ByteBuffer.allocateDirect(numberOfTrades * BYTES_PER_TRADE), numberOfTrades);
+	}
+
+	/**
+	 * Creates a batch on the columns stored in a buffer, from its current position. The buffer is not copied.
+	 *
+	 * @param buffer         The buffer.
+	 * @param numberOfTrades The number of trades, at most {@link #MAXIMUM_NUMBER_OF_TRADES}.
+	 * @return The batch.
+	 */
+	public static LookbackTradeBatch wrap(ByteBuffer buffer, int numberOfTrades) {
+		checkNumberOfTrades(numberOfTrades);
+		if(buffer.remaining() < (long) numberOfTrades * BYTES_PER_TRADE) {
+			throw new IllegalArgumentException("The buffer is too small for " + numberOfTrades + " trades.");
+		}
+		ByteBuffer columns = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		int position = 0;
+		ByteBuffer tradeIds = getColumn(columns, position, numberOfTrades * Long.BYTES);
+		position += numberOfTrades * Long.BYTES;
+		ByteBuffer[] doubleColumns = new ByteBuffer[5];
+		for(int column = 0; column < doubleColumns.length; column++) {
+			doubleColumns[column] = getColumn(columns, position, numberOfTrades * Double.BYTES);
+			position += numberOfTrades * Double.BYTES;
+		}
+		ByteBuffer numbersOfFixingDates = getColumn(columns, position, numberOfTrades * Integer.BYTES);
+		position += numberOfTrades * Integer.BYTES;
+		ByteBuffer payoffs = getColumn(columns, position, numberOfTrades);
+
+		return new LookbackTradeBatch(numberOfTrades, tradeIds, doubleColumns[0], doubleColumns[1], doubleColumns[2],
+				doubleColumns[3], doubleColumns[4], numbersOfFixingDates, payoffs);
+	}
+
+	/**
+	 * Returns the batch of the trades {@code from, ..., to - 1}, sharing the memory of this batch.
+	 *
+	 * @param from Index of the first trade (inclusive).
+	 * @param to   Index of the last trade (exclusive).
+	 * @return The slice.
+	 */
+	public LookbackTradeBatch slice(int from, int to) {
+		if(from < 0 || to > numberOfTrades || from > to) {
+			throw new IndexOutOfBoundsException("Invalid slice [" + from + ", " + to + ") of a batch of " + numberOfTrades + " trades.");
+		}
+		return new LookbackTradeBatch(to - from,
+				getColumn(tradeIds, from * Long.BYTES, (to - from) * Long.BYTES),
+				getColumn(spotPrices, from * Double.BYTES, (to - from) * Double.BYTES),
+				getColumn(strikes, from * Double.BYTES, (to - from) * Double.BYTES),
+				getColumn(maturities, from * Double.BYTES, (to - from) * Double.BYTES),
+				getColumn(riskFreeRates, from * Double.BYTES, (to - from) * Double.BYTES),
+				getColumn(volatilities, from * Double.BYTES, (to - from) * Double.BYTES),
+				getColumn(numbersOfFixingDates, from * Integer.BYTES, (to - from) * Integer.BYTES),
+				getColumn(payoffs, from, to - from));
+	}
+
+	/**
+	 * Writes a trade.
+	 *
+	 * @param index               Index of the trade in the batch.
+	 * @param tradeId             Identifier of the trade.
+	 * @param payoff              The lookback payoff.
+	 * @param spotPrice           Spot {@code S0}.
+	 * @param strike              Strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param maturity            Maturity {@code T}.
+	 * @param riskFreeRate        Risk-free rate {@code r}.
+	 * @param volatility          Volatility {@code σ}.
+	 * @param numberOfFixingDates Number of monitoring intervals ({@code 0} for continuous monitoring).
+	 */
+	public void setTrade(int index, long tradeId, LookbackPayoff payoff, double spotPrice, double strike, double maturity,
+			double riskFreeRate, double volatility, int numberOfFixingDates) {
+		tradeIds.putLong(index * Long.BYTES, tradeId);
+		payoffs.put(index, (byte) payoff.ordinal());
+		spotPrices.putDouble(index * Double.BYTES, spotPrice);
+		strikes.putDouble(index * Double.BYTES, strike);
+		maturities.putDouble(index * Double.BYTES, maturity);
+		riskFreeRates.putDouble(index * Double.BYTES, riskFreeRate);
+		volatilities.putDouble(index * Double.BYTES, volatility);
+		numbersOfFixingDates.putInt(index * Integer.BYTES, numberOfFixingDates);
+	}
+
+	public int getNumberOfTrades() {
+		return numberOfTrades;
+	}
+
+	public long getTradeId(int index) {
+		return tradeIds.getLong(index * Long.BYTES);
+	}
+
+	public LookbackPayoff getPayoff(int index) {
+		return PAYOFFS[payoffs.get(index)];
+	}
+
+	public double getSpotPrice(int index) {
+		return spotPrices.getDouble(index * Double.BYTES);
+	}
+
+	public double getStrike(int index) {
+		return strikes.getDouble(index * Double.BYTES);
+	}
+
+	public double getMaturity(int index) {
+		return maturities.getDouble(index * Double.BYTES);
+	}
+
+	public double getRiskFreeRate(int index) {
+		return riskFreeRates.getDouble(index * Double.BYTES);
+	}
+
+	public double getVolatility(int index) {
+		return volatilities.getDouble(index * Double.BYTES);
+	}
+
+	public int getNumberOfFixingDates(int index) {
+		return numbersOfFixingDates.getInt(index * Integer.BYTES);
+	}
+
+	/**
+	 * Writes the columns of the batch to a channel, in the layout read by {@link #wrap(ByteBuffer, int)}.
+	 *
+	 * @param channel The channel.
+	 * @throws IOException If the channel fails.
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		for(ByteBuffer column : new ByteBuffer[] { tradeIds, spotPrices, strikes, maturities, riskFreeRates, volatilities, numbersOfFixingDates, payoffs }) {
+			writeFully(channel, column.duplicate());
+		}
+	}
+
+	/**
+	 * Reads the trades {@code from, ..., from + count - 1} of a file of trades into a buffer, reading every column
+	 * of the range with one positional read, and returns the batch of the range on the buffer.
+	 *
+	 * @param channel        The channel of the file.
+	 * @param columnsStart   Position in the file of the first column.
+	 * @param numberOfTrades Number of trades of the file.
+	 * @param from           Index of the first trade to read.
+	 * @param count          Number of trades to read.
+	 * @param buffer         Buffer receiving the columns, of at least {@code count} trades (cleared before reading).
+	 * @return The batch of the trades read, backed by the buffer.
+	 * @throws IOException If the file cannot be read or ends before the range.
+	 */
+	static LookbackTradeBatch read(FileChannel channel, long columnsStart, long numberOfTrades, long from, int count, ByteBuffer buffer) throws IOException {
+		// Column sizes per trade, in the order of the layout
+		int[] bytesPerColumn = { Long.BYTES, Double.BYTES, Double.BYTES, Double.BYTES, Double.BYTES, Double.BYTES, Integer.BYTES, 1 };
+		buffer.clear();
+		long columnStart = columnsStart;
+		for(int bytes : bytesPerColumn) {
+			ByteBuffer column = buffer.duplicate();
+			column.limit(column.position() + count * bytes);
+			long position = columnStart + from * bytes;
+			while(column.hasRemaining()) {
+				int read = channel.read(column, position);
+				if(read < 0) {
+					throw new EOFException("The file of trades ends before trade " + (from + count) + ".");
+				}
+				position += read;
+			}
+			buffer.position(column.position());
+			columnStart += numberOfTrades * bytes;
+		}
+		buffer.flip();
+		LookbackTradeBatch batch = wrap(buffer, count);
+		batch.checkPayoffs();
+		return batch;
+	}
+
+	/**
+	 * Checks that the payoff column holds ordinals of {@link LookbackPayoff}, so that a corrupt file fails when it
+	 * is read rather than when a trade is priced.
+	 *
+	 * @throws IOException If a payoff is invalid.
+	 */
+	void checkPayoffs() throws IOException {
+		for(int index = 0; index < numberOfTrades; index++) {
+			byte ordinal = payoffs.get(index);
+			if(ordinal < 0 || ordinal >= PAYOFFS.length) {
+				throw new IOException("Invalid payoff " + ordinal + " of trade " + getTradeId(index) + ".");
+			}
+		}
+	}
+
+	/**
+	 * Returns the Monte Carlo product of a trade, monitored on equidistant dates of the model time grid (on the
+	 * full grid if the trade is continuously monitored).
+	 *
+	 * @param index Index of the trade in the batch.
+	 * @return The product.
+	 */
+	public LookbackOption getProduct(int index) {
+		return LookbackOption.of(getPayoff(index), getMaturity(index), getStrike(index), getNumberOfFixingDates(index));
+	}
+
+	private static void checkNumberOfTrades(int numberOfTrades) {
+		if(numberOfTrades < 0 || numberOfTrades > MAXIMUM_NUMBER_OF_TRADES) {
+			throw new IllegalArgumentException("A batch holds between 0 and " + MAXIMUM_NUMBER_OF_TRADES + " trades, not " + numberOfTrades + ".");
+		}
+	}
+
+	/*
+	 * Returns the little-endian view of the bytes [position, position + length) of a buffer.
+	 */
+	static ByteBuffer getColumn(ByteBuffer buffer, int position, int length) {
+		ByteBuffer column = buffer.duplicate();
+		column.clear();
+		column.position(position);
+		column.limit(position + length);
+		return column.slice().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/*
+	 * Writes all the remaining bytes of a buffer to a channel.
+	 */
+	static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
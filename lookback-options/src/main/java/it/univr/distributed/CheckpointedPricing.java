@@ -0,0 +1,232 @@
+package it.univr.distributed;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.montecarlo.LookbackCallFixedWithBSControlVariate;
+import it.univr.montecarlo.LookbackOption;
+import it.univr.randomnumbers.BrownianMotionFromPhiloxRandomNumbers;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Long Monte Carlo valuation of a {@link PricingTask} in the current process, which can be interrupted and resumed.
+ *
+ * <p>The paths of the task are simulated in blocks of {@code pathsPerBlock} consecutive paths. For every block the
+ * discounted payoff {@code Z} and, as control variate, the payoff {@code Y} monitored on every time step on the same
+ * paths (the control of {@link LookbackCallFixedWithBSControlVariate}, for all four payoffs) are
+ * reduced to {@link ControlVariateStatistics}, merged in the order of the blocks. Every {@code blocksPerCheckpoint}
+ * blocks the statistics and the index of the next path are written to a {@link PricingCheckpoint}; a run started on
+ * an existing checkpoint of the same task continues from it. Since the random numbers of a path depend only on its
+ * index and the blocks are merged in the same order, a resumed run gives exactly the result of an uninterrupted one.
+ *
+ * <p>Completed checkpoints of consecutive path ranges of the same valuation, computed by separate runs, are
+ * combined by {@link #combine(List)}.
+ *
+ * <p>For tests of the recovery, the system property {@code it.univr.distributed.failAfterBlocks=n} makes the
+ * process terminate abruptly when it starts its {@code (n+1)}-th block.
+ */
+public class CheckpointedPricing {
+
+	private final PricingTask task;
+	private final int pathsPerBlock;
+	private final int blocksPerCheckpoint;
+	private final Path checkpointFile;
+
+	private long numberOfResumedPaths;
+	// E[Y], computed on the first request
+	private double controlExpectation = Double.NaN;
+
+	/**
+	 * Creates the valuation.
+	 *
+	 * @param task                The task, whose path range is the one of the whole run.
+	 * @param pathsPerBlock       Number of paths simulated at once.
+	 * @param blocksPerCheckpoint Number of blocks between two checkpoints.
+	 * @param checkpointFile      The checkpoint file (resumed if it exists).
+	 */
+	public CheckpointedPricing(PricingTask task, int pathsPerBlock, int blocksPerCheckpoint, Path checkpointFile) {
+		if(pathsPerBlock <= 0 || blocksPerCheckpoint <= 0) {
+			throw new IllegalArgumentException("The number of paths per block and of blocks per checkpoint must be positive.");
+		}
+		this.task=task;
+		this.pathsPerBlock=pathsPerBlock;
+		this.blocksPerCheckpoint=blocksPerCheckpoint;
+		this.checkpointFile=checkpointFile;
+	}
+
+	/**
+	 * Runs the valuation, from the checkpoint if it exists, up to the last path of the task. The last checkpoint
+	 * contains the complete statistics.
+	 *
+	 * @return The statistics of all the paths of the task.
+	 * @throws IOException          If the checkpoint cannot be read or written, or belongs to another valuation.
+	 * @throws CalculationException If the valuation of a block fails.
+	 */
+	public ControlVariateStatistics run() throws IOException, CalculationException {
+		long endPath = task.getFirstPath() + task.getNumberOfPaths();
+		long nextPath = task.getFirstPath();
+		ControlVariateStatistics statistics = null;
+		if(Files.exists(checkpointFile)) {
+			PricingCheckpoint checkpoint = PricingCheckpoint.readFrom(checkpointFile);
+			if(!checkpoint.isCheckpointOf(task, pathsPerBlock)) {
+				throw new IOException(checkpointFile + " is the checkpoint of another valuation: " + checkpoint.getTask()
+						+ " with " + checkpoint.getPathsPerBlock() + " paths per block.");
+			}
+			nextPath = checkpoint.getNextPath();
+			statistics = checkpoint.getStatistics();
+		}
+		numberOfResumedPaths = nextPath - task.getFirstPath();
+
+		int failAfterBlocks = Integer.getInteger("it.univr.distributed.failAfterBlocks", Integer.MAX_VALUE);
+		int numberOfBlocks = 0;
+		while(nextPath < endPath) {
+			if(++numberOfBlocks > failAfterBlocks) {
+				// Simulated crash
+				Runtime.getRuntime().halt(1);
+			}
+			int numberOfPaths = (int) Math.min(pathsPerBlock, endPath - nextPath);
+			ControlVariateStatistics blockStatistics = price(task.getCloneForPathRange(nextPath, numberOfPaths));
+			statistics = statistics == null ? blockStatistics : statistics.merge(blockStatistics);
+			nextPath += numberOfPaths;
+
+			if(numberOfBlocks % blocksPerCheckpoint == 0 || nextPath == endPath) {
+				new PricingCheckpoint(task, pathsPerBlock, nextPath, statistics).writeTo(checkpointFile);
+			}
+		}
+		return statistics;
+	}
+
+	/**
+	 * Returns the number of paths restored from the checkpoint by the last run.
+	 *
+	 * @return The number of paths not simulated again.
+	 */
+	public long getNumberOfResumedPaths() {
+		return numberOfResumedPaths;
+	}
+
+	/**
+	 * Returns the expectation of the control variate, computed on the first request. See
+	 * {@link #getControlExpectation(PricingTask)}.
+	 *
+	 * @return {@code E[Y]}.
+	 */
+	public double getControlExpectation() {
+		if(Double.isNaN(controlExpectation)) {
+			controlExpectation = getControlExpectation(task);
+		}
+		return controlExpectation;
+	}
+
+	/**
+	 * Values a block of paths in the current process.
+	 *
+	 * @param task The task of the block.
+	 * @return The statistics of the discounted payoffs and of the control variate on the paths of the block.
+	 * @throws CalculationException If the valuation fails.
+	 */
+	public static ControlVariateStatistics price(PricingTask task) throws CalculationException {
+		TimeDiscretization times = getTimeDiscretization(task);
+		BrownianMotion brownianMotion = new BrownianMotionFromPhiloxRandomNumbers(times, 1, task.getFirstPath(), task.getNumberOfPaths(), task.getSeed());
+		MonteCarloBlackScholesModel model = new MonteCarloBlackScholesModel(task.getSpotPrice(), task.getRiskFreeRate(), task.getVolatility(), brownianMotion);
+		LookbackOption product = LookbackOption.of(task.getPayoff(), task.getMaturity(), task.getStrike(), task.getNumberOfFixingDates());
+		LookbackOption control = LookbackOption.of(task.getPayoff(), task.getMaturity(), task.getStrike(), 0);
+		return ControlVariateStatistics.of(product.getValue(0.0, model), control.getValue(0.0, model));
+	}
+
+	/**
+	 * Combines the statistics of completed checkpoints of consecutive path ranges of the same valuation, merging
+	 * them in the order of the ranges (whatever the order of the list).
+	 *
+	 * @param checkpoints The checkpoints.
+	 * @return The statistics of the union of the ranges.
+	 * @throws IllegalArgumentException If a checkpoint is not complete, belongs to another valuation or the ranges
+	 *                                  are not consecutive.
+	 */
+	public static ControlVariateStatistics combine(List<PricingCheckpoint> checkpoints) {
+		List<PricingCheckpoint> sortedCheckpoints = new ArrayList<>(checkpoints);
+		sortedCheckpoints.sort(Comparator.comparingLong(checkpoint -> checkpoint.getTask().getFirstPath()));
+
+		// The valuation without its path range
+		PricingTask valuation = sortedCheckpoints.get(0).getTask().getCloneForPathRange(0, 0);
+		ControlVariateStatistics statistics = null;
+		long nextPath = sortedCheckpoints.get(0).getTask().getFirstPath();
+		for(PricingCheckpoint checkpoint : sortedCheckpoints) {
+			PricingTask task = checkpoint.getTask();
+			if(!checkpoint.isComplete()) {
+				throw new IllegalArgumentException("The checkpoint of " + task + " is not complete.");
+			}
+			if(!PricingCheckpoint.isSameTask(task.getCloneForPathRange(0, 0), valuation)) {
+				throw new IllegalArgumentException("The checkpoint of " + task + " belongs to another valuation.");
+			}
+			if(task.getFirstPath() != nextPath) {
+				throw new IllegalArgumentException("The path ranges are not consecutive: expected the first path " + nextPath + ", found " + task.getFirstPath() + ".");
+			}
+			statistics = statistics == null ? checkpoint.getStatistics() : statistics.merge(checkpoint.getStatistics());
+			nextPath += task.getNumberOfPaths();
+		}
+		return statistics;
+	}
+
+	/**
+	 * Returns the expectation of the control variate of a task: the exact price of the payoff monitored on every
+	 * distinct time of the simulation grid ({@link DiscretelyMonitoredLookbackPrices}), not the continuously monitored
+	 * closed form, whose monitoring bias would bias the estimator. finmath rounds the times of the grid to one hour, so
+	 * the number of fixings is the one of the distinct times (see
+	 * {@link LookbackCallFixedWithBSControlVariate#getNumberOfMonitoringIntervals(TimeDiscretization)}), which is
+	 * smaller than the number of time steps when these are shorter than an hour.
+	 *
+	 * @param task The task.
+	 * @return {@code E[Y]}.
+	 * @throws IllegalArgumentException If the distinct times of the simulation grid of the task are not equidistant.
+	 */
+	public static double getControlExpectation(PricingTask task) {
+		int numberOfMonitoringIntervals = LookbackCallFixedWithBSControlVariate.getNumberOfMonitoringIntervals(getTimeDiscretization(task));
+		if(numberOfMonitoringIntervals == 0) {
+			throw new IllegalArgumentException("The distinct times of the simulation grid of " + task + " are not equidistant.");
+		}
+		return DiscretelyMonitoredLookbackPrices.getPrice(task.getPayoff(), task.getSpotPrice(), task.getRiskFreeRate(), task.getVolatility(),
+				task.getMaturity(), task.getStrike(), numberOfMonitoringIntervals);
+	}
+
+	/*
+	 * The simulation grid of a task: numberOfTimeSteps equal steps up to the maturity.
+	 */
+	private static TimeDiscretization getTimeDiscretization(PricingTask task) {
+		return new TimeDiscretizationFromArray(0.0, task.getNumberOfTimeSteps(), task.getMaturity() / task.getNumberOfTimeSteps());
+	}
+
+	/**
+	 * Runs a valuation from the command line and prints the plain and control variate prices.
+	 *
+	 * @param args Checkpoint file, payoff, spot, rate, volatility, maturity, strike, number of fixing dates, number of
+	 *             time steps, seed, first path, number of paths, paths per block, blocks per checkpoint.
+	 * @throws Exception If the valuation fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		if(args.length != 14) {
+			System.err.println("Arguments: checkpointFile payoff spotPrice riskFreeRate volatility maturity strike numberOfFixingDates"
+					+ " numberOfTimeSteps seed firstPath numberOfPaths pathsPerBlock blocksPerCheckpoint");
+			System.exit(2);
+		}
+		PricingTask task = new PricingTask(LookbackPayoff.valueOf(args[1]), Double.parseDouble(args[2]), Double.parseDouble(args[3]),
+				Double.parseDouble(args[4]), Double.parseDouble(args[5]), Double.parseDouble(args[6]), Integer.parseInt(args[7]),
+				Integer.parseInt(args[8]), Long.parseLong(args[9]), Long.parseLong(args[10]), Integer.parseInt(args[11]));
+		CheckpointedPricing pricing = new CheckpointedPricing(task, Integer.parseInt(args[12]), Integer.parseInt(args[13]), Paths.get(args[0]));
+		ControlVariateStatistics statistics = pricing.run();
+		System.out.println("Resumed paths: " + pricing.getNumberOfResumedPaths());
+		System.out.println("Plain:           " + statistics.getTargetStatistics());
+		System.out.println("Control variate: " + statistics.getMean(pricing.getControlExpectation()) + " (standard error " + statistics.getStandardError() + ")");
+	}
+}
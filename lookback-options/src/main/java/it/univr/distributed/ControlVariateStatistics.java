@@ -0,0 +1,176 @@
+package it.univr.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Mergeable sample statistics of a discounted payoff (the target) and of a control variate simulated on the same
+ * paths: number of paths, the two means, the two sums of squared deviations and the sum of the cross deviations.
+ *
+ * <p>As for {@link PathStatistics}, statistics of disjoint path ranges are combined with the pairwise formulas of
+ * Chan, Golub and LeVeque, so that the control variate estimator {@code Z - c (Y - E[Y])} with the optimal
+ * coefficient {@code c = Cov(Z, Y) / Var(Y)} of all the paths can be computed from the statistics of the ranges,
+ * without keeping the paths. Merging the same ranges in the same order always gives the same result.
+ */
+public class ControlVariateStatistics {
+
+	private final long numberOfPaths;
+	private final double targetMean;
+	private final double controlMean;
+	// Sums of the squared deviations from the means and of the products of the deviations
+	private final double targetSumOfSquaredDeviations;
+	private final double controlSumOfSquaredDeviations;
+	private final double sumOfCrossDeviations;
+
+	/**
+	 * Creates the statistics.
+	 *
+	 * @param numberOfPaths                 Number of paths.
+	 * @param targetMean                    Mean of the discounted payoffs.
+	 * @param controlMean                   Mean of the control variate.
+	 * @param targetSumOfSquaredDeviations  Sum of the squared deviations of the discounted payoffs from their mean.
+	 * @param controlSumOfSquaredDeviations Sum of the squared deviations of the control variate from its mean.
+	 * @param sumOfCrossDeviations          Sum of the products of the deviations of payoffs and control variate.
+	 */
+	public ControlVariateStatistics(long numberOfPaths, double targetMean, double controlMean, double targetSumOfSquaredDeviations,
+			double controlSumOfSquaredDeviations, double sumOfCrossDeviations) {
+		this.numberOfPaths=numberOfPaths;
+		this.targetMean=targetMean;
+		this.controlMean=controlMean;
+		this.targetSumOfSquaredDeviations=targetSumOfSquaredDeviations;
+		this.controlSumOfSquaredDeviations=controlSumOfSquaredDeviations;
+		this.sumOfCrossDeviations=sumOfCrossDeviations;
+	}
+
+	/**
+	 * Returns the statistics of the realizations of the discounted payoffs and of the control variate.
+	 *
+	 * @param target  The discounted payoffs, path by path.
+	 * @param control The control variate on the same paths.
+	 * @return The statistics.
+	 */
+	public static ControlVariateStatistics of(RandomVariable target, RandomVariable control) {
+		int numberOfPaths = target.size();
+		double targetSum = 0.0;
+		double controlSum = 0.0;
+		for(int path = 0; path < numberOfPaths; path++) {
+			targetSum += target.get(path);
+			controlSum += control.get(path);
+		}
+		double targetMean = targetSum / numberOfPaths;
+		double controlMean = controlSum / numberOfPaths;
+		double targetSumOfSquaredDeviations = 0.0;
+		double controlSumOfSquaredDeviations = 0.0;
+		double sumOfCrossDeviations = 0.0;
+		for(int path = 0; path < numberOfPaths; path++) {
+			double targetDeviation = target.get(path) - targetMean;
+			double controlDeviation = control.get(path) - controlMean;
+			targetSumOfSquaredDeviations += targetDeviation * targetDeviation;
+			controlSumOfSquaredDeviations += controlDeviation * controlDeviation;
+			sumOfCrossDeviations += targetDeviation * controlDeviation;
+		}
+		return new ControlVariateStatistics(numberOfPaths, targetMean, controlMean, targetSumOfSquaredDeviations,
+				controlSumOfSquaredDeviations, sumOfCrossDeviations);
+	}
+
+	/**
+	 * Returns the statistics of the union of the paths of this and of another disjoint range.
+	 *
+	 * @param other The statistics of the other range.
+	 * @return The merged statistics.
+	 */
+	public ControlVariateStatistics merge(ControlVariateStatistics other) {
+		long mergedNumberOfPaths = numberOfPaths + other.numberOfPaths;
+		double targetDelta = other.targetMean - targetMean;
+		double controlDelta = other.controlMean - controlMean;
+		double weight = (double) numberOfPaths * other.numberOfPaths / mergedNumberOfPaths;
+		return new ControlVariateStatistics(mergedNumberOfPaths,
+				targetMean + targetDelta * other.numberOfPaths / mergedNumberOfPaths,
+				controlMean + controlDelta * other.numberOfPaths / mergedNumberOfPaths,
+				targetSumOfSquaredDeviations + other.targetSumOfSquaredDeviations + targetDelta * targetDelta * weight,
+				controlSumOfSquaredDeviations + other.controlSumOfSquaredDeviations + controlDelta * controlDelta * weight,
+				sumOfCrossDeviations + other.sumOfCrossDeviations + targetDelta * controlDelta * weight);
+	}
+
+	public long getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	/**
+	 * Returns the statistics of the discounted payoffs alone (the plain Monte Carlo estimator).
+	 *
+	 * @return The statistics of the target.
+	 */
+	public PathStatistics getTargetStatistics() {
+		return new PathStatistics(numberOfPaths, targetMean, targetSumOfSquaredDeviations);
+	}
+
+	/**
+	 * Returns the optimal coefficient of the control variate, {@code c = Cov(Z, Y) / Var(Y)}.
+	 *
+	 * @return The coefficient ({@code 0} if the control variate is constant).
+	 */
+	public double getCoefficient() {
+		return controlSumOfSquaredDeviations > 0.0 ? sumOfCrossDeviations / controlSumOfSquaredDeviations : 0.0;
+	}
+
+	/**
+	 * Returns the control variate estimator of the price, {@code mean(Z) - c (mean(Y) - E[Y])}.
+	 *
+	 * @param controlExpectation The expectation {@code E[Y]} of the control variate.
+	 * @return The price.
+	 */
+	public double getMean(double controlExpectation) {
+		return targetMean - getCoefficient() * (controlMean - controlExpectation);
+	}
+
+	/**
+	 * Returns the standard error of the control variate estimator, from the variance of the residuals
+	 * {@code Z - c Y}.
+	 *
+	 * @return The standard error.
+	 */
+	public double getStandardError() {
+		if(numberOfPaths < 2) {
+			return 0.0;
+		}
+		double residualSumOfSquares = Math.max(targetSumOfSquaredDeviations - getCoefficient() * sumOfCrossDeviations, 0.0);
+		return Math.sqrt(residualSumOfSquares / (numberOfPaths - 1) / numberOfPaths);
+	}
+
+	/**
+	 * Writes the statistics.
+	 *
+	 * @param output The output.
+	 * @throws IOException If the output fails.
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		output.writeLong(numberOfPaths);
+		output.writeDouble(targetMean);
+		output.writeDouble(controlMean);
+		output.writeDouble(targetSumOfSquaredDeviations);
+		output.writeDouble(controlSumOfSquaredDeviations);
+		output.writeDouble(sumOfCrossDeviations);
+	}
+
+	/**
+	 * Reads statistics written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param input The input.
+	 * @return The statistics.
+	 * @throws IOException If the input fails.
+	 */
+	public static ControlVariateStatistics readFrom(DataInput input) throws IOException {
+		return new ControlVariateStatistics(input.readLong(), input.readDouble(), input.readDouble(), input.readDouble(),
+				input.readDouble(), input.readDouble());
+	}
+
+	@Override
+	public String toString() {
+		return "ControlVariateStatistics [numberOfPaths=" + numberOfPaths + ", targetMean=" + targetMean + ", controlMean="
+				+ controlMean + ", coefficient=" + getCoefficient() + ", standardError=" + getStandardError() + "]";
+	}
+}
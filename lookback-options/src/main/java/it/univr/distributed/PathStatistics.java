@@ -0,0 +1,131 @@
+package it.univr.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Mergeable sample statistics of the discounted payoffs of a range of Monte Carlo paths: number of paths, mean and
+ * sum of squared deviations from the mean.
+ *
+ * <p>Statistics of disjoint path ranges are combined by {@link #merge(PathStatistics)} with the pairwise formula of
+ * Chan, Golub and LeVeque, which is stable also when the ranges have very different sizes. Merging the statistics
+ * of the ranges of a simulation in the same order always gives the same result, whatever process computed them.
+ */
+public class PathStatistics {
+
+	private final long numberOfPaths;
+	private final double mean;
+	// Sum of the squared deviations from the mean
+	private final double sumOfSquaredDeviations;
+
+	/**
+	 * Creates the statistics.
+	 *
+	 * @param numberOfPaths          Number of paths.
+	 * @param mean                   Mean of the discounted payoffs.
+	 * @param sumOfSquaredDeviations Sum of the squared deviations of the discounted payoffs from their mean.
+	 */
+	public PathStatistics(long numberOfPaths, double mean, double sumOfSquaredDeviations) {
+		this.numberOfPaths=numberOfPaths;
+		this.mean=mean;
+		this.sumOfSquaredDeviations=sumOfSquaredDeviations;
+	}
+
+	/**
+	 * Returns the statistics of the realizations of a random variable (the discounted payoffs, path by path).
+	 *
+	 * @param values The discounted payoffs.
+	 * @return The statistics.
+	 */
+	public static PathStatistics of(RandomVariable values) {
+		int numberOfPaths = values.size();
+		double sum = 0.0;
+		for(int path = 0; path < numberOfPaths; path++) {
+			sum += values.get(path);
+		}
+		double mean = sum / numberOfPaths;
+		double sumOfSquaredDeviations = 0.0;
+		for(int path = 0; path < numberOfPaths; path++) {
+			double deviation = values.get(path) - mean;
+			sumOfSquaredDeviations += deviation * deviation;
+		}
+		return new PathStatistics(numberOfPaths, mean, sumOfSquaredDeviations);
+	}
+
+	/**
+	 * Returns the statistics of the union of the paths of this and of another disjoint range.
+	 *
+	 * @param other The statistics of the other range.
+	 * @return The merged statistics.
+	 */
+	public PathStatistics merge(PathStatistics other) {
+		long mergedNumberOfPaths = numberOfPaths + other.numberOfPaths;
+		double delta = other.mean - mean;
+		double mergedMean = mean + delta * other.numberOfPaths / mergedNumberOfPaths;
+		double mergedSumOfSquaredDeviations = sumOfSquaredDeviations + other.sumOfSquaredDeviations
+				+ delta * delta * ((double) numberOfPaths * other.numberOfPaths / mergedNumberOfPaths);
+		return new PathStatistics(mergedNumberOfPaths, mergedMean, mergedSumOfSquaredDeviations);
+	}
+
+	public long getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	/**
+	 * Returns the Monte Carlo price, the mean of the discounted payoffs.
+	 *
+	 * @return The mean.
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * Returns the sample variance of the discounted payoffs.
+	 *
+	 * @return The variance (with denominator {@code n - 1}).
+	 */
+	public double getVariance() {
+		return numberOfPaths > 1 ? sumOfSquaredDeviations / (numberOfPaths - 1) : 0.0;
+	}
+
+	/**
+	 * Returns the standard error of the Monte Carlo price.
+	 *
+	 * @return The standard error {@code sqrt(variance / n)}.
+	 */
+	public double getStandardError() {
+		return Math.sqrt(getVariance() / numberOfPaths);
+	}
+
+	/**
+	 * Writes the statistics.
+	 *
+	 * @param output The output.
+	 * @throws IOException If the output fails.
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		output.writeLong(numberOfPaths);
+		output.writeDouble(mean);
+		output.writeDouble(sumOfSquaredDeviations);
+	}
+
+	/**
+	 * Reads statistics written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param input The input.
+	 * @return The statistics.
+	 * @throws IOException If the input fails.
+	 */
+	public static PathStatistics readFrom(DataInput input) throws IOException {
+		return new PathStatistics(input.readLong(), input.readDouble(), input.readDouble());
+	}
+
+	@Override
+	public String toString() {
+		return "PathStatistics [numberOfPaths=" + numberOfPaths + ", mean=" + mean + ", standardError=" + getStandardError() + "]";
+	}
+}
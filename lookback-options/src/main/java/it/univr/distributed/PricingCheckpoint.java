@@ -0,0 +1,163 @@
+package it.univr.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * State of a {@link CheckpointedPricing} after a number of blocks of paths: the task, the size of the blocks, the
+ * index of the next path to simulate and the statistics of the paths simulated so far.
+ *
+ * <p>The paths are generated by the counter-based {@link it.univr.randomnumbers.BrownianMotionFromPhiloxRandomNumbers},
+ * so the index of the next path is the whole state of the random number stream: resuming from it generates the same
+ * numbers as an uninterrupted run.
+ *
+ * <p>The file is written to a temporary file, synchronized to the disk and moved over the previous checkpoint, so a
+ * crash while writing leaves the previous checkpoint intact.
+ */
+public class PricingCheckpoint {
+
+	// "LKCP"
+	private static final int MAGIC_NUMBER = 0x4C4B4350;
+	private static final int FORMAT_VERSION = 1;
+
+	private final PricingTask task;
+	private final int pathsPerBlock;
+	private final long nextPath;
+	private final ControlVariateStatistics statistics;
+
+	/**
+	 * Creates the checkpoint.
+	 *
+	 * @param task          The task, whose path range is the one of the whole run.
+	 * @param pathsPerBlock Number of paths of the blocks whose statistics are merged.
+	 * @param nextPath      Index of the first path not simulated yet.
+	 * @param statistics    Statistics of the paths {@code task.getFirstPath(), ..., nextPath - 1} ({@code null} if
+	 *                      none was simulated).
+	 */
+	public PricingCheckpoint(PricingTask task, int pathsPerBlock, long nextPath, ControlVariateStatistics statistics) {
+		this.task=task;
+		this.pathsPerBlock=pathsPerBlock;
+		this.nextPath=nextPath;
+		this.statistics=statistics;
+	}
+
+	public PricingTask getTask() {
+		return task;
+	}
+
+	public int getPathsPerBlock() {
+		return pathsPerBlock;
+	}
+
+	public long getNextPath() {
+		return nextPath;
+	}
+
+	public ControlVariateStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Returns true if all the paths of the task have been simulated.
+	 *
+	 * @return True if the run is complete.
+	 */
+	public boolean isComplete() {
+		return nextPath == task.getFirstPath() + task.getNumberOfPaths();
+	}
+
+	/**
+	 * Returns true if the checkpoint belongs to a run of the given task with blocks of the given size, i.e., if a run
+	 * resumed from it gives the result of an uninterrupted run.
+	 *
+	 * @param task          The task.
+	 * @param pathsPerBlock The number of paths of the blocks.
+	 * @return True if the checkpoint can be resumed.
+	 */
+	public boolean isCheckpointOf(PricingTask task, int pathsPerBlock) {
+		return this.pathsPerBlock == pathsPerBlock && isSameTask(this.task, task);
+	}
+
+	/**
+	 * Writes the checkpoint, replacing the file atomically.
+	 *
+	 * @param file The file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void writeTo(Path file) throws IOException {
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try(FileOutputStream stream = new FileOutputStream(temporaryFile.toFile())) {
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+			output.writeInt(MAGIC_NUMBER);
+			output.writeInt(FORMAT_VERSION);
+			task.writeTo(output);
+			output.writeInt(pathsPerBlock);
+			output.writeLong(nextPath);
+			output.writeBoolean(statistics != null);
+			if(statistics != null) {
+				statistics.writeTo(output);
+			}
+			output.flush();
+			stream.getFD().sync();
+		}
+		Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a checkpoint written by {@link #writeTo(Path)}.
+	 *
+	 * @param file The file.
+	 * @return The checkpoint.
+	 * @throws IOException If the file cannot be read or is not a checkpoint.
+	 */
+	public static PricingCheckpoint readFrom(Path file) throws IOException {
+		try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if(input.readInt() != MAGIC_NUMBER) {
+				throw new IOException(file + " is not a pricing checkpoint.");
+			}
+			int version = input.readInt();
+			if(version != FORMAT_VERSION) {
+				throw new IOException("Unsupported checkpoint format version " + version + " in " + file + ".");
+			}
+			PricingTask task = PricingTask.readFrom(input);
+			int pathsPerBlock = input.readInt();
+			long nextPath = input.readLong();
+			ControlVariateStatistics statistics = input.readBoolean() ? ControlVariateStatistics.readFrom(input) : null;
+			return new PricingCheckpoint(task, pathsPerBlock, nextPath, statistics);
+		}
+	}
+
+	/*
+	 * Compares two tasks field by field, through their serialized form.
+	 */
+	static boolean isSameTask(PricingTask first, PricingTask second) {
+		return Arrays.equals(toBytes(first), toBytes(second));
+	}
+
+	private static byte[] toBytes(PricingTask task) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			task.writeTo(new DataOutputStream(bytes));
+		}
+		catch(IOException exception) {
+			// Not thrown by a byte array
+			throw new IllegalStateException(exception);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public String toString() {
+		return "PricingCheckpoint [task=" + task + ", pathsPerBlock=" + pathsPerBlock + ", nextPath=" + nextPath
+				+ ", statistics=" + statistics + "]";
+	}
+}
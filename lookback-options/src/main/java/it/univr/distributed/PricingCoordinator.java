@@ -0,0 +1,323 @@
+package it.univr.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.finmath.exception.CalculationException;
+
+/**
+ * Coordinator of a Monte Carlo valuation distributed over {@link PricingWorker} processes.
+ *
+ * <p>The paths of a {@link PricingTask} are split into ranges, which the workers take from a shared queue: every
+ * worker has one range in flight at a time, so faster workers value more ranges. If a worker fails (its process
+ * dies or its connection breaks) its range goes back to the queue and is valued by the other workers. The
+ * statistics of the ranges are merged in the order of the ranges, and the paths of a range do not depend on the
+ * worker which simulates them, so the price and its standard error do not depend on the number of workers, on
+ * their speed or on failures.
+ *
+ * <p>Workers are either started by the coordinator as local JVMs ({@link #startLocalWorkers(int, String...)},
+ * {@link #addLocalWorker(String...)}), which are stopped by {@link #close()}, or already running workers reached by
+ * their addresses.
+ *
+ * <p>A worker which does not answer a range within the range timeout ({@link #setRangeTimeout(int)}) is treated as
+ * failed: its connection is closed (its process stopped, if started by the coordinator) and its range reassigned,
+ * so a worker which hangs without crashing does not block the valuation.
+ */
+public class PricingCoordinator implements AutoCloseable {
+
+	// Time between two checks of the state of the valuation, in milliseconds
+	private static final long POLLING_INTERVAL = 50;
+	// Time allowed to connect to a running worker, in milliseconds
+	private static final int CONNECTION_TIMEOUT = 10000;
+
+	// Time allowed to a worker to value a range, in milliseconds
+	private volatile int rangeTimeout = 300000;
+
+	private final List<WorkerConnection> workers = new CopyOnWriteArrayList<>();
+	private final AtomicInteger numberOfReassignedRanges = new AtomicInteger();
+
+	/**
+	 * Creates a coordinator of running workers.
+	 *
+	 * @param workerAddresses The addresses of the workers.
+	 * @throws IOException If a worker cannot be reached.
+	 */
+	public PricingCoordinator(List<InetSocketAddress> workerAddresses) throws IOException {
+		for(InetSocketAddress workerAddress : workerAddresses) {
+			Socket socket = new Socket();
+			socket.connect(workerAddress, CONNECTION_TIMEOUT);
+			workers.add(new WorkerConnection(socket, null));
+		}
+	}
+
+	/**
+	 * Creates a coordinator and starts its workers as local JVMs, with the class path of the current JVM.
+	 *
+	 * @param numberOfWorkers Number of worker processes.
+	 * @param jvmOptions      Options of the worker JVMs (e.g. {@code -Xmx2g}).
+	 * @return The coordinator.
+	 * @throws IOException If a worker cannot be started.
+	 */
+	public static PricingCoordinator startLocalWorkers(int numberOfWorkers, String... jvmOptions) throws IOException {
+		PricingCoordinator coordinator = new PricingCoordinator(new ArrayList<>());
+		try {
+			for(int i = 0; i < numberOfWorkers; i++) {
+				coordinator.addLocalWorker(jvmOptions);
+			}
+		}
+		catch(IOException exception) {
+			coordinator.close();
+			throw exception;
+		}
+		return coordinator;
+	}
+
+	/**
+	 * Starts one more worker as a local JVM. It takes part in the next valuations.
+	 *
+	 * @param jvmOptions Options of the worker JVM.
+	 * @throws IOException If the worker cannot be started.
+	 */
+	public void addLocalWorker(String... jvmOptions) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(Arrays.asList(jvmOptions));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(PricingWorker.class.getName());
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+		// The worker announces its port on the first line of its output
+		BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+		String line = reader.readLine();
+		if(line == null || !line.startsWith("PORT ")) {
+			process.destroyForcibly();
+			throw new IOException("The worker process did not start (output: " + line + ").");
+		}
+		int port = Integer.parseInt(line.substring("PORT ".length()).trim());
+		workers.add(new WorkerConnection(new Socket(InetAddress.getLoopbackAddress(), port), process));
+	}
+
+	/**
+	 * Sets the time allowed to a worker to value a range (5 minutes by default). A worker which does not answer in
+	 * time is treated as failed and its range is reassigned.
+	 *
+	 * @param rangeTimeout The timeout, in milliseconds.
+	 */
+	public void setRangeTimeout(int rangeTimeout) {
+		if(rangeTimeout <= 0) {
+			throw new IllegalArgumentException("The range timeout must be positive.");
+		}
+		this.rangeTimeout=rangeTimeout;
+	}
+
+	/**
+	 * Values a task, splitting its paths into ranges valued by the workers.
+	 *
+	 * @param task           The task (its path range is the whole simulation).
+	 * @param numberOfRanges The number of path ranges.
+	 * @return The statistics of the discounted payoffs of all the paths of the task.
+	 * @throws IOException          If all the workers fail (or time out) before the valuation is complete.
+	 * @throws CalculationException If a worker cannot value a range.
+	 * @throws InterruptedException If the thread is interrupted while waiting for the workers.
+	 */
+	public PathStatistics price(PricingTask task, int numberOfRanges) throws IOException, CalculationException, InterruptedException {
+		if(numberOfRanges <= 0 || numberOfRanges > task.getNumberOfPaths()) {
+			throw new IllegalArgumentException("The number of ranges must be between 1 and the number of paths.");
+		}
+
+		// Ranges of (almost) equal size
+		PricingTask[] ranges = new PricingTask[numberOfRanges];
+		long firstPath = task.getFirstPath();
+		for(int range = 0; range < numberOfRanges; range++) {
+			int numberOfPaths = task.getNumberOfPaths() / numberOfRanges + (range < task.getNumberOfPaths() % numberOfRanges ? 1 : 0);
+			ranges[range] = task.getCloneForPathRange(firstPath, numberOfPaths);
+			firstPath += numberOfPaths;
+		}
+
+		BlockingDeque<Integer> pendingRanges = new LinkedBlockingDeque<>();
+		for(int range = 0; range < numberOfRanges; range++) {
+			pendingRanges.add(range);
+		}
+		PathStatistics[] results = new PathStatistics[numberOfRanges];
+		CountDownLatch remainingRanges = new CountDownLatch(numberOfRanges);
+		AtomicReference<CalculationException> failure = new AtomicReference<>();
+
+		// One thread per live worker, taking ranges from the queue
+		List<Thread> threads = new ArrayList<>();
+		for(WorkerConnection worker : workers) {
+			if(!worker.isAlive) {
+				continue;
+			}
+			Thread thread = new Thread(() -> {
+				try {
+					while(remainingRanges.getCount() > 0 && failure.get() == null) {
+						Integer range = pendingRanges.poll(POLLING_INTERVAL, TimeUnit.MILLISECONDS);
+						if(range == null) {
+							continue;
+						}
+						try {
+							results[range] = worker.price(ranges[range], rangeTimeout);
+							remainingRanges.countDown();
+						}
+						catch(IOException exception) {
+							// The worker failed or timed out: its range is valued by the others
+							pendingRanges.addFirst(range);
+							numberOfReassignedRanges.incrementAndGet();
+							worker.close();
+							return;
+						}
+						catch(CalculationException exception) {
+							failure.compareAndSet(null, exception);
+							return;
+						}
+					}
+				}
+				catch(InterruptedException exception) {
+					Thread.currentThread().interrupt();
+				}
+			}, "lookback-coordinator-" + threads.size());
+			thread.setDaemon(true);
+			thread.start();
+			threads.add(thread);
+		}
+
+		try {
+			while(!remainingRanges.await(POLLING_INTERVAL, TimeUnit.MILLISECONDS)) {
+				if(failure.get() != null) {
+					throw failure.get();
+				}
+				if(getNumberOfLiveWorkers() == 0) {
+					throw new IOException("All the workers failed: " + remainingRanges.getCount() + " path ranges were not valued.");
+				}
+			}
+		}
+		finally {
+			for(Thread thread : threads) {
+				thread.interrupt();
+				thread.join();
+			}
+		}
+
+		// Merge in the order of the ranges
+		PathStatistics statistics = results[0];
+		for(int range = 1; range < numberOfRanges; range++) {
+			statistics = statistics.merge(results[range]);
+		}
+		return statistics;
+	}
+
+	/**
+	 * Returns the number of workers which have not failed.
+	 *
+	 * @return The number of live workers.
+	 */
+	public int getNumberOfLiveWorkers() {
+		int numberOfLiveWorkers = 0;
+		for(WorkerConnection worker : workers) {
+			if(worker.isAlive) {
+				numberOfLiveWorkers++;
+			}
+		}
+		return numberOfLiveWorkers;
+	}
+
+	/**
+	 * Returns the number of path ranges which were reassigned after the failure of their worker.
+	 *
+	 * @return The number of reassigned ranges.
+	 */
+	public int getNumberOfReassignedRanges() {
+		return numberOfReassignedRanges.get();
+	}
+
+	/**
+	 * Stops the workers started by the coordinator and closes the connections to the others.
+	 */
+	@Override
+	public void close() {
+		for(WorkerConnection worker : workers) {
+			worker.shutdown();
+		}
+		workers.clear();
+	}
+
+	/*
+	 * Connection to a worker (and its process, if started by the coordinator).
+	 */
+	private static final class WorkerConnection {
+
+		private final Socket socket;
+		private final DataInputStream input;
+		private final DataOutputStream output;
+		private final Process process;
+		private volatile boolean isAlive = true;
+
+		private WorkerConnection(Socket socket, Process process) throws IOException {
+			this.socket=socket;
+			this.process=process;
+			socket.setTcpNoDelay(true);
+			this.input=new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.output=new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		private PathStatistics price(PricingTask task, int timeout) throws IOException, CalculationException {
+			// A reply not received in time throws a SocketTimeoutException
+			socket.setSoTimeout(timeout);
+			output.writeByte(PricingWorker.TASK);
+			task.writeTo(output);
+			output.flush();
+			byte reply = input.readByte();
+			if(reply == PricingWorker.RESULT) {
+				return PathStatistics.readFrom(input);
+			}
+			throw new CalculationException("The worker could not value " + task + ": " + input.readUTF());
+		}
+
+		private void close() {
+			isAlive = false;
+			try {
+				socket.close();
+			}
+			catch(IOException exception) {
+				// Already closed
+			}
+			if(process != null) {
+				process.destroyForcibly();
+			}
+		}
+
+		private void shutdown() {
+			if(isAlive) {
+				try {
+					output.writeByte(PricingWorker.SHUTDOWN);
+					output.flush();
+				}
+				catch(IOException exception) {
+					// The worker is gone
+				}
+			}
+			close();
+		}
+	}
+}
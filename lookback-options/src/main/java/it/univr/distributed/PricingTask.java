@@ -0,0 +1,159 @@
+package it.univr.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Monte Carlo valuation of a lookback option under Black–Scholes on a range of paths of a simulation: the paths
+ * {@code [firstPath, firstPath + numberOfPaths)} of the simulation with the given seed, generated by the
+ * counter-based {@link it.univr.randomnumbers.BrownianMotionFromPhiloxRandomNumbers}. Tasks on disjoint ranges of
+ * the same simulation are independent and can be computed by different processes.
+ */
+public class PricingTask {
+
+	private final LookbackPayoff payoff;
+	private final double spotPrice;
+	private final double riskFreeRate;
+	private final double volatility;
+	private final double maturity;
+	private final double strike;
+	private final int numberOfFixingDates;
+	private final int numberOfTimeSteps;
+	private final long seed;
+	private final long firstPath;
+	private final int numberOfPaths;
+
+	/**
+	 * Creates the task.
+	 *
+	 * @param payoff              The lookback payoff.
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Option maturity {@code T}.
+	 * @param strike              The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfFixingDates Number of monitoring dates. If {@code 0}, every time of the simulation grid is used.
+	 * @param numberOfTimeSteps   Number of equidistant time steps of the simulation.
+	 * @param seed                The seed of the simulation.
+	 * @param firstPath           Index of the first path of the range.
+	 * @param numberOfPaths       Number of paths of the range.
+	 */
+	public PricingTask(LookbackPayoff payoff, double spotPrice, double riskFreeRate, double volatility, double maturity,
+			double strike, int numberOfFixingDates, int numberOfTimeSteps, long seed, long firstPath, int numberOfPaths) {
+		this.payoff=payoff;
+		this.spotPrice=spotPrice;
+		this.riskFreeRate=riskFreeRate;
+		this.volatility=volatility;
+		this.maturity=maturity;
+		this.strike=strike;
+		this.numberOfFixingDates=numberOfFixingDates;
+		this.numberOfTimeSteps=numberOfTimeSteps;
+		this.seed=seed;
+		this.firstPath=firstPath;
+		this.numberOfPaths=numberOfPaths;
+	}
+
+	/**
+	 * Returns the same valuation on another range of paths.
+	 *
+	 * @param firstPath     Index of the first path of the range.
+	 * @param numberOfPaths Number of paths of the range.
+	 * @return The task.
+	 */
+	public PricingTask getCloneForPathRange(long firstPath, int numberOfPaths) {
+		return new PricingTask(payoff, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates,
+				numberOfTimeSteps, seed, firstPath, numberOfPaths);
+	}
+
+	public LookbackPayoff getPayoff() {
+		return payoff;
+	}
+
+	public double getSpotPrice() {
+		return spotPrice;
+	}
+
+	public double getRiskFreeRate() {
+		return riskFreeRate;
+	}
+
+	public double getVolatility() {
+		return volatility;
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+
+	public int getNumberOfFixingDates() {
+		return numberOfFixingDates;
+	}
+
+	public int getNumberOfTimeSteps() {
+		return numberOfTimeSteps;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public long getFirstPath() {
+		return firstPath;
+	}
+
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	/**
+	 * Writes the task.
+	 *
+	 * @param output The output.
+	 * @throws IOException If the output fails.
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		output.writeByte(payoff.ordinal());
+		output.writeDouble(spotPrice);
+		output.writeDouble(riskFreeRate);
+		output.writeDouble(volatility);
+		output.writeDouble(maturity);
+		output.writeDouble(strike);
+		output.writeInt(numberOfFixingDates);
+		output.writeInt(numberOfTimeSteps);
+		output.writeLong(seed);
+		output.writeLong(firstPath);
+		output.writeInt(numberOfPaths);
+	}
+
+	/**
+	 * Reads a task written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param input The input.
+	 * @return The task.
+	 * @throws IOException If the input fails or does not hold a valid payoff.
+	 */
+	public static PricingTask readFrom(DataInput input) throws IOException {
+		byte payoff = input.readByte();
+		if(payoff < 0 || payoff >= LookbackPayoff.values().length) {
+			throw new IOException("Invalid payoff " + payoff + " in the task.");
+		}
+		return new PricingTask(LookbackPayoff.values()[payoff], input.readDouble(), input.readDouble(),
+				input.readDouble(), input.readDouble(), input.readDouble(), input.readInt(), input.readInt(),
+				input.readLong(), input.readLong(), input.readInt());
+	}
+
+	@Override
+	public String toString() {
+		return "PricingTask [payoff=" + payoff + ", spotPrice=" + spotPrice + ", riskFreeRate=" + riskFreeRate
+				+ ", volatility=" + volatility + ", maturity=" + maturity + ", strike=" + strike + ", numberOfFixingDates="
+				+ numberOfFixingDates + ", numberOfTimeSteps=" + numberOfTimeSteps + ", seed=" + seed + ", firstPath="
+				+ firstPath + ", numberOfPaths=" + numberOfPaths + "]";
+	}
+}
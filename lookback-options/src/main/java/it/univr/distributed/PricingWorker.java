@@ -0,0 +1,126 @@
+package it.univr.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import it.univr.montecarlo.LookbackOption;
+import it.univr.randomnumbers.BrownianMotionFromPhiloxRandomNumbers;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Worker process of the distributed Monte Carlo valuation.
+ *
+ * <p>The worker listens on the loopback address, prints {@code PORT <port>} on its standard output and serves one
+ * coordinator connection at a time: for every {@link PricingTask} received it simulates the path range of the task,
+ * values the lookback with the {@link LookbackOption} product and answers the {@link PathStatistics} of the
+ * discounted payoffs.
+ *
+ * <p>With the system property {@code it.univr.distributed.warmUp=true} the worker runs {@link WorkerStartup#warmUp()}
+ * before announcing its port. For tests of the failover of the coordinator, the system property
+ * {@code it.univr.distributed.failAfterTasks=n} makes the worker terminate abruptly when it receives its
+ * {@code (n+1)}-th task, and {@code it.univr.distributed.hangAfterTasks=n} makes it stop answering (without
+ * terminating) from its {@code (n+1)}-th task on.
+ */
+public class PricingWorker {
+
+	// Messages from the coordinator
+	static final byte TASK = 1;
+	static final byte SHUTDOWN = 2;
+	// Messages to the coordinator
+	static final byte RESULT = 1;
+	static final byte ERROR = 3;
+
+	private PricingWorker() {
+	}
+
+	/**
+	 * Values a task in the current process.
+	 *
+	 * @param task The task.
+	 * @return The statistics of the discounted payoffs of the paths of the task.
+	 * @throws CalculationException If the valuation fails.
+	 */
+	public static PathStatistics price(PricingTask task) throws CalculationException {
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, task.getNumberOfTimeSteps(), task.getMaturity() / task.getNumberOfTimeSteps());
+		BrownianMotion brownianMotion = new BrownianMotionFromPhiloxRandomNumbers(times, 1, task.getFirstPath(), task.getNumberOfPaths(), task.getSeed());
+		MonteCarloBlackScholesModel model = new MonteCarloBlackScholesModel(task.getSpotPrice(), task.getRiskFreeRate(), task.getVolatility(), brownianMotion);
+		LookbackOption product = LookbackOption.of(task.getPayoff(), task.getMaturity(), task.getStrike(), task.getNumberOfFixingDates());
+		return PathStatistics.of(product.getValue(0.0, model));
+	}
+
+	/**
+	 * Starts the worker.
+	 *
+	 * @param args Optional port (default: an ephemeral port).
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		int failAfterTasks = Integer.getInteger("it.univr.distributed.failAfterTasks", Integer.MAX_VALUE);
+		int hangAfterTasks = Integer.getInteger("it.univr.distributed.hangAfterTasks", Integer.MAX_VALUE);
+		int numberOfTasks = 0;
+		if(Boolean.getBoolean("it.univr.distributed.warmUp")) {
+			try {
+				WorkerStartup.warmUp();
+			}
+			catch(CalculationException exception) {
+				throw new IOException("The warm-up of the worker failed.", exception);
+			}
+		}
+
+		try(ServerSocket serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+			System.out.println("PORT " + serverSocket.getLocalPort());
+			System.out.flush();
+
+			while(true) {
+				try(Socket socket = serverSocket.accept()) {
+					socket.setTcpNoDelay(true);
+					DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+					DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+					while(true) {
+						byte message = input.readByte();
+						if(message == SHUTDOWN) {
+							return;
+						}
+						PricingTask task = PricingTask.readFrom(input);
+						if(++numberOfTasks > failAfterTasks) {
+							// Simulated crash
+							Runtime.getRuntime().halt(1);
+						}
+						if(numberOfTasks > hangAfterTasks) {
+							// Simulated hang: the connection stays open until the coordinator closes it
+							while(input.read() >= 0) {
+								// Discard
+							}
+							break;
+						}
+						try {
+							PathStatistics statistics = price(task);
+							output.writeByte(RESULT);
+							statistics.writeTo(output);
+						}
+						catch(CalculationException | RuntimeException exception) {
+							output.writeByte(ERROR);
+							output.writeUTF(String.valueOf(exception));
+						}
+						output.flush();
+					}
+				}
+				catch(EOFException exception) {
+					// The coordinator closed the connection: wait for the next one
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package it.univr.distributed;
+
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.exception.CalculationException;
+
+/**
+ * Fast start of short-lived {@link PricingWorker} processes.
+ *
+ * <p>The start of a worker is dominated by class loading (JDK, finmath and the project) and by the interpreted
+ * execution of the first valuations. Two measures address it:
+ * <ul>
+ *   <li>an application class-data sharing archive: {@link #main(String[])} is the training run of the
+ *       {@code startup} Maven profile, which executes the warm-up and then the main method of a training class
+ *       (by default {@code it.univr.montecarlo.Tests}) with {@code -XX:ArchiveClassesAtExit}; workers started with
+ *       {@code -XX:SharedArchiveFile} map the parsed and verified classes instead of loading them. The archive is
+ *       only used if the worker runs on the classpath of the training run (jar files only);</li>
+ *   <li>the warm-up {@link #warmUp()}, run by a worker started with {@code -Dit.univr.distributed.warmUp=true} before
+ *       it announces its port, which executes the analytic formulas and a small Monte Carlo valuation of every
+ *       payoff, so that the first valuation of the coordinator runs compiled code.</li>
+ * </ul>
+ * {@link #getJvmOptions(Path, boolean)} returns the options of {@link PricingCoordinator#addLocalWorker(String...)}
+ * for such workers.
+ */
+public final class WorkerStartup {
+
+	/**
+	 * Name of the archive written by the {@code startup} profile in the build directory.
+	 */
+	public static final String ARCHIVE_FILE_NAME = "lookback-worker.jsa";
+
+	private WorkerStartup() {
+	}
+
+	/**
+	 * Returns the JVM options of a fast-starting worker. Without warm-up, the worker only uses the C1 compiler,
+	 * which compiles quickly and pays off within the few valuations of a short-lived worker. The warm-up delays
+	 * the start of the worker and is meant for workers started ahead of the valuations, which keep both compilers.
+	 *
+	 * @param sharedArchive The class-data sharing archive (ignored if it does not exist).
+	 * @param isWarmUp      If true, the worker runs {@link #warmUp()} before announcing its port.
+	 * @return The options.
+	 */
+	public static String[] getJvmOptions(Path sharedArchive, boolean isWarmUp) {
+		List<String> options = new ArrayList<>();
+		if(sharedArchive != null && Files.exists(sharedArchive)) {
+			options.add("-XX:SharedArchiveFile=" + sharedArchive.toAbsolutePath());
+		}
+		// A worker has a small heap and a short life: no parallel collector threads, no performance counters file
+		options.add("-XX:+UseSerialGC");
+		options.add("-XX:-UsePerfData");
+		if(isWarmUp) {
+			options.add("-Dit.univr.distributed.warmUp=true");
+		}
+		else {
+			options.add("-XX:TieredStopAtLevel=1");
+		}
+		return options.toArray(new String[0]);
+	}
+
+	/**
+	 * Executes the analytic formulas and small Monte Carlo valuations of the four payoffs, continuously and
+	 * discretely monitored, until their kernels are compiled.
+	 *
+	 * @return The duration of the warm-up in milliseconds.
+	 * @throws CalculationException If a valuation fails.
+	 */
+	public static long warmUp() throws CalculationException {
+		long startTime = System.nanoTime();
+		double checksum = 0.0;
+		for(int iteration = 0; iteration < 1000; iteration++) {
+			double volatility = 0.1 + iteration * 1E-4;
+			for(LookbackPayoff payoff : LookbackPayoff.values()) {
+				checksum += payoff.getContinuouslyMonitoredPrice(100.0, 0.05, volatility, 1.0, 100.0);
+				checksum += payoff.getDiscretelyMonitoredPrice(100.0, 0.05, volatility, 1.0, 100.0, 12);
+			}
+		}
+		for(int iteration = 0; iteration < 2; iteration++) {
+			for(LookbackPayoff payoff : LookbackPayoff.values()) {
+				for(int numberOfFixingDates : new int[] { 0, 8 }) {
+					PricingTask task = new PricingTask(payoff, 100.0, 0.05, 0.2, 1.0, 100.0, numberOfFixingDates, 16, 1897, 0, 500);
+					checksum += PricingWorker.price(task).getMean();
+				}
+			}
+		}
+		if(Double.isNaN(checksum)) {
+			throw new IllegalStateException("The warm-up valuations failed.");
+		}
+		return (System.nanoTime() - startTime) / 1000000;
+	}
+
+	/**
+	 * Training run of the class-data sharing archive: runs the warm-up, then the main method of a class.
+	 *
+	 * @param args The training class (default {@code it.univr.montecarlo.Tests}) followed by its arguments.
+	 * @throws Exception If the training run fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		System.out.println("Warm-up in " + warmUp() + " ms");
+		String trainingClass = args.length > 0 ? args[0] : "it.univr.montecarlo.Tests";
+		Method main = Class.forName(trainingClass).getMethod("main", String[].class);
+		main.invoke(null, (Object) Arrays.copyOfRange(args, Math.min(1, args.length), args.length));
+	}
+}
@@ -0,0 +1,48 @@
+package it.univr.finitedifference;
+
+/**
+ * Price and grid sensitivities of a lookback option computed by {@link LookbackFiniteDifferencePricer}.
+ */
+public class FiniteDifferenceResult {
+
+	private final double value;
+	private final double delta;
+	private final double gamma;
+	private final double theta;
+
+	/**
+	 * Creates the result.
+	 *
+	 * @param value The price.
+	 * @param delta The first derivative of the price with respect to the spot.
+	 * @param gamma The second derivative of the price with respect to the spot.
+	 * @param theta The derivative of the price with respect to calendar time.
+	 */
+	public FiniteDifferenceResult(double value, double delta, double gamma, double theta) {
+		this.value = value;
+		this.delta = delta;
+		this.gamma = gamma;
+		this.theta = theta;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public double getDelta() {
+		return delta;
+	}
+
+	public double getGamma() {
+		return gamma;
+	}
+
+	public double getTheta() {
+		return theta;
+	}
+
+	@Override
+	public String toString() {
+		return "FiniteDifferenceResult [value=" + value + ", delta=" + delta + ", gamma=" + gamma + ", theta=" + theta + "]";
+	}
+}
@@ -0,0 +1,347 @@
+package it.univr.finitedifference;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Finite-difference pricer of lookback options in the Black–Scholes model, with continuous or discrete
+ * monitoring.
+ *
+ * <p>The pricer uses the similarity reduction of the floating-strike lookbacks. Taking the underlying as
+ * numeraire, the price of the floating-strike put is {@code V = S W(x, τ)} with {@code x = log(M / S) >= 0},
+ * and the price of the floating-strike call is {@code V = S W(y, τ)} with {@code y = log(S / m) >= 0}. In both
+ * cases {@code W} solves the one-dimensional equation
+ * <pre>
+ *     W_τ = a W_z + σ²/2 W_zz,     a = -(r + σ²/2) (put, z = x),  a = r + σ²/2 (call, z = y),
+ * </pre>
+ * with {@code W(z, 0) = e^z - 1} (put) or {@code W(z, 0) = 1 - e^-z} (call), instead of a two-dimensional
+ * equation in the underlying and its running extremum. The fixed-strike payoffs are priced from the same
+ * grid by parity: for example {@code max(M_T - K, 0) = max(M_T, K) - K}, i.e. a floating-strike put whose
+ * running maximum starts at {@code max(S, K)}.
+ *
+ * <p>Boundary conditions:
+ * <ul>
+ *   <li>continuous monitoring: the grid starts at {@code z = 0} with the Neumann condition {@code W_z(0, τ) = 0};</li>
+ *   <li>discrete monitoring: the grid extends below {@code z = 0}, since the underlying can cross its extremum
+ *       between two fixings, and the fixing at {@code τ_i} is the jump condition
+ *       {@code W(z, τ_i) = W(max(z, 0), τ_i)};</li>
+ *   <li>upper boundary: the asymptotic value {@code W = e^(z - rτ) - 1} (put) or {@code W = 1 - e^(-z - rτ)} (call)
+ *       of an extremum which is not reached anymore.</li>
+ * </ul>
+ *
+ * <p>Time stepping is Crank–Nicolson, with Rannacher start-up: the first two steps after the terminal condition
+ * and after every jump condition are replaced by four implicit Euler half steps, which damp the oscillations
+ * generated by the kinks. All grid arrays are allocated once per pricing; the {@link TridiagonalSolver} does not
+ * allocate per step.
+ *
+ * <p>Delta, gamma and theta are read from the grid:
+ * {@code Δ = W ∓ W_z}, {@code Γ = (W_zz ∓ W_z) / S} (upper sign for the put, lower for the call) and
+ * {@code Θ = -S W_τ}, with {@code W_τ} given by the right-hand side of the equation at the final time, plus the
+ * contribution of the parity terms for the fixed-strike payoffs. These are sensitivities with the running
+ * extremum held fixed: at inception (extremum equal to the spot) they differ from bump-and-revalue
+ * sensitivities of a freshly started lookback, which move the extremum together with the spot.
+ */
+public class LookbackFiniteDifferencePricer {
+
+	// Number of standard deviations of log(S) covered by the grid above the initial point
+	private static final double NUMBER_OF_STANDARD_DEVIATIONS = 8.0;
+	// Number of implicit Euler half steps of the Rannacher start-up
+	private static final int NUMBER_OF_RANNACHER_HALF_STEPS = 4;
+
+	// Number of space steps of the grid between 0 and its upper bound
+	private final int numberOfSpaceSteps;
+	// Number of time steps between 0 and the maturity
+	private final int numberOfTimeSteps;
+
+	/**
+	 * Creates the pricer.
+	 *
+	 * @param numberOfSpaceSteps Number of space steps between {@code z = 0} and the upper bound of the grid.
+	 * @param numberOfTimeSteps  Number of time steps between 0 and the maturity. With discrete monitoring the
+	 *                           steps are distributed evenly over the fixing intervals (at least
+	 *                           {@code 4} per interval).
+	 */
+	public LookbackFiniteDifferencePricer(int numberOfSpaceSteps, int numberOfTimeSteps) {
+		if(numberOfSpaceSteps < 4 || numberOfTimeSteps < 2) {
+			throw new IllegalArgumentException("The grid needs at least 4 space steps and 2 time steps.");
+		}
+		this.numberOfSpaceSteps=numberOfSpaceSteps;
+		this.numberOfTimeSteps=numberOfTimeSteps;
+	}
+
+	/**
+	 * Creates the pricer with 800 space steps and 400 time steps.
+	 */
+	public LookbackFiniteDifferencePricer() {
+		this(800, 400);
+	}
+
+	/**
+	 * Returns price, delta, gamma and theta of a continuously monitored lookback, at inception.
+	 *
+	 * @param payoff       The lookback payoff.
+	 * @param spotPrice    Initial underlying value {@code S0}.
+	 * @param riskFreeRate Constant risk-free rate {@code r}.
+	 * @param volatility   {@code σ}.
+	 * @param maturity     Time to maturity {@code T}.
+	 * @param strike       The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The result.
+	 */
+	public FiniteDifferenceResult getResult(LookbackPayoff payoff, double spotPrice, double riskFreeRate, double volatility,
+			double maturity, double strike) {
+		return getResult(payoff, spotPrice, riskFreeRate, volatility, maturity, strike, 0);
+	}
+
+	/**
+	 * Returns price, delta, gamma and theta of a lookback, at inception.
+	 *
+	 * @param payoff              The lookback payoff.
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param strike              The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfFixingDates Number of equidistant monitoring intervals (the extremum is observed at
+	 *                            {@code 0, T/m, ..., T}). If {@code 0}, the monitoring is continuous.
+	 * @return The result.
+	 */
+	public FiniteDifferenceResult getResult(LookbackPayoff payoff, double spotPrice, double riskFreeRate, double volatility,
+			double maturity, double strike, int numberOfFixingDates) {
+		return getResult(payoff, spotPrice, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+	}
+
+	/**
+	 * Returns price, delta, gamma and theta of a lookback whose running extremum has already been observed.
+	 * With discrete monitoring the next fixing is assumed to be one fixing interval away.
+	 *
+	 * @param payoff              The lookback payoff.
+	 * @param spotPrice           Current underlying value {@code S}.
+	 * @param runningExtremum     Running maximum (payoffs on the maximum) or minimum (payoffs on the minimum)
+	 *                            observed so far.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param strike              The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfFixingDates Number of equidistant monitoring intervals until maturity. If {@code 0}, the
+	 *                            monitoring is continuous.
+	 * @return The result.
+	 */
+	public FiniteDifferenceResult getResult(LookbackPayoff payoff, double spotPrice, double runningExtremum, double riskFreeRate,
+			double volatility, double maturity, double strike, int numberOfFixingDates) {
+		if(numberOfFixingDates < 0) {
+			throw new IllegalArgumentException("The number of fixing dates must be non-negative.");
+		}
+
+		final boolean isOnMaximum = payoff.isOnMaximum();
+
+		// Initial value of the similarity variable; by parity the extremum of a fixed-strike payoff starts at the strike
+		double extremum = runningExtremum;
+		if(payoff == LookbackPayoff.CALL_FIXED_STRIKE) {
+			extremum = Math.max(runningExtremum, strike);
+		}
+		else if(payoff == LookbackPayoff.PUT_FIXED_STRIKE) {
+			extremum = Math.min(runningExtremum, strike);
+		}
+		double initialPoint = isOnMaximum ? Math.log(extremum / spotPrice) : Math.log(spotPrice / extremum);
+		if(numberOfFixingDates == 0 && initialPoint < 0.0) {
+			throw new IllegalArgumentException("With continuous monitoring the spot cannot lie beyond its running extremum.");
+		}
+
+		double[] solution = solveSimilarityEquation(isOnMaximum, riskFreeRate, volatility, maturity, numberOfFixingDates, initialPoint);
+		double similarityValue = solution[0];
+		double firstDerivative = solution[1];
+		double secondDerivative = solution[2];
+		double timeDerivative = solution[3];
+
+		// Back to the underlying: V = S W(z), dz/dS = -1/S (put) or 1/S (call)
+		double sign = isOnMaximum ? -1.0 : 1.0;
+		double value = spotPrice * similarityValue;
+		double delta = similarityValue + sign * firstDerivative;
+		double gamma = (secondDerivative + sign * firstDerivative) / spotPrice;
+		double theta = -spotPrice * timeDerivative;
+
+		// Parity terms of the fixed-strike payoffs
+		double discountedStrike = strike * Math.exp(-riskFreeRate * maturity);
+		if(payoff == LookbackPayoff.CALL_FIXED_STRIKE) {
+			// max(M_T - K, 0) = (max(M_T, K) - S_T) + S_T - K
+			value += spotPrice - discountedStrike;
+			delta += 1.0;
+			theta -= riskFreeRate * discountedStrike;
+		}
+		else if(payoff == LookbackPayoff.PUT_FIXED_STRIKE) {
+			// max(K - m_T, 0) = (S_T - min(m_T, K)) + K - S_T
+			value += discountedStrike - spotPrice;
+			delta -= 1.0;
+			theta += riskFreeRate * discountedStrike;
+		}
+
+		return new FiniteDifferenceResult(value, delta, gamma, theta);
+	}
+
+	/**
+	 * Returns the price of a lookback, at inception.
+	 *
+	 * @param payoff              The lookback payoff.
+	 * @param spotPrice           Initial underlying value {@code S0}.
+	 * @param riskFreeRate        Constant risk-free rate {@code r}.
+	 * @param volatility          {@code σ}.
+	 * @param maturity            Time to maturity {@code T}.
+	 * @param strike              The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfFixingDates Number of equidistant monitoring intervals. If {@code 0}, the monitoring is continuous.
+	 * @return The price.
+	 */
+	public double getValue(LookbackPayoff payoff, double spotPrice, double riskFreeRate, double volatility,
+			double maturity, double strike, int numberOfFixingDates) {
+		return getResult(payoff, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates).getValue();
+	}
+
+	/*
+	 * Solves the similarity equation and returns {W, W_z, W_zz, W_τ} at z = initialPoint and τ = maturity.
+	 */
+	private double[] solveSimilarityEquation(boolean isOnMaximum, double riskFreeRate, double volatility, double maturity,
+			int numberOfFixingDates, double initialPoint) {
+		final boolean isContinuous = numberOfFixingDates == 0;
+		final double variance = volatility * volatility;
+		final double drift = (isOnMaximum ? -1.0 : 1.0) * (riskFreeRate + 0.5 * variance);
+
+		// Space grid z_j = (j - numberOfNegativeSteps) dz, with z = 0 on a grid point
+		double upperBound = Math.max(initialPoint, 0.0) + NUMBER_OF_STANDARD_DEVIATIONS * volatility * Math.sqrt(maturity) + Math.abs(drift) * maturity;
+		final double spaceStep = upperBound / numberOfSpaceSteps;
+		int numberOfNegativeSteps = 0;
+		if(!isContinuous) {
+			// Between two fixings the underlying moves away from its extremum by a few local standard deviations
+			double fixingInterval = maturity / numberOfFixingDates;
+			double lowerBound = NUMBER_OF_STANDARD_DEVIATIONS * volatility * Math.sqrt(fixingInterval) + Math.abs(drift) * fixingInterval;
+			numberOfNegativeSteps = (int) Math.ceil((Math.max(-initialPoint, 0.0) + lowerBound) / spaceStep);
+		}
+		final int numberOfPoints = numberOfNegativeSteps + numberOfSpaceSteps + 1;
+		// The last point carries the Dirichlet condition: the unknowns are the first numberOfPoints - 1 values
+		final int numberOfUnknowns = numberOfPoints - 1;
+
+		// Time grid: the same number of steps in every fixing interval
+		int numberOfIntervals = isContinuous ? 1 : numberOfFixingDates;
+		int stepsPerInterval = Math.max(isContinuous ? 2 : 4, (int) Math.ceil(numberOfTimeSteps / (double) numberOfIntervals));
+		final double timeStep = maturity / (numberOfIntervals * stepsPerInterval);
+
+		// Coefficients of the spatial operator L W_j = lower W_(j-1) + diagonal W_j + upper W_(j+1)
+		final double diffusion = 0.5 * variance / (spaceStep * spaceStep);
+		final double convection = 0.5 * drift / spaceStep;
+		final double operatorLower = diffusion - convection;
+		final double operatorDiagonal = -2.0 * diffusion;
+		final double operatorUpper = diffusion + convection;
+
+		// Grid arrays (two time levels used alternately), allocated once
+		double[] values = new double[numberOfPoints];
+		double[] previousValues = new double[numberOfPoints];
+		double[] rightHandSide = new double[numberOfUnknowns];
+		double[] lower = new double[numberOfUnknowns];
+		double[] diagonal = new double[numberOfUnknowns];
+		double[] upper = new double[numberOfUnknowns];
+		TridiagonalSolver solver = new TridiagonalSolver(numberOfUnknowns);
+
+		// Terminal condition (the fixing at maturity is included by max(z, 0))
+		for(int j = 0; j < numberOfPoints; j++) {
+			double z = Math.max((j - numberOfNegativeSteps) * spaceStep, 0.0);
+			values[j] = isOnMaximum ? Math.exp(z) - 1.0 : 1.0 - Math.exp(-z);
+		}
+
+		double timeToMaturity = 0.0;
+		for(int interval = 0; interval < numberOfIntervals; interval++) {
+			int remainingSteps = stepsPerInterval;
+
+			// Rannacher start-up: implicit Euler half steps after the terminal or jump condition
+			for(int halfStep = 0; halfStep < NUMBER_OF_RANNACHER_HALF_STEPS && remainingSteps > 0; halfStep++) {
+				double[] swap = previousValues;
+				previousValues = values;
+				values = swap;
+				timeToMaturity += 0.5 * timeStep;
+				doTimeStep(previousValues, values, 0.5 * timeStep, 1.0, timeToMaturity, isOnMaximum, riskFreeRate, upperBound,
+						operatorLower, operatorDiagonal, operatorUpper, rightHandSide, lower, diagonal, upper, solver);
+				if(halfStep % 2 == 1) {
+					remainingSteps--;
+				}
+			}
+
+			// Crank–Nicolson steps
+			for(int step = 0; step < remainingSteps; step++) {
+				double[] swap = previousValues;
+				previousValues = values;
+				values = swap;
+				timeToMaturity += timeStep;
+				doTimeStep(previousValues, values, timeStep, 0.5, timeToMaturity, isOnMaximum, riskFreeRate, upperBound,
+						operatorLower, operatorDiagonal, operatorUpper, rightHandSide, lower, diagonal, upper, solver);
+			}
+
+			// Jump condition at the fixing date, W(z) = W(max(z, 0)) (the fixing at inception does not affect z >= 0)
+			if(interval < numberOfIntervals - 1) {
+				for(int j = 0; j < numberOfNegativeSteps; j++) {
+					values[j] = values[numberOfNegativeSteps];
+				}
+			}
+		}
+
+		// Quadratic interpolation at the initial point, on the three grid points nearest to it
+		double position = initialPoint / spaceStep + numberOfNegativeSteps;
+		int center = Math.max(Math.min((int) Math.round(position), numberOfPoints - 2), 0);
+		double offset = position - center;
+		double[] derivatives = getQuadraticInterpolation(values, center, offset, spaceStep);
+		// W_τ from the equation itself, on the final grid
+		double timeDerivative = drift * derivatives[1] + 0.5 * variance * derivatives[2];
+		return new double[] { derivatives[0], derivatives[1], derivatives[2], timeDerivative };
+	}
+
+	/*
+	 * Performs one step of the theta-scheme (I - θ dτ L) W_new = (I + (1 - θ) dτ L) W_old.
+	 */
+	private static void doTimeStep(double[] oldValues, double[] newValues, double timeStep, double implicitWeight,
+			double timeToMaturity, boolean isOnMaximum, double riskFreeRate, double upperBound,
+			double operatorLower, double operatorDiagonal, double operatorUpper,
+			double[] rightHandSide, double[] lower, double[] diagonal, double[] upper, TridiagonalSolver solver) {
+		final int numberOfUnknowns = rightHandSide.length;
+		final double explicitWeight = 1.0 - implicitWeight;
+
+		// Dirichlet condition at the upper bound: the extremum is not reached anymore
+		double upperBoundaryValue = isOnMaximum
+				? Math.exp(upperBound - riskFreeRate * timeToMaturity) - 1.0
+				: 1.0 - Math.exp(-upperBound - riskFreeRate * timeToMaturity);
+		newValues[numberOfUnknowns] = upperBoundaryValue;
+
+		for(int j = 0; j < numberOfUnknowns; j++) {
+			double operatorOnOldValues;
+			if(j == 0) {
+				// Neumann condition W_z = 0 (ghost point W_(-1) = W_1) at z = 0, or flat lower far field
+				operatorOnOldValues = (operatorLower + operatorUpper) * oldValues[1] + operatorDiagonal * oldValues[0];
+				lower[0] = 0.0;
+				upper[0] = -implicitWeight * timeStep * (operatorLower + operatorUpper);
+			}
+			else {
+				operatorOnOldValues = operatorLower * oldValues[j - 1] + operatorDiagonal * oldValues[j] + operatorUpper * oldValues[j + 1];
+				lower[j] = -implicitWeight * timeStep * operatorLower;
+				upper[j] = -implicitWeight * timeStep * operatorUpper;
+			}
+			diagonal[j] = 1.0 - implicitWeight * timeStep * operatorDiagonal;
+			rightHandSide[j] = oldValues[j] + explicitWeight * timeStep * operatorOnOldValues;
+		}
+		// Known value at the upper bound moved to the right-hand side
+		rightHandSide[numberOfUnknowns - 1] -= upper[numberOfUnknowns - 1] * upperBoundaryValue;
+		upper[numberOfUnknowns - 1] = 0.0;
+
+		solver.solve(lower, diagonal, upper, rightHandSide, newValues);
+	}
+
+	/*
+	 * Returns {W, W_z, W_zz} of the quadratic through the grid points center - 1, center, center + 1,
+	 * evaluated at z_center + offset dz. At the first grid point the Neumann ghost point is used.
+	 */
+	private static double[] getQuadraticInterpolation(double[] values, int center, double offset, double spaceStep) {
+		double valueBefore = center == 0 ? values[1] : values[center - 1];
+		double valueAtCenter = values[center];
+		double valueAfter = values[center + 1];
+		double firstDifference = 0.5 * (valueAfter - valueBefore);
+		double secondDifference = valueAfter - 2.0 * valueAtCenter + valueBefore;
+		return new double[] {
+				valueAtCenter + offset * firstDifference + 0.5 * offset * offset * secondDifference,
+				(firstDifference + offset * secondDifference) / spaceStep,
+				secondDifference / (spaceStep * spaceStep)
+		};
+	}
+}
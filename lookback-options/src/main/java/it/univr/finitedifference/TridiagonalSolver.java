@@ -0,0 +1,58 @@
+package it.univr.finitedifference;
+
+/**
+ * Solver for tridiagonal linear systems (Thomas algorithm).
+ *
+ * <p>The scratch array used by the forward elimination is allocated once, at construction, so that
+ * {@link #solve(double[], double[], double[], double[], double[])} performs no allocation and can be
+ * called at every time step of a finite-difference scheme. An instance is not thread-safe.
+ */
+public class TridiagonalSolver {
+
+	private final int size;
+	// Scratch array for the modified upper diagonal
+	private final double[] modifiedUpper;
+
+	/**
+	 * Creates a solver for systems of the given size.
+	 *
+	 * @param size The number of unknowns.
+	 */
+	public TridiagonalSolver(int size) {
+		this.size = size;
+		this.modifiedUpper = new double[size];
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Solves the system {@code lower[i] x[i-1] + diagonal[i] x[i] + upper[i] x[i+1] = rightHandSide[i]}.
+	 *
+	 * <p>{@code lower[0]} and {@code upper[size-1]} are ignored. The solution may be written into the
+	 * right-hand side array.
+	 *
+	 * @param lower         The lower diagonal.
+	 * @param diagonal      The main diagonal.
+	 * @param upper         The upper diagonal.
+	 * @param rightHandSide The right-hand side.
+	 * @param solution      The array receiving the solution.
+	 */
+	public void solve(double[] lower, double[] diagonal, double[] upper, double[] rightHandSide, double[] solution) {
+		// Forward elimination
+		double pivot = diagonal[0];
+		modifiedUpper[0] = upper[0] / pivot;
+		solution[0] = rightHandSide[0] / pivot;
+		for(int i = 1; i < size; i++) {
+			pivot = diagonal[i] - lower[i] * modifiedUpper[i - 1];
+			modifiedUpper[i] = upper[i] / pivot;
+			solution[i] = (rightHandSide[i] - lower[i] * solution[i - 1]) / pivot;
+		}
+
+		// Back substitution
+		for(int i = size - 2; i >= 0; i--) {
+			solution[i] -= modifiedUpper[i] * solution[i + 1];
+		}
+	}
+}
@@ -0,0 +1,283 @@
+package it.univr.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in instrumentation of the Monte Carlo lookback engine.
+ *
+ * <p>The instrumentation is enabled by the system property {@code -Dit.univr.metrics=true}. The flag
+ * {@link #ENABLED} is a compile-time constant for the JIT: every instrumented call site is guarded by
+ * {@code if(LookbackMetrics.ENABLED)}, so when the property is not set the guarded code is removed and the engine
+ * runs unchanged.
+ *
+ * <p>When enabled, the engine records
+ * <ul>
+ *   <li>the time spent in each {@link Phase} of a valuation (path generation, running extrema, discounting,
+ *       control variate);</li>
+ *   <li>the number of valuations, of simulated paths and the paths per second;</li>
+ *   <li>the bytes allocated by the valuating thread (on HotSpot);</li>
+ *   <li>the variance reduction ratio {@code Var(Z) / Var(Z_cv)} of the control-variate estimators.</li>
+ * </ul>
+ * The totals are kept in process-wide adders, read with the getters or {@link #getReport()}. Every valuation also
+ * commits a {@link LookbackValuationEvent} to Java Flight Recorder, if a recording with the event enabled is running.
+ */
+public final class LookbackMetrics {
+
+	/**
+	 * True if the instrumentation is enabled ({@code -Dit.univr.metrics=true}).
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("it.univr.metrics");
+
+	/**
+	 * Phases of a Monte Carlo valuation.
+	 */
+	public enum Phase {
+		/** Generation of the paths by the simulation model (triggered by the first access to the asset values). */
+		PATH_GENERATION,
+		/** Running maximum or minimum over the monitoring dates. */
+		EXTREMUM,
+		/** Payoff at maturity divided by the numeraire. */
+		DISCOUNTING,
+		/** Covariance, coefficient and correction of the control-variate estimator. */
+		CONTROL_VARIATE
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+
+	// Thread allocation counter (null if the JVM does not provide it)
+	private static final com.sun.management.ThreadMXBean ALLOCATION_COUNTER = getAllocationCounter();
+
+	// Totals
+	private static final LongAdder[] phaseTimes = new LongAdder[PHASES.length];
+	private static final LongAdder numberOfValuations = new LongAdder();
+	private static final LongAdder numberOfPaths = new LongAdder();
+	private static final LongAdder valuationTime = new LongAdder();
+	private static final LongAdder allocatedBytes = new LongAdder();
+	private static final LongAdder numberOfControlVariateValuations = new LongAdder();
+	private static final DoubleAdder sumOfVarianceReductionRatios = new DoubleAdder();
+
+	// Valuation running on the current thread (null outside a valuation)
+	private static final ThreadLocal<Valuation> currentValuation = new ThreadLocal<>();
+
+	static {
+		for(int i = 0; i < phaseTimes.length; i++) {
+			phaseTimes[i] = new LongAdder();
+		}
+	}
+
+	private LookbackMetrics() {
+	}
+
+	/**
+	 * Starts the valuation of a product on the current thread. Valuations nested in a running one (e.g. the
+	 * products used by a control-variate estimator) are part of it and are not counted separately.
+	 *
+	 * @param product Name of the product.
+	 * @return The valuation, to be ended by {@link #endValuation(Valuation, int)}; null if nested.
+	 */
+	public static Valuation startValuation(String product) {
+		if(currentValuation.get() != null) {
+			return null;
+		}
+		Valuation valuation = new Valuation(product);
+		currentValuation.set(valuation);
+		return valuation;
+	}
+
+	/**
+	 * Ends a valuation started by {@link #startValuation(String)} and adds it to the totals.
+	 *
+	 * @param valuation     The valuation (ignored if null).
+	 * @param numberOfPaths Number of simulated paths.
+	 */
+	public static void endValuation(Valuation valuation, int numberOfPaths) {
+		if(valuation == null) {
+			return;
+		}
+		currentValuation.remove();
+		long duration = System.nanoTime() - valuation.startTime;
+		long allocated = getAllocatedBytes() - valuation.startAllocatedBytes;
+
+		numberOfValuations.increment();
+		LookbackMetrics.numberOfPaths.add(numberOfPaths);
+		valuationTime.add(duration);
+		allocatedBytes.add(allocated);
+
+		LookbackValuationEvent event = valuation.event;
+		if(event.shouldCommit()) {
+			event.product = valuation.product;
+			event.numberOfPaths = numberOfPaths;
+			event.pathsPerSecond = duration > 0 ? numberOfPaths * 1E9 / duration : 0.0;
+			event.allocatedBytes = allocated;
+			event.pathGenerationTime = valuation.phaseTimes[Phase.PATH_GENERATION.ordinal()];
+			event.extremumTime = valuation.phaseTimes[Phase.EXTREMUM.ordinal()];
+			event.discountingTime = valuation.phaseTimes[Phase.DISCOUNTING.ordinal()];
+			event.controlVariateTime = valuation.phaseTimes[Phase.CONTROL_VARIATE.ordinal()];
+			event.varianceReductionRatio = valuation.varianceReductionRatio;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Adds the time elapsed since {@code startTime} to a phase.
+	 *
+	 * @param phase     The phase.
+	 * @param startTime Start of the phase, from {@link System#nanoTime()}.
+	 */
+	public static void recordPhase(Phase phase, long startTime) {
+		long duration = System.nanoTime() - startTime;
+		phaseTimes[phase.ordinal()].add(duration);
+		Valuation valuation = currentValuation.get();
+		if(valuation != null) {
+			valuation.phaseTimes[phase.ordinal()] += duration;
+		}
+	}
+
+	/**
+	 * Records the variance reduction of a control-variate estimator.
+	 *
+	 * @param plainVariance      Variance of the plain estimator {@code Z}.
+	 * @param controlledVariance Variance of the control-variate estimator {@code Z_cv}.
+	 */
+	public static void recordVarianceReduction(double plainVariance, double controlledVariance) {
+		double ratio = plainVariance / controlledVariance;
+		numberOfControlVariateValuations.increment();
+		sumOfVarianceReductionRatios.add(ratio);
+		Valuation valuation = currentValuation.get();
+		if(valuation != null) {
+			valuation.varianceReductionRatio = ratio;
+		}
+	}
+
+	/**
+	 * Returns the total time spent in a phase.
+	 *
+	 * @param phase The phase.
+	 * @return The time in nanoseconds.
+	 */
+	public static long getPhaseTime(Phase phase) {
+		return phaseTimes[phase.ordinal()].sum();
+	}
+
+	public static long getNumberOfValuations() {
+		return numberOfValuations.sum();
+	}
+
+	public static long getNumberOfPaths() {
+		return numberOfPaths.sum();
+	}
+
+	/**
+	 * Returns the total time of the valuations.
+	 *
+	 * @return The time in nanoseconds.
+	 */
+	public static long getValuationTime() {
+		return valuationTime.sum();
+	}
+
+	/**
+	 * Returns the number of simulated paths per second of valuation time.
+	 *
+	 * @return The paths per second.
+	 */
+	public static double getPathsPerSecond() {
+		long time = valuationTime.sum();
+		return time > 0 ? numberOfPaths.sum() * 1E9 / time : 0.0;
+	}
+
+	/**
+	 * Returns the average number of bytes allocated by a valuation.
+	 *
+	 * @return The bytes per valuation, {@code NaN} if the JVM does not count thread allocations.
+	 */
+	public static double getAllocatedBytesPerValuation() {
+		long valuations = numberOfValuations.sum();
+		return ALLOCATION_COUNTER == null || valuations == 0 ? Double.NaN : (double) allocatedBytes.sum() / valuations;
+	}
+
+	/**
+	 * Returns the average variance reduction ratio {@code Var(Z) / Var(Z_cv)} of the control-variate valuations.
+	 *
+	 * @return The average ratio, {@code NaN} if no control variate has been used.
+	 */
+	public static double getAverageVarianceReductionRatio() {
+		long valuations = numberOfControlVariateValuations.sum();
+		return valuations == 0 ? Double.NaN : sumOfVarianceReductionRatios.sum() / valuations;
+	}
+
+	/**
+	 * Sets all totals to zero.
+	 */
+	public static void reset() {
+		for(LongAdder phaseTime : phaseTimes) {
+			phaseTime.reset();
+		}
+		numberOfValuations.reset();
+		numberOfPaths.reset();
+		valuationTime.reset();
+		allocatedBytes.reset();
+		numberOfControlVariateValuations.reset();
+		sumOfVarianceReductionRatios.reset();
+	}
+
+	/**
+	 * Returns a summary of the totals: time and share of every phase, paths per second, allocated bytes and
+	 * variance reduction.
+	 *
+	 * @return The report.
+	 */
+	public static String getReport() {
+		long totalTime = getValuationTime();
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Valuations: %d, paths: %d, time: %.3f ms, paths per second: %.0f%n",
+				getNumberOfValuations(), getNumberOfPaths(), totalTime / 1E6, getPathsPerSecond()));
+		for(Phase phase : PHASES) {
+			long time = getPhaseTime(phase);
+			report.append(String.format("  %-16s %10.3f ms %6.1f %%%n", phase, time / 1E6, totalTime > 0 ? 100.0 * time / totalTime : 0.0));
+		}
+		report.append(String.format("Allocated bytes per valuation: %.0f%n", getAllocatedBytesPerValuation()));
+		report.append(String.format("Average variance reduction ratio: %.2f", getAverageVarianceReductionRatio()));
+		return report.toString();
+	}
+
+	/*
+	 * Returns the bytes allocated so far by the current thread, 0 if not available.
+	 */
+	private static long getAllocatedBytes() {
+		return ALLOCATION_COUNTER == null ? 0L : ALLOCATION_COUNTER.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean getAllocationCounter() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if(threadBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+			com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threadBean;
+			allocationCounter.setThreadAllocatedMemoryEnabled(true);
+			return allocationCounter;
+		}
+		return null;
+	}
+
+	/**
+	 * A valuation running on a thread, with its phase times.
+	 */
+	public static final class Valuation {
+
+		private final String product;
+		private final long startTime;
+		private final long startAllocatedBytes;
+		private final long[] phaseTimes = new long[PHASES.length];
+		private final LookbackValuationEvent event = new LookbackValuationEvent();
+		private double varianceReductionRatio = Double.NaN;
+
+		private Valuation(String product) {
+			this.product=product;
+			this.startAllocatedBytes=getAllocatedBytes();
+			this.startTime=System.nanoTime();
+			event.begin();
+		}
+	}
+}
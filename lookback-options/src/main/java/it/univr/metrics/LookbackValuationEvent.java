@@ -0,0 +1,59 @@
+package it.univr.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder event of a Monte Carlo lookback valuation, committed by {@link LookbackMetrics} when the
+ * instrumentation is enabled. The event duration is the duration of the valuation; the fields give its breakdown
+ * by phase.
+ *
+ * <p>Example: {@code java -Dit.univr.metrics=true -XX:StartFlightRecording=filename=lookback.jfr ...}, then
+ * {@code jfr print --events it.univr.LookbackValuation lookback.jfr}.
+ */
+@Name("it.univr.LookbackValuation")
+@Label("Lookback Valuation")
+@Category({ "Lookback Options", "Monte Carlo" })
+@Description("Monte Carlo valuation of a lookback option")
+@StackTrace(false)
+public class LookbackValuationEvent extends Event {
+
+	@Label("Product")
+	String product;
+
+	@Label("Number of Paths")
+	int numberOfPaths;
+
+	@Label("Paths per Second")
+	double pathsPerSecond;
+
+	@Label("Allocated Bytes")
+	@DataAmount
+	long allocatedBytes;
+
+	@Label("Path Generation Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long pathGenerationTime;
+
+	@Label("Extremum Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long extremumTime;
+
+	@Label("Discounting Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long discountingTime;
+
+	@Label("Control Variate Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long controlVariateTime;
+
+	@Label("Variance Reduction Ratio")
+	@Description("Var(Z) / Var(Z_cv), NaN without control variate")
+	double varianceReductionRatio;
+}
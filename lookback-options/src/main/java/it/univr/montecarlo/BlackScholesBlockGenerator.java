@@ -0,0 +1,119 @@
+package it.univr.montecarlo;
+
+/**
+ * Generator of Black–Scholes log-Euler paths for a block of paths, time step by time step, which folds the running
+ * maximum and minimum on the monitoring dates into the same loop.
+ *
+ * <p>The state of the block is kept in three arrays indexed by path (log-return with respect to the spot, running
+ * maximum and running minimum of the log-return), and every time step sweeps the block with
+ * {@code x = x + (sigma_i dW_i + mu_i)} followed, on the monitoring dates, by {@code max(M, x)} and
+ * {@code min(m, x)}. Working on log-returns keeps the loop free of {@code exp} (the prices are recovered once, at
+ * the end) and makes every operation exactly rounded, so all the implementations give bit-identical results.
+ *
+ * <p>{@link #getInstance()} returns the SIMD implementation based on {@code jdk.incubator.vector} when it is
+ * compiled (Maven profile {@code vector}) and the module is available at run time
+ * ({@code --add-modules jdk.incubator.vector}); otherwise, or if the system property
+ * {@code it.univr.montecarlo.vector} is {@code false}, it returns the scalar implementation.
+ */
+public abstract class BlackScholesBlockGenerator {
+
+	private static final String VECTOR_IMPLEMENTATION = "it.univr.montecarlo.vector.VectorBlackScholesBlockGenerator";
+
+	private static final BlackScholesBlockGenerator SCALAR_INSTANCE = new ScalarBlackScholesBlockGenerator();
+	private static final BlackScholesBlockGenerator INSTANCE = createInstance();
+
+	/**
+	 * Returns the fastest available implementation.
+	 *
+	 * @return The SIMD implementation if available, otherwise the scalar one.
+	 */
+	public static BlackScholesBlockGenerator getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the scalar implementation.
+	 *
+	 * @return The scalar implementation.
+	 */
+	public static BlackScholesBlockGenerator getScalarInstance() {
+		return SCALAR_INSTANCE;
+	}
+
+	/**
+	 * Returns true if the implementation uses SIMD instructions.
+	 *
+	 * @return True for the SIMD implementation.
+	 */
+	public abstract boolean isVectorized();
+
+	/**
+	 * Advances the paths {@code [fromPath, toPath)} over all the time steps.
+	 *
+	 * <p>On entry the state arrays contain the initial state of the paths (usually {@code 0} log-return; extrema
+	 * {@code 0} if the initial time is a monitoring date, {@code -Infinity}/{@code +Infinity} otherwise); on exit
+	 * they contain the state at the last time.
+	 *
+	 * @param increments      Brownian increments {@code dW_i}, by time step and path.
+	 * @param drifts          Drift of the log-return over each time step, {@code (r - sigma^2/2) dt_i}.
+	 * @param volatilities    Volatility {@code sigma_i} multiplying the Brownian increment of each time step.
+	 * @param isMonitoringEnd True for the time steps whose end is a monitoring date.
+	 * @param fromPath        First path of the block.
+	 * @param toPath          End (exclusive) of the block.
+	 * @param logValue        Log-return of the underlying, by path.
+	 * @param logMaximum      Running maximum of the log-return on the monitoring dates, by path.
+	 * @param logMinimum      Running minimum of the log-return on the monitoring dates, by path.
+	 */
+	public abstract void generate(double[][] increments, double[] drifts, double[] volatilities, boolean[] isMonitoringEnd,
+			int fromPath, int toPath, double[] logValue, double[] logMaximum, double[] logMinimum);
+
+	/*
+	 * Loads the SIMD implementation if it was compiled and the incubator module is available.
+	 */
+	private static BlackScholesBlockGenerator createInstance() {
+		if(!Boolean.parseBoolean(System.getProperty("it.univr.montecarlo.vector", "true"))) {
+			return SCALAR_INSTANCE;
+		}
+		try {
+			return (BlackScholesBlockGenerator) Class.forName(VECTOR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+		}
+		catch(ReflectiveOperationException | LinkageError exception) {
+			// Not compiled, or jdk.incubator.vector not resolved: scalar fallback
+			return SCALAR_INSTANCE;
+		}
+	}
+
+	/*
+	 * Scalar implementation, the reference for the SIMD one.
+	 */
+	private static final class ScalarBlackScholesBlockGenerator extends BlackScholesBlockGenerator {
+
+		@Override
+		public boolean isVectorized() {
+			return false;
+		}
+
+		@Override
+		public void generate(double[][] increments, double[] drifts, double[] volatilities, boolean[] isMonitoringEnd,
+				int fromPath, int toPath, double[] logValue, double[] logMaximum, double[] logMinimum) {
+			for(int timeIndex = 0; timeIndex < increments.length; timeIndex++) {
+				double[] brownianIncrement = increments[timeIndex];
+				double drift = drifts[timeIndex];
+				double volatility = volatilities[timeIndex];
+				if(isMonitoringEnd[timeIndex]) {
+					for(int path = fromPath; path < toPath; path++) {
+						double value = logValue[path] + (volatility * brownianIncrement[path] + drift);
+						logValue[path] = value;
+						logMaximum[path] = Math.max(logMaximum[path], value);
+						logMinimum[path] = Math.min(logMinimum[path], value);
+					}
+				}
+				else {
+					for(int path = fromPath; path < toPath; path++) {
+						logValue[path] = logValue[path] + (volatility * brownianIncrement[path] + drift);
+					}
+				}
+			}
+		}
+	}
+}
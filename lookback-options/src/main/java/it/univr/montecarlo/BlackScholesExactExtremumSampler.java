@@ -0,0 +1,193 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.exception.CalculationException;
+import net.finmath.functions.NormalDistribution;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloAssetModel;
+import net.finmath.montecarlo.assetderivativevaluation.models.BlackScholesModel;
+import net.finmath.randomnumbers.MersenneTwister;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * "No-grid" Monte Carlo sampler of the continuously monitored extrema of a Black–Scholes underlying.
+ *
+ * <p>Writing {@code S_t = S_0 exp(X_t)} with {@code X_t = (r - σ²/2) t + σ W_t}, the sampler draws for every path
+ * <ol>
+ *   <li>the terminal log-return {@code X_T ~ N((r - σ²/2) T, σ² T)};</li>
+ *   <li>the maximum of {@code X} on {@code [0, T]} conditional on {@code X_T}, which is the maximum of a Brownian
+ *       bridge: {@code max X = (X_T + sqrt(X_T² - 2 σ² T log U)) / 2} with {@code U} uniform on {@code (0, 1]};</li>
+ *   <li>the minimum of {@code X} conditional on {@code X_T}: {@code min X = (X_T - sqrt(X_T² - 2 σ² T log V)) / 2}.</li>
+ * </ol>
+ * Hence every continuously monitored path costs three random draws, instead of a walk over the time grid, and
+ * the estimator has no discretization bias.
+ *
+ * <p>The pairs {@code (S_T, M_T)} and {@code (S_T, m_T)} have the exact joint law. Maximum and minimum are drawn
+ * with independent uniforms, so their joint law conditional on {@code S_T} is <em>not</em> the exact one: payoffs
+ * depending on both extrema at the same time (e.g. the range {@code M_T - m_T}) must not be priced with this class.
+ * All the payoffs in {@link LookbackPayoff} depend on one extremum only and are priced without bias.
+ *
+ * <p>The sampler can be used alongside {@link it.univr.analyticprices.AnalyticPrices} as an unbiased Monte Carlo
+ * reference, and as a fast path for exotic payoffs written with the {@link RandomVariable} algebra on
+ * {@link #getTerminalValue()}, {@link #getMaximum()} and {@link #getMinimum()}.
+ */
+public class BlackScholesExactExtremumSampler {
+
+	// Black–Scholes parameters
+	private final double spotPrice;
+	private final double riskFreeRate;
+	private final double volatility;
+	// Option maturity T
+	private final double maturity;
+	// Monte Carlo parameters
+	private final int numberOfPaths;
+	private final int seed;
+
+	// Lazily generated samples of S_T, M_T and m_T
+	private RandomVariable terminalValue;
+	private RandomVariable maximum;
+	private RandomVariable minimum;
+
+	/**
+	 * Creates the sampler.
+	 *
+	 * @param spotPrice     Initial underlying value {@code S0}.
+	 * @param riskFreeRate  Constant risk-free rate {@code r}.
+	 * @param volatility    {@code σ}.
+	 * @param maturity      Option maturity {@code T}.
+	 * @param numberOfPaths Number of simulated paths.
+	 * @param seed          Seed of the Mersenne Twister random number generator.
+	 */
+	public BlackScholesExactExtremumSampler(double spotPrice, double riskFreeRate, double volatility, double maturity,
+			int numberOfPaths, int seed) {
+		this.spotPrice=spotPrice;
+		this.riskFreeRate=riskFreeRate;
+		this.volatility=volatility;
+		this.maturity=maturity;
+		this.numberOfPaths=numberOfPaths;
+		this.seed=seed;
+	}
+
+	/**
+	 * Creates a sampler with the parameters of a Black–Scholes Monte Carlo model (e.g. a
+	 * {@link net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel}).
+	 *
+	 * @param model           Black–Scholes Monte Carlo simulation model (used to read spot, r and sigma).
+	 * @param underlyingIndex Index of the underlying.
+	 * @param maturity        Option maturity {@code T}.
+	 * @param numberOfPaths   Number of simulated paths.
+	 * @param seed            Seed of the random number generator.
+	 * @return The sampler.
+	 * @throws CalculationException If the spot cannot be obtained from the model.
+	 */
+	public static BlackScholesExactExtremumSampler of(AssetModelMonteCarloSimulationModel model, int underlyingIndex, double maturity,
+			int numberOfPaths, int seed) throws CalculationException {
+		if(!(model instanceof MonteCarloAssetModel) || !(((MonteCarloAssetModel) model).getModel() instanceof BlackScholesModel)) {
+			throw new IllegalArgumentException("Exact extremum sampling requires a Black-Scholes model.");
+		}
+		BlackScholesModel processModel = (BlackScholesModel) ((MonteCarloAssetModel) model).getModel();
+		double spotPrice = model.getAssetValue(0, underlyingIndex).doubleValue();
+		double riskFreeRate = processModel.getRiskFreeRate().doubleValue();
+		double volatility = processModel.getVolatility().doubleValue();
+		return new BlackScholesExactExtremumSampler(spotPrice, riskFreeRate, volatility, maturity, numberOfPaths, seed);
+	}
+
+	/**
+	 * Returns the terminal value {@code S_T}, path by path.
+	 *
+	 * @return The terminal value.
+	 */
+	public RandomVariable getTerminalValue() {
+		generate();
+		return terminalValue;
+	}
+
+	/**
+	 * Returns the continuously monitored maximum {@code M_T}, path by path.
+	 *
+	 * @return The running maximum.
+	 */
+	public RandomVariable getMaximum() {
+		generate();
+		return maximum;
+	}
+
+	/**
+	 * Returns the continuously monitored minimum {@code m_T}, path by path.
+	 *
+	 * @return The running minimum.
+	 */
+	public RandomVariable getMinimum() {
+		generate();
+		return minimum;
+	}
+
+	/**
+	 * Returns the discounted payoff of a continuously monitored lookback, path by path.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The discounted payoff at time 0.
+	 */
+	public RandomVariable getDiscountedPayoff(LookbackPayoff payoff, double strike) {
+		generate();
+		double[] values = new double[numberOfPaths];
+		double discountFactor = Math.exp(-riskFreeRate * maturity);
+		for(int path = 0; path < numberOfPaths; path++) {
+			values[path] = discountFactor * payoff.getPayoff(terminalValue.get(path), maximum.get(path), minimum.get(path), strike);
+		}
+		return new RandomVariableFromDoubleArray(0.0, values);
+	}
+
+	/**
+	 * Returns the Monte Carlo price of a continuously monitored lookback.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The Monte Carlo price at time 0.
+	 */
+	public double getValue(LookbackPayoff payoff, double strike) {
+		return getDiscountedPayoff(payoff, strike).getAverage();
+	}
+
+	/*
+	 * Draws S_T, M_T and m_T for all paths (three random numbers per path).
+	 */
+	private synchronized void generate() {
+		if(terminalValue != null) {
+			return;
+		}
+
+		MersenneTwister randomNumberGenerator = new MersenneTwister(seed);
+		double drift = (riskFreeRate - 0.5 * volatility * volatility) * maturity;
+		double standardDeviation = volatility * Math.sqrt(maturity);
+		double variance = standardDeviation * standardDeviation;
+
+		double[] terminalValues = new double[numberOfPaths];
+		double[] maximumValues = new double[numberOfPaths];
+		double[] minimumValues = new double[numberOfPaths];
+		for(int path = 0; path < numberOfPaths; path++) {
+			// Terminal log-return X_T
+			double uniformForTerminal = randomNumberGenerator.nextDouble();
+			while(uniformForTerminal == 0.0) {
+				uniformForTerminal = randomNumberGenerator.nextDouble();
+			}
+			double logReturn = drift + standardDeviation * NormalDistribution.inverseCumulativeDistribution(uniformForTerminal);
+
+			// Maximum and minimum of the Brownian bridge from 0 to X_T (uniforms on (0, 1])
+			double uniformForMaximum = 1.0 - randomNumberGenerator.nextDouble();
+			double uniformForMinimum = 1.0 - randomNumberGenerator.nextDouble();
+			double logMaximum = 0.5 * (logReturn + Math.sqrt(logReturn * logReturn - 2.0 * variance * Math.log(uniformForMaximum)));
+			double logMinimum = 0.5 * (logReturn - Math.sqrt(logReturn * logReturn - 2.0 * variance * Math.log(uniformForMinimum)));
+
+			terminalValues[path] = spotPrice * Math.exp(logReturn);
+			maximumValues[path] = spotPrice * Math.exp(logMaximum);
+			minimumValues[path] = spotPrice * Math.exp(logMinimum);
+		}
+
+		maximum = new RandomVariableFromDoubleArray(maturity, maximumValues);
+		minimum = new RandomVariableFromDoubleArray(maturity, minimumValues);
+		terminalValue = new RandomVariableFromDoubleArray(maturity, terminalValues);
+	}
+}
@@ -0,0 +1,235 @@
+package it.univr.montecarlo;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.metrics.LookbackMetrics;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Black–Scholes Monte Carlo simulation of the terminal value and of the running extrema of the underlying, for
+ * lookback options on a single underlying.
+ *
+ * <p>Unlike {@link net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel}, which stores the
+ * whole path of the underlying and leaves the extrema to the products, the simulation keeps only the state needed
+ * by the lookback payoffs: blocks of paths are advanced time step by time step by a
+ * {@link BlackScholesBlockGenerator} (SIMD when available), which folds the running maximum and minimum on the
+ * monitoring dates into the same loop. The log-Euler scheme is exact for Black–Scholes, so on the same Brownian
+ * motion the results agree with those of the finmath model up to rounding.
+ *
+ * <p>The blocks are independent and are generated in parallel. The simulation is generated lazily, on the first
+ * request of a result.
+ */
+public class BlackScholesLookbackSimulation {
+
+	// Number of paths of a block: the state of a block (three arrays) stays in the first levels of the cache
+	private static final int BLOCK_SIZE = 1024;
+
+	private final double spotPrice;
+	private final double riskFreeRate;
+	private final double volatility;
+	private final BrownianMotion brownianMotion;
+	private final MonitoringSchedule monitoringSchedule;
+	private final BlackScholesBlockGenerator generator;
+
+	// Lazily generated samples of S_T, M_T and m_T
+	private RandomVariable terminalValue;
+	private RandomVariable maximum;
+	private RandomVariable minimum;
+
+	/**
+	 * Creates the simulation with equidistant monitoring dates and the fastest available generator.
+	 *
+	 * @param spotPrice       Initial underlying value {@code S0}.
+	 * @param riskFreeRate    Constant risk-free rate {@code r}.
+	 * @param volatility      {@code σ}.
+	 * @param brownianMotion  The Brownian motion (its first factor drives the underlying; its time discretization is
+	 *                        the simulation grid, whose last time is the maturity).
+	 * @param discretelyTimes Number of monitoring dates. If {@code 0}, every time of the grid is used.
+	 */
+	public BlackScholesLookbackSimulation(double spotPrice, double riskFreeRate, double volatility, BrownianMotion brownianMotion,
+			int discretelyTimes) {
+		this(spotPrice, riskFreeRate, volatility, brownianMotion, MonitoringSchedule.equidistant(discretelyTimes),
+				BlackScholesBlockGenerator.getInstance());
+	}
+
+	/**
+	 * Creates the simulation.
+	 *
+	 * @param spotPrice          Initial underlying value {@code S0}.
+	 * @param riskFreeRate       Constant risk-free rate {@code r}.
+	 * @param volatility         {@code σ}.
+	 * @param brownianMotion     The Brownian motion (its first factor drives the underlying; its time discretization
+	 *                           is the simulation grid, whose last time is the maturity).
+	 * @param monitoringSchedule Monitoring dates of the extrema.
+	 * @param generator          The block generator, e.g. {@link BlackScholesBlockGenerator#getScalarInstance()}.
+	 */
+	public BlackScholesLookbackSimulation(double spotPrice, double riskFreeRate, double volatility, BrownianMotion brownianMotion,
+			MonitoringSchedule monitoringSchedule, BlackScholesBlockGenerator generator) {
+		this.spotPrice=spotPrice;
+		this.riskFreeRate=riskFreeRate;
+		this.volatility=volatility;
+		this.brownianMotion=brownianMotion;
+		this.monitoringSchedule=monitoringSchedule;
+		this.generator=generator;
+	}
+
+	/**
+	 * Returns the terminal value {@code S_T}, path by path.
+	 *
+	 * @return The terminal value.
+	 */
+	public RandomVariable getTerminalValue() {
+		generate();
+		return terminalValue;
+	}
+
+	/**
+	 * Returns the running maximum {@code M_T} on the monitoring dates, path by path.
+	 *
+	 * @return The running maximum.
+	 */
+	public RandomVariable getMaximum() {
+		generate();
+		return maximum;
+	}
+
+	/**
+	 * Returns the running minimum {@code m_T} on the monitoring dates, path by path.
+	 *
+	 * @return The running minimum.
+	 */
+	public RandomVariable getMinimum() {
+		generate();
+		return minimum;
+	}
+
+	/**
+	 * Returns the discounted payoff of the lookback, path by path.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The discounted payoff at time 0.
+	 */
+	public RandomVariable getDiscountedPayoff(LookbackPayoff payoff, double strike) {
+		generate();
+		long startTime = LookbackMetrics.ENABLED ? System.nanoTime() : 0L;
+		int numberOfPaths = brownianMotion.getNumberOfPaths();
+		double[] values = new double[numberOfPaths];
+		double discountFactor = Math.exp(-riskFreeRate * getMaturity());
+		for(int path = 0; path < numberOfPaths; path++) {
+			values[path] = discountFactor * payoff.getPayoff(terminalValue.get(path), maximum.get(path), minimum.get(path), strike);
+		}
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.DISCOUNTING, startTime);
+		}
+		return new RandomVariableFromDoubleArray(0.0, values);
+	}
+
+	/**
+	 * Returns the Monte Carlo price of the lookback.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The Monte Carlo price at time 0.
+	 */
+	public double getValue(LookbackPayoff payoff, double strike) {
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			return getDiscountedPayoff(payoff, strike).getAverage();
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, brownianMotion.getNumberOfPaths());
+			}
+		}
+	}
+
+	public double getSpotPrice() {
+		return spotPrice;
+	}
+
+	public double getRiskFreeRate() {
+		return riskFreeRate;
+	}
+
+	public double getVolatility() {
+		return volatility;
+	}
+
+	public double getMaturity() {
+		TimeDiscretization times = brownianMotion.getTimeDiscretization();
+		return times.getTime(times.getNumberOfTimeSteps());
+	}
+
+	public BlackScholesBlockGenerator getGenerator() {
+		return generator;
+	}
+
+	/*
+	 * Simulates all the paths, block by block.
+	 */
+	private synchronized void generate() {
+		if(terminalValue != null) {
+			return;
+		}
+
+		long startTime = LookbackMetrics.ENABLED ? System.nanoTime() : 0L;
+		TimeDiscretization times = brownianMotion.getTimeDiscretization();
+		int numberOfTimeSteps = times.getNumberOfTimeSteps();
+		int numberOfPaths = brownianMotion.getNumberOfPaths();
+
+		// Increments, drifts and volatilities of the log-return, by time step
+		double[][] increments = new double[numberOfTimeSteps][];
+		double[] drifts = new double[numberOfTimeSteps];
+		double[] volatilities = new double[numberOfTimeSteps];
+		for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+			increments[timeIndex] = brownianMotion.getBrownianIncrement(timeIndex, 0).getRealizations();
+			drifts[timeIndex] = (riskFreeRate - 0.5 * volatility * volatility) * times.getTimeStep(timeIndex);
+			volatilities[timeIndex] = volatility;
+		}
+
+		// Monitoring dates, as flags of the ends of the time steps
+		MonitoringPlan monitoringPlan = monitoringSchedule.getPlan(times);
+		boolean isMonitoringStart = false;
+		boolean[] isMonitoringEnd = new boolean[numberOfTimeSteps];
+		for(int timeIndex : monitoringPlan.timeIndices) {
+			if(timeIndex == 0) {
+				isMonitoringStart = true;
+			}
+			else {
+				isMonitoringEnd[timeIndex - 1] = true;
+			}
+		}
+
+		double[] logValue = new double[numberOfPaths];
+		double[] logMaximum = new double[numberOfPaths];
+		double[] logMinimum = new double[numberOfPaths];
+		if(!isMonitoringStart) {
+			Arrays.fill(logMaximum, Double.NEGATIVE_INFINITY);
+			Arrays.fill(logMinimum, Double.POSITIVE_INFINITY);
+		}
+
+		int numberOfBlocks = (numberOfPaths + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		IntStream.range(0, numberOfBlocks).parallel().forEach(block -> generator.generate(increments, drifts, volatilities, isMonitoringEnd,
+				block * BLOCK_SIZE, Math.min((block + 1) * BLOCK_SIZE, numberOfPaths), logValue, logMaximum, logMinimum));
+
+		// Prices from the log-returns (in place)
+		double maturity = getMaturity();
+		for(int path = 0; path < numberOfPaths; path++) {
+			logValue[path] = spotPrice * Math.exp(logValue[path]);
+			logMaximum[path] = spotPrice * Math.exp(logMaximum[path]);
+			logMinimum[path] = spotPrice * Math.exp(logMinimum[path]);
+		}
+		maximum = new RandomVariableFromDoubleArray(maturity, logMaximum);
+		minimum = new RandomVariableFromDoubleArray(maturity, logMinimum);
+		terminalValue = new RandomVariableFromDoubleArray(maturity, logValue);
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.PATH_GENERATION, startTime);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package it.univr.montecarlo;
+
+import net.finmath.randomnumbers.MersenneTwister;
+
+/**
+ * Lookback path kernel for the Heston model
+ * <pre>
+ *     dS_t = r S_t dt + sqrt(v_t) S_t dW_t,
+ *     dv_t = κ (θ - v_t) dt + ξ sqrt(v_t) dB_t,     d[W, B]_t = ρ dt.
+ * </pre>
+ *
+ * <p>The variance is discretized with the full truncation Euler scheme and the log-spot with the Euler scheme on
+ * the truncated variance. Log-spot, variance, running extrema and the shadow Black–Scholes path are kept in local
+ * variables of a single loop per path.
+ *
+ * <p>The effective volatility of the control variate is the square root of the average expected variance
+ * {@code θ + (v_0 - θ) (1 - e^(-κT)) / (κT)}.
+ */
+public class HestonLookbackPathKernel extends LookbackPathKernel {
+
+	// Heston parameters
+	private final double initialVariance;
+	private final double meanReversionSpeed;
+	private final double longTermVariance;
+	private final double volatilityOfVariance;
+	private final double correlation;
+
+	/**
+	 * Creates the kernel.
+	 *
+	 * @param spotPrice                   Initial underlying value {@code S0}.
+	 * @param riskFreeRate                Constant risk-free rate {@code r}.
+	 * @param initialVariance             Initial variance {@code v_0}.
+	 * @param meanReversionSpeed          Speed of mean reversion {@code κ}.
+	 * @param longTermVariance            Long-term variance {@code θ}.
+	 * @param volatilityOfVariance        Volatility of the variance {@code ξ}.
+	 * @param correlation                 Correlation {@code ρ} between the underlying and its variance.
+	 * @param maturity                    Option maturity {@code T}.
+	 * @param numberOfTimeSteps           Number of equidistant time steps of the simulation.
+	 * @param numberOfMonitoringIntervals Number of equidistant monitoring intervals (0 = every grid time).
+	 * @param numberOfPaths               Number of simulated paths.
+	 * @param seed                        Seed of the random number generator.
+	 */
+	public HestonLookbackPathKernel(double spotPrice, double riskFreeRate, double initialVariance, double meanReversionSpeed,
+			double longTermVariance, double volatilityOfVariance, double correlation, double maturity, int numberOfTimeSteps,
+			int numberOfMonitoringIntervals, int numberOfPaths, int seed) {
+		super(spotPrice, riskFreeRate, maturity, numberOfTimeSteps, numberOfMonitoringIntervals, numberOfPaths, seed);
+		this.initialVariance=initialVariance;
+		this.meanReversionSpeed=meanReversionSpeed;
+		this.longTermVariance=longTermVariance;
+		this.volatilityOfVariance=volatilityOfVariance;
+		this.correlation=correlation;
+	}
+
+	@Override
+	public double getEffectiveVolatility() {
+		double meanReversionTime = meanReversionSpeed * getMaturity();
+		double weightOfInitialVariance = meanReversionTime > 1E-12 ? (1.0 - Math.exp(-meanReversionTime)) / meanReversionTime : 1.0;
+		return Math.sqrt(longTermVariance + (initialVariance - longTermVariance) * weightOfInitialVariance);
+	}
+
+	@Override
+	protected void simulatePath(MersenneTwister randomNumberGenerator, double[] pathResults) {
+		final int numberOfTimeSteps = getNumberOfTimeSteps();
+		final double timeStep = getMaturity() / numberOfTimeSteps;
+		final double squareRootOfTimeStep = Math.sqrt(timeStep);
+		final double riskFreeRate = getRiskFreeRate();
+		final double orthogonalCorrelation = Math.sqrt(1.0 - correlation * correlation);
+
+		// Shadow Black–Scholes path with the effective volatility
+		final double shadowVolatility = getEffectiveVolatility();
+		final double shadowDrift = (riskFreeRate - 0.5 * shadowVolatility * shadowVolatility) * timeStep;
+		final double shadowDiffusion = shadowVolatility * squareRootOfTimeStep;
+
+		// State of the path: log(S_t / S_0), v_t, running extrema (the inception is a monitoring date)
+		double logSpot = 0.0;
+		double variance = initialVariance;
+		double logMaximum = 0.0;
+		double logMinimum = 0.0;
+		double shadowLogSpot = 0.0;
+		double shadowLogMaximum = 0.0;
+		double shadowLogMinimum = 0.0;
+
+		for(int timeIndex = 1; timeIndex <= numberOfTimeSteps; timeIndex++) {
+			double spotIncrement = nextGaussian(randomNumberGenerator);
+			double varianceIncrement = correlation * spotIncrement + orthogonalCorrelation * nextGaussian(randomNumberGenerator);
+
+			// Full truncation Euler scheme
+			double truncatedVariance = Math.max(variance, 0.0);
+			double volatilityTimesSquareRootOfTimeStep = Math.sqrt(truncatedVariance) * squareRootOfTimeStep;
+			logSpot += (riskFreeRate - 0.5 * truncatedVariance) * timeStep + volatilityTimesSquareRootOfTimeStep * spotIncrement;
+			variance += meanReversionSpeed * (longTermVariance - truncatedVariance) * timeStep
+					+ volatilityOfVariance * volatilityTimesSquareRootOfTimeStep * varianceIncrement;
+
+			// Shadow path driven by the same increment of the underlying
+			shadowLogSpot += shadowDrift + shadowDiffusion * spotIncrement;
+
+			if(isMonitoringTime(timeIndex)) {
+				logMaximum = Math.max(logMaximum, logSpot);
+				logMinimum = Math.min(logMinimum, logSpot);
+				shadowLogMaximum = Math.max(shadowLogMaximum, shadowLogSpot);
+				shadowLogMinimum = Math.min(shadowLogMinimum, shadowLogSpot);
+			}
+		}
+
+		pathResults[LOG_TERMINAL] = logSpot;
+		pathResults[LOG_MAXIMUM] = logMaximum;
+		pathResults[LOG_MINIMUM] = logMinimum;
+		pathResults[SHADOW_LOG_TERMINAL] = shadowLogSpot;
+		pathResults[SHADOW_LOG_MAXIMUM] = shadowLogMaximum;
+		pathResults[SHADOW_LOG_MINIMUM] = shadowLogMinimum;
+	}
+}
@@ -0,0 +1,170 @@
+package it.univr.montecarlo;
+
+import java.util.Arrays;
+
+/**
+ * Least-squares regression on a small number of basis functions, for the continuation values of the
+ * Longstaff-Schwartz algorithm.
+ *
+ * <p>Observations are accumulated one path at a time into the normal equations {@code X'X b = X'y}, which are
+ * solved by a Cholesky factorization. All the arrays are allocated once, at construction, so that
+ * {@link #reset()}, {@link #add(double[], double)}, {@link #solve()} and {@link #evaluate(double[])} perform no
+ * allocation and can be called at every exercise date, also with millions of paths. The basis functions should be
+ * of order one (e.g. prices divided by the initial value) to keep the normal equations well conditioned; a
+ * (numerically) singular direction is dropped from the fit. An instance is not thread-safe.
+ */
+public class LeastSquaresSolver {
+
+	// Relative size of the pivots below which a direction of the basis is considered singular
+	private static final double SINGULARITY_TOLERANCE = 1E-12;
+
+	private final int numberOfBasisFunctions;
+	// Lower triangle of X'X, row by row, overwritten by its Cholesky factor
+	private final double[] normalMatrix;
+	// X'y, overwritten by the coefficients
+	private final double[] coefficients;
+	private int numberOfObservations;
+
+	/**
+	 * Creates a solver for the given number of basis functions.
+	 *
+	 * @param numberOfBasisFunctions The number of basis functions (including the constant, if used).
+	 */
+	public LeastSquaresSolver(int numberOfBasisFunctions) {
+		this.numberOfBasisFunctions = numberOfBasisFunctions;
+		this.normalMatrix = new double[numberOfBasisFunctions * numberOfBasisFunctions];
+		this.coefficients = new double[numberOfBasisFunctions];
+	}
+
+	public int getNumberOfBasisFunctions() {
+		return numberOfBasisFunctions;
+	}
+
+	public int getNumberOfObservations() {
+		return numberOfObservations;
+	}
+
+	/**
+	 * Removes all the observations.
+	 */
+	public void reset() {
+		Arrays.fill(normalMatrix, 0.0);
+		Arrays.fill(coefficients, 0.0);
+		numberOfObservations = 0;
+	}
+
+	/**
+	 * Adds an observation.
+	 *
+	 * @param basisValues The values of the basis functions at the observation.
+	 * @param value       The observed value.
+	 */
+	public void add(double[] basisValues, double value) {
+		for(int i = 0; i < numberOfBasisFunctions; i++) {
+			double basisValue = basisValues[i];
+			int row = i * numberOfBasisFunctions;
+			for(int j = 0; j <= i; j++) {
+				normalMatrix[row + j] += basisValue * basisValues[j];
+			}
+			coefficients[i] += basisValue * value;
+		}
+		numberOfObservations++;
+	}
+
+	/**
+	 * Computes the regression coefficients of the observations added since the last {@link #reset()}.
+	 *
+	 * @return {@code false} if there are fewer observations than basis functions (the coefficients are then zero).
+	 */
+	public boolean solve() {
+		if(numberOfObservations < numberOfBasisFunctions) {
+			Arrays.fill(coefficients, 0.0);
+			return false;
+		}
+
+		// Cholesky factorization X'X = L L' (in place, lower triangle)
+		double largestPivot = 0.0;
+		for(int i = 0; i < numberOfBasisFunctions; i++) {
+			largestPivot = Math.max(largestPivot, normalMatrix[i * numberOfBasisFunctions + i]);
+		}
+		for(int j = 0; j < numberOfBasisFunctions; j++) {
+			int rowJ = j * numberOfBasisFunctions;
+			double pivot = normalMatrix[rowJ + j];
+			for(int k = 0; k < j; k++) {
+				pivot -= normalMatrix[rowJ + k] * normalMatrix[rowJ + k];
+			}
+			if(pivot <= SINGULARITY_TOLERANCE * largestPivot) {
+				// Singular direction (e.g. collinear basis functions): the basis function is dropped
+				normalMatrix[rowJ + j] = 0.0;
+				for(int i = j + 1; i < numberOfBasisFunctions; i++) {
+					normalMatrix[i * numberOfBasisFunctions + j] = 0.0;
+				}
+				continue;
+			}
+			double diagonal = Math.sqrt(pivot);
+			normalMatrix[rowJ + j] = diagonal;
+			for(int i = j + 1; i < numberOfBasisFunctions; i++) {
+				int rowI = i * numberOfBasisFunctions;
+				double value = normalMatrix[rowI + j];
+				for(int k = 0; k < j; k++) {
+					value -= normalMatrix[rowI + k] * normalMatrix[rowJ + k];
+				}
+				normalMatrix[rowI + j] = value / diagonal;
+			}
+		}
+
+		// Forward substitution L z = X'y
+		for(int i = 0; i < numberOfBasisFunctions; i++) {
+			int row = i * numberOfBasisFunctions;
+			double diagonal = normalMatrix[row + i];
+			if(diagonal == 0.0) {
+				coefficients[i] = 0.0;
+				continue;
+			}
+			double value = coefficients[i];
+			for(int k = 0; k < i; k++) {
+				value -= normalMatrix[row + k] * coefficients[k];
+			}
+			coefficients[i] = value / diagonal;
+		}
+
+		// Back substitution L' b = z
+		for(int i = numberOfBasisFunctions - 1; i >= 0; i--) {
+			double diagonal = normalMatrix[i * numberOfBasisFunctions + i];
+			if(diagonal == 0.0) {
+				coefficients[i] = 0.0;
+				continue;
+			}
+			double value = coefficients[i];
+			for(int k = i + 1; k < numberOfBasisFunctions; k++) {
+				value -= normalMatrix[k * numberOfBasisFunctions + i] * coefficients[k];
+			}
+			coefficients[i] = value / diagonal;
+		}
+		return true;
+	}
+
+	/**
+	 * Evaluates the regression function (after {@link #solve()}).
+	 *
+	 * @param basisValues The values of the basis functions.
+	 * @return The fitted value.
+	 */
+	public double evaluate(double[] basisValues) {
+		double value = 0.0;
+		for(int i = 0; i < numberOfBasisFunctions; i++) {
+			value += coefficients[i] * basisValues[i];
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the coefficient of a basis function (after {@link #solve()}).
+	 *
+	 * @param index The index of the basis function.
+	 * @return The coefficient.
+	 */
+	public double getCoefficient(int index) {
+		return coefficients[index];
+	}
+}
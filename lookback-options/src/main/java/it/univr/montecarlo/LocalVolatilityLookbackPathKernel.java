@@ -0,0 +1,125 @@
+package it.univr.montecarlo;
+
+import net.finmath.randomnumbers.MersenneTwister;
+
+/**
+ * Lookback path kernel for the Dupire local volatility model {@code dS_t = r S_t dt + σ(t, S_t) S_t dW_t}.
+ *
+ * <p>The log-spot is discretized with the Euler scheme, the local volatility being evaluated at the beginning of
+ * every step. Log-spot, running extrema and the shadow Black–Scholes path are kept in local variables of a single
+ * loop per path.
+ *
+ * <p>Unless given explicitly, the effective volatility of the control variate is the root mean square of the local
+ * volatility along the forward {@code S_0 e^(rt)} on the simulation grid.
+ */
+public class LocalVolatilityLookbackPathKernel extends LookbackPathKernel {
+
+	private final LocalVolatilitySurface localVolatilitySurface;
+	private final double effectiveVolatility;
+
+	/**
+	 * Creates the kernel with a given effective volatility for the control variate.
+	 *
+	 * @param spotPrice                   Initial underlying value {@code S0}.
+	 * @param riskFreeRate                Constant risk-free rate {@code r}.
+	 * @param localVolatilitySurface      The local volatility surface {@code σ(t, S)}.
+	 * @param effectiveVolatility         Volatility of the shadow Black–Scholes path.
+	 * @param maturity                    Option maturity {@code T}.
+	 * @param numberOfTimeSteps           Number of equidistant time steps of the simulation.
+	 * @param numberOfMonitoringIntervals Number of equidistant monitoring intervals (0 = every grid time).
+	 * @param numberOfPaths               Number of simulated paths.
+	 * @param seed                        Seed of the random number generator.
+	 */
+	public LocalVolatilityLookbackPathKernel(double spotPrice, double riskFreeRate, LocalVolatilitySurface localVolatilitySurface,
+			double effectiveVolatility, double maturity, int numberOfTimeSteps, int numberOfMonitoringIntervals, int numberOfPaths, int seed) {
+		super(spotPrice, riskFreeRate, maturity, numberOfTimeSteps, numberOfMonitoringIntervals, numberOfPaths, seed);
+		this.localVolatilitySurface=localVolatilitySurface;
+		this.effectiveVolatility=effectiveVolatility;
+	}
+
+	/**
+	 * Creates the kernel, with the effective volatility of the control variate given by the local volatility along
+	 * the forward.
+	 *
+	 * @param spotPrice                   Initial underlying value {@code S0}.
+	 * @param riskFreeRate                Constant risk-free rate {@code r}.
+	 * @param localVolatilitySurface      The local volatility surface {@code σ(t, S)}.
+	 * @param maturity                    Option maturity {@code T}.
+	 * @param numberOfTimeSteps           Number of equidistant time steps of the simulation.
+	 * @param numberOfMonitoringIntervals Number of equidistant monitoring intervals (0 = every grid time).
+	 * @param numberOfPaths               Number of simulated paths.
+	 * @param seed                        Seed of the random number generator.
+	 */
+	public LocalVolatilityLookbackPathKernel(double spotPrice, double riskFreeRate, LocalVolatilitySurface localVolatilitySurface,
+			double maturity, int numberOfTimeSteps, int numberOfMonitoringIntervals, int numberOfPaths, int seed) {
+		this(spotPrice, riskFreeRate, localVolatilitySurface,
+				getVolatilityAlongForward(spotPrice, riskFreeRate, localVolatilitySurface, maturity, numberOfTimeSteps),
+				maturity, numberOfTimeSteps, numberOfMonitoringIntervals, numberOfPaths, seed);
+	}
+
+	@Override
+	public double getEffectiveVolatility() {
+		return effectiveVolatility;
+	}
+
+	@Override
+	protected void simulatePath(MersenneTwister randomNumberGenerator, double[] pathResults) {
+		final int numberOfTimeSteps = getNumberOfTimeSteps();
+		final double timeStep = getMaturity() / numberOfTimeSteps;
+		final double squareRootOfTimeStep = Math.sqrt(timeStep);
+		final double riskFreeRate = getRiskFreeRate();
+		final double spotPrice = getSpotPrice();
+
+		// Shadow Black–Scholes path with the effective volatility
+		final double shadowDrift = (riskFreeRate - 0.5 * effectiveVolatility * effectiveVolatility) * timeStep;
+		final double shadowDiffusion = effectiveVolatility * squareRootOfTimeStep;
+
+		// State of the path: log(S_t / S_0), running extrema (the inception is a monitoring date)
+		double logSpot = 0.0;
+		double logMaximum = 0.0;
+		double logMinimum = 0.0;
+		double shadowLogSpot = 0.0;
+		double shadowLogMaximum = 0.0;
+		double shadowLogMinimum = 0.0;
+
+		for(int timeIndex = 1; timeIndex <= numberOfTimeSteps; timeIndex++) {
+			double increment = nextGaussian(randomNumberGenerator);
+
+			// Euler scheme on the log-spot with the local volatility at the beginning of the step
+			double localVolatility = localVolatilitySurface.getLocalVolatility((timeIndex - 1) * timeStep, spotPrice * Math.exp(logSpot));
+			logSpot += (riskFreeRate - 0.5 * localVolatility * localVolatility) * timeStep + localVolatility * squareRootOfTimeStep * increment;
+
+			// Shadow path driven by the same increment
+			shadowLogSpot += shadowDrift + shadowDiffusion * increment;
+
+			if(isMonitoringTime(timeIndex)) {
+				logMaximum = Math.max(logMaximum, logSpot);
+				logMinimum = Math.min(logMinimum, logSpot);
+				shadowLogMaximum = Math.max(shadowLogMaximum, shadowLogSpot);
+				shadowLogMinimum = Math.min(shadowLogMinimum, shadowLogSpot);
+			}
+		}
+
+		pathResults[LOG_TERMINAL] = logSpot;
+		pathResults[LOG_MAXIMUM] = logMaximum;
+		pathResults[LOG_MINIMUM] = logMinimum;
+		pathResults[SHADOW_LOG_TERMINAL] = shadowLogSpot;
+		pathResults[SHADOW_LOG_MAXIMUM] = shadowLogMaximum;
+		pathResults[SHADOW_LOG_MINIMUM] = shadowLogMinimum;
+	}
+
+	/*
+	 * Returns the root mean square of the local volatility along the forward S_0 e^(rt), on the simulation grid.
+	 */
+	private static double getVolatilityAlongForward(double spotPrice, double riskFreeRate, LocalVolatilitySurface localVolatilitySurface,
+			double maturity, int numberOfTimeSteps) {
+		double timeStep = maturity / numberOfTimeSteps;
+		double sumOfVariances = 0.0;
+		for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+			double time = timeIndex * timeStep;
+			double localVolatility = localVolatilitySurface.getLocalVolatility(time, spotPrice * Math.exp(riskFreeRate * time));
+			sumOfVariances += localVolatility * localVolatility;
+		}
+		return Math.sqrt(sumOfVariances / numberOfTimeSteps);
+	}
+}
@@ -0,0 +1,17 @@
+package it.univr.montecarlo;
+
+/**
+ * Dupire local volatility surface {@code σ(t, S)}, as used by {@link LocalVolatilityLookbackPathKernel}.
+ */
+@FunctionalInterface
+public interface LocalVolatilitySurface {
+
+	/**
+	 * Returns the local volatility.
+	 *
+	 * @param time The time {@code t}.
+	 * @param spot The value {@code S} of the underlying.
+	 * @return The local volatility {@code σ(t, S)}.
+	 */
+	double getLocalVolatility(double time, double spot);
+}
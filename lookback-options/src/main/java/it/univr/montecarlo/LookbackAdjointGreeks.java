@@ -0,0 +1,437 @@
+package it.univr.montecarlo;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Monte Carlo price and gradient of single-asset lookback options by adjoint (reverse mode) differentiation of the
+ * simulation, under a Black–Scholes model with piecewise constant volatility and rate.
+ *
+ * <p>The model has buckets {@code [t_b, t_{b+1})} with volatility {@code σ_b} and rate {@code r_b}; a time step of the
+ * simulation belongs to the bucket of its start. As in {@link BlackScholesLookbackSimulation}, the paths are
+ * simulated in log space, in blocks, time step by time step:
+ * {@code X_{j+1} = X_j + (r_b - σ_b^2/2) Δt_j + σ_b ΔW_j}. The price depends on a path only through {@code X_N}
+ * and the running extrema, which are attained at single monitoring dates. Hence the tape of a path is just the
+ * indices of its maximum and minimum: the forward sweep records them, and the payoff derivatives
+ * ({@link LookbackPayoff#getPayoffDerivatives(double, double, double, double, double[])}) seed the adjoints of
+ * {@code X} at the maturity and at those two dates. The reverse sweep runs the time steps backwards, accumulating
+ * the adjoint {@code a_j} of the increment of step {@code j} (the sum of the seeds after it), and adds
+ * <ul>
+ *   <li>{@code a_j (ΔW_j - σ_b Δt_j)} to the vega of the bucket of the step,</li>
+ *   <li>{@code a_j Δt_j} to its rho (to which the derivative of the discount factor is added at the end),</li>
+ * </ul>
+ * while the delta is {@code a_0 / S_0}. One reverse sweep costs about as much as the forward one, so the whole
+ * gradient (spot, and volatility and rate of every bucket) costs a small multiple of one valuation, whatever the
+ * number of buckets, without objects per path or per operation.
+ *
+ * <p>The pathwise derivatives are unbiased for the lookback payoffs, which are Lipschitz in the path. They are
+ * the limit of bump-and-revalue with the same Brownian motion.
+ *
+ * <p>{@link #getGradientWithControlVariate(double)} differentiates the estimator of
+ * {@link LookbackCallFixedWithBSControlVariate}, {@code Z - c (Y - E[Y])}, with the call monitored on every time of
+ * the simulation grid as control: the adjoints of {@code Y} are propagated alongside those of {@code Z}, {@code E[Y]}
+ * and its derivatives are taken from the exact price with one fixing per distinct time of the grid
+ * ({@link DiscretelyMonitoredLookbackPrices}, computed once per strike), and the coefficient {@code c} is held fixed (its derivative multiplies
+ * {@code Y - E[Y]}, whose mean is zero).
+ */
+public class LookbackAdjointGreeks {
+
+	// Number of paths of a block
+	private static final int BLOCK_SIZE = 1024;
+	// Shift of the central differences of the exact expectation of the control variate (relative for the strike)
+	private static final double EXPECTATION_SHIFT = 1E-4;
+	// Positions in the sums of a block: payoff, its square and the adjoint of the spot, then vegas and rhos by bucket
+	private static final int VALUE = 0;
+	private static final int SQUARE = 1;
+	private static final int SPOT = 2;
+	private static final int BUCKETS = 3;
+
+	private final double spotPrice;
+	private final double[] bucketStartTimes;
+	private final double[] volatilities;
+	private final double[] riskFreeRates;
+	private final BrownianMotion brownianMotion;
+	private final MonitoringSchedule monitoringSchedule;
+	// Price, delta, vega and rho of the exact expectation of the control variate, by strike
+	private final Map<Double, double[]> controlExpectations = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates the engine for a model with constant volatility and rate (one bucket).
+	 *
+	 * @param spotPrice          Initial underlying value {@code S0}.
+	 * @param riskFreeRate       Constant risk-free rate {@code r}.
+	 * @param volatility         {@code σ}.
+	 * @param brownianMotion     The Brownian motion (its first factor drives the underlying; its time discretization is
+	 *                           the simulation grid, whose last time is the maturity).
+	 * @param monitoringSchedule Monitoring dates of the extrema.
+	 */
+	public LookbackAdjointGreeks(double spotPrice, double riskFreeRate, double volatility, BrownianMotion brownianMotion,
+			MonitoringSchedule monitoringSchedule) {
+		this(spotPrice, new double[] { 0.0 }, new double[] { volatility }, new double[] { riskFreeRate }, brownianMotion, monitoringSchedule);
+	}
+
+	/**
+	 * Creates the engine for a model with piecewise constant volatility and rate.
+	 *
+	 * @param spotPrice          Initial underlying value {@code S0}.
+	 * @param bucketStartTimes   Increasing start times of the buckets, the first being 0.
+	 * @param volatilities       Volatilities of the buckets.
+	 * @param riskFreeRates      Rates of the buckets.
+	 * @param brownianMotion     The Brownian motion (its first factor drives the underlying; its time discretization is
+	 *                           the simulation grid, whose last time is the maturity).
+	 * @param monitoringSchedule Monitoring dates of the extrema.
+	 */
+	public LookbackAdjointGreeks(double spotPrice, double[] bucketStartTimes, double[] volatilities, double[] riskFreeRates,
+			BrownianMotion brownianMotion, MonitoringSchedule monitoringSchedule) {
+		if(bucketStartTimes.length == 0 || bucketStartTimes[0] != 0.0) {
+			throw new IllegalArgumentException("The first bucket must start at time 0.");
+		}
+		if(volatilities.length != bucketStartTimes.length || riskFreeRates.length != bucketStartTimes.length) {
+			throw new IllegalArgumentException("The model has " + bucketStartTimes.length + " buckets, " + volatilities.length
+					+ " volatilities and " + riskFreeRates.length + " rates.");
+		}
+		this.spotPrice=spotPrice;
+		this.bucketStartTimes=bucketStartTimes.clone();
+		this.volatilities=volatilities.clone();
+		this.riskFreeRates=riskFreeRates.clone();
+		this.brownianMotion=brownianMotion;
+		this.monitoringSchedule=monitoringSchedule;
+	}
+
+	/**
+	 * Returns the Monte Carlo price of a lookback (forward sweep only).
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The price at time 0.
+	 */
+	public double getValue(LookbackPayoff payoff, double strike) {
+		Simulation simulation = new Simulation();
+		double[] sums = simulation.run(payoff, strike, false, false);
+		return simulation.discountFactor * sums[VALUE] / brownianMotion.getNumberOfPaths();
+	}
+
+	/**
+	 * Returns the Monte Carlo price of a lookback and its gradient.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return Price, delta and the vegas and rhos of the buckets.
+	 */
+	public LookbackGradient getGradient(LookbackPayoff payoff, double strike) {
+		Simulation simulation = new Simulation();
+		double[] sums = simulation.run(payoff, strike, true, false);
+		return simulation.getGradient(sums, 0);
+	}
+
+	/**
+	 * Returns price and gradient of the control variate estimator of a fixed-strike lookback call (see
+	 * {@link LookbackCallFixedWithBSControlVariate}): the call monitored on the dates of the schedule, with the call
+	 * monitored on every time of the simulation grid as control. Needs a model with one bucket on a grid whose distinct
+	 * times are equidistant.
+	 *
+	 * @param strike The strike {@code K}.
+	 * @return Price, delta, vega and rho of the estimator.
+	 */
+	public LookbackGradient getGradientWithControlVariate(double strike) {
+		if(bucketStartTimes.length != 1) {
+			throw new IllegalStateException("The control variate needs constant volatility and rate (one bucket).");
+		}
+		int numberOfMonitoringIntervals = LookbackCallFixedWithBSControlVariate.getNumberOfMonitoringIntervals(brownianMotion.getTimeDiscretization());
+		if(numberOfMonitoringIntervals == 0) {
+			throw new IllegalStateException("The control variate needs a time discretization with equidistant distinct times.");
+		}
+		Simulation simulation = new Simulation();
+		double[] sums = simulation.run(LookbackPayoff.CALL_FIXED_STRIKE, strike, true, true);
+		int numberOfPaths = brownianMotion.getNumberOfPaths();
+		LookbackGradient target = simulation.getGradient(sums, 0);
+		LookbackGradient control = simulation.getGradient(sums, simulation.setSize);
+
+		// c = Cov(Z, Y) / Var(Y) of the undiscounted payoffs
+		double meanTarget = sums[VALUE] / numberOfPaths;
+		double meanControl = sums[simulation.setSize + VALUE] / numberOfPaths;
+		double covariance = sums[2 * simulation.setSize] / numberOfPaths - meanTarget * meanControl;
+		double variance = sums[simulation.setSize + SQUARE] / numberOfPaths - meanControl * meanControl;
+		double coefficient = variance > 0.0 ? covariance / variance : 0.0;
+
+		// E[Y] and its derivatives from the exact price of the call monitored on the distinct times of the grid
+		double[] expectation = controlExpectations.computeIfAbsent(strike,
+				key -> getControlExpectation(key, simulation.maturity, numberOfMonitoringIntervals));
+
+		return new LookbackGradient(
+				target.getValue() - coefficient * (control.getValue() - expectation[0]),
+				target.getDelta() - coefficient * (control.getDelta() - expectation[1]),
+				new double[] { target.getVega(0) - coefficient * (control.getVega(0) - expectation[2]) },
+				new double[] { target.getRho(0) - coefficient * (control.getRho(0) - expectation[3]) });
+	}
+
+	/*
+	 * Price, delta, vega and rho of the exact price of the fixed-strike call with the given number of monitoring
+	 * intervals. Price and delta come from one recursion (the delta by homogeneity in spot and strike), vega and rho
+	 * from central differences.
+	 */
+	private double[] getControlExpectation(double strike, double maturity, int numberOfMonitoringIntervals) {
+		double volatility = volatilities[0];
+		double riskFreeRate = riskFreeRates[0];
+		double[] valueAndDelta = DiscretelyMonitoredLookbackPrices.lookbackCallFixedStrikeValueAndDelta(spotPrice, riskFreeRate, volatility, maturity,
+				strike, numberOfMonitoringIntervals, EXPECTATION_SHIFT);
+		double vega = (DiscretelyMonitoredLookbackPrices.lookbackCallFixedStrike(spotPrice, riskFreeRate, volatility + EXPECTATION_SHIFT, maturity, strike, numberOfMonitoringIntervals)
+				- DiscretelyMonitoredLookbackPrices.lookbackCallFixedStrike(spotPrice, riskFreeRate, volatility - EXPECTATION_SHIFT, maturity, strike, numberOfMonitoringIntervals)) / (2.0 * EXPECTATION_SHIFT);
+		double rho = (DiscretelyMonitoredLookbackPrices.lookbackCallFixedStrike(spotPrice, riskFreeRate + EXPECTATION_SHIFT, volatility, maturity, strike, numberOfMonitoringIntervals)
+				- DiscretelyMonitoredLookbackPrices.lookbackCallFixedStrike(spotPrice, riskFreeRate - EXPECTATION_SHIFT, volatility, maturity, strike, numberOfMonitoringIntervals)) / (2.0 * EXPECTATION_SHIFT);
+		return new double[] { valueAndDelta[0], valueAndDelta[1], vega, rho };
+	}
+
+	public double getSpotPrice() {
+		return spotPrice;
+	}
+
+	public int getNumberOfBuckets() {
+		return bucketStartTimes.length;
+	}
+
+	/*
+	 * Simulation grid and model on it, and the sweeps over the blocks of paths.
+	 */
+	private final class Simulation {
+		final int numberOfTimeSteps;
+		final double maturity;
+		final double[][] increments;
+		final double[] timeSteps;
+		final double[] drifts;
+		final double[] stepVolatilities;
+		final int[] stepBuckets;
+		final boolean[] isMonitoringEnd;
+		final boolean isMonitoringStart;
+		// Length of the buckets within [0, T], and the discount factor
+		final double[] bucketLengths;
+		final double discountFactor;
+		// Size of the sums of one payoff; the sums of the control follow those of the target
+		final int setSize = BUCKETS + 2 * bucketStartTimes.length;
+
+		Simulation() {
+			TimeDiscretization times = brownianMotion.getTimeDiscretization();
+			numberOfTimeSteps = times.getNumberOfTimeSteps();
+			maturity = times.getTime(numberOfTimeSteps);
+			increments = new double[numberOfTimeSteps][];
+			timeSteps = new double[numberOfTimeSteps];
+			drifts = new double[numberOfTimeSteps];
+			stepVolatilities = new double[numberOfTimeSteps];
+			stepBuckets = new int[numberOfTimeSteps];
+			bucketLengths = new double[bucketStartTimes.length];
+			double integratedRate = 0.0;
+			for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+				int bucket = Arrays.binarySearch(bucketStartTimes, times.getTime(timeIndex));
+				bucket = bucket >= 0 ? bucket : -bucket - 2;
+				increments[timeIndex] = brownianMotion.getBrownianIncrement(timeIndex, 0).getRealizations();
+				timeSteps[timeIndex] = times.getTimeStep(timeIndex);
+				stepBuckets[timeIndex] = bucket;
+				stepVolatilities[timeIndex] = volatilities[bucket];
+				drifts[timeIndex] = (riskFreeRates[bucket] - 0.5 * volatilities[bucket] * volatilities[bucket]) * timeSteps[timeIndex];
+				bucketLengths[bucket] += timeSteps[timeIndex];
+				integratedRate += riskFreeRates[bucket] * timeSteps[timeIndex];
+			}
+			discountFactor = Math.exp(-integratedRate);
+
+			// Monitoring dates, as flags of the ends of the time steps
+			boolean isStart = false;
+			isMonitoringEnd = new boolean[numberOfTimeSteps];
+			for(int timeIndex : monitoringSchedule.getPlan(times).timeIndices) {
+				if(timeIndex == 0) {
+					isStart = true;
+				}
+				else {
+					isMonitoringEnd[timeIndex - 1] = true;
+				}
+			}
+			isMonitoringStart = isStart;
+		}
+
+		/*
+		 * Sums over all the paths, block by block (in parallel, added in block order).
+		 */
+		double[] run(LookbackPayoff payoff, double strike, boolean isAdjoint, boolean isControlVariate) {
+			int numberOfPaths = brownianMotion.getNumberOfPaths();
+			int numberOfBlocks = (numberOfPaths + BLOCK_SIZE - 1) / BLOCK_SIZE;
+			double[][] blockSums = IntStream.range(0, numberOfBlocks).parallel()
+					.mapToObj(block -> runBlock(payoff, strike, isAdjoint, isControlVariate, block * BLOCK_SIZE, Math.min((block + 1) * BLOCK_SIZE, numberOfPaths)))
+					.toArray(double[][]::new);
+			double[] sums = new double[2 * setSize + 1];
+			for(double[] blockSum : blockSums) {
+				for(int i = 0; i < sums.length; i++) {
+					sums[i] += blockSum[i];
+				}
+			}
+			return sums;
+		}
+
+		/*
+		 * Forward and (if requested) reverse sweep of the paths fromPath, ..., toPath - 1.
+		 */
+		double[] runBlock(LookbackPayoff payoff, double strike, boolean isAdjoint, boolean isControlVariate, int fromPath, int toPath) {
+			int size = toPath - fromPath;
+			double[] sums = new double[2 * setSize + 1];
+
+			// ==================== FORWARD SWEEP ====================
+			double[] logValue = new double[size];
+			double[] logMaximum = new double[size];
+			double[] logMinimum = new double[size];
+			int[] maximumIndex = new int[size];
+			int[] minimumIndex = new int[size];
+			if(!isMonitoringStart) {
+				Arrays.fill(logMaximum, Double.NEGATIVE_INFINITY);
+				Arrays.fill(logMinimum, Double.POSITIVE_INFINITY);
+				Arrays.fill(maximumIndex, -1);
+				Arrays.fill(minimumIndex, -1);
+			}
+			// Maximum on every time of the grid, for the control variate
+			double[] logGridMaximum = isControlVariate ? new double[size] : null;
+			int[] gridMaximumIndex = isControlVariate ? new int[size] : null;
+
+			for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+				double[] brownianIncrement = increments[timeIndex];
+				double drift = drifts[timeIndex];
+				double volatility = stepVolatilities[timeIndex];
+				boolean isMonitoring = isMonitoringEnd[timeIndex];
+				for(int i = 0; i < size; i++) {
+					double value = logValue[i] + (volatility * brownianIncrement[fromPath + i] + drift);
+					logValue[i] = value;
+					if(isMonitoring) {
+						if(value > logMaximum[i]) {
+							logMaximum[i] = value;
+							maximumIndex[i] = timeIndex + 1;
+						}
+						if(value < logMinimum[i]) {
+							logMinimum[i] = value;
+							minimumIndex[i] = timeIndex + 1;
+						}
+					}
+					if(isControlVariate && value > logGridMaximum[i]) {
+						logGridMaximum[i] = value;
+						gridMaximumIndex[i] = timeIndex + 1;
+					}
+				}
+			}
+
+			// ==================== PAYOFFS AND SEEDS ====================
+			// Adjoints of X at the maturity, at the maximum and at the minimum (d payoff / d X = d payoff / d S times S)
+			double[] terminalSeeds = isAdjoint ? new double[size] : null;
+			double[] maximumSeeds = isAdjoint ? new double[size] : null;
+			double[] minimumSeeds = isAdjoint ? new double[size] : null;
+			double[] gridMaximumSeeds = isControlVariate ? new double[size] : null;
+			double[] derivatives = new double[3];
+			for(int i = 0; i < size; i++) {
+				double terminalValue = spotPrice * Math.exp(logValue[i]);
+				double maximum = spotPrice * Math.exp(logMaximum[i]);
+				double minimum = spotPrice * Math.exp(logMinimum[i]);
+				double value = payoff.getPayoff(terminalValue, maximum, minimum, strike);
+				sums[VALUE] += value;
+				sums[SQUARE] += value * value;
+				if(isAdjoint) {
+					payoff.getPayoffDerivatives(terminalValue, maximum, minimum, strike, derivatives);
+					terminalSeeds[i] = derivatives[0] * terminalValue;
+					maximumSeeds[i] = derivatives[1] * maximum;
+					minimumSeeds[i] = derivatives[2] * minimum;
+				}
+				if(isControlVariate) {
+					double gridMaximum = spotPrice * Math.exp(logGridMaximum[i]);
+					double control = Math.max(gridMaximum - strike, 0.0);
+					sums[setSize + VALUE] += control;
+					sums[setSize + SQUARE] += control * control;
+					sums[2 * setSize] += value * control;
+					gridMaximumSeeds[i] = gridMaximum > strike ? gridMaximum : 0.0;
+				}
+			}
+			if(!isAdjoint) {
+				return sums;
+			}
+
+			// ==================== REVERSE SWEEP ====================
+			double[] adjoints = terminalSeeds;
+			double[] controlAdjoints = isControlVariate ? new double[size] : null;
+			for(int timeIndex = numberOfTimeSteps - 1; timeIndex >= 0; timeIndex--) {
+				double[] brownianIncrement = increments[timeIndex];
+				int index = timeIndex + 1;
+				double adjointSum = 0.0;
+				double adjointIncrementSum = 0.0;
+				for(int i = 0; i < size; i++) {
+					double adjoint = adjoints[i];
+					if(maximumIndex[i] == index) {
+						adjoint += maximumSeeds[i];
+					}
+					if(minimumIndex[i] == index) {
+						adjoint += minimumSeeds[i];
+					}
+					adjoints[i] = adjoint;
+					adjointSum += adjoint;
+					adjointIncrementSum += adjoint * brownianIncrement[fromPath + i];
+				}
+				addStepAdjoints(sums, 0, timeIndex, adjointSum, adjointIncrementSum);
+
+				if(isControlVariate) {
+					adjointSum = 0.0;
+					adjointIncrementSum = 0.0;
+					for(int i = 0; i < size; i++) {
+						double adjoint = controlAdjoints[i];
+						if(gridMaximumIndex[i] == index) {
+							adjoint += gridMaximumSeeds[i];
+						}
+						controlAdjoints[i] = adjoint;
+						adjointSum += adjoint;
+						adjointIncrementSum += adjoint * brownianIncrement[fromPath + i];
+					}
+					addStepAdjoints(sums, setSize, timeIndex, adjointSum, adjointIncrementSum);
+				}
+			}
+
+			// Adjoint of X_0 = log(S_0 / S_0): the seeds of extrema attained at time 0 included
+			for(int i = 0; i < size; i++) {
+				double adjoint = adjoints[i];
+				if(maximumIndex[i] == 0) {
+					adjoint += maximumSeeds[i];
+				}
+				if(minimumIndex[i] == 0) {
+					adjoint += minimumSeeds[i];
+				}
+				sums[SPOT] += adjoint / spotPrice;
+				if(isControlVariate) {
+					sums[setSize + SPOT] += (controlAdjoints[i] + (gridMaximumIndex[i] == 0 ? gridMaximumSeeds[i] : 0.0)) / spotPrice;
+				}
+			}
+			return sums;
+		}
+
+		/*
+		 * Adds the contributions of a time step to the vega and rho sums of its bucket.
+		 */
+		void addStepAdjoints(double[] sums, int offset, int timeIndex, double adjointSum, double adjointIncrementSum) {
+			int bucket = stepBuckets[timeIndex];
+			double timeStep = timeSteps[timeIndex];
+			sums[offset + BUCKETS + bucket] += adjointIncrementSum - stepVolatilities[timeIndex] * timeStep * adjointSum;
+			sums[offset + BUCKETS + bucketStartTimes.length + bucket] += timeStep * adjointSum;
+		}
+
+		/*
+		 * Discounted means of the sums of a payoff, with the derivative of the discount factor added to the rhos.
+		 */
+		LookbackGradient getGradient(double[] sums, int offset) {
+			int numberOfPaths = brownianMotion.getNumberOfPaths();
+			int numberOfBuckets = bucketStartTimes.length;
+			double value = discountFactor * sums[offset + VALUE] / numberOfPaths;
+			double[] vegas = new double[numberOfBuckets];
+			double[] rhos = new double[numberOfBuckets];
+			for(int bucket = 0; bucket < numberOfBuckets; bucket++) {
+				vegas[bucket] = discountFactor * sums[offset + BUCKETS + bucket] / numberOfPaths;
+				rhos[bucket] = discountFactor * sums[offset + BUCKETS + numberOfBuckets + bucket] / numberOfPaths - bucketLengths[bucket] * value;
+			}
+			return new LookbackGradient(value, discountFactor * sums[offset + SPOT] / numberOfPaths, vegas, rhos);
+		}
+	}
+}
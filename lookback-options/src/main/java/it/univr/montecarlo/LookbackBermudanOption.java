@@ -0,0 +1,190 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.metrics.LookbackMetrics;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Monte Carlo product implementing a lookback option with Bermudan exercise, valued by the Longstaff-Schwartz
+ * algorithm.
+ *
+ * <p>At every monitoring date before maturity the holder may exercise and receive the lookback payoff computed on
+ * the monitoring dates up to the exercise date, e.g. {@code S_t - m_t} for the floating-strike call or
+ * {@code M_t - K} for the fixed-strike call; otherwise the payoff is received at maturity.
+ *
+ * <p>The continuation value at an exercise date is the regression of the realized (discounted) cashflows on the
+ * functions of the underlying and of its running extremum
+ * ({@link #getExtremumBasisFunctions(double, double, double[])}), fitted on the in-the-money paths with a
+ * {@link LeastSquaresSolver}, which does not allocate at the exercise dates. The regression and the valuation use
+ * the same paths, so the price carries the small foresight bias of the Longstaff-Schwartz estimator.
+ */
+public class LookbackBermudanOption extends LookbackOption {
+	// Lookback payoff received at exercise
+	private final LookbackPayoff payoff;
+	// Option maturity T
+	private final double maturity;
+	// Fixed strike K (ignored by the floating-strike payoffs)
+	private final double strike;
+	// Underlying index (multi-asset models)
+	private final int underlyingIndex;
+	// Monitoring dates, which are also the exercise dates
+	private final MonitoringSchedule monitoringSchedule;
+
+	/**
+	 * Creates a Bermudan lookback option on the first underlying (index 0), exercisable at its monitoring dates.
+	 *
+	 * @param payoff          The lookback payoff.
+	 * @param maturity        Option maturity {@code T}.
+	 * @param strike          Fixed strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param discretelyTimes Number of monitoring (and exercise) dates.
+	 *                        If {@code 0}, the full model time grid is used.
+	 */
+	public LookbackBermudanOption(LookbackPayoff payoff, double maturity, double strike, int discretelyTimes) {
+		this(payoff, maturity, strike, 0, MonitoringSchedule.equidistant(discretelyTimes));
+	}
+
+	/**
+	 * Creates a Bermudan lookback option on a specific underlying index, exercisable at the dates of the schedule.
+	 *
+	 * @param payoff             The lookback payoff.
+	 * @param maturity           Option maturity {@code T}.
+	 * @param strike             Fixed strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param monitoringSchedule Monitoring dates, which are also the exercise dates.
+	 */
+	public LookbackBermudanOption(LookbackPayoff payoff, double maturity, double strike, int underlyingIndex, MonitoringSchedule monitoringSchedule) {
+		this.payoff=payoff;
+		this.maturity=maturity;
+		this.strike=strike;
+		this.underlyingIndex=underlyingIndex;
+		this.monitoringSchedule=monitoringSchedule;
+	}
+
+	/**
+	 * Evaluates the discounted value of the product at a given evaluation time.
+	 *
+	 * <p>The method:
+	 * <ol>
+	 *   <li>computes the running extremum of the underlying at every monitoring date;</li>
+	 *   <li>sets the cashflow of every path to the payoff at maturity;</li>
+	 *   <li>going backward over the exercise dates, regresses the cashflows on the basis functions and replaces
+	 *       them by the exercise value on the paths where it exceeds the estimated continuation value;</li>
+	 *   <li>discounts the cashflows, each from its exercise date, to {@code evaluationTime}.</li>
+	 * </ol>
+	 *
+	 * @param evaluationTime Time {@code t} at which the value is returned.
+	 * @param model          Monte Carlo simulation model providing the underlying paths and numeraires.
+	 * @return A {@link RandomVariable} containing the discounted payoff value path-by-path at {@code evaluationTime}.
+	 */
+	@Override
+	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			MonitoringPlan monitoringPlan = monitoringSchedule.getPlan(model.getTimeDiscretization());
+			boolean isMaximum = payoff == LookbackPayoff.CALL_FIXED_STRIKE || payoff == LookbackPayoff.PUT_FLOATING_STRIKE;
+			RandomVariable[] runningExtrema = getRunningExtrema(monitoringPlan, model, underlyingIndex, isMaximum);
+
+			// Last monitoring date not after maturity
+			int maturityIndex = model.getTimeIndex(maturity);
+			int lastDate = monitoringPlan.getNumberOfDates() - 1;
+			while(lastDate > 0 && monitoringPlan.getTimeIndex(lastDate) > maturityIndex) {
+				lastDate--;
+			}
+
+			int numberOfPaths = model.getNumberOfPaths();
+			double initialValue = model.getAssetValue(0, underlyingIndex).get(0);
+
+			// Cashflows in units of the numeraire (times the Monte Carlo weights), starting from the payoff at maturity
+			double[] cashflows = new double[numberOfPaths];
+			RandomVariable finalValue = model.getAssetValue(maturityIndex, underlyingIndex);
+			RandomVariable numeraireAtMaturity = model.getNumeraire(maturity);
+			RandomVariable weightsAtMaturity = model.getMonteCarloWeights(maturity);
+			for(int path = 0; path < numberOfPaths; path++) {
+				double exerciseValue = getExerciseValue(finalValue.get(path), runningExtrema[lastDate].get(path));
+				cashflows[path] = Math.max(exerciseValue, 0.0) * weightsAtMaturity.get(path) / numeraireAtMaturity.get(path);
+			}
+
+			// Backward induction over the exercise dates before maturity
+			LeastSquaresSolver solver = new LeastSquaresSolver(NUMBER_OF_EXTREMUM_BASIS_FUNCTIONS);
+			double[] basisValues = new double[NUMBER_OF_EXTREMUM_BASIS_FUNCTIONS];
+			for(int date = lastDate; date >= 0; date--) {
+				int timeIndex = monitoringPlan.getTimeIndex(date);
+				if(timeIndex <= 0 || timeIndex >= maturityIndex) {
+					continue;
+				}
+				double exerciseTime = monitoringPlan.getTime(date);
+				RandomVariable underlying = model.getAssetValue(timeIndex, underlyingIndex);
+				RandomVariable extremum = runningExtrema[date];
+				RandomVariable numeraire = model.getNumeraire(exerciseTime);
+				RandomVariable weights = model.getMonteCarloWeights(exerciseTime);
+
+				// Regression of the cashflows (valued at the exercise date) on the in-the-money paths
+				solver.reset();
+				for(int path = 0; path < numberOfPaths; path++) {
+					double exerciseValue = getExerciseValue(underlying.get(path), extremum.get(path));
+					if(exerciseValue > 0.0) {
+						getExtremumBasisFunctions(underlying.get(path) / initialValue, extremum.get(path) / initialValue, basisValues);
+						solver.add(basisValues, cashflows[path] * numeraire.get(path) / weights.get(path));
+					}
+				}
+				if(!solver.solve()) {
+					continue;
+				}
+
+				// Exercise where the exercise value exceeds the continuation value
+				for(int path = 0; path < numberOfPaths; path++) {
+					double exerciseValue = getExerciseValue(underlying.get(path), extremum.get(path));
+					if(exerciseValue > 0.0) {
+						getExtremumBasisFunctions(underlying.get(path) / initialValue, extremum.get(path) / initialValue, basisValues);
+						if(exerciseValue > solver.evaluate(basisValues)) {
+							cashflows[path] = exerciseValue * weights.get(path) / numeraire.get(path);
+						}
+					}
+				}
+			}
+
+			// Discount the cashflows to evaluationTime
+			return new RandomVariableFromDoubleArray(evaluationTime, cashflows)
+					.mult(model.getNumeraire(evaluationTime)).div(model.getMonteCarloWeights(evaluationTime));
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, model.getNumberOfPaths());
+			}
+		}
+	}
+
+	/*
+	 * Lookback payoff for the given underlying value and running extremum (maximum for the fixed-strike call and
+	 * the floating-strike put, minimum otherwise).
+	 */
+	private double getExerciseValue(double underlying, double extremum) {
+		switch(payoff) {
+		case CALL_FIXED_STRIKE:
+			return extremum - strike;
+		case PUT_FIXED_STRIKE:
+			return strike - extremum;
+		case CALL_FLOATING_STRIKE:
+			return underlying - extremum;
+		case PUT_FLOATING_STRIKE:
+			return extremum - underlying;
+		default:
+			throw new IllegalArgumentException("Unknown payoff " + payoff);
+		}
+	}
+
+	public LookbackPayoff getPayoff() {
+		return payoff;
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+}
@@ -1,5 +1,6 @@
 package it.univr.montecarlo;
 
+import it.univr.metrics.LookbackMetrics;
 import net.finmath.exception.CalculationException;
 import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
 import net.finmath.stochastic.RandomVariable;
@@ -12,7 +13,8 @@ import net.finmath.stochastic.RandomVariable;
  * {@code max(M_T - K, 0)}, where {@code M_T = max_{t in [0,T]} S_t}.
  *
  * <p>For the discretely monitored version, the maximum is computed only on a finite set of
- * monitoring dates (a subset of the model time grid), controlled by {@code discretelyTimes}.
+ * monitoring dates (a subset of the model time grid), controlled by {@code discretelyTimes}, or
+ * on an arbitrary {@link MonitoringSchedule} (partial-period window, fixing calendar).
  *
  */
 public class LookbackCallFixedStrike extends LookbackOption {
@@ -23,8 +25,8 @@ public class LookbackCallFixedStrike extends LookbackOption {
 	private double strike;
 	// Underlying index (useful for multi-asset models)
 	private int underlyingIndex;
-	// Number of monitoring dates for discrete monitoring (0 = use full time grid)
-	private int discretelyTimes;
+	// Monitoring dates (full time grid, equidistant dates, window or fixing calendar)
+	private MonitoringSchedule monitoringSchedule;
 
 
 	/**
@@ -39,7 +41,7 @@ public class LookbackCallFixedStrike extends LookbackOption {
 		this.maturity=maturity;
 		this.strike=strike;
 		this.underlyingIndex=0;
-		this.discretelyTimes=discretelyTimes;
+		this.monitoringSchedule=MonitoringSchedule.equidistant(discretelyTimes);
 	}
 
 	/**
@@ -53,7 +55,7 @@ public class LookbackCallFixedStrike extends LookbackOption {
 		this.maturity=maturity;
 		this.strike=strike;
 		this.underlyingIndex=0;
-		this.discretelyTimes=0;
+		this.monitoringSchedule=MonitoringSchedule.continuous();
 	}
 
 	/**
@@ -68,7 +70,7 @@ public class LookbackCallFixedStrike extends LookbackOption {
 		this.maturity=maturity;
 		this.strike=strike;
 		this.underlyingIndex=underlyingIndex;
-		this.discretelyTimes=0;
+		this.monitoringSchedule=MonitoringSchedule.continuous();
 	}
 
 	/**
@@ -84,18 +86,33 @@ public class LookbackCallFixedStrike extends LookbackOption {
 		this.maturity=maturity;
 		this.strike=strike;
 		this.underlyingIndex=underlyingIndex;
-		this.discretelyTimes=discretelyTimes;
+		this.monitoringSchedule=MonitoringSchedule.equidistant(discretelyTimes);
 	}
 
 
 
 
+	/**
+	 * Creates a fixed-strike lookback call on a specific underlying index, monitored on the given schedule.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param strike             Fixed strike {@code K}.
+	 * @param monitoringSchedule Monitoring dates used to compute the running maximum.
+	 */
+	public LookbackCallFixedStrike(double maturity, int underlyingIndex, double strike, MonitoringSchedule monitoringSchedule) {
+		this.maturity=maturity;
+		this.strike=strike;
+		this.underlyingIndex=underlyingIndex;
+		this.monitoringSchedule=monitoringSchedule;
+	}
+
 	/**
 	 * Evaluates the discounted value of the product at a given evaluation time.
 	 *
 	 * <p>The method:
 	 * <ol>
-	 *   <li>builds the monitoring time grid (full grid if {@code discretelyTimes == 0});</li>
+	 *   <li>retrieves the monitoring plan of the schedule on the model grid (compiled once and cached);</li>
 	 *   <li>computes the pathwise running maximum of the underlying over the monitoring grid;</li>
 	 *   <li>computes the payoff {@code max(maxUnderlying - K, 0)} at maturity;</li>
 	 *   <li>discounts the payoff from maturity to {@code evaluationTime} using numeraire and Monte Carlo weights.</li>
@@ -107,24 +124,23 @@ public class LookbackCallFixedStrike extends LookbackOption {
 	 */
 	@Override
 	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
-		double[] discretizedTimes = buildMonitoringTimes(discretelyTimes, model);
-
-		// Pathwise running maximum M_T over the monitoring grid
-		RandomVariable maxValue = getMax(discretizedTimes, model, underlyingIndex);
-		// Payoff at maturity: max(M_T - K, 0)
-		RandomVariable values = maxValue.sub(strike).floor(0.0);
-
-		// Discount payoff from maturity to evaluationTime using numeraire and Monte Carlo weights
-		final RandomVariable numeraireAtMaturity = model.getNumeraire(maturity);
-		final RandomVariable monteCarloWeights = model.getMonteCarloWeights(maturity);
-		values = values.div(numeraireAtMaturity).mult(monteCarloWeights);
-
-		// ...to evaluation time.
-		final RandomVariable numeraireAtEvalTime = model.getNumeraire(evaluationTime);
-		final RandomVariable monteCarloWeightsAtEvalTime = model.getMonteCarloWeights(evaluationTime);
-		values = values.mult(numeraireAtEvalTime).div(monteCarloWeightsAtEvalTime);
-	
-		return values;
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			MonitoringPlan monitoringPlan = monitoringSchedule.getPlan(model.getTimeDiscretization());
+
+			// Pathwise running maximum M_T over the monitoring grid
+			RandomVariable maxValue = getMax(monitoringPlan, model, underlyingIndex);
+			// Payoff at maturity: max(M_T - K, 0)
+			RandomVariable values = maxValue.sub(strike).floor(0.0);
+
+			// Discount payoff from maturity to evaluationTime using numeraire and Monte Carlo weights
+			return discount(values, maturity, evaluationTime, model);
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, model.getNumberOfPaths());
+			}
+		}
 	}
 	
 }
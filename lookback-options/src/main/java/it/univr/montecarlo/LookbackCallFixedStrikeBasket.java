@@ -0,0 +1,77 @@
+package it.univr.montecarlo;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Monte Carlo product implementing a fixed-strike lookback call on a weighted basket.
+ *
+ * <p>Payoff: {@code max(max_t B(t) - K, 0)}, where {@code B(t) = sum_i w_i S_i(t)} is the weighted basket.
+ *
+ * <p>For the discretely monitored version, the maximum is computed only on a finite set of
+ * monitoring dates (a subset of the model time grid), controlled by {@code discretelyTimes}.
+ */
+public class LookbackCallFixedStrikeBasket extends MultiAssetLookbackOption {
+
+	// Fixed strike K
+	private final double strike;
+
+	/**
+	 * Creates a discretely monitored fixed-strike lookback call on a basket.
+	 *
+	 * @param maturity        Option maturity {@code T}.
+	 * @param weights         Basket weights {@code w_i}, one per asset of the model.
+	 * @param strike          Fixed strike {@code K}.
+	 * @param discretelyTimes Number of monitoring dates. If {@code 0}, the full model time grid is used.
+	 */
+	public LookbackCallFixedStrikeBasket(double maturity, double[] weights, double strike, int discretelyTimes) {
+		super(maturity, weights, discretelyTimes);
+		this.strike=strike;
+	}
+
+	/**
+	 * Creates a fixed-strike lookback call on a basket using the full model time grid
+	 * (i.e. continuous monitoring).
+	 *
+	 * @param maturity Option maturity {@code T}.
+	 * @param weights  Basket weights {@code w_i}, one per asset of the model.
+	 * @param strike   Fixed strike {@code K}.
+	 */
+	public LookbackCallFixedStrikeBasket(double maturity, double[] weights, double strike) {
+		this(maturity, weights, strike, 0);
+	}
+
+	/**
+	 * Creates a fixed-strike lookback call on a basket monitored on the given schedule.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param weights            Basket weights {@code w_i}, one per asset of the model.
+	 * @param strike             Fixed strike {@code K}.
+	 * @param monitoringSchedule Monitoring dates used to compute the running maximum.
+	 */
+	public LookbackCallFixedStrikeBasket(double maturity, double[] weights, double strike, MonitoringSchedule monitoringSchedule) {
+		super(maturity, weights, monitoringSchedule);
+		this.strike=strike;
+	}
+
+	/**
+	 * Evaluates the discounted value of the product at a given evaluation time, using the
+	 * pathwise running maximum of the basket computed by {@link #getExtrema(int[], AssetModelMonteCarloSimulationModel)}.
+	 *
+	 * @param evaluationTime Time {@code t} at which the value is returned.
+	 * @param model          Multi-asset Monte Carlo simulation model providing the underlying paths and numeraires.
+	 * @return A {@link RandomVariable} containing the discounted payoff value path-by-path at {@code evaluationTime}.
+	 */
+	@Override
+	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		int[] monitoringTimeIndices = getMonitoringSchedule().getPlan(model.getTimeDiscretization()).timeIndices;
+
+		// Pathwise running maximum of the basket over the monitoring grid
+		RandomVariable maxValue = getExtrema(monitoringTimeIndices, model).getBasketMaximum();
+		// Payoff at maturity: max(max_t B(t) - K, 0)
+		RandomVariable values = maxValue.sub(strike).floor(0.0);
+
+		return discount(values, evaluationTime, model);
+	}
+}
@@ -0,0 +1,161 @@
+package it.univr.montecarlo;
+
+import it.univr.metrics.LookbackMetrics;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Monte Carlo product implementing a fixed-strike lookback call with a reset right, valued by the Longstaff-Schwartz
+ * algorithm.
+ *
+ * <p>Payoff: {@code max(M_T - K', 0)}, where {@code M_T} is the maximum of the underlying over the monitoring dates
+ * and {@code K'} is the strike {@code K}, or the value {@code S_t} of the underlying at the monitoring date {@code t}
+ * at which the holder resets the strike (at most once, before maturity).
+ *
+ * <p>Resetting at {@code t} is worth {@code max(M_T - S_t, 0)} at maturity, keeping the right is worth the cashflow
+ * of the optimal later decisions: the holder resets where the regression of the difference of the two cashflows
+ * on the functions of the underlying and of its running maximum
+ * ({@link #getExtremumBasisFunctions(double, double, double[])}) is positive. The regression is fitted with a
+ * {@link LeastSquaresSolver} on the paths with {@code S_t < K}, the only ones on which a reset lowers the strike.
+ */
+public class LookbackCallFixedStrikeWithReset extends LookbackOption {
+	// Option maturity T
+	private final double maturity;
+	// Initial strike K
+	private final double strike;
+	// Underlying index (multi-asset models)
+	private final int underlyingIndex;
+	// Monitoring dates of the maximum, which are also the reset dates
+	private final MonitoringSchedule monitoringSchedule;
+
+	/**
+	 * Creates a fixed-strike lookback call with reset on the first underlying (index 0).
+	 *
+	 * @param maturity        Option maturity {@code T}.
+	 * @param strike          Initial strike {@code K}.
+	 * @param discretelyTimes Number of monitoring (and reset) dates. If {@code 0}, the full model time grid is used.
+	 */
+	public LookbackCallFixedStrikeWithReset(double maturity, double strike, int discretelyTimes) {
+		this(maturity, strike, 0, MonitoringSchedule.equidistant(discretelyTimes));
+	}
+
+	/**
+	 * Creates a fixed-strike lookback call with reset on a specific underlying index.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param strike             Initial strike {@code K}.
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param monitoringSchedule Monitoring dates of the maximum, which are also the reset dates.
+	 */
+	public LookbackCallFixedStrikeWithReset(double maturity, double strike, int underlyingIndex, MonitoringSchedule monitoringSchedule) {
+		this.maturity=maturity;
+		this.strike=strike;
+		this.underlyingIndex=underlyingIndex;
+		this.monitoringSchedule=monitoringSchedule;
+	}
+
+	/**
+	 * Evaluates the discounted value of the product at a given evaluation time.
+	 *
+	 * <p>The method:
+	 * <ol>
+	 *   <li>computes the running maximum of the underlying at every monitoring date;</li>
+	 *   <li>sets the cashflow of every path to the payoff without reset {@code max(M_T - K, 0)};</li>
+	 *   <li>going backward over the reset dates, replaces the cashflow by {@code max(M_T - S_t, 0)} on the paths
+	 *       where the regression of the gain of the reset is positive;</li>
+	 *   <li>discounts the cashflows from maturity to {@code evaluationTime}.</li>
+	 * </ol>
+	 *
+	 * @param evaluationTime Time {@code t} at which the value is returned.
+	 * @param model          Monte Carlo simulation model providing the underlying paths and numeraires.
+	 * @return A {@link RandomVariable} containing the discounted payoff value path-by-path at {@code evaluationTime}.
+	 */
+	@Override
+	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			MonitoringPlan monitoringPlan = monitoringSchedule.getPlan(model.getTimeDiscretization());
+			RandomVariable[] runningMaxima = getRunningExtrema(monitoringPlan, model, underlyingIndex, true);
+
+			// Last monitoring date not after maturity
+			int maturityIndex = model.getTimeIndex(maturity);
+			int lastDate = monitoringPlan.getNumberOfDates() - 1;
+			while(lastDate > 0 && monitoringPlan.getTimeIndex(lastDate) > maturityIndex) {
+				lastDate--;
+			}
+
+			int numberOfPaths = model.getNumberOfPaths();
+			double initialValue = model.getAssetValue(0, underlyingIndex).get(0);
+			RandomVariable maxValue = runningMaxima[lastDate];
+
+			// Cashflows at maturity in units of the numeraire (times the Monte Carlo weights), starting without reset
+			double[] deflators = new double[numberOfPaths];
+			double[] cashflows = new double[numberOfPaths];
+			RandomVariable numeraireAtMaturity = model.getNumeraire(maturity);
+			RandomVariable weightsAtMaturity = model.getMonteCarloWeights(maturity);
+			for(int path = 0; path < numberOfPaths; path++) {
+				deflators[path] = weightsAtMaturity.get(path) / numeraireAtMaturity.get(path);
+				cashflows[path] = Math.max(maxValue.get(path) - strike, 0.0) * deflators[path];
+			}
+
+			// Backward induction over the reset dates before maturity
+			LeastSquaresSolver solver = new LeastSquaresSolver(NUMBER_OF_EXTREMUM_BASIS_FUNCTIONS);
+			double[] basisValues = new double[NUMBER_OF_EXTREMUM_BASIS_FUNCTIONS];
+			for(int date = lastDate; date >= 0; date--) {
+				int timeIndex = monitoringPlan.getTimeIndex(date);
+				if(timeIndex <= 0 || timeIndex >= maturityIndex) {
+					continue;
+				}
+				double resetTime = monitoringPlan.getTime(date);
+				RandomVariable underlying = model.getAssetValue(timeIndex, underlyingIndex);
+				RandomVariable runningMaximum = runningMaxima[date];
+				RandomVariable numeraire = model.getNumeraire(resetTime);
+				RandomVariable weights = model.getMonteCarloWeights(resetTime);
+
+				// Regression of the gain of the reset (valued at the reset date) on the paths below the strike
+				solver.reset();
+				for(int path = 0; path < numberOfPaths; path++) {
+					double underlyingValue = underlying.get(path);
+					if(underlyingValue < strike) {
+						double resetCashflow = Math.max(maxValue.get(path) - underlyingValue, 0.0) * deflators[path];
+						getExtremumBasisFunctions(underlyingValue / initialValue, runningMaximum.get(path) / initialValue, basisValues);
+						solver.add(basisValues, (resetCashflow - cashflows[path]) * numeraire.get(path) / weights.get(path));
+					}
+				}
+				if(!solver.solve()) {
+					continue;
+				}
+
+				// Reset where the estimated gain is positive
+				for(int path = 0; path < numberOfPaths; path++) {
+					double underlyingValue = underlying.get(path);
+					if(underlyingValue < strike) {
+						getExtremumBasisFunctions(underlyingValue / initialValue, runningMaximum.get(path) / initialValue, basisValues);
+						if(solver.evaluate(basisValues) > 0.0) {
+							cashflows[path] = Math.max(maxValue.get(path) - underlyingValue, 0.0) * deflators[path];
+						}
+					}
+				}
+			}
+
+			// Discount the cashflows to evaluationTime
+			return new RandomVariableFromDoubleArray(evaluationTime, cashflows)
+					.mult(model.getNumeraire(evaluationTime)).div(model.getMonteCarloWeights(evaluationTime));
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, model.getNumberOfPaths());
+			}
+		}
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+}
@@ -3,10 +3,12 @@ package it.univr.montecarlo;
 import net.finmath.exception.CalculationException;
 import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
 import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
 //import net.finmath.functions.*;
 import net.finmath.montecarlo.assetderivativevaluation.MonteCarloAssetModel;
 import net.finmath.montecarlo.assetderivativevaluation.models.BlackScholesModel;
-import it.univr.analyticprices.AnalyticPrices;
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.metrics.LookbackMetrics;
 
 /**
  * Monte Carlo product implementing a fixed-strike lookback call option priced with a control variate.
@@ -17,8 +19,10 @@ import it.univr.analyticprices.AnalyticPrices;
  * <h3>Notation</h3>
  * <ul>
  *   <li>{@code Z}: Monte Carlo estimator of the discretely monitored lookback call (target payoff).</li>
- *   <li>{@code Y}: control variate (here: the continuously monitored lookback call evaluated on the same paths).</li>
- *   <li>{@code muY}: analytical expectation {@code E[Y]} under Black–Scholes (closed-form lookback price).</li>
+ *   <li>{@code Y}: control variate (here: the lookback call monitored on every time of the simulation grid, evaluated
+ *       on the same paths).</li>
+ *   <li>{@code muY}: expectation {@code E[Y]} under Black–Scholes, the exact price of the lookback monitored on the
+ *       distinct times of the grid ({@link DiscretelyMonitoredLookbackPrices}).</li>
  * </ul>
  *
  * <h3>Control variate estimator</h3>
@@ -27,7 +31,11 @@ import it.univr.analyticprices.AnalyticPrices;
  * Monte Carlo sample.
  *
  * <p>If the provided simulation model is not a Black–Scholes model, the class falls back to the standard
- * Monte Carlo estimator {@code Z} (no variance reduction).
+ * Monte Carlo estimator {@code Z} (no variance reduction), since {@code muY} would not be the expectation of
+ * {@code Y}. The same holds for a simulation grid whose distinct times are not equidistant (see
+ * {@link #getNumberOfMonitoringIntervals(TimeDiscretization)}). For Heston and local volatility models use {@link HestonLookbackPathKernel} and
+ * {@link LocalVolatilityLookbackPathKernel}, whose Black–Scholes control variate is simulated on a shadow path
+ * with an effective volatility and is unbiased under the model.
  */
 public class LookbackCallFixedWithBSControlVariate extends LookbackOption {
 
@@ -35,10 +43,15 @@ public class LookbackCallFixedWithBSControlVariate extends LookbackOption {
 	private double maturity;
 	// Fixed strike K
 	private double strike;
+	// Two times of the grid closer than this are the same monitoring date
+	private static final double TIME_TOLERANCE = 1E-10;
+
 	// Number of monitoring dates used for the discrete lookback payoff
 	private int discretelyTimes;
 	// Underlying index (useful for multi-asset models)
 	private Integer underlyingIndex;
+	// Last computed muY, with the spot, rate, volatility and number of monitoring intervals it was computed for
+	private volatile ControlExpectation lastControlExpectation;
 
 	/**
 	 * Creates a control-variate lookback call (fixed strike) on the first underlying (index 0).
@@ -72,15 +85,17 @@ public class LookbackCallFixedWithBSControlVariate extends LookbackOption {
 	/**
 	 * Computes the analytical Black–Scholes price used as {@code muY = E[Y]} in the control variate.
 	 *
-	 * <p>In this implementation {@code Y} is chosen as the continuously monitored fixed-strike lookback call.
-	 * Hence {@code muY} is given by the corresponding closed-form formula implemented in
-	 * {@link it.univr.analyticprices.AnalyticPrices}.
+	 * <p>In this implementation {@code Y} is chosen as the fixed-strike lookback call monitored on every time of the
+	 * simulation grid. Hence {@code muY} is the exact price of the lookback with one fixing per distinct time of the
+	 * grid, from {@link DiscretelyMonitoredLookbackPrices}, and not the continuously monitored closed form, whose
+	 * difference from {@code E[Y]} would bias the estimator. The price is computed once per spot, rate, volatility
+	 * and number of monitoring intervals: a second valuation on the same model reuses it.
 	 *
 	 * @param evaluationTime Evaluation time (the method computes the price at time 0).
 	 * @param model          Monte Carlo simulation model (used to read the spot from the simulated asset).
 	 * @param processModel   Black–Scholes process model (used to read r and sigma).
-	 * @return The analytical price of the continuously monitored fixed-strike lookback call.
-	
+	 * @return The price of the fixed-strike lookback call monitored on the simulation grid.
+	 * @throws IllegalArgumentException If the distinct times of the grid are not equidistant.
 	 */
 	public double computeAnalyticValue(double evaluationTime, AssetModelMonteCarloSimulationModel model,
 			BlackScholesModel processModel) throws CalculationException {
@@ -90,8 +105,54 @@ public class LookbackCallFixedWithBSControlVariate extends LookbackOption {
 		// Read r and sigma from the Black–Scholes model
 		double riskFreeRate = processModel.getRiskFreeRate().doubleValue();
 		double volatility = processModel.getVolatility().doubleValue();
-		// Closed-form price of the continuously monitored lookback call (fixed strike)
-		return AnalyticPrices.continuouslyMonitoredLookbackCallFixedStrike(spotPrice, riskFreeRate, volatility, maturity, strike);
+		// Number of intervals between the distinct times of the grid, on which Y is monitored
+		int numberOfMonitoringIntervals = getNumberOfMonitoringIntervals(model.getTimeDiscretization());
+		if(numberOfMonitoringIntervals == 0) {
+			throw new IllegalArgumentException("The distinct times of the time discretization are not equidistant.");
+		}
+
+		ControlExpectation controlExpectation = lastControlExpectation;
+		if(controlExpectation == null || !controlExpectation.isFor(spotPrice, riskFreeRate, volatility, numberOfMonitoringIntervals)) {
+			// Exact price of the lookback call (fixed strike) monitored on every distinct time of the grid
+			double value = DiscretelyMonitoredLookbackPrices.lookbackCallFixedStrike(spotPrice, riskFreeRate, volatility, maturity, strike,
+					numberOfMonitoringIntervals);
+			controlExpectation = new ControlExpectation(spotPrice, riskFreeRate, volatility, numberOfMonitoringIntervals, value);
+			lastControlExpectation = controlExpectation;
+		}
+		return controlExpectation.value;
+	}
+
+	/**
+	 * Returns the number of intervals between the distinct times of a time discretization, if these are equidistant
+	 * up to a tenth of their step, and {@code 0} otherwise.
+	 *
+	 * <p>This is the number of monitoring intervals of the exact price of a payoff monitored on every time of the
+	 * grid. It can be smaller than the number of time steps: finmath rounds the times to its time tick of one hour,
+	 * so a grid finer than the tick has repeated times, on which the simulated underlying does not move.
+	 *
+	 * @param times The time discretization of the simulation.
+	 * @return The number of intervals between the distinct times, or {@code 0} if they are not equidistant.
+	 */
+	public static int getNumberOfMonitoringIntervals(TimeDiscretization times) {
+		double[] distinctTimes = new double[times.getNumberOfTimes()];
+		int numberOfDistinctTimes = 0;
+		for(int timeIndex = 0; timeIndex < times.getNumberOfTimes(); timeIndex++) {
+			double time = times.getTime(timeIndex);
+			if(numberOfDistinctTimes == 0 || time > distinctTimes[numberOfDistinctTimes - 1] + TIME_TOLERANCE) {
+				distinctTimes[numberOfDistinctTimes++] = time;
+			}
+		}
+		int numberOfIntervals = numberOfDistinctTimes - 1;
+		if(numberOfIntervals < 1) {
+			return 0;
+		}
+		double timeStep = (distinctTimes[numberOfIntervals] - distinctTimes[0]) / numberOfIntervals;
+		for(int i = 1; i < numberOfIntervals; i++) {
+			if(Math.abs(distinctTimes[i] - distinctTimes[0] - i * timeStep) > 0.1 * timeStep) {
+				return 0;
+			}
+		}
+		return numberOfIntervals;
 	}
 
 	/**
@@ -100,9 +161,10 @@ public class LookbackCallFixedWithBSControlVariate extends LookbackOption {
 	 * <p>The method:
 	 * <ol>
 	 *   <li>Prices the discretely monitored lookback call via standard Monte Carlo (target estimator {@code Z}).</li>
-	 *   <li>Checks whether the underlying model is Black–Scholes; if not, returns {@code Z}.</li>
-	 *   <li>Builds the control variate {@code Y} as the continuously monitored lookback call on the same paths.</li>
-	 *   <li>Computes {@code muY} using the closed-form Black–Scholes formula.</li>
+	 *   <li>Checks whether the underlying model is Black–Scholes on a grid with equidistant distinct times; if not,
+	 *       returns {@code Z}.</li>
+	 *   <li>Builds the control variate {@code Y} as the lookback call monitored on every grid time, on the same paths.</li>
+	 *   <li>Computes {@code muY} as the exact Black–Scholes price of {@code Y}, or reuses it from the last valuation.</li>
 	 *   <li>Estimates the optimal coefficient {@code c} and returns {@code Z_cv = Z - c (Y - muY)}.</li>
 	 * </ol>
 	 *
@@ -113,44 +175,79 @@ public class LookbackCallFixedWithBSControlVariate extends LookbackOption {
 	 */
 	@Override
 	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			// Target product Z: discretely monitored fixed-strike lookback call
+			LookbackCallFixedStrike stdLoockBackCallFixedStrike = new LookbackCallFixedStrike(maturity, underlyingIndex, strike, discretelyTimes);
+
+			// Standard Monte Carlo estimator for the target payoff
+			RandomVariable Z = stdLoockBackCallFixedStrike.getValue(0.0, model);
+
+			// If the model is not Black–Scholes on an equidistant grid, return Z (no control variate available)
+			if(!(model instanceof MonteCarloAssetModel) || !(((MonteCarloAssetModel) model).getModel() instanceof BlackScholesModel)
+					|| getNumberOfMonitoringIntervals(model.getTimeDiscretization()) == 0) {
+				return Z;
+			}
+
+			// Retrieve the Black–Scholes process model
+			BlackScholesModel processModel = (BlackScholesModel) ((MonteCarloAssetModel) model).getModel();
+			// muY = E[Y]: analytical expectation of the control variate under Black–Scholes
+			double blackSholesPrice = computeAnalyticValue(0.0, model, processModel);
+			// Convert muY to a constant RandomVariable
+			RandomVariable muY = model.getRandomVariableForConstant(blackSholesPrice);
+
+			// Control variate Y: fixed-strike lookback call monitored on every grid time
+			LookbackCallFixedStrike countinousLoockBackCallFixedStrike = new LookbackCallFixedStrike(maturity, underlyingIndex, strike);
+			RandomVariable Y = countinousLoockBackCallFixedStrike.getValue(0.0, model);
+
+			long startTime = LookbackMetrics.ENABLED ? System.nanoTime() : 0L;
+			// Estimate optimal coefficient c = Cov(Z,Y)/Var(Y) from the sample
+			double covariance = Z.covariance(Y).doubleValue();
+			double variance = Y.variance().doubleValue();
+			double optimalC = covariance/variance;
+
+			// c (Y - muY)
+			RandomVariable termToSubtract = Y.sub(muY).mult(optimalC);
+
+			// Control variate estimator: Z_cv = Z - c (Y - muY)
+			RandomVariable Zc = Z.sub(termToSubtract);
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.recordPhase(LookbackMetrics.Phase.CONTROL_VARIATE, startTime);
+				LookbackMetrics.recordVarianceReduction(Z.getVariance(), Zc.getVariance());
+			}
+
+			return Zc;
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, model.getNumberOfPaths());
+			}
+		}
+	}
 
-		// Target product Z: discretely monitored fixed-strike lookback call
-		LookbackCallFixedStrike stdLoockBackCallFixedStrike = new LookbackCallFixedStrike(maturity, underlyingIndex, strike, discretelyTimes);
-
-		// Standard Monte Carlo estimator for the target payoff
-		RandomVariable Z = stdLoockBackCallFixedStrike.getValue(0.0, model);
-
-		// If the model is not Black–Scholes, return Z (no control variate available)
-		if(!(((MonteCarloAssetModel) model).getModel() instanceof BlackScholesModel)) {
-			System.out.println("The model is not Black-Scholes: we are going to perform the standard Monte Carlo");
-			return Z;
+	/*
+	 * The price of the control and the market data and number of monitoring intervals it was computed for.
+	 */
+	private static final class ControlExpectation {
+
+		private final double spotPrice;
+		private final double riskFreeRate;
+		private final double volatility;
+		private final int numberOfMonitoringIntervals;
+		private final double value;
+
+		private ControlExpectation(double spotPrice, double riskFreeRate, double volatility, int numberOfMonitoringIntervals, double value) {
+			this.spotPrice=spotPrice;
+			this.riskFreeRate=riskFreeRate;
+			this.volatility=volatility;
+			this.numberOfMonitoringIntervals=numberOfMonitoringIntervals;
+			this.value=value;
 		}
 
-		// Retrieve the Black–Scholes process model
-		BlackScholesModel processModel = (BlackScholesModel) ((MonteCarloAssetModel) model).getModel();
-		// muY = E[Y]: analytical expectation of the control variate under Black–Scholes
-		double blackSholesPrice = computeAnalyticValue(0.0, model, processModel);
-		// Convert muY to a constant RandomVariable
-		RandomVariable muY = model.getRandomVariableForConstant(blackSholesPrice);
-
-		// Control variate Y: continuously monitored fixed-strike lookback call
-		LookbackCallFixedStrike countinousLoockBackCallFixedStrike = new LookbackCallFixedStrike(maturity, underlyingIndex, strike);
-		RandomVariable Y = countinousLoockBackCallFixedStrike.getValue(0.0, model);
-
-		// Estimate optimal coefficient c = Cov(Z,Y)/Var(Y) from the sample
-		double covariance = Z.covariance(Y).doubleValue();
-		double variance = Y.variance().doubleValue();
-		double optimalC = covariance/variance;
-
-		// c (Y - muY)
-		RandomVariable termToSubtract = Y.sub(muY).mult(optimalC);
-
-		// Control variate estimator: Z_cv = Z - c (Y - muY)
-		RandomVariable Zc = Z.sub(termToSubtract);
-		
-		return Zc;
+		private boolean isFor(double spotPrice, double riskFreeRate, double volatility, int numberOfMonitoringIntervals) {
+			return this.spotPrice == spotPrice && this.riskFreeRate == riskFreeRate && this.volatility == volatility
+					&& this.numberOfMonitoringIntervals == numberOfMonitoringIntervals;
+		}
 	}
-	
-	
 
 }
@@ -0,0 +1,44 @@
+package it.univr.montecarlo;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Monte Carlo product implementing an option on the maximum drawdown of the underlying.
+ *
+ * <p>Payoff: {@code max(D_T - K, 0)}, where {@code D_T = max_{s <= t <= T} (S_s - S_t)} is the largest fall of the
+ * underlying from a previous maximum over the monitoring dates. With a rolling window of {@code w} monitoring dates,
+ * {@code s} and {@code t} range over at most {@code w} consecutive dates (for instance, the largest monthly
+ * drawdown with weekly fixings and {@code w = 5}).
+ */
+public class LookbackDrawdownOption extends LookbackStatisticOption {
+
+	/**
+	 * Creates a discretely monitored option on the maximum drawdown of the first underlying (index 0).
+	 *
+	 * @param maturity        Option maturity {@code T}.
+	 * @param strike          Strike {@code K} on the drawdown ({@code 0} to pay the drawdown).
+	 * @param discretelyTimes Number of monitoring dates. If {@code 0}, the full model time grid is used.
+	 */
+	public LookbackDrawdownOption(double maturity, double strike, int discretelyTimes) {
+		super(maturity, 0, strike, 0, MonitoringSchedule.equidistant(discretelyTimes));
+	}
+
+	/**
+	 * Creates an option on the maximum drawdown, over the whole period or a rolling window of monitoring dates.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param strike             Strike {@code K} on the drawdown.
+	 * @param windowLength       Number of consecutive monitoring dates of the rolling window, at least 2. If
+	 *                           {@code 0}, the drawdown is taken over the whole monitoring period.
+	 * @param monitoringSchedule Monitoring dates of the drawdown.
+	 */
+	public LookbackDrawdownOption(double maturity, int underlyingIndex, double strike, int windowLength, MonitoringSchedule monitoringSchedule) {
+		super(maturity, underlyingIndex, strike, windowLength, monitoringSchedule);
+	}
+
+	@Override
+	protected RandomVariable getStatistic(RunningExtremaState state) {
+		return getWindowLength() == 0 ? state.getMaximumDrawdown() : state.getMaximumWindowDrawdown();
+	}
+}
@@ -0,0 +1,43 @@
+package it.univr.montecarlo;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Monte Carlo product implementing an option on the maximum drawup of the underlying.
+ *
+ * <p>Payoff: {@code max(U_T - K, 0)}, where {@code U_T = max_{s <= t <= T} (S_t - S_s)} is the largest rise of the
+ * underlying from a previous minimum over the monitoring dates. With a rolling window of {@code w} monitoring dates,
+ * {@code s} and {@code t} range over at most {@code w} consecutive dates.
+ */
+public class LookbackDrawupOption extends LookbackStatisticOption {
+
+	/**
+	 * Creates a discretely monitored option on the maximum drawup of the first underlying (index 0).
+	 *
+	 * @param maturity        Option maturity {@code T}.
+	 * @param strike          Strike {@code K} on the drawup ({@code 0} to pay the drawup).
+	 * @param discretelyTimes Number of monitoring dates. If {@code 0}, the full model time grid is used.
+	 */
+	public LookbackDrawupOption(double maturity, double strike, int discretelyTimes) {
+		super(maturity, 0, strike, 0, MonitoringSchedule.equidistant(discretelyTimes));
+	}
+
+	/**
+	 * Creates an option on the maximum drawup, over the whole period or a rolling window of monitoring dates.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param strike             Strike {@code K} on the drawup.
+	 * @param windowLength       Number of consecutive monitoring dates of the rolling window, at least 2. If
+	 *                           {@code 0}, the drawup is taken over the whole monitoring period.
+	 * @param monitoringSchedule Monitoring dates of the drawup.
+	 */
+	public LookbackDrawupOption(double maturity, int underlyingIndex, double strike, int windowLength, MonitoringSchedule monitoringSchedule) {
+		super(maturity, underlyingIndex, strike, windowLength, monitoringSchedule);
+	}
+
+	@Override
+	protected RandomVariable getStatistic(RunningExtremaState state) {
+		return getWindowLength() == 0 ? state.getMaximumDrawup() : state.getMaximumWindowDrawup();
+	}
+}
@@ -0,0 +1,76 @@
+package it.univr.montecarlo;
+
+import java.util.Arrays;
+
+/**
+ * Monte Carlo price of a lookback option and its gradient with respect to the parameters of a Black–Scholes model
+ * with piecewise constant volatility and rate, as computed by {@link LookbackAdjointGreeks}.
+ *
+ * <p>Vegas and rhos are given per bucket of the model (the derivatives with respect to the volatility and the rate of
+ * the bucket); {@link #getVega()} and {@link #getRho()} are the derivatives with respect to a parallel shift.
+ */
+public class LookbackGradient {
+
+	private final double value;
+	private final double delta;
+	private final double[] vegas;
+	private final double[] rhos;
+
+	/**
+	 * Creates the result.
+	 *
+	 * @param value The price.
+	 * @param delta The derivative of the price with respect to the spot.
+	 * @param vegas The derivatives of the price with respect to the volatilities of the buckets.
+	 * @param rhos  The derivatives of the price with respect to the rates of the buckets.
+	 */
+	public LookbackGradient(double value, double delta, double[] vegas, double[] rhos) {
+		this.value = value;
+		this.delta = delta;
+		this.vegas = vegas.clone();
+		this.rhos = rhos.clone();
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public double getDelta() {
+		return delta;
+	}
+
+	public int getNumberOfBuckets() {
+		return vegas.length;
+	}
+
+	public double getVega(int bucket) {
+		return vegas[bucket];
+	}
+
+	public double getRho(int bucket) {
+		return rhos[bucket];
+	}
+
+	/**
+	 * Returns the derivative of the price with respect to a parallel shift of the volatilities.
+	 *
+	 * @return The sum of the vegas of the buckets.
+	 */
+	public double getVega() {
+		return Arrays.stream(vegas).sum();
+	}
+
+	/**
+	 * Returns the derivative of the price with respect to a parallel shift of the rates.
+	 *
+	 * @return The sum of the rhos of the buckets.
+	 */
+	public double getRho() {
+		return Arrays.stream(rhos).sum();
+	}
+
+	@Override
+	public String toString() {
+		return "LookbackGradient [value=" + value + ", delta=" + delta + ", vegas=" + Arrays.toString(vegas) + ", rhos=" + Arrays.toString(rhos) + "]";
+	}
+}
@@ -1,5 +1,12 @@
 package it.univr.montecarlo;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.metrics.LookbackMetrics;
 import net.finmath.exception.CalculationException;
 import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
 import net.finmath.montecarlo.assetderivativevaluation.products.AbstractAssetMonteCarloProduct;
@@ -12,14 +19,106 @@ import net.finmath.time.TimeDiscretization;
  * <p>This class provides common utilities shared by all concrete lookback products, such as:
  * <ul>
  *     <li>Construction of monitoring times for continuously and discretely monitored payoffs.</li>
- *     <li>Pathwise computation of the running maximum and minimum of the underlying.</li>
+ *     <li>Pathwise computation of the running maximum and minimum of the underlying, seeded from the first
+ *         monitoring date, and of the running state of the add-ons on statistics of the path (see
+ *         {@link RunningExtremaState}).</li>
+ *     <li>Discounting of the payoff at maturity.</li>
  * </ul>
  *
+ * When {@link LookbackMetrics#ENABLED} is set, the time-index helpers record the path generation, running
+ * extremum and discounting phases of the valuation.
+ *
  * Concrete subclasses are expected to implement {@link #getValue(double, AssetModelMonteCarloSimulationModel)}
  * to define the specific payoff (call/put, fixed/floating strike, etc.).
  */
 public abstract class LookbackOption extends AbstractAssetMonteCarloProduct {
 
+	/**
+	 * Creates the product of a lookback payoff on the first underlying (index 0).
+	 *
+	 * @param payoff          The lookback payoff.
+	 * @param maturity        Option maturity {@code T}.
+	 * @param strike          Fixed strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param discretelyTimes Number of monitoring dates. If {@code 0}, the full model time grid is used.
+	 * @return The product.
+	 */
+	public static LookbackOption of(LookbackPayoff payoff, double maturity, double strike, int discretelyTimes) {
+		switch(payoff) {
+		case CALL_FIXED_STRIKE:
+			return new LookbackCallFixedStrike(maturity, strike, discretelyTimes);
+		case PUT_FIXED_STRIKE:
+			return new LookbackPutFixedStrike(maturity, strike, discretelyTimes);
+		case CALL_FLOATING_STRIKE:
+			return new LookbackCallFloatingStrike(maturity, discretelyTimes);
+		case PUT_FLOATING_STRIKE:
+			return new LookbackPutFloatingStrike(maturity, discretelyTimes);
+		default:
+			throw new IllegalArgumentException("Unknown payoff " + payoff);
+		}
+	}
+
+	/**
+	 * Values a batch of products on the same simulation, for instance the lookbacks and the drawdown notes of a book.
+	 *
+	 * <p>The options on statistics of the path ({@link LookbackStatisticOption}) are grouped by monitoring plan,
+	 * underlying and window length, and every group walks the dates once: its {@link RunningExtremaState} is passed
+	 * to the products explicitly. The products without window read the state of any window on their plan and
+	 * underlying, if there is one. The other lookbacks are valued one by one.
+	 *
+	 * @param model    The Monte Carlo simulation model.
+	 * @param products The products.
+	 * @return The values at time {@code 0}, in the order of the products.
+	 * @throws CalculationException If a valuation fails.
+	 */
+	public static double[] getValues(AssetModelMonteCarloSimulationModel model, LookbackOption... products) throws CalculationException {
+		TimeDiscretization timeDiscretization = model.getTimeDiscretization();
+		// Running states by monitoring plan, underlying and window length, and by monitoring plan and underlying
+		Map<List<Object>, RunningExtremaState> statesByWindow = new HashMap<>();
+		Map<List<Object>, RunningExtremaState> states = new HashMap<>();
+		// The windowed products first, so that the products without window can read their states
+		for(LookbackOption product : products) {
+			if(product instanceof LookbackStatisticOption && product.getWindowLength() > 0) {
+				LookbackStatisticOption option = (LookbackStatisticOption) product;
+				MonitoringPlan monitoringPlan = option.getMonitoringSchedule().getPlan(timeDiscretization);
+				List<Object> key = Arrays.asList(monitoringPlan, option.getUnderlyingIndex(), option.getWindowLength());
+				if(!statesByWindow.containsKey(key)) {
+					RunningExtremaState state = option.getRunningExtremaState(monitoringPlan, model, option.getUnderlyingIndex(), option.getWindowLength());
+					statesByWindow.put(key, state);
+					states.put(Arrays.asList(monitoringPlan, option.getUnderlyingIndex()), state);
+				}
+			}
+		}
+
+		double[] values = new double[products.length];
+		for(int i = 0; i < products.length; i++) {
+			if(products[i] instanceof LookbackStatisticOption) {
+				LookbackStatisticOption option = (LookbackStatisticOption) products[i];
+				MonitoringPlan monitoringPlan = option.getMonitoringSchedule().getPlan(timeDiscretization);
+				RunningExtremaState state = option.getWindowLength() > 0
+						? statesByWindow.get(Arrays.asList(monitoringPlan, option.getUnderlyingIndex(), option.getWindowLength()))
+						: states.get(Arrays.asList(monitoringPlan, option.getUnderlyingIndex()));
+				if(state == null) {
+					state = option.getRunningExtremaState(monitoringPlan, model, option.getUnderlyingIndex(), 0);
+					states.put(Arrays.asList(monitoringPlan, option.getUnderlyingIndex()), state);
+				}
+				values[i] = option.getValue(0.0, model, state).getAverage();
+			}
+			else {
+				values[i] = products[i].getValue(model);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the number of monitoring dates of the rolling window of the statistic of the payoff ({@code 0} if the
+	 * payoff has no rolling window).
+	 *
+	 * @return The window length.
+	 */
+	public int getWindowLength() {
+		return 0;
+	}
 
 	/**
 	 * Builds the array of monitoring times used to evaluate the lookback payoff.
@@ -28,7 +127,8 @@ public abstract class LookbackOption extends AbstractAssetMonteCarloProduct {
 	 * model's {@link TimeDiscretization}, thus approximating a continuously monitored payoff.
 	 * If {@code discretelyTimes} is strictly positive, the method builds a coarser grid
 	 * of monitoring times by selecting (approximately) equidistant indices from the underlying
-	 * time discretization.
+	 * time discretization. Indices of the time discretization selected more than once (e.g. when
+	 * {@code discretelyTimes} exceeds the number of time steps) are returned only once.
 	 *
 	 * @param discretelyTimes The number of monitoring dates to be used for a discretely monitored payoff.
 	 *                        If this value is {@code 0}, the full time grid of the model is used.
@@ -36,74 +136,227 @@ public abstract class LookbackOption extends AbstractAssetMonteCarloProduct {
 	 * @return An array of doubles representing the monitoring times (in increasing order).
 	 */
 	protected double[] buildMonitoringTimes(int discretelyTimes, AssetModelMonteCarloSimulationModel model) {
-		// Extract the time discretization used by the Monte Carlo simulation
-		TimeDiscretization td = model.getTimeDiscretization();
-        // Case 1: use all available times (approximate continuous monitoring)
-        if (discretelyTimes == 0) {
-            // Copy the entire time grid from the model
-            double[] times = new double[td.getNumberOfTimes()];
-            for (int i = 0; i < td.getNumberOfTimes(); i++) {
-                times[i] = td.getTime(i);
-            }
-            return times;
-        }
-        // Case 2: construct a coarser grid with a fixed number of monitoring dates
-        double[] times = new double[discretelyTimes + 1];
-        for (int i = 0; i <= discretelyTimes; i++) {
-            // Map the logical monitoring index i to an index on the underlying time discretization
-            int index = (int) Math.round(i * (td.getNumberOfTimes() - 1) / (double) discretelyTimes);
-            times[i] = td.getTime(index);
-            }
-		return times;
-        }
+		// Distinct monitoring times of the equidistant schedule on the model's time discretization (cached plan)
+		return MonitoringSchedule.equidistant(discretelyTimes).getPlan(model.getTimeDiscretization()).getTimes();
+	}
 
 
 	/**
-	 * Computes the pathwise running maximum of the underlying process over the given monitoring times.
+	 * Computes the pathwise running maximum of the underlying process over the given monitoring time indices.
 	 *
-	 * <p>The method iterates over all monitoring times, retrieves the underlying asset value for each time,
-	 * and updates a running maximum stored in a {@link RandomVariable}. The returned random variable
-	 * contains, for each Monte Carlo path, the maximum of the underlying over all specified times.
+	 * <p>The indices are those returned by {@link MonitoringSchedule#getTimeIndices(TimeDiscretization)}: the
+	 * underlying is read directly by time index, so no time-to-index lookup is performed inside the loop.
 	 *
-	 * @param discretizedTimes An array of monitoring times over which the maximum is computed.
-	 * @param model            The Monte Carlo simulation model providing asset values.
-	 * @param underlyingIndex  Index of the underlying (in case of a multi-asset model).
+	 * @param timeIndices     Sorted array of distinct monitoring time indices.
+	 * @param model           The Monte Carlo simulation model providing asset values.
+	 * @param underlyingIndex Index of the underlying (in case of a multi-asset model).
 	 * @return A {@link RandomVariable} representing, path by path, the running maximum of the underlying.
 	 * @throws CalculationException If the underlying values cannot be obtained from the model.
 	 */
-	protected RandomVariable getMax(double[] discretizedTimes, AssetModelMonteCarloSimulationModel model, int underlyingIndex) throws CalculationException {
-		// Initialize running maximum to zero for all paths (assuming non-negative underlying trajectories)
-		RandomVariable maxValue = model.getRandomVariableForConstant(0.0);
-		// Iterate over all monitoring times and update the running maximum
-		for(double currentTime : discretizedTimes) {
-			RandomVariable underlying = model.getAssetValue(currentTime, underlyingIndex);
+	protected RandomVariable getMax(int[] timeIndices, AssetModelMonteCarloSimulationModel model, int underlyingIndex) throws CalculationException {
+		long startTime = LookbackMetrics.ENABLED ? startExtremum(model, underlyingIndex) : 0L;
+		// The running maximum starts from the underlying at the first monitoring date
+		RandomVariable maxValue = model.getAssetValue(timeIndices[0], underlyingIndex);
+		// Iterate over the other monitoring time indices and update the running maximum
+		for(int i = 1; i < timeIndices.length; i++) {
+			RandomVariable underlying = model.getAssetValue(timeIndices[i], underlyingIndex);
 			maxValue = maxValue.floor(underlying);
 		}
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.EXTREMUM, startTime);
+		}
 		return maxValue;
 	}
 
 
 	/**
-	 * Computes the pathwise running minimum of the underlying process over the given monitoring times.
+	 * Computes the pathwise running minimum of the underlying process over the given monitoring time indices.
 	 *
-	 * <p>The method iterates over all monitoring times, retrieves the underlying asset value for each time,
-	 * and updates a running minimum stored in a {@link RandomVariable}. The returned random variable
-	 * contains, for each Monte Carlo path, the minimum of the underlying over all specified times.
+	 * <p>The indices are those returned by {@link MonitoringSchedule#getTimeIndices(TimeDiscretization)}: the
+	 * underlying is read directly by time index, so no time-to-index lookup is performed inside the loop.
 	 *
-	 * @param discretizedTimes An array of monitoring times over which the minimum is computed.
-	 * @param model            The Monte Carlo simulation model providing asset values.
-	 * @param underlyingIndex  Index of the underlying (in case of a multi-asset model).
+	 * @param timeIndices     Sorted array of distinct monitoring time indices.
+	 * @param model           The Monte Carlo simulation model providing asset values.
+	 * @param underlyingIndex Index of the underlying (in case of a multi-asset model).
 	 * @return A {@link RandomVariable} representing, path by path, the running minimum of the underlying.
 	 * @throws CalculationException If the underlying values cannot be obtained from the model.
 	 */
-	protected RandomVariable getMin(double[] discretizedTimes, AssetModelMonteCarloSimulationModel model, int underlyingIndex) throws CalculationException {
-		RandomVariable minValue = model.getRandomVariableForConstant(Integer.MAX_VALUE); // Initialize running minimum to a very large value
-		// Iterate over all monitoring times and update the running minimum
-		for(double currentTime : discretizedTimes) {
-			RandomVariable underlying = model.getAssetValue(currentTime, underlyingIndex);
-			minValue = minValue.cap(underlying);		
+	protected RandomVariable getMin(int[] timeIndices, AssetModelMonteCarloSimulationModel model, int underlyingIndex) throws CalculationException {
+		long startTime = LookbackMetrics.ENABLED ? startExtremum(model, underlyingIndex) : 0L;
+		// The running minimum starts from the underlying at the first monitoring date
+		RandomVariable minValue = model.getAssetValue(timeIndices[0], underlyingIndex);
+		// Iterate over the other monitoring time indices and update the running minimum
+		for(int i = 1; i < timeIndices.length; i++) {
+			RandomVariable underlying = model.getAssetValue(timeIndices[i], underlyingIndex);
+			minValue = minValue.cap(underlying);
+		}
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.EXTREMUM, startTime);
 		}
 		return minValue;
 	}
 
+
+	/**
+	 * Returns the running state (extrema, their dates, last value, drawdown and drawup) of the underlying over the
+	 * dates of a monitoring plan, with the statistics of a rolling window of monitoring dates.
+	 *
+	 * @param monitoringPlan  The monitoring plan, from {@link MonitoringSchedule#getPlan(TimeDiscretization)}.
+	 * @param model           The Monte Carlo simulation model providing asset values.
+	 * @param underlyingIndex Index of the underlying (in case of a multi-asset model).
+	 * @param windowLength    Number of monitoring dates of the rolling window ({@code 0} for no window).
+	 * @return The running state of the underlying.
+	 * @throws CalculationException If the underlying values cannot be obtained from the model.
+	 */
+	protected RunningExtremaState getRunningExtremaState(MonitoringPlan monitoringPlan, AssetModelMonteCarloSimulationModel model, int underlyingIndex,
+			int windowLength) throws CalculationException {
+		long startTime = LookbackMetrics.ENABLED ? startExtremum(model, underlyingIndex) : 0L;
+		RunningExtremaState state = RunningExtremaState.of(monitoringPlan, model, underlyingIndex, windowLength);
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.EXTREMUM, startTime);
+		}
+		return state;
+	}
+
+
+	/**
+	 * Computes the pathwise running maximum of the underlying process over the dates of a monitoring plan.
+	 *
+	 * <p>The maximum is accumulated by {@link RandomVariable#floor(RandomVariable)}, as in
+	 * {@link #getMax(int[], AssetModelMonteCarloSimulationModel, int)}, so it keeps the type of the random variables
+	 * of the model: the automatic differentiation random variables of finmath record the dependency of the maximum
+	 * on the path.
+	 *
+	 * @param monitoringPlan  The monitoring plan, from {@link MonitoringSchedule#getPlan(TimeDiscretization)}.
+	 * @param model           The Monte Carlo simulation model providing asset values.
+	 * @param underlyingIndex Index of the underlying (in case of a multi-asset model).
+	 * @return A {@link RandomVariable} representing, path by path, the running maximum of the underlying.
+	 * @throws CalculationException If the underlying values cannot be obtained from the model.
+	 */
+	protected RandomVariable getMax(MonitoringPlan monitoringPlan, AssetModelMonteCarloSimulationModel model, int underlyingIndex) throws CalculationException {
+		return getMax(monitoringPlan.timeIndices, model, underlyingIndex);
+	}
+
+
+	/**
+	 * Computes the pathwise running minimum of the underlying process over the dates of a monitoring plan.
+	 *
+	 * <p>The minimum is accumulated by {@link RandomVariable#cap(RandomVariable)}, as in
+	 * {@link #getMin(int[], AssetModelMonteCarloSimulationModel, int)}, so it keeps the type of the random variables
+	 * of the model.
+	 *
+	 * @param monitoringPlan  The monitoring plan, from {@link MonitoringSchedule#getPlan(TimeDiscretization)}.
+	 * @param model           The Monte Carlo simulation model providing asset values.
+	 * @param underlyingIndex Index of the underlying (in case of a multi-asset model).
+	 * @return A {@link RandomVariable} representing, path by path, the running minimum of the underlying.
+	 * @throws CalculationException If the underlying values cannot be obtained from the model.
+	 */
+	protected RandomVariable getMin(MonitoringPlan monitoringPlan, AssetModelMonteCarloSimulationModel model, int underlyingIndex) throws CalculationException {
+		return getMin(monitoringPlan.timeIndices, model, underlyingIndex);
+	}
+
+
+	/**
+	 * Computes the running extremum of the underlying at every date of a monitoring plan, for the products which
+	 * decide along the path (early exercise, reset).
+	 *
+	 * <p>The element {@code i} of the returned array is, path by path, the maximum (or minimum) of the underlying
+	 * over the monitoring dates {@code 0, ..., i} of the plan.
+	 *
+	 * @param monitoringPlan  The monitoring plan, from {@link MonitoringSchedule#getPlan(TimeDiscretization)}.
+	 * @param model           The Monte Carlo simulation model providing asset values.
+	 * @param underlyingIndex Index of the underlying (in case of a multi-asset model).
+	 * @param isMaximum       If {@code true} the running maximum, otherwise the running minimum.
+	 * @return The running extremum at each monitoring date.
+	 * @throws CalculationException If the underlying values cannot be obtained from the model.
+	 */
+	protected RandomVariable[] getRunningExtrema(MonitoringPlan monitoringPlan, AssetModelMonteCarloSimulationModel model, int underlyingIndex,
+			boolean isMaximum) throws CalculationException {
+		long startTime = LookbackMetrics.ENABLED ? startExtremum(model, underlyingIndex) : 0L;
+		RandomVariable[] runningExtrema = new RandomVariable[monitoringPlan.getNumberOfDates()];
+		// The running extremum starts from the underlying at the first monitoring date
+		RandomVariable extremum = model.getAssetValue(monitoringPlan.timeIndices[0], underlyingIndex);
+		runningExtrema[0] = extremum;
+		for(int date = 1; date < runningExtrema.length; date++) {
+			RandomVariable underlying = model.getAssetValue(monitoringPlan.timeIndices[date], underlyingIndex);
+			extremum = isMaximum ? extremum.floor(underlying) : extremum.cap(underlying);
+			runningExtrema[date] = extremum;
+		}
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.EXTREMUM, startTime);
+		}
+		return runningExtrema;
+	}
+
+
+	/**
+	 * Number of functions of the regression basis written by {@link #getExtremumBasisFunctions(double, double, double[])}.
+	 */
+	protected static final int NUMBER_OF_EXTREMUM_BASIS_FUNCTIONS = 9;
+
+
+	/**
+	 * Writes the regression basis of the Longstaff-Schwartz products in the underlying {@code x} and its running
+	 * extremum {@code y}, both divided by the initial value of the underlying: the polynomials of degree at most two
+	 * {@code 1, x, y, x^2, xy, y^2}, and {@code y (y/x), y (y/x)^2, x log(y/x)}. Under Black-Scholes the
+	 * continuation values are homogeneous of degree one in {@code (x, y)}, and the last three functions capture
+	 * their curvature in the ratio {@code y/x}, which the polynomials alone miss near a new extremum.
+	 *
+	 * @param underlying    The underlying divided by its initial value.
+	 * @param extremum      The running extremum divided by the initial value of the underlying.
+	 * @param basisValues   Array of length {@link #NUMBER_OF_EXTREMUM_BASIS_FUNCTIONS} receiving the basis values.
+	 */
+	protected static void getExtremumBasisFunctions(double underlying, double extremum, double[] basisValues) {
+		basisValues[0] = 1.0;
+		basisValues[1] = underlying;
+		basisValues[2] = extremum;
+		basisValues[3] = underlying * underlying;
+		basisValues[4] = underlying * extremum;
+		basisValues[5] = extremum * extremum;
+		double ratio = extremum / underlying;
+		basisValues[6] = extremum * ratio;
+		basisValues[7] = extremum * ratio * ratio;
+		basisValues[8] = underlying * Math.log(ratio);
+	}
+
+	/**
+	 * Discounts a payoff paid at maturity to the evaluation time using numeraire and Monte Carlo weights.
+	 *
+	 * @param payoff         The payoff at maturity, path by path.
+	 * @param maturity       Option maturity {@code T}.
+	 * @param evaluationTime Time {@code t} at which the value is returned.
+	 * @param model          Monte Carlo simulation model providing numeraires and weights.
+	 * @return The discounted payoff, path by path.
+	 * @throws CalculationException If numeraire or weights cannot be obtained from the model.
+	 */
+	protected RandomVariable discount(RandomVariable payoff, double maturity, double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		long startTime = LookbackMetrics.ENABLED ? System.nanoTime() : 0L;
+		// Discount payoff from maturity...
+		final RandomVariable numeraireAtMaturity = model.getNumeraire(maturity);
+		final RandomVariable monteCarloWeights = model.getMonteCarloWeights(maturity);
+		RandomVariable values = payoff.div(numeraireAtMaturity).mult(monteCarloWeights);
+
+		// ...to evaluation time.
+		final RandomVariable numeraireAtEvalTime = model.getNumeraire(evaluationTime);
+		final RandomVariable monteCarloWeightsAtEvalTime = model.getMonteCarloWeights(evaluationTime);
+		values = values.mult(numeraireAtEvalTime).div(monteCarloWeightsAtEvalTime);
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.DISCOUNTING, startTime);
+		}
+		return values;
+	}
+
+
+	/*
+	 * Forces the generation of the paths (finmath simulates lazily, on the first access to the asset values),
+	 * records it as path generation and returns the start time of the extremum phase. Used only when the
+	 * instrumentation is enabled.
+	 */
+	private static long startExtremum(AssetModelMonteCarloSimulationModel model, int underlyingIndex) throws CalculationException {
+		long startTime = System.nanoTime();
+		model.getAssetValue(model.getTimeDiscretization().getNumberOfTimeSteps(), underlyingIndex);
+		LookbackMetrics.recordPhase(LookbackMetrics.Phase.PATH_GENERATION, startTime);
+		return System.nanoTime();
+	}
+
 }
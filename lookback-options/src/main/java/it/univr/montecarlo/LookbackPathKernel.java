@@ -0,0 +1,316 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.metrics.LookbackMetrics;
+import net.finmath.functions.NormalDistribution;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.randomnumbers.MersenneTwister;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Monte Carlo path kernel for lookback options on a single underlying, for models without a closed-form
+ * lookback price (local and stochastic volatility).
+ *
+ * <p>Every path is simulated by one loop over the time steps which carries, in local variables, the model state
+ * (log-spot, variance or local volatility), the running maximum and minimum on the monitoring dates, and a
+ * <em>shadow</em> Black–Scholes path. The shadow path is driven by the same Brownian increments of the underlying
+ * with a constant effective volatility {@link #getEffectiveVolatility()}; its discretely monitored lookback has the
+ * exact price given by {@link DiscretelyMonitoredLookbackPrices}, so it is used as a control variate
+ * {@code Z_cv = Z - c (Y - E[Y])} without bias, whatever the model. The loop does not allocate: the results of a
+ * path are written into a scratch array and copied into the sample arrays.
+ *
+ * <p>The time grid is equidistant with {@code numberOfTimeSteps} steps, and the extrema are observed on
+ * {@code numberOfMonitoringIntervals + 1} equidistant dates (every grid time if {@code 0}), including inception
+ * and maturity.
+ *
+ * <p>Subclasses implement {@link #simulatePath(MersenneTwister, double[])} for a specific model.
+ *
+ * <p>When {@link LookbackMetrics#ENABLED} is set, the prices are recorded as valuations; the simulation loop,
+ * which tracks the extrema along the paths, is recorded as path generation.
+ */
+public abstract class LookbackPathKernel {
+
+	// Positions of the results of a path in the scratch array (log-returns with respect to the spot)
+	protected static final int LOG_TERMINAL = 0;
+	protected static final int LOG_MAXIMUM = 1;
+	protected static final int LOG_MINIMUM = 2;
+	protected static final int SHADOW_LOG_TERMINAL = 3;
+	protected static final int SHADOW_LOG_MAXIMUM = 4;
+	protected static final int SHADOW_LOG_MINIMUM = 5;
+	private static final int NUMBER_OF_PATH_RESULTS = 6;
+
+	// Model parameters common to all the kernels
+	private final double spotPrice;
+	private final double riskFreeRate;
+	// Option maturity T and time grid
+	private final double maturity;
+	private final int numberOfTimeSteps;
+	private final int numberOfMonitoringIntervals;
+	// Monte Carlo parameters
+	private final int numberOfPaths;
+	private final int seed;
+	// Flags of the grid times which are monitoring dates
+	private final boolean[] isMonitoringTime;
+
+	// Lazily generated samples of S_T, M_T and m_T, and of the shadow Black–Scholes path
+	private RandomVariable terminalValue;
+	private RandomVariable maximum;
+	private RandomVariable minimum;
+	private RandomVariable shadowTerminalValue;
+	private RandomVariable shadowMaximum;
+	private RandomVariable shadowMinimum;
+
+	/**
+	 * Creates the kernel.
+	 *
+	 * @param spotPrice                   Initial underlying value {@code S0}.
+	 * @param riskFreeRate                Constant risk-free rate {@code r}.
+	 * @param maturity                    Option maturity {@code T}.
+	 * @param numberOfTimeSteps           Number of equidistant time steps of the simulation.
+	 * @param numberOfMonitoringIntervals Number of equidistant monitoring intervals; it must divide the number of
+	 *                                    time steps. If {@code 0}, every grid time is a monitoring date.
+	 * @param numberOfPaths               Number of simulated paths.
+	 * @param seed                        Seed of the Mersenne Twister random number generator.
+	 */
+	protected LookbackPathKernel(double spotPrice, double riskFreeRate, double maturity, int numberOfTimeSteps,
+			int numberOfMonitoringIntervals, int numberOfPaths, int seed) {
+		if(numberOfMonitoringIntervals < 0 || (numberOfMonitoringIntervals > 0 && numberOfTimeSteps % numberOfMonitoringIntervals != 0)) {
+			throw new IllegalArgumentException("The number of monitoring intervals must divide the number of time steps.");
+		}
+		this.spotPrice=spotPrice;
+		this.riskFreeRate=riskFreeRate;
+		this.maturity=maturity;
+		this.numberOfTimeSteps=numberOfTimeSteps;
+		this.numberOfMonitoringIntervals=numberOfMonitoringIntervals == 0 ? numberOfTimeSteps : numberOfMonitoringIntervals;
+		this.numberOfPaths=numberOfPaths;
+		this.seed=seed;
+
+		isMonitoringTime = new boolean[numberOfTimeSteps + 1];
+		int stepsPerInterval = numberOfTimeSteps / this.numberOfMonitoringIntervals;
+		for(int timeIndex = 0; timeIndex <= numberOfTimeSteps; timeIndex += stepsPerInterval) {
+			isMonitoringTime[timeIndex] = true;
+		}
+	}
+
+	/**
+	 * Returns the constant volatility of the shadow Black–Scholes path used as control variate.
+	 *
+	 * @return The effective volatility.
+	 */
+	public abstract double getEffectiveVolatility();
+
+	/**
+	 * Simulates one path and writes its log-returns (with respect to the spot) at the positions
+	 * {@link #LOG_TERMINAL}, {@link #LOG_MAXIMUM}, {@link #LOG_MINIMUM}, {@link #SHADOW_LOG_TERMINAL},
+	 * {@link #SHADOW_LOG_MAXIMUM} and {@link #SHADOW_LOG_MINIMUM} of {@code pathResults}.
+	 *
+	 * @param randomNumberGenerator The random number generator, shared by consecutive paths.
+	 * @param pathResults           The scratch array receiving the results.
+	 */
+	protected abstract void simulatePath(MersenneTwister randomNumberGenerator, double[] pathResults);
+
+	/**
+	 * Returns the terminal value {@code S_T}, path by path.
+	 *
+	 * @return The terminal value.
+	 */
+	public RandomVariable getTerminalValue() {
+		generate();
+		return terminalValue;
+	}
+
+	/**
+	 * Returns the running maximum {@code M_T} on the monitoring dates, path by path.
+	 *
+	 * @return The running maximum.
+	 */
+	public RandomVariable getMaximum() {
+		generate();
+		return maximum;
+	}
+
+	/**
+	 * Returns the running minimum {@code m_T} on the monitoring dates, path by path.
+	 *
+	 * @return The running minimum.
+	 */
+	public RandomVariable getMinimum() {
+		generate();
+		return minimum;
+	}
+
+	/**
+	 * Returns the discounted payoff of the lookback, path by path (standard Monte Carlo estimator {@code Z}).
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The discounted payoff at time 0.
+	 */
+	public RandomVariable getDiscountedPayoff(LookbackPayoff payoff, double strike) {
+		generate();
+		return getDiscountedPayoff(payoff, strike, terminalValue, maximum, minimum);
+	}
+
+	/**
+	 * Returns the control variate estimator {@code Z_cv = Z - c (Y - E[Y])}, path by path, where {@code Y} is the
+	 * discounted payoff on the shadow Black–Scholes path and {@code c = Cov(Z,Y)/Var(Y)} is estimated from the sample.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The control variate estimator at time 0.
+	 */
+	public RandomVariable getControlVariateEstimator(LookbackPayoff payoff, double strike) {
+		generate();
+		RandomVariable Z = getDiscountedPayoff(payoff, strike, terminalValue, maximum, minimum);
+		RandomVariable Y = getDiscountedPayoff(payoff, strike, shadowTerminalValue, shadowMaximum, shadowMinimum);
+
+		// E[Y]: exact price of the discretely monitored lookback under Black–Scholes with the effective volatility
+		double muY = DiscretelyMonitoredLookbackPrices.getPrice(payoff, spotPrice, riskFreeRate, getEffectiveVolatility(), maturity,
+				strike, numberOfMonitoringIntervals);
+
+		long startTime = LookbackMetrics.ENABLED ? System.nanoTime() : 0L;
+		// Estimate optimal coefficient c = Cov(Z,Y)/Var(Y) from the sample
+		double optimalC = Z.covariance(Y).doubleValue() / Y.variance().doubleValue();
+
+		RandomVariable Zc = Z.sub(Y.sub(muY).mult(optimalC));
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.CONTROL_VARIATE, startTime);
+			LookbackMetrics.recordVarianceReduction(Z.getVariance(), Zc.getVariance());
+		}
+		return Zc;
+	}
+
+	/**
+	 * Returns the standard Monte Carlo price of the lookback.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The Monte Carlo price at time 0.
+	 */
+	public double getValue(LookbackPayoff payoff, double strike) {
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			return getDiscountedPayoff(payoff, strike).getAverage();
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, numberOfPaths);
+			}
+		}
+	}
+
+	/**
+	 * Returns the Monte Carlo price of the lookback with the shadow Black–Scholes control variate.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @param strike The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @return The Monte Carlo price at time 0.
+	 */
+	public double getValueWithControlVariate(LookbackPayoff payoff, double strike) {
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			return getControlVariateEstimator(payoff, strike).getAverage();
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, numberOfPaths);
+			}
+		}
+	}
+
+	public double getSpotPrice() {
+		return spotPrice;
+	}
+
+	public double getRiskFreeRate() {
+		return riskFreeRate;
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+
+	public int getNumberOfTimeSteps() {
+		return numberOfTimeSteps;
+	}
+
+	public int getNumberOfMonitoringIntervals() {
+		return numberOfMonitoringIntervals;
+	}
+
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	/**
+	 * Returns true if the grid time with the given index is a monitoring date.
+	 *
+	 * @param timeIndex The index of the grid time.
+	 * @return True if the extrema are updated at this time.
+	 */
+	protected final boolean isMonitoringTime(int timeIndex) {
+		return isMonitoringTime[timeIndex];
+	}
+
+	/**
+	 * Returns a standard normal draw obtained by inversion of a uniform of the generator.
+	 *
+	 * @param randomNumberGenerator The random number generator.
+	 * @return The normal draw.
+	 */
+	protected static double nextGaussian(MersenneTwister randomNumberGenerator) {
+		double uniform = randomNumberGenerator.nextDouble();
+		while(uniform == 0.0) {
+			uniform = randomNumberGenerator.nextDouble();
+		}
+		return NormalDistribution.inverseCumulativeDistribution(uniform);
+	}
+
+	/*
+	 * Returns the discounted payoff for given samples of S_T, M_T and m_T.
+	 */
+	private RandomVariable getDiscountedPayoff(LookbackPayoff payoff, double strike, RandomVariable terminalValues,
+			RandomVariable maximumValues, RandomVariable minimumValues) {
+		long startTime = LookbackMetrics.ENABLED ? System.nanoTime() : 0L;
+		double[] values = new double[numberOfPaths];
+		double discountFactor = Math.exp(-riskFreeRate * maturity);
+		for(int path = 0; path < numberOfPaths; path++) {
+			values[path] = discountFactor * payoff.getPayoff(terminalValues.get(path), maximumValues.get(path), minimumValues.get(path), strike);
+		}
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.DISCOUNTING, startTime);
+		}
+		return new RandomVariableFromDoubleArray(0.0, values);
+	}
+
+	/*
+	 * Simulates all the paths.
+	 */
+	private synchronized void generate() {
+		if(terminalValue != null) {
+			return;
+		}
+
+		long startTime = LookbackMetrics.ENABLED ? System.nanoTime() : 0L;
+		MersenneTwister randomNumberGenerator = new MersenneTwister(seed);
+		double[][] samples = new double[NUMBER_OF_PATH_RESULTS][numberOfPaths];
+		double[] pathResults = new double[NUMBER_OF_PATH_RESULTS];
+		for(int path = 0; path < numberOfPaths; path++) {
+			simulatePath(randomNumberGenerator, pathResults);
+			for(int result = 0; result < NUMBER_OF_PATH_RESULTS; result++) {
+				samples[result][path] = spotPrice * Math.exp(pathResults[result]);
+			}
+		}
+
+		maximum = new RandomVariableFromDoubleArray(maturity, samples[LOG_MAXIMUM]);
+		minimum = new RandomVariableFromDoubleArray(maturity, samples[LOG_MINIMUM]);
+		shadowTerminalValue = new RandomVariableFromDoubleArray(maturity, samples[SHADOW_LOG_TERMINAL]);
+		shadowMaximum = new RandomVariableFromDoubleArray(maturity, samples[SHADOW_LOG_MAXIMUM]);
+		shadowMinimum = new RandomVariableFromDoubleArray(maturity, samples[SHADOW_LOG_MINIMUM]);
+		terminalValue = new RandomVariableFromDoubleArray(maturity, samples[LOG_TERMINAL]);
+		if(LookbackMetrics.ENABLED) {
+			LookbackMetrics.recordPhase(LookbackMetrics.Phase.PATH_GENERATION, startTime);
+		}
+	}
+}
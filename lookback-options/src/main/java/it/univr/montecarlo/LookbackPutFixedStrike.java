@@ -1,5 +1,6 @@
 package it.univr.montecarlo;
 
+import it.univr.metrics.LookbackMetrics;
 import net.finmath.exception.CalculationException;
 import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
 //import net.finmath.montecarlo.assetderivativevaluation.products.AbstractAssetMonteCarloProduct;
@@ -12,7 +13,8 @@ import net.finmath.stochastic.RandomVariable;
  * {@code max(K - m_T, 0)}, where {@code m_T = min_{t in [0,T]} S_t}.
  *
  * <p>For the discretely monitored version, the running minimum {@code m_T} is computed only on a finite set of
- * monitoring dates (a subset of the model time grid), controlled by {@code discretelyTimes}.
+ * monitoring dates (a subset of the model time grid), controlled by {@code discretelyTimes}, or
+ * on an arbitrary {@link MonitoringSchedule} (partial-period window, fixing calendar).
  */
 public class LookbackPutFixedStrike extends LookbackOption {
 
@@ -22,8 +24,8 @@ public class LookbackPutFixedStrike extends LookbackOption {
 	private double strike;
 	// Underlying index (useful for multi-asset models)
 	private int underlyingIndex;
-	// Number of monitoring dates for discrete monitoring (0 = use full time grid)
-	private int discretelyTimes;
+	// Monitoring dates (full time grid, equidistant dates, window or fixing calendar)
+	private MonitoringSchedule monitoringSchedule;
 
 
 	/**
@@ -38,7 +40,7 @@ public class LookbackPutFixedStrike extends LookbackOption {
 		this.maturity=maturity;
 		this.strike=strike;
 		this.underlyingIndex=0;
-		this.discretelyTimes=discretelyTimes;
+		this.monitoringSchedule=MonitoringSchedule.equidistant(discretelyTimes);
 	}
 
 	/**
@@ -52,7 +54,7 @@ public class LookbackPutFixedStrike extends LookbackOption {
 		this.maturity=maturity;
 		this.strike=strike;
 		this.underlyingIndex=0;
-		this.discretelyTimes=0;
+		this.monitoringSchedule=MonitoringSchedule.continuous();
 	}
 
 	/**
@@ -67,7 +69,7 @@ public class LookbackPutFixedStrike extends LookbackOption {
 		this.maturity=maturity;
 		this.strike=strike;
 		this.underlyingIndex=underlyingIndex;
-		this.discretelyTimes=0;
+		this.monitoringSchedule=MonitoringSchedule.continuous();
 	}
 
 	/**
@@ -83,17 +85,32 @@ public class LookbackPutFixedStrike extends LookbackOption {
 		this.maturity=maturity;
 		this.strike=strike;
 		this.underlyingIndex=underlyingIndex;
-		this.discretelyTimes=discretelyTimes;
+		this.monitoringSchedule=MonitoringSchedule.equidistant(discretelyTimes);
 	}
 
 
 
+	/**
+	 * Creates a fixed-strike lookback put on a specific underlying index, monitored on the given schedule.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param strike             Fixed strike {@code K}.
+	 * @param monitoringSchedule Monitoring dates used to compute the running minimum.
+	 */
+	public LookbackPutFixedStrike(double maturity, int underlyingIndex, double strike, MonitoringSchedule monitoringSchedule) {
+		this.maturity=maturity;
+		this.strike=strike;
+		this.underlyingIndex=underlyingIndex;
+		this.monitoringSchedule=monitoringSchedule;
+	}
+
 	/**
 	 * Evaluates the discounted value of the product at a given evaluation time.
 	 *
 	 * <p>The method:
 	 * <ol>
-	 *   <li>builds the monitoring time grid (full grid if {@code discretelyTimes == 0});</li>
+	 *   <li>retrieves the monitoring plan of the schedule on the model grid (compiled once and cached);</li>
 	 *   <li>computes the pathwise running minimum of the underlying over the monitoring grid;</li>
 	 *   <li>computes the payoff {@code max(K - m_T, 0)} at maturity;</li>
 	 *   <li>discounts the payoff from maturity to {@code evaluationTime} using numeraire and Monte Carlo weights.</li>
@@ -105,23 +122,22 @@ public class LookbackPutFixedStrike extends LookbackOption {
 	 */
 	@Override
 	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
-		double[] discretizedTimes = buildMonitoringTimes(discretelyTimes, model);
-		// Pathwise running minimum m_T over the monitoring grid
-		RandomVariable minValue = getMin(discretizedTimes, model, underlyingIndex);
-		// Payoff at maturity: max(K - m_T, 0)
-		RandomVariable values = minValue.sub(strike).mult(-1.0).floor(0.0);
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			MonitoringPlan monitoringPlan = monitoringSchedule.getPlan(model.getTimeDiscretization());
+			// Pathwise running minimum m_T over the monitoring grid
+			RandomVariable minValue = getMin(monitoringPlan, model, underlyingIndex);
+			// Payoff at maturity: max(K - m_T, 0)
+			RandomVariable values = minValue.sub(strike).mult(-1.0).floor(0.0);
 
-		// Discount payoff from maturity to evaluationTime using numeraire and Monte Carlo weights
-		final RandomVariable numeraireAtMaturity = model.getNumeraire(maturity);
-		final RandomVariable monteCarloWeights = model.getMonteCarloWeights(maturity);
-		values = values.div(numeraireAtMaturity).mult(monteCarloWeights);
-
-		// ...to evaluation time.
-		final RandomVariable numeraireAtEvalTime = model.getNumeraire(evaluationTime);
-		final RandomVariable monteCarloWeightsAtEvalTime = model.getMonteCarloWeights(evaluationTime);
-		values = values.mult(numeraireAtEvalTime).div(monteCarloWeightsAtEvalTime);
-	
-		return values;
+			// Discount payoff from maturity to evaluationTime using numeraire and Monte Carlo weights
+			return discount(values, maturity, evaluationTime, model);
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, model.getNumberOfPaths());
+			}
+		}
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package it.univr.montecarlo;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Monte Carlo product implementing a fixed-strike worst-of lookback put.
+ *
+ * <p>Payoff: {@code max(K - min_i min_t w_i S_i(t), 0)}, i.e. the minimum over the assets of the
+ * running minima of the weighted underlyings. With {@code w_i = 1/S_i(0)} the strike is expressed
+ * in terms of performance (e.g. {@code K = 1.0} is at the money).
+ *
+ * <p>For the discretely monitored version, the minima are computed only on a finite set of
+ * monitoring dates (a subset of the model time grid), controlled by {@code discretelyTimes}.
+ */
+public class LookbackPutFixedStrikeWorstOf extends MultiAssetLookbackOption {
+
+	// Fixed strike K
+	private final double strike;
+
+	/**
+	 * Creates a discretely monitored fixed-strike worst-of lookback put.
+	 *
+	 * @param maturity        Option maturity {@code T}.
+	 * @param weights         Weights {@code w_i}, one per asset of the model.
+	 * @param strike          Fixed strike {@code K}.
+	 * @param discretelyTimes Number of monitoring dates. If {@code 0}, the full model time grid is used.
+	 */
+	public LookbackPutFixedStrikeWorstOf(double maturity, double[] weights, double strike, int discretelyTimes) {
+		super(maturity, weights, discretelyTimes);
+		this.strike=strike;
+	}
+
+	/**
+	 * Creates a fixed-strike worst-of lookback put using the full model time grid
+	 * (i.e. continuous monitoring).
+	 *
+	 * @param maturity Option maturity {@code T}.
+	 * @param weights  Weights {@code w_i}, one per asset of the model.
+	 * @param strike   Fixed strike {@code K}.
+	 */
+	public LookbackPutFixedStrikeWorstOf(double maturity, double[] weights, double strike) {
+		this(maturity, weights, strike, 0);
+	}
+
+	/**
+	 * Creates a fixed-strike worst-of lookback put monitored on the given schedule.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param weights            Weights {@code w_i}, one per asset of the model.
+	 * @param strike             Fixed strike {@code K}.
+	 * @param monitoringSchedule Monitoring dates used to compute the running minima.
+	 */
+	public LookbackPutFixedStrikeWorstOf(double maturity, double[] weights, double strike, MonitoringSchedule monitoringSchedule) {
+		super(maturity, weights, monitoringSchedule);
+		this.strike=strike;
+	}
+
+	/**
+	 * Evaluates the discounted value of the product at a given evaluation time, using the
+	 * pathwise minimum over the assets of the running minima computed by {@link #getExtrema(int[], AssetModelMonteCarloSimulationModel)}.
+	 *
+	 * @param evaluationTime Time {@code t} at which the value is returned.
+	 * @param model          Multi-asset Monte Carlo simulation model providing the underlying paths and numeraires.
+	 * @return A {@link RandomVariable} containing the discounted payoff value path-by-path at {@code evaluationTime}.
+	 */
+	@Override
+	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		int[] monitoringTimeIndices = getMonitoringSchedule().getPlan(model.getTimeDiscretization()).timeIndices;
+
+		// Pathwise minimum over assets and monitoring times of the weighted underlyings
+		RandomVariable minValue = getExtrema(monitoringTimeIndices, model).getWorstOfMinimum();
+		// Payoff at maturity: max(K - min_i min_t w_i S_i(t), 0)
+		RandomVariable values = minValue.sub(strike).mult(-1.0).floor(0.0);
+
+		return discount(values, evaluationTime, model);
+	}
+}
@@ -1,5 +1,6 @@
 package it.univr.montecarlo;
 
+import it.univr.metrics.LookbackMetrics;
 import net.finmath.exception.CalculationException;
 import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
 //import net.finmath.montecarlo.assetderivativevaluation.products.AbstractAssetMonteCarloProduct;
@@ -13,7 +14,8 @@ import net.finmath.stochastic.RandomVariable;
  * {@code max(M_T - S_T, 0)}, where {@code M_T = max_{t in [0,T]} S_t} and {@code S_T} is the terminal value.
  *
  * <p>For the discretely monitored version, the running maximum {@code M_T} is computed only on a finite set of
- * monitoring dates (a subset of the model time grid), controlled by {@code discretelyTimes}.
+ * monitoring dates (a subset of the model time grid), controlled by {@code discretelyTimes}, or
+ * on an arbitrary {@link MonitoringSchedule} (partial-period window, fixing calendar).
  *
  */
 public class LookbackPutFloatingStrike extends LookbackOption {
@@ -22,8 +24,8 @@ public class LookbackPutFloatingStrike extends LookbackOption {
 	private double maturity;
 	// Underlying index (useful for multi-asset models)
 	private int underlyingIndex;
-	// Number of monitoring dates for discrete monitoring (0 = use full time grid)
-	private int discretelyTimes;
+	// Monitoring dates (full time grid, equidistant dates, window or fixing calendar)
+	private MonitoringSchedule monitoringSchedule;
 
 	/**
 	 * Creates a discretely monitored floating-strike lookback put on the first underlying (index 0).
@@ -35,7 +37,7 @@ public class LookbackPutFloatingStrike extends LookbackOption {
 	public LookbackPutFloatingStrike(double maturity, int discretelyTimes) {
 		this.maturity=maturity;
 		this.underlyingIndex=0;
-		this.discretelyTimes=discretelyTimes;
+		this.monitoringSchedule=MonitoringSchedule.equidistant(discretelyTimes);
 	}
 
 	/**
@@ -47,7 +49,7 @@ public class LookbackPutFloatingStrike extends LookbackOption {
 	public LookbackPutFloatingStrike(double maturity) {
 		this.maturity=maturity;
 		this.underlyingIndex=0;
-		this.discretelyTimes=0;
+		this.monitoringSchedule=MonitoringSchedule.continuous();
 	}
 
 	/**
@@ -60,7 +62,7 @@ public class LookbackPutFloatingStrike extends LookbackOption {
 	public LookbackPutFloatingStrike(int underlyingIndex, double maturity) {
 		this.maturity=maturity;
 		this.underlyingIndex=underlyingIndex;
-		this.discretelyTimes=0;
+		this.monitoringSchedule=MonitoringSchedule.continuous();
 	}
 
 	/**
@@ -74,7 +76,20 @@ public class LookbackPutFloatingStrike extends LookbackOption {
 	public LookbackPutFloatingStrike(double maturity, int underlyingIndex, int discretelyTimes) {
 		this.maturity=maturity;
 		this.underlyingIndex=underlyingIndex;
-		this.discretelyTimes=discretelyTimes;
+		this.monitoringSchedule=MonitoringSchedule.equidistant(discretelyTimes);
+	}
+
+	/**
+	 * Creates a floating-strike lookback put on a specific underlying index, monitored on the given schedule.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param monitoringSchedule Monitoring dates used to compute the running maximum.
+	 */
+	public LookbackPutFloatingStrike(double maturity, int underlyingIndex, MonitoringSchedule monitoringSchedule) {
+		this.maturity=maturity;
+		this.underlyingIndex=underlyingIndex;
+		this.monitoringSchedule=monitoringSchedule;
 	}
 
 	/**
@@ -82,7 +97,7 @@ public class LookbackPutFloatingStrike extends LookbackOption {
 	 *
 	 * <p>The method:
 	 * <ol>
-	 *   <li>builds the monitoring time grid (full grid if {@code discretelyTimes == 0});</li>
+	 *   <li>retrieves the monitoring plan of the schedule on the model grid (compiled once and cached);</li>
 	 *   <li>computes the pathwise running maximum of the underlying over the monitoring grid;</li>
 	 *   <li>retrieves the terminal underlying value {@code S_T};</li>
 	 *   <li>computes the payoff {@code max(M_T - S_T, 0)} at maturity;</li>
@@ -95,25 +110,24 @@ public class LookbackPutFloatingStrike extends LookbackOption {
 	 */
 	@Override
 	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
-		double[] discretizedTimes = buildMonitoringTimes(discretelyTimes, model);
-		// Pathwise running maximum M_T over the monitoring grid
-		RandomVariable maxValue = getMax(discretizedTimes, model, underlyingIndex);
-		// Underlying value at maturity S_T
-		RandomVariable finalValue = model.getAssetValue(model.getTimeIndex(maturity), underlyingIndex);
-		// Payoff at maturity: max(M_T - S_T, 0)
-		RandomVariable values = maxValue.sub(finalValue).floor(0.0);
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			MonitoringPlan monitoringPlan = monitoringSchedule.getPlan(model.getTimeDiscretization());
+			// Pathwise running maximum M_T over the monitoring grid
+			RandomVariable maxValue = getMax(monitoringPlan, model, underlyingIndex);
+			// Underlying value at maturity S_T
+			RandomVariable finalValue = model.getAssetValue(model.getTimeIndex(maturity), underlyingIndex);
+			// Payoff at maturity: max(M_T - S_T, 0)
+			RandomVariable values = maxValue.sub(finalValue).floor(0.0);
 
-		// Discount payoff from maturity to evaluationTime using numeraire and Monte Carlo weights
-		final RandomVariable numeraireAtMaturity = model.getNumeraire(maturity);
-		final RandomVariable monteCarloWeights = model.getMonteCarloWeights(maturity);
-		values = values.div(numeraireAtMaturity).mult(monteCarloWeights);
-
-		// ...to evaluation time.
-		final RandomVariable numeraireAtEvalTime = model.getNumeraire(evaluationTime);
-		final RandomVariable monteCarloWeightsAtEvalTime = model.getMonteCarloWeights(evaluationTime);
-		values = values.mult(numeraireAtEvalTime).div(monteCarloWeightsAtEvalTime);
-	
-		return values;
+			// Discount payoff from maturity to evaluationTime using numeraire and Monte Carlo weights
+			return discount(values, maturity, evaluationTime, model);
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, model.getNumberOfPaths());
+			}
+		}
 	}
 	
 }
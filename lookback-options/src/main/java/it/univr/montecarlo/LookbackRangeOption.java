@@ -0,0 +1,44 @@
+package it.univr.montecarlo;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Monte Carlo product implementing an option on the range of the underlying.
+ *
+ * <p>Payoff: {@code max(M_T - m_T - K, 0)}, where {@code M_T} and {@code m_T} are the maximum and the minimum of the
+ * underlying over the monitoring dates. With {@code K = 0} and the last monitoring date at maturity, the range is the
+ * sum of the floating-strike call {@code S_T - m_T} and put {@code M_T - S_T}. With a rolling window of {@code w}
+ * monitoring dates, the payoff is on the largest range of {@code w} consecutive dates.
+ */
+public class LookbackRangeOption extends LookbackStatisticOption {
+
+	/**
+	 * Creates a discretely monitored option on the range of the first underlying (index 0).
+	 *
+	 * @param maturity        Option maturity {@code T}.
+	 * @param strike          Strike {@code K} on the range ({@code 0} to pay the range).
+	 * @param discretelyTimes Number of monitoring dates. If {@code 0}, the full model time grid is used.
+	 */
+	public LookbackRangeOption(double maturity, double strike, int discretelyTimes) {
+		super(maturity, 0, strike, 0, MonitoringSchedule.equidistant(discretelyTimes));
+	}
+
+	/**
+	 * Creates an option on the range, over the whole period or a rolling window of monitoring dates.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param strike             Strike {@code K} on the range.
+	 * @param windowLength       Number of consecutive monitoring dates of the rolling window, at least 2. If
+	 *                           {@code 0}, the range is taken over the whole monitoring period.
+	 * @param monitoringSchedule Monitoring dates of the range.
+	 */
+	public LookbackRangeOption(double maturity, int underlyingIndex, double strike, int windowLength, MonitoringSchedule monitoringSchedule) {
+		super(maturity, underlyingIndex, strike, windowLength, monitoringSchedule);
+	}
+
+	@Override
+	protected RandomVariable getStatistic(RunningExtremaState state) {
+		return getWindowLength() == 0 ? state.getRange() : state.getMaximumWindowRange();
+	}
+}
@@ -0,0 +1,145 @@
+package it.univr.montecarlo;
+
+import it.univr.metrics.LookbackMetrics;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Abstract base class of the options on a statistic {@code X} of the path of the underlying over the monitoring
+ * dates (maximum drawdown, maximum drawup, range), paying {@code max(X - K, 0)} at maturity. With {@code K = 0} the
+ * option pays the statistic itself, as the drawdown-linked notes do.
+ *
+ * <p>The statistic is taken over the whole monitoring period or, with a window of {@code w} monitoring dates, over
+ * every {@code w} consecutive dates (rolling window). It is read from the {@link RunningExtremaState} of the
+ * underlying, so the products on the same monitoring plan and underlying can be valued from one walk over the
+ * monitoring dates; see {@link LookbackOption#getValues(AssetModelMonteCarloSimulationModel, LookbackOption...)}.
+ *
+ * <p>Subclasses implement {@link #getStatistic(RunningExtremaState)}.
+ */
+public abstract class LookbackStatisticOption extends LookbackOption {
+
+	// Option maturity T
+	private final double maturity;
+	// Underlying index (useful for multi-asset models)
+	private final int underlyingIndex;
+	// Strike K on the statistic
+	private final double strike;
+	// Number of monitoring dates of the rolling window (0 for the whole period)
+	private final int windowLength;
+	// Monitoring dates (full time grid, equidistant dates, window or fixing calendar)
+	private final MonitoringSchedule monitoringSchedule;
+
+	/**
+	 * Creates the option.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param underlyingIndex    Index of the underlying to be used in the simulation model.
+	 * @param strike             Strike {@code K} on the statistic.
+	 * @param windowLength       Number of consecutive monitoring dates of the rolling window, at least 2. If
+	 *                           {@code 0}, the statistic is taken over the whole monitoring period.
+	 * @param monitoringSchedule Monitoring dates of the statistic.
+	 */
+	protected LookbackStatisticOption(double maturity, int underlyingIndex, double strike, int windowLength, MonitoringSchedule monitoringSchedule) {
+		if(windowLength < 0 || windowLength == 1) {
+			throw new IllegalArgumentException("The window must have at least 2 monitoring dates.");
+		}
+		this.maturity=maturity;
+		this.underlyingIndex=underlyingIndex;
+		this.strike=strike;
+		this.windowLength=windowLength;
+		this.monitoringSchedule=monitoringSchedule;
+	}
+
+	/**
+	 * Returns the statistic of the payoff from the running state of the underlying.
+	 *
+	 * @param state The running state, with the rolling-window statistics if {@link #getWindowLength()} is positive.
+	 * @return The statistic, path by path.
+	 */
+	protected abstract RandomVariable getStatistic(RunningExtremaState state);
+
+	/**
+	 * Evaluates the discounted value of the product at a given evaluation time: the statistic is read from the
+	 * running state of the underlying over the monitoring plan, the payoff {@code max(X - K, 0)} is computed at
+	 * maturity and discounted to {@code evaluationTime} using numeraire and Monte Carlo weights.
+	 *
+	 * @param evaluationTime Time {@code t} at which the value is returned.
+	 * @param model          Monte Carlo simulation model providing the underlying paths and numeraires.
+	 * @return A {@link RandomVariable} containing the discounted payoff value path-by-path at {@code evaluationTime}.
+	 */
+	@Override
+	public RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		return getValue(evaluationTime, model, null);
+	}
+
+	/**
+	 * Evaluates the discounted value of the product from a running state of the underlying already walked, as
+	 * {@link LookbackOption#getValues(AssetModelMonteCarloSimulationModel, LookbackOption...)} does for the products
+	 * sharing a walk.
+	 *
+	 * @param evaluationTime Time {@code t} at which the value is returned.
+	 * @param model          Monte Carlo simulation model providing the underlying paths and numeraires.
+	 * @param state          A running state satisfying {@link #isReadableFrom(RunningExtremaState, MonitoringPlan)},
+	 *                       or {@code null} to walk the monitoring dates.
+	 * @return A {@link RandomVariable} containing the discounted payoff value path-by-path at {@code evaluationTime}.
+	 * @throws CalculationException If the valuation fails.
+	 */
+	RandomVariable getValue(double evaluationTime, AssetModelMonteCarloSimulationModel model, RunningExtremaState state) throws CalculationException {
+		LookbackMetrics.Valuation valuation = LookbackMetrics.ENABLED ? LookbackMetrics.startValuation(getClass().getSimpleName()) : null;
+		try {
+			MonitoringPlan monitoringPlan = monitoringSchedule.getPlan(model.getTimeDiscretization());
+			if(state == null) {
+				state = getRunningExtremaState(monitoringPlan, model, underlyingIndex, windowLength);
+			}
+			else if(!isReadableFrom(state, monitoringPlan)) {
+				throw new IllegalArgumentException("The running state does not belong to the monitoring plan, underlying and window of the product.");
+			}
+
+			// Payoff at maturity: max(X - K, 0)
+			RandomVariable values = getStatistic(state).sub(strike).floor(0.0);
+
+			// Discount payoff from maturity to evaluationTime using numeraire and Monte Carlo weights
+			return discount(values, maturity, evaluationTime, model);
+		}
+		finally {
+			if(LookbackMetrics.ENABLED) {
+				LookbackMetrics.endValuation(valuation, model.getNumberOfPaths());
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the statistic of the payoff can be read from a running state: a state of the monitoring plan
+	 * and underlying of the product, with the window of the product (any window if the product has none).
+	 *
+	 * @param state          The running state.
+	 * @param monitoringPlan The monitoring plan of the product on the time discretization of the model.
+	 * @return True if the state serves the product.
+	 */
+	boolean isReadableFrom(RunningExtremaState state, MonitoringPlan monitoringPlan) {
+		return state.getMonitoringPlan() == monitoringPlan && state.getUnderlyingIndex() == underlyingIndex
+				&& (windowLength == 0 || state.getWindowLength() == windowLength);
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+
+	public int getUnderlyingIndex() {
+		return underlyingIndex;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+
+	@Override
+	public int getWindowLength() {
+		return windowLength;
+	}
+
+	public MonitoringSchedule getMonitoringSchedule() {
+		return monitoringSchedule;
+	}
+}
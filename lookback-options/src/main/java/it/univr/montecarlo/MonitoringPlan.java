@@ -0,0 +1,167 @@
+package it.univr.montecarlo;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * A {@link MonitoringSchedule} compiled on the {@link TimeDiscretization} of a model: the sorted distinct time
+ * indices of the monitoring dates, their times and the steps between consecutive dates.
+ *
+ * <p>Plans are immutable and are obtained from {@link #of(MonitoringSchedule, TimeDiscretization)}, which caches
+ * them per time discretization and schedule. Since both the time discretizations and the schedules compare by
+ * value, products created anew for every valuation (as in a parameter sweep) share the plan compiled on the
+ * first valuation. The cache can be used from several threads; it holds the time discretizations weakly, so the
+ * plans of a discarded model are released with it. Comparing time discretizations by value costs a pass over the
+ * grid, so the plans of the last time discretization requested are also found by identity, without hashing it.
+ */
+public final class MonitoringPlan {
+
+	// Plans compiled so far, per time discretization and schedule
+	private static final Map<TimeDiscretization, Map<MonitoringSchedule, MonitoringPlan>> cache = Collections.synchronizedMap(new WeakHashMap<>());
+	// Plans of the last time discretization requested
+	private static volatile CacheEntry lastEntry = new CacheEntry(null, null);
+
+	// Sorted distinct time indices of the monitoring dates (read directly by the extremum loops of the package)
+	final int[] timeIndices;
+	// Times of the monitoring dates
+	private final double[] times;
+	// True if every time of the grid is a monitoring date
+	private final boolean isEveryGridTime;
+
+	private MonitoringPlan(int[] timeIndices, TimeDiscretization timeDiscretization) {
+		this.timeIndices=timeIndices;
+		this.times=new double[timeIndices.length];
+		for(int i = 0; i < timeIndices.length; i++) {
+			times[i] = timeDiscretization.getTime(timeIndices[i]);
+		}
+		this.isEveryGridTime=timeIndices.length == timeDiscretization.getNumberOfTimes();
+	}
+
+	/**
+	 * Returns the plan of a schedule on a time discretization, compiling it on the first request.
+	 *
+	 * @param monitoringSchedule The monitoring schedule.
+	 * @param timeDiscretization The time discretization of the simulation model.
+	 * @return The (shared) plan.
+	 */
+	public static MonitoringPlan of(MonitoringSchedule monitoringSchedule, TimeDiscretization timeDiscretization) {
+		CacheEntry entry = lastEntry;
+		Map<MonitoringSchedule, MonitoringPlan> plansOfTimeDiscretization;
+		if(entry.timeDiscretization.get() == timeDiscretization) {
+			plansOfTimeDiscretization = entry.plans;
+		}
+		else {
+			synchronized(cache) {
+				plansOfTimeDiscretization = cache.get(timeDiscretization);
+				if(plansOfTimeDiscretization == null) {
+					plansOfTimeDiscretization = new ConcurrentHashMap<>();
+					cache.put(timeDiscretization, plansOfTimeDiscretization);
+				}
+			}
+			lastEntry = new CacheEntry(timeDiscretization, plansOfTimeDiscretization);
+		}
+		return plansOfTimeDiscretization.computeIfAbsent(monitoringSchedule,
+				schedule -> new MonitoringPlan(schedule.getTimeIndices(timeDiscretization), timeDiscretization));
+	}
+
+	/**
+	 * Returns the number of distinct monitoring dates.
+	 *
+	 * @return The number of dates.
+	 */
+	public int getNumberOfDates() {
+		return timeIndices.length;
+	}
+
+	/**
+	 * Returns the time index of a monitoring date.
+	 *
+	 * @param date The index of the monitoring date, from {@code 0} to {@code getNumberOfDates() - 1}.
+	 * @return The index of the date in the time discretization.
+	 */
+	public int getTimeIndex(int date) {
+		return timeIndices[date];
+	}
+
+	/**
+	 * Returns the time of a monitoring date.
+	 *
+	 * @param date The index of the monitoring date.
+	 * @return The time.
+	 */
+	public double getTime(int date) {
+		return times[date];
+	}
+
+	/**
+	 * Returns the time elapsed since the previous monitoring date ({@code 0} for the first date).
+	 *
+	 * @param date The index of the monitoring date.
+	 * @return The time step between the dates.
+	 */
+	public double getTimeStep(int date) {
+		return date == 0 ? 0.0 : times[date] - times[date - 1];
+	}
+
+	/**
+	 * Returns the number of time steps of the grid since the previous monitoring date ({@code 0} for the first date).
+	 *
+	 * @param date The index of the monitoring date.
+	 * @return The number of grid steps between the dates.
+	 */
+	public int getNumberOfGridSteps(int date) {
+		return date == 0 ? 0 : timeIndices[date] - timeIndices[date - 1];
+	}
+
+	/**
+	 * Returns true if every time of the grid is a monitoring date.
+	 *
+	 * @return True for the continuous-monitoring approximation.
+	 */
+	public boolean isEveryGridTime() {
+		return isEveryGridTime;
+	}
+
+	/**
+	 * Returns a copy of the time indices of the monitoring dates.
+	 *
+	 * @return The sorted distinct time indices.
+	 */
+	public int[] getTimeIndices() {
+		return timeIndices.clone();
+	}
+
+	/**
+	 * Returns a copy of the times of the monitoring dates.
+	 *
+	 * @return The sorted distinct monitoring times.
+	 */
+	public double[] getTimes() {
+		return times.clone();
+	}
+
+	/*
+	 * A time discretization (held weakly) and its plans.
+	 */
+	private static final class CacheEntry {
+
+		private final WeakReference<TimeDiscretization> timeDiscretization;
+		private final Map<MonitoringSchedule, MonitoringPlan> plans;
+
+		private CacheEntry(TimeDiscretization timeDiscretization, Map<MonitoringSchedule, MonitoringPlan> plans) {
+			this.timeDiscretization=new WeakReference<>(timeDiscretization);
+			this.plans=plans;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MonitoringPlan [numberOfDates=" + timeIndices.length + ", firstTime=" + times[0] + ", lastTime="
+				+ times[times.length - 1] + ", isEveryGridTime=" + isEveryGridTime + "]";
+	}
+}
@@ -0,0 +1,241 @@
+package it.univr.montecarlo;
+
+import java.util.Arrays;
+
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Description of the dates on which a lookback option observes its underlying.
+ *
+ * <p>A schedule is independent of the simulation: it is compiled against the {@link TimeDiscretization}
+ * of a model by {@link #getTimeIndices(TimeDiscretization)}, which returns the sorted array of the
+ * distinct time indices to be visited. The extremum walk in {@link LookbackOption} then reads the
+ * underlying directly by time index, without any time-to-index lookup inside the loop.
+ *
+ * <p>The following schedules are supported:
+ * <ul>
+ *   <li>{@link #continuous()}: every time of the model grid (approximation of continuous monitoring);</li>
+ *   <li>{@link #equidistant(int)}: a number of equidistant dates over the whole grid;</li>
+ *   <li>{@link #window(double, double, int)}: all grid times, or a number of equidistant dates, in a
+ *       window {@code [start, end]} (partial-period lookbacks, monitoring that starts late);</li>
+ *   <li>{@link #fixings(double...)}: an arbitrary fixing calendar.</li>
+ * </ul>
+ *
+ * Dates which do not fall on the model grid are mapped to the nearest grid time. Dates mapped to the
+ * same grid time are observed only once.
+ *
+ * <p>Schedules compare by value. The products use {@link #getPlan(TimeDiscretization)}, which returns the
+ * compiled {@link MonitoringPlan} shared by all the equal schedules on the same time discretization.
+ */
+public final class MonitoringSchedule {
+
+	// Tolerance used to accept monitoring times at the end of the model time grid
+	private static final double TIME_TOLERANCE = 1E-10;
+
+	private static final MonitoringSchedule CONTINUOUS = new MonitoringSchedule(Double.NaN, Double.NaN, 0, null);
+
+	// Start and end of the monitoring window (NaN = first and last time of the model grid)
+	private final double windowStart;
+	private final double windowEnd;
+	// Number of equidistant monitoring dates in the window (0 = every grid time in the window)
+	private final int numberOfDates;
+	// Explicit fixing calendar (null if the schedule is defined by a window)
+	private final double[] fixingTimes;
+
+	private MonitoringSchedule(double windowStart, double windowEnd, int numberOfDates, double[] fixingTimes) {
+		this.windowStart=windowStart;
+		this.windowEnd=windowEnd;
+		this.numberOfDates=numberOfDates;
+		this.fixingTimes=fixingTimes;
+	}
+
+	/**
+	 * Returns the schedule observing every time of the model grid.
+	 *
+	 * @return The schedule approximating continuous monitoring.
+	 */
+	public static MonitoringSchedule continuous() {
+		return CONTINUOUS;
+	}
+
+	/**
+	 * Returns the schedule observing {@code numberOfDates + 1} equidistant dates (including the first and the
+	 * last time of the model grid). This is the discretely monitored schedule of the lookback products.
+	 *
+	 * @param numberOfDates The number of monitoring intervals. If {@code 0}, the full model time grid is used.
+	 * @return The schedule.
+	 */
+	public static MonitoringSchedule equidistant(int numberOfDates) {
+		if(numberOfDates < 0) {
+			throw new IllegalArgumentException("The number of monitoring dates must be non-negative.");
+		}
+		return numberOfDates == 0 ? CONTINUOUS : new MonitoringSchedule(Double.NaN, Double.NaN, numberOfDates, null);
+	}
+
+	/**
+	 * Returns a schedule observing the underlying only in the window {@code [windowStart, windowEnd]}.
+	 *
+	 * @param windowStart   First monitoring time.
+	 * @param windowEnd     Last monitoring time.
+	 * @param numberOfDates The number of equidistant monitoring intervals in the window. If {@code 0}, all the
+	 *                      grid times in the window are used.
+	 * @return The schedule.
+	 */
+	public static MonitoringSchedule window(double windowStart, double windowEnd, int numberOfDates) {
+		if(!(windowStart <= windowEnd)) {
+			throw new IllegalArgumentException("The monitoring window must satisfy start <= end.");
+		}
+		if(numberOfDates < 0) {
+			throw new IllegalArgumentException("The number of monitoring dates must be non-negative.");
+		}
+		return new MonitoringSchedule(windowStart, windowEnd, numberOfDates, null);
+	}
+
+	/**
+	 * Returns a schedule observing the underlying on an arbitrary fixing calendar.
+	 *
+	 * @param fixingTimes The fixing times (in any order, duplicates are allowed).
+	 * @return The schedule.
+	 */
+	public static MonitoringSchedule fixings(double... fixingTimes) {
+		if(fixingTimes == null || fixingTimes.length == 0) {
+			throw new IllegalArgumentException("At least one fixing time is required.");
+		}
+		return new MonitoringSchedule(Double.NaN, Double.NaN, 0, fixingTimes.clone());
+	}
+
+	/**
+	 * Compiles the schedule on a time discretization.
+	 *
+	 * @param timeDiscretization The time discretization of the simulation model.
+	 * @return The sorted array of the distinct time indices at which the underlying is observed.
+	 */
+	public int[] getTimeIndices(TimeDiscretization timeDiscretization) {
+		final int numberOfTimes = timeDiscretization.getNumberOfTimes();
+
+		// Explicit fixing calendar
+		if(fixingTimes != null) {
+			int[] indices = new int[fixingTimes.length];
+			for(int i = 0; i < fixingTimes.length; i++) {
+				indices[i] = getNearestTimeIndex(timeDiscretization, fixingTimes[i]);
+			}
+			Arrays.sort(indices);
+			return removeDuplicates(indices, indices.length);
+		}
+
+		// Window [first, last] on the grid
+		int first = Double.isNaN(windowStart) ? 0 : getNearestTimeIndex(timeDiscretization, windowStart);
+		int last = Double.isNaN(windowEnd) ? numberOfTimes - 1 : getNearestTimeIndex(timeDiscretization, windowEnd);
+
+		// Case 1: every grid time in the window
+		if(numberOfDates == 0) {
+			int[] indices = new int[last - first + 1];
+			for(int i = 0; i < indices.length; i++) {
+				indices[i] = first + i;
+			}
+			return indices;
+		}
+
+		// Case 2: equidistant dates in the window, mapped to the nearest grid time
+		int[] indices = new int[numberOfDates + 1];
+		for(int i = 0; i <= numberOfDates; i++) {
+			if(Double.isNaN(windowStart) && Double.isNaN(windowEnd)) {
+				// Equidistant in the index space of the full grid
+				indices[i] = (int) Math.round(i * (numberOfTimes - 1) / (double) numberOfDates);
+			}
+			else {
+				double startTime = timeDiscretization.getTime(first);
+				double endTime = timeDiscretization.getTime(last);
+				indices[i] = getNearestTimeIndex(timeDiscretization, startTime + i * (endTime - startTime) / numberOfDates);
+			}
+		}
+		// Indices are non-decreasing by construction: only consecutive duplicates have to be removed
+		return removeDuplicates(indices, indices.length);
+	}
+
+	/**
+	 * Returns the plan of the schedule on a time discretization, compiled on the first request and then cached.
+	 *
+	 * @param timeDiscretization The time discretization of the simulation model.
+	 * @return The shared monitoring plan.
+	 */
+	public MonitoringPlan getPlan(TimeDiscretization timeDiscretization) {
+		return MonitoringPlan.of(this, timeDiscretization);
+	}
+
+	/**
+	 * Compiles the schedule on a time discretization and returns the corresponding times.
+	 *
+	 * @param timeDiscretization The time discretization of the simulation model.
+	 * @return The sorted array of the distinct monitoring times.
+	 */
+	public double[] getTimes(TimeDiscretization timeDiscretization) {
+		int[] indices = getTimeIndices(timeDiscretization);
+		double[] times = new double[indices.length];
+		for(int i = 0; i < indices.length; i++) {
+			times[i] = timeDiscretization.getTime(indices[i]);
+		}
+		return times;
+	}
+
+	/*
+	 * Returns the index of the grid time nearest to the given time.
+	 */
+	private static int getNearestTimeIndex(TimeDiscretization timeDiscretization, double time) {
+		int index = timeDiscretization.getTimeIndexNearestLessOrEqual(time);
+		if(index < 0) {
+			throw new IllegalArgumentException("The monitoring time " + time + " is before the start of the model time grid.");
+		}
+		if(index == timeDiscretization.getNumberOfTimes() - 1) {
+			if(time > timeDiscretization.getTime(index) + TIME_TOLERANCE) {
+				throw new IllegalArgumentException("The monitoring time " + time + " is after the end of the model time grid.");
+			}
+			return index;
+		}
+		double distanceBefore = time - timeDiscretization.getTime(index);
+		double distanceAfter = timeDiscretization.getTime(index + 1) - time;
+		return distanceAfter < distanceBefore ? index + 1 : index;
+	}
+
+	/*
+	 * Removes consecutive duplicates from a sorted array.
+	 */
+	private static int[] removeDuplicates(int[] sortedIndices, int length) {
+		int numberOfDistinct = 0;
+		for(int i = 0; i < length; i++) {
+			if(numberOfDistinct == 0 || sortedIndices[i] != sortedIndices[numberOfDistinct - 1]) {
+				sortedIndices[numberOfDistinct++] = sortedIndices[i];
+			}
+		}
+		return numberOfDistinct == length ? sortedIndices : Arrays.copyOf(sortedIndices, numberOfDistinct);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(this == other) {
+			return true;
+		}
+		if(!(other instanceof MonitoringSchedule)) {
+			return false;
+		}
+		MonitoringSchedule schedule = (MonitoringSchedule) other;
+		return Double.compare(windowStart, schedule.windowStart) == 0 && Double.compare(windowEnd, schedule.windowEnd) == 0
+				&& numberOfDates == schedule.numberOfDates && Arrays.equals(fixingTimes, schedule.fixingTimes);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = Double.hashCode(windowStart);
+		hash = 31 * hash + Double.hashCode(windowEnd);
+		hash = 31 * hash + numberOfDates;
+		return 31 * hash + Arrays.hashCode(fixingTimes);
+	}
+
+	@Override
+	public String toString() {
+		if(fixingTimes != null) {
+			return "MonitoringSchedule [fixingTimes=" + Arrays.toString(fixingTimes) + "]";
+		}
+		return "MonitoringSchedule [windowStart=" + windowStart + ", windowEnd=" + windowEnd + ", numberOfDates=" + numberOfDates + "]";
+	}
+}
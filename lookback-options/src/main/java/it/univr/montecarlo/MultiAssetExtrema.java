@@ -0,0 +1,87 @@
+package it.univr.montecarlo;
+
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Container for the pathwise extrema of a multi-asset simulation, computed in a single walk over
+ * the monitoring times by {@link MultiAssetLookbackOption#getExtrema(int[], net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel)}.
+ *
+ * <p>Given weights {@code w_i}, the weighted asset values are {@code X_i(t) = w_i S_i(t)}. The class stores:
+ * <ul>
+ *   <li>the running maximum and minimum of every single asset {@code S_i};</li>
+ *   <li>the running maximum and minimum of the basket {@code B(t) = sum_i X_i(t)};</li>
+ *   <li>the running maximum of the best performer {@code max_t max_i X_i(t)};</li>
+ *   <li>the running minimum of the worst performer {@code min_t min_i X_i(t)};</li>
+ *   <li>the basket value at the last monitoring time.</li>
+ * </ul>
+ */
+public class MultiAssetExtrema {
+
+	// Running maximum of every single asset
+	private final RandomVariable[] assetMaximum;
+	// Running minimum of every single asset
+	private final RandomVariable[] assetMinimum;
+	// Running maximum and minimum of the weighted basket
+	private final RandomVariable basketMaximum;
+	private final RandomVariable basketMinimum;
+	// Weighted basket at the last monitoring time
+	private final RandomVariable basketTerminal;
+	// Running maximum of the best weighted asset and running minimum of the worst weighted asset
+	private final RandomVariable bestOfMaximum;
+	private final RandomVariable worstOfMinimum;
+
+	/**
+	 * Creates the container. The arrays are stored without copying.
+	 *
+	 * @param assetMaximum   Running maximum of every single asset.
+	 * @param assetMinimum   Running minimum of every single asset.
+	 * @param basketMaximum  Running maximum of the weighted basket.
+	 * @param basketMinimum  Running minimum of the weighted basket.
+	 * @param basketTerminal Weighted basket at the last monitoring time.
+	 * @param bestOfMaximum  Running maximum of the best weighted asset.
+	 * @param worstOfMinimum Running minimum of the worst weighted asset.
+	 */
+	public MultiAssetExtrema(RandomVariable[] assetMaximum, RandomVariable[] assetMinimum,
+			RandomVariable basketMaximum, RandomVariable basketMinimum, RandomVariable basketTerminal,
+			RandomVariable bestOfMaximum, RandomVariable worstOfMinimum) {
+		this.assetMaximum=assetMaximum;
+		this.assetMinimum=assetMinimum;
+		this.basketMaximum=basketMaximum;
+		this.basketMinimum=basketMinimum;
+		this.basketTerminal=basketTerminal;
+		this.bestOfMaximum=bestOfMaximum;
+		this.worstOfMinimum=worstOfMinimum;
+	}
+
+	public RandomVariable getAssetMaximum(int assetIndex) {
+		return assetMaximum[assetIndex];
+	}
+
+	public RandomVariable getAssetMinimum(int assetIndex) {
+		return assetMinimum[assetIndex];
+	}
+
+	public int getNumberOfAssets() {
+		return assetMaximum.length;
+	}
+
+	public RandomVariable getBasketMaximum() {
+		return basketMaximum;
+	}
+
+	public RandomVariable getBasketMinimum() {
+		return basketMinimum;
+	}
+
+	public RandomVariable getBasketTerminal() {
+		return basketTerminal;
+	}
+
+	public RandomVariable getBestOfMaximum() {
+		return bestOfMaximum;
+	}
+
+	public RandomVariable getWorstOfMinimum() {
+		return worstOfMinimum;
+	}
+}
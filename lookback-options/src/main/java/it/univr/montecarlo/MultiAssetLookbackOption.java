@@ -0,0 +1,143 @@
+package it.univr.montecarlo;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Abstract base class for lookback options written on several correlated underlyings
+ * (basket, best-of and worst-of lookbacks).
+ *
+ * <p>The class holds the data shared by all multi-asset products (maturity, weights, number of monitoring dates)
+ * and provides {@link #getExtrema(int[], AssetModelMonteCarloSimulationModel)}, which tracks the per-asset
+ * and the cross-asset extrema in a single walk over the monitoring dates: every asset value is requested from
+ * the model only once per monitoring date, whatever the number of extrema the payoff needs.
+ *
+ * <p>The weights {@code w_i} define the weighted asset values {@code X_i(t) = w_i S_i(t)}. Choosing
+ * {@code w_i = 1/S_i(0)} gives best-of and worst-of payoffs on performances, while for a basket they are
+ * the basket quantities.
+ */
+public abstract class MultiAssetLookbackOption extends LookbackOption {
+
+	// Option maturity T
+	private final double maturity;
+	// Weights w_i of the underlyings (one per asset of the model)
+	private final double[] weights;
+	// Monitoring dates (full time grid, equidistant dates, window or fixing calendar)
+	private final MonitoringSchedule monitoringSchedule;
+
+	/**
+	 * Creates a multi-asset lookback option.
+	 *
+	 * @param maturity        Option maturity {@code T}.
+	 * @param weights         Weights {@code w_i} of the underlyings, one per asset of the model.
+	 * @param discretelyTimes Number of monitoring dates. If {@code 0}, the full model time grid is used.
+	 */
+	protected MultiAssetLookbackOption(double maturity, double[] weights, int discretelyTimes) {
+		this(maturity, weights, MonitoringSchedule.equidistant(discretelyTimes));
+	}
+
+	/**
+	 * Creates a multi-asset lookback option monitored on the given schedule.
+	 *
+	 * @param maturity           Option maturity {@code T}.
+	 * @param weights            Weights {@code w_i} of the underlyings, one per asset of the model.
+	 * @param monitoringSchedule Monitoring dates used to compute the running extrema.
+	 */
+	protected MultiAssetLookbackOption(double maturity, double[] weights, MonitoringSchedule monitoringSchedule) {
+		if(weights == null || weights.length == 0) {
+			throw new IllegalArgumentException("At least one weight is required.");
+		}
+		this.maturity=maturity;
+		this.weights=weights.clone();
+		this.monitoringSchedule=monitoringSchedule;
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+
+	public double[] getWeights() {
+		return weights.clone();
+	}
+
+	public MonitoringSchedule getMonitoringSchedule() {
+		return monitoringSchedule;
+	}
+
+	/**
+	 * Computes, in a single walk over the monitoring time indices, the running extrema of every asset, of the
+	 * weighted basket and of the best and worst weighted asset.
+	 *
+	 * <p>The running extrema are seeded with the values at the first monitoring time, so no assumption
+	 * on the sign of the underlyings is made.
+	 *
+	 * @param timeIndices Sorted array of distinct monitoring time indices.
+	 * @param model       The multi-asset Monte Carlo simulation model providing asset values.
+	 * @return The {@link MultiAssetExtrema} of the simulated paths.
+	 * @throws CalculationException If the underlying values cannot be obtained from the model.
+	 */
+	protected MultiAssetExtrema getExtrema(int[] timeIndices, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		final int numberOfAssets = weights.length;
+		if(model.getNumberOfAssets() < numberOfAssets) {
+			throw new IllegalArgumentException("The product has " + numberOfAssets + " weights but the model only simulates "
+					+ model.getNumberOfAssets() + " assets.");
+		}
+
+		RandomVariable[] assetMaximum = new RandomVariable[numberOfAssets];
+		RandomVariable[] assetMinimum = new RandomVariable[numberOfAssets];
+		RandomVariable basketMaximum = null;
+		RandomVariable basketMinimum = null;
+		RandomVariable basket = null;
+		RandomVariable bestOfMaximum = null;
+		RandomVariable worstOfMinimum = null;
+
+		for(int timeIndex : timeIndices) {
+			// Cross-sectional quantities at the current monitoring time
+			basket = null;
+			RandomVariable best = null;
+			RandomVariable worst = null;
+			for(int assetIndex = 0; assetIndex < numberOfAssets; assetIndex++) {
+				RandomVariable underlying = model.getAssetValue(timeIndex, assetIndex);
+
+				// Per-asset running extrema
+				assetMaximum[assetIndex] = assetMaximum[assetIndex] == null ? underlying : assetMaximum[assetIndex].floor(underlying);
+				assetMinimum[assetIndex] = assetMinimum[assetIndex] == null ? underlying : assetMinimum[assetIndex].cap(underlying);
+
+				RandomVariable weighted = underlying.mult(weights[assetIndex]);
+				basket = basket == null ? weighted : basket.add(weighted);
+				best = best == null ? weighted : best.floor(weighted);
+				worst = worst == null ? weighted : worst.cap(weighted);
+			}
+
+			// Cross-asset running extrema
+			basketMaximum = basketMaximum == null ? basket : basketMaximum.floor(basket);
+			basketMinimum = basketMinimum == null ? basket : basketMinimum.cap(basket);
+			bestOfMaximum = bestOfMaximum == null ? best : bestOfMaximum.floor(best);
+			worstOfMinimum = worstOfMinimum == null ? worst : worstOfMinimum.cap(worst);
+		}
+
+		return new MultiAssetExtrema(assetMaximum, assetMinimum, basketMaximum, basketMinimum, basket, bestOfMaximum, worstOfMinimum);
+	}
+
+	/**
+	 * Discounts a payoff paid at maturity to the evaluation time using numeraire and Monte Carlo weights.
+	 *
+	 * @param payoff         The payoff at maturity, path by path.
+	 * @param evaluationTime Time {@code t} at which the value is returned.
+	 * @param model          Monte Carlo simulation model providing numeraires and weights.
+	 * @return The discounted payoff, path by path.
+	 * @throws CalculationException If numeraire or weights cannot be obtained from the model.
+	 */
+	protected RandomVariable discount(RandomVariable payoff, double evaluationTime, AssetModelMonteCarloSimulationModel model) throws CalculationException {
+		// Discount payoff from maturity...
+		final RandomVariable numeraireAtMaturity = model.getNumeraire(maturity);
+		final RandomVariable monteCarloWeights = model.getMonteCarloWeights(maturity);
+		RandomVariable values = payoff.div(numeraireAtMaturity).mult(monteCarloWeights);
+
+		// ...to evaluation time.
+		final RandomVariable numeraireAtEvalTime = model.getNumeraire(evaluationTime);
+		final RandomVariable monteCarloWeightsAtEvalTime = model.getMonteCarloWeights(evaluationTime);
+		return values.mult(numeraireAtEvalTime).div(monteCarloWeightsAtEvalTime);
+	}
+}
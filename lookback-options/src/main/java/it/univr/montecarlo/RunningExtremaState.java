@@ -0,0 +1,410 @@
+package it.univr.montecarlo;
+
+import java.util.Arrays;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Pathwise running state of the underlying over the dates of a {@link MonitoringPlan}: maximum, minimum, the
+ * monitoring dates at which they are attained, the value at the last date, and the largest drawdown (fall from the
+ * running maximum) and drawup (rise from the running minimum).
+ *
+ * <p>With a window of {@code w} monitoring dates, the state also holds the rolling-window statistics: the largest
+ * drawdown, drawup and range ({@code max - min}) of the underlying within any {@code w} consecutive monitoring
+ * dates. They are computed after the walk, in blocks of paths, from the realizations held by the model: the extrema
+ * of a window are combined from the suffix extrema of a group of {@code w} dates and the prefix extrema of the next
+ * one, so the cost is {@code O(1)} per path and date and the extra memory is {@code O(w)} per path of a block,
+ * whatever the number of paths.
+ *
+ * <p>The state is kept in primitive arrays, one element per path, and is computed in a single walk over the
+ * monitoring dates by {@link #of(MonitoringPlan, AssetModelMonteCarloSimulationModel, int, int)}. It is seeded
+ * from the underlying at the first monitoring date, not from a constant, so it is correct for models whose
+ * underlying can be negative (Bachelier) or exceed any fixed bound, and the first date costs no comparison. Ties
+ * keep the first date at which the extremum is attained.
+ *
+ * <p>The state reads the realizations of the underlying as doubles, so it serves the add-ons on statistics of the
+ * path (drawdown, drawup, range), not the derivatives by automatic differentiation. Products valued together share a
+ * state passed to them explicitly; see {@link LookbackOption#getValues(AssetModelMonteCarloSimulationModel, LookbackOption...)}.
+ */
+public final class RunningExtremaState {
+
+	// Number of paths whose rolling windows are computed together
+	private static final int WINDOW_BLOCK_SIZE = 128;
+
+	private final MonitoringPlan monitoringPlan;
+	// Index of the underlying in the model
+	private final int underlyingIndex;
+	// Number of monitoring dates of the rolling window (0 without window)
+	private final int windowLength;
+	// Running maximum and minimum
+	private final double[] maximum;
+	private final double[] minimum;
+	// Monitoring dates (indices in the plan) of the maximum and of the minimum
+	private final int[] dateOfMaximum;
+	private final int[] dateOfMinimum;
+	// Underlying at the last monitoring date
+	private final double[] lastValue;
+	// Largest fall from the running maximum and largest rise from the running minimum
+	private final double[] maximumDrawdown;
+	private final double[] maximumDrawup;
+	// Largest drawdown, drawup and range within the rolling window (null without window)
+	private final double[] maximumWindowDrawdown;
+	private final double[] maximumWindowDrawup;
+	private final double[] maximumWindowRange;
+
+	private RunningExtremaState(MonitoringPlan monitoringPlan, int underlyingIndex, int numberOfPaths, int windowLength) {
+		this.monitoringPlan=monitoringPlan;
+		this.underlyingIndex=underlyingIndex;
+		this.windowLength=windowLength;
+		this.maximum=new double[numberOfPaths];
+		this.minimum=new double[numberOfPaths];
+		this.dateOfMaximum=new int[numberOfPaths];
+		this.dateOfMinimum=new int[numberOfPaths];
+		this.lastValue=new double[numberOfPaths];
+		this.maximumDrawdown=new double[numberOfPaths];
+		this.maximumDrawup=new double[numberOfPaths];
+		this.maximumWindowDrawdown=windowLength > 0 ? new double[numberOfPaths] : null;
+		this.maximumWindowDrawup=windowLength > 0 ? new double[numberOfPaths] : null;
+		this.maximumWindowRange=windowLength > 0 ? new double[numberOfPaths] : null;
+	}
+
+	/**
+	 * Returns the running state of an underlying of a model over the dates of a plan, walking the dates.
+	 *
+	 * @param monitoringPlan  The monitoring plan, from {@link MonitoringSchedule#getPlan(net.finmath.time.TimeDiscretization)}.
+	 * @param model           The Monte Carlo simulation model providing asset values.
+	 * @param underlyingIndex Index of the underlying (in case of a multi-asset model).
+	 * @return The state.
+	 * @throws CalculationException If the underlying values cannot be obtained from the model.
+	 */
+	public static RunningExtremaState of(MonitoringPlan monitoringPlan, AssetModelMonteCarloSimulationModel model, int underlyingIndex) throws CalculationException {
+		return of(monitoringPlan, model, underlyingIndex, 0);
+	}
+
+	/**
+	 * Returns the running state, with the rolling-window statistics, of an underlying of a model over the dates of a
+	 * plan, walking the dates.
+	 *
+	 * @param monitoringPlan  The monitoring plan, from {@link MonitoringSchedule#getPlan(net.finmath.time.TimeDiscretization)}.
+	 * @param model           The Monte Carlo simulation model providing asset values.
+	 * @param underlyingIndex Index of the underlying (in case of a multi-asset model).
+	 * @param windowLength    Number of consecutive monitoring dates of the rolling window, at least 2 ({@code 0}
+	 *                        for no window).
+	 * @return The state.
+	 * @throws CalculationException If the underlying values cannot be obtained from the model.
+	 */
+	public static RunningExtremaState of(MonitoringPlan monitoringPlan, AssetModelMonteCarloSimulationModel model, int underlyingIndex,
+			int windowLength) throws CalculationException {
+		if(windowLength < 0 || windowLength == 1) {
+			throw new IllegalArgumentException("The window must have at least 2 monitoring dates.");
+		}
+		RunningExtremaState state = new RunningExtremaState(monitoringPlan, underlyingIndex, model.getNumberOfPaths(), windowLength);
+		RandomVariable[] underlyings = windowLength > 0 ? new RandomVariable[monitoringPlan.getNumberOfDates()] : null;
+		for(int date = 0; date < monitoringPlan.getNumberOfDates(); date++) {
+			RandomVariable underlying = model.getAssetValue(monitoringPlan.timeIndices[date], underlyingIndex);
+			state.update(date, underlying);
+			if(windowLength > 0) {
+				underlyings[date] = underlying;
+			}
+		}
+		if(windowLength > 0) {
+			state.updateWindowStatistics(underlyings);
+		}
+		return state;
+	}
+
+	/*
+	 * Updates the state with the underlying at a monitoring date; the first date seeds it.
+	 */
+	private void update(int date, RandomVariable underlying) {
+		boolean isDeterministic = underlying.isDeterministic();
+		double[] values = isDeterministic ? null : underlying.getRealizations();
+		double constant = isDeterministic ? underlying.doubleValue() : 0.0;
+		if(date == 0) {
+			for(int path = 0; path < lastValue.length; path++) {
+				double value = isDeterministic ? constant : values[path];
+				maximum[path] = value;
+				minimum[path] = value;
+				lastValue[path] = value;
+			}
+			return;
+		}
+		for(int path = 0; path < lastValue.length; path++) {
+			double value = isDeterministic ? constant : values[path];
+			if(value > maximum[path]) {
+				maximum[path] = value;
+				dateOfMaximum[path] = date;
+			}
+			else {
+				maximumDrawdown[path] = Math.max(maximumDrawdown[path], maximum[path] - value);
+			}
+			if(value < minimum[path]) {
+				minimum[path] = value;
+				dateOfMinimum[path] = date;
+			}
+			else {
+				maximumDrawup[path] = Math.max(maximumDrawup[path], value - minimum[path]);
+			}
+			lastValue[path] = value;
+		}
+	}
+
+	/*
+	 * Computes the rolling-window statistics from the underlying at the monitoring dates, in blocks of paths walking
+	 * the dates, so the realizations are read sequentially (van Herk - Gil-Werman). The dates are cut into groups of
+	 * windowLength consecutive dates. A window ending at a date starts in the previous group (or is a whole group), so
+	 * its extremum is the extremum of the suffix of the previous group from the start of the window and of the prefix
+	 * of the current group up to the date. The suffix extrema of a group are computed when it ends, reading its dates
+	 * back from the model. The cost is a few comparisons per path and date, whatever the window.
+	 */
+	private void updateWindowStatistics(RandomVariable[] underlyings) {
+		int numberOfDates = underlyings.length;
+		int numberOfPaths = lastValue.length;
+		// Realizations of every date (held by the model, not copied; a deterministic date is expanded)
+		double[][] values = new double[numberOfDates][];
+		for(int date = 0; date < numberOfDates; date++) {
+			if(underlyings[date].isDeterministic()) {
+				values[date] = new double[numberOfPaths];
+				Arrays.fill(values[date], underlyings[date].doubleValue());
+			}
+			else {
+				values[date] = underlyings[date].getRealizations();
+			}
+		}
+
+		// Suffix extrema of the previous group, by position in the group and path of the block, and prefix extrema
+		double[] suffixMaximum = new double[windowLength * WINDOW_BLOCK_SIZE];
+		double[] suffixMinimum = new double[windowLength * WINDOW_BLOCK_SIZE];
+		double[] prefixMaximum = new double[WINDOW_BLOCK_SIZE];
+		double[] prefixMinimum = new double[WINDOW_BLOCK_SIZE];
+		for(int firstPath = 0; firstPath < numberOfPaths; firstPath += WINDOW_BLOCK_SIZE) {
+			int blockSize = Math.min(WINDOW_BLOCK_SIZE, numberOfPaths - firstPath);
+			for(int date = 0; date < numberOfDates; date++) {
+				double[] dateValues = values[date];
+				int position = date % windowLength;
+				if(position == 0) {
+					if(date > 0) {
+						// The group which ended: suffix extrema from its last date backwards
+						int offset = (windowLength - 1) * WINDOW_BLOCK_SIZE;
+						System.arraycopy(values[date - 1], firstPath, suffixMaximum, offset, blockSize);
+						System.arraycopy(values[date - 1], firstPath, suffixMinimum, offset, blockSize);
+						for(int suffixPosition = windowLength - 2; suffixPosition >= 0; suffixPosition--) {
+							double[] suffixValues = values[date - windowLength + suffixPosition];
+							int suffixOffset = suffixPosition * WINDOW_BLOCK_SIZE;
+							for(int i = 0; i < blockSize; i++) {
+								double value = suffixValues[firstPath + i];
+								suffixMaximum[suffixOffset + i] = Math.max(value, suffixMaximum[suffixOffset + WINDOW_BLOCK_SIZE + i]);
+								suffixMinimum[suffixOffset + i] = Math.min(value, suffixMinimum[suffixOffset + WINDOW_BLOCK_SIZE + i]);
+							}
+						}
+					}
+					System.arraycopy(dateValues, firstPath, prefixMaximum, 0, blockSize);
+					System.arraycopy(dateValues, firstPath, prefixMinimum, 0, blockSize);
+				}
+				else {
+					for(int i = 0; i < blockSize; i++) {
+						prefixMaximum[i] = Math.max(prefixMaximum[i], dateValues[firstPath + i]);
+						prefixMinimum[i] = Math.min(prefixMinimum[i], dateValues[firstPath + i]);
+					}
+				}
+
+				// The window starts at position + 1 of the previous group, unless it is the current group (or the dates so far)
+				boolean isInPreviousGroup = date >= windowLength && position < windowLength - 1;
+				int suffixOffset = (position + 1) * WINDOW_BLOCK_SIZE;
+				for(int i = 0; i < blockSize; i++) {
+					int path = firstPath + i;
+					double value = dateValues[path];
+					double windowMaximum = isInPreviousGroup ? Math.max(prefixMaximum[i], suffixMaximum[suffixOffset + i]) : prefixMaximum[i];
+					double windowMinimum = isInPreviousGroup ? Math.min(prefixMinimum[i], suffixMinimum[suffixOffset + i]) : prefixMinimum[i];
+					maximumWindowDrawdown[path] = Math.max(maximumWindowDrawdown[path], windowMaximum - value);
+					maximumWindowDrawup[path] = Math.max(maximumWindowDrawup[path], value - windowMinimum);
+					maximumWindowRange[path] = Math.max(maximumWindowRange[path], windowMaximum - windowMinimum);
+				}
+			}
+		}
+	}
+
+	public MonitoringPlan getMonitoringPlan() {
+		return monitoringPlan;
+	}
+
+	public int getUnderlyingIndex() {
+		return underlyingIndex;
+	}
+
+	public int getNumberOfPaths() {
+		return lastValue.length;
+	}
+
+	public int getWindowLength() {
+		return windowLength;
+	}
+
+	/**
+	 * Returns the running maximum {@code M} at the last monitoring date.
+	 *
+	 * @return The maximum, path by path.
+	 */
+	public RandomVariable getMaximum() {
+		return toRandomVariable(maximum);
+	}
+
+	/**
+	 * Returns the running minimum {@code m} at the last monitoring date.
+	 *
+	 * @return The minimum, path by path.
+	 */
+	public RandomVariable getMinimum() {
+		return toRandomVariable(minimum);
+	}
+
+	/**
+	 * Returns the underlying at the last monitoring date.
+	 *
+	 * @return The last value, path by path.
+	 */
+	public RandomVariable getLastValue() {
+		return toRandomVariable(lastValue);
+	}
+
+	/**
+	 * Returns the time of the first monitoring date at which the maximum is attained.
+	 *
+	 * @return The time of the maximum, path by path.
+	 */
+	public RandomVariable getTimeOfMaximum() {
+		return toRandomVariable(getTimes(dateOfMaximum));
+	}
+
+	/**
+	 * Returns the time of the first monitoring date at which the minimum is attained.
+	 *
+	 * @return The time of the minimum, path by path.
+	 */
+	public RandomVariable getTimeOfMinimum() {
+		return toRandomVariable(getTimes(dateOfMinimum));
+	}
+
+	/**
+	 * Returns the maximum drawdown {@code max_{s <= t} (S_s - S_t)} over the monitoring dates.
+	 *
+	 * @return The maximum drawdown, path by path.
+	 */
+	public RandomVariable getMaximumDrawdown() {
+		return toRandomVariable(maximumDrawdown);
+	}
+
+	/**
+	 * Returns the maximum drawup {@code max_{s <= t} (S_t - S_s)} over the monitoring dates.
+	 *
+	 * @return The maximum drawup, path by path.
+	 */
+	public RandomVariable getMaximumDrawup() {
+		return toRandomVariable(maximumDrawup);
+	}
+
+	/**
+	 * Returns the range {@code M - m} of the underlying over the monitoring dates.
+	 *
+	 * @return The range, path by path.
+	 */
+	public RandomVariable getRange() {
+		double[] range = new double[maximum.length];
+		for(int path = 0; path < range.length; path++) {
+			range[path] = maximum[path] - minimum[path];
+		}
+		return toRandomVariable(range);
+	}
+
+	/**
+	 * Returns the largest drawdown within {@link #getWindowLength()} consecutive monitoring dates.
+	 *
+	 * @return The maximum rolling-window drawdown, path by path.
+	 */
+	public RandomVariable getMaximumWindowDrawdown() {
+		return toRandomVariable(getWindowStatistic(maximumWindowDrawdown));
+	}
+
+	/**
+	 * Returns the largest drawup within {@link #getWindowLength()} consecutive monitoring dates.
+	 *
+	 * @return The maximum rolling-window drawup, path by path.
+	 */
+	public RandomVariable getMaximumWindowDrawup() {
+		return toRandomVariable(getWindowStatistic(maximumWindowDrawup));
+	}
+
+	/**
+	 * Returns the largest range {@code max - min} within {@link #getWindowLength()} consecutive monitoring dates.
+	 *
+	 * @return The maximum rolling-window range, path by path.
+	 */
+	public RandomVariable getMaximumWindowRange() {
+		return toRandomVariable(getWindowStatistic(maximumWindowRange));
+	}
+
+	public double getMaximum(int path) {
+		return maximum[path];
+	}
+
+	public double getMinimum(int path) {
+		return minimum[path];
+	}
+
+	public double getLastValue(int path) {
+		return lastValue[path];
+	}
+
+	public int getDateOfMaximum(int path) {
+		return dateOfMaximum[path];
+	}
+
+	public int getDateOfMinimum(int path) {
+		return dateOfMinimum[path];
+	}
+
+	public double getMaximumDrawdown(int path) {
+		return maximumDrawdown[path];
+	}
+
+	public double getMaximumDrawup(int path) {
+		return maximumDrawup[path];
+	}
+
+	public double getMaximumWindowDrawdown(int path) {
+		return getWindowStatistic(maximumWindowDrawdown)[path];
+	}
+
+	public double getMaximumWindowDrawup(int path) {
+		return getWindowStatistic(maximumWindowDrawup)[path];
+	}
+
+	public double getMaximumWindowRange(int path) {
+		return getWindowStatistic(maximumWindowRange)[path];
+	}
+
+	private double[] getWindowStatistic(double[] statistic) {
+		if(statistic == null) {
+			throw new IllegalStateException("The state has no rolling window.");
+		}
+		return statistic;
+	}
+
+	private double[] getTimes(int[] dates) {
+		double[] times = new double[dates.length];
+		for(int path = 0; path < dates.length; path++) {
+			times[path] = monitoringPlan.getTime(dates[path]);
+		}
+		return times;
+	}
+
+	/*
+	 * Wraps a copy of a state array, measurable at the last monitoring date.
+	 */
+	private RandomVariable toRandomVariable(double[] values) {
+		return new RandomVariableFromDoubleArray(monitoringPlan.getTime(monitoringPlan.getNumberOfDates() - 1), values.clone());
+	}
+}
@@ -0,0 +1,85 @@
+package it.univr.montecarlo;
+
+/**
+ * Stratified Monte Carlo price of a lookback option, as computed by {@link StratifiedLookbackSampler}: the price
+ * {@code sum_k p_k mean_k}, its standard error {@code sqrt(sum_k p_k² s_k² / n_k)} and the statistics of every
+ * stratum {@code k} of probability {@code p_k}.
+ */
+public class StratifiedEstimate {
+
+	private final double[] stratumProbabilities;
+	private final int[] pathsPerStratum;
+	private final double[] stratumMeans;
+	private final double[] stratumVariances;
+
+	/**
+	 * Creates the estimate.
+	 *
+	 * @param stratumProbabilities The probabilities of the strata.
+	 * @param pathsPerStratum      The number of paths of every stratum.
+	 * @param stratumMeans         The means of the discounted payoffs in every stratum.
+	 * @param stratumVariances     The sample variances of the discounted payoffs in every stratum.
+	 */
+	public StratifiedEstimate(double[] stratumProbabilities, int[] pathsPerStratum, double[] stratumMeans, double[] stratumVariances) {
+		this.stratumProbabilities=stratumProbabilities.clone();
+		this.pathsPerStratum=pathsPerStratum.clone();
+		this.stratumMeans=stratumMeans.clone();
+		this.stratumVariances=stratumVariances.clone();
+	}
+
+	/**
+	 * Returns the stratified estimator of the price.
+	 *
+	 * @return The price.
+	 */
+	public double getValue() {
+		double value = 0.0;
+		for(int stratum = 0; stratum < stratumMeans.length; stratum++) {
+			value += stratumProbabilities[stratum] * stratumMeans[stratum];
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the standard error of the stratified estimator.
+	 *
+	 * @return The standard error.
+	 */
+	public double getStandardError() {
+		double variance = 0.0;
+		for(int stratum = 0; stratum < stratumMeans.length; stratum++) {
+			double probability = stratumProbabilities[stratum];
+			variance += probability * probability * stratumVariances[stratum] / pathsPerStratum[stratum];
+		}
+		return Math.sqrt(variance);
+	}
+
+	/**
+	 * Returns the total number of paths.
+	 *
+	 * @return The sum of the paths of the strata.
+	 */
+	public int getNumberOfPaths() {
+		int numberOfPaths = 0;
+		for(int paths : pathsPerStratum) {
+			numberOfPaths += paths;
+		}
+		return numberOfPaths;
+	}
+
+	public int getNumberOfStrata() {
+		return stratumMeans.length;
+	}
+
+	public int getNumberOfPaths(int stratum) {
+		return pathsPerStratum[stratum];
+	}
+
+	public double getMean(int stratum) {
+		return stratumMeans[stratum];
+	}
+
+	public double getVariance(int stratum) {
+		return stratumVariances[stratum];
+	}
+}
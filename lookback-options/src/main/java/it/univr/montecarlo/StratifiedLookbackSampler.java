@@ -0,0 +1,273 @@
+package it.univr.montecarlo;
+
+import java.util.Arrays;
+
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.randomnumbers.PhiloxRandomNumbers;
+import net.finmath.functions.NormalDistribution;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Monte Carlo sampler of discretely monitored lookbacks under Black–Scholes, stratified on the terminal value.
+ *
+ * <p>The terminal Brownian value {@code W_T} is stratified into {@code K} equiprobable strata: a path of stratum
+ * {@code k} draws {@code W_T = sqrt(T) Φ^{-1}((k + V) / K)} with {@code V} uniform, and then the Brownian motion at
+ * the monitoring dates from the Brownian bridge between {@code (0, 0)} and {@code (T, W_T)}: from the previous date
+ * {@code s} to the date {@code t},
+ * <pre>
+ *   W_t = W_s + (t - s) / (T - s) (W_T - W_s) + sqrt((t - s)(T - t) / (T - s)) Z.
+ * </pre>
+ * Since the bridge is a Gaussian process, it is sampled only at the monitoring dates (one normal draw per date),
+ * which gives the law of the paths on the time grid. The dates are the ones of a {@link MonitoringSchedule} on the
+ * time discretization of the other engines, whose last time is the maturity.
+ *
+ * <p>The stratified estimator is {@code sum_k p_k mean_k} with {@code p_k = 1 / K}, and its variance
+ * {@code sum_k p_k² s_k² / n_k} is estimated from the sample variances {@code s_k²} of the strata. With the
+ * proportional allocation {@code n_k = p_k n}, stratification removes the variance explained by the terminal value;
+ * the Neyman allocation {@code n_k ∝ p_k s_k}, with {@code s_k} estimated by a pilot run on an independent stream,
+ * minimizes the variance for a given number of paths. The floating-strike payoffs {@code S_T - m_T} and
+ * {@code M_T - S_T} depend mostly on {@code S_T} and gain the most; all payoffs of {@link LookbackPayoff} are
+ * priced without bias.
+ *
+ * <p>The random numbers are counter-based ({@link PhiloxRandomNumbers}), indexed by stratum and path, so the
+ * estimate does not depend on the order in which the strata are simulated.
+ */
+public class StratifiedLookbackSampler {
+
+	// Paths of a stratum are counted from stratum << STRATUM_SHIFT
+	private static final int STRATUM_SHIFT = 40;
+
+	// Black–Scholes parameters
+	private final double spotPrice;
+	private final double riskFreeRate;
+	private final double volatility;
+	// Option maturity T (last time of the grid)
+	private final double maturity;
+	// Distinct monitoring times, increasing
+	private final double[] monitoringTimes;
+	private final int numberOfStrata;
+	private final long seed;
+
+	/**
+	 * Creates the sampler.
+	 *
+	 * @param spotPrice          Initial underlying value {@code S0}.
+	 * @param riskFreeRate       Constant risk-free rate {@code r}.
+	 * @param volatility         {@code σ}.
+	 * @param timeDiscretization The time grid, whose last time is the maturity.
+	 * @param monitoringSchedule The monitoring dates of the extrema, on the time grid.
+	 * @param numberOfStrata     The number {@code K} of strata of the terminal value ({@code 1} for plain Monte Carlo).
+	 * @param seed               The seed of the random numbers.
+	 */
+	public StratifiedLookbackSampler(double spotPrice, double riskFreeRate, double volatility, TimeDiscretization timeDiscretization,
+			MonitoringSchedule monitoringSchedule, int numberOfStrata, long seed) {
+		if(numberOfStrata <= 0) {
+			throw new IllegalArgumentException("The number of strata must be positive.");
+		}
+		this.spotPrice=spotPrice;
+		this.riskFreeRate=riskFreeRate;
+		this.volatility=volatility;
+		this.maturity=timeDiscretization.getTime(timeDiscretization.getNumberOfTimes() - 1);
+		this.monitoringTimes=monitoringSchedule.getPlan(timeDiscretization).getTimes();
+		this.numberOfStrata=numberOfStrata;
+		this.seed=seed;
+	}
+
+	/**
+	 * Returns the price with the proportional allocation, {@code n / K} paths per stratum.
+	 *
+	 * @param payoff        The lookback payoff.
+	 * @param strike        The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfPaths The total number of paths.
+	 * @return The estimate.
+	 */
+	public StratifiedEstimate getValue(LookbackPayoff payoff, double strike, int numberOfPaths) {
+		return getValue(payoff, strike, getProportionalAllocation(numberOfPaths));
+	}
+
+	/**
+	 * Returns the price with the Neyman allocation estimated by a pilot run.
+	 *
+	 * @param payoff               The lookback payoff.
+	 * @param strike               The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfPaths        The total number of paths, excluding the pilot run.
+	 * @param pilotPathsPerStratum The number of paths per stratum of the pilot run (at least 2).
+	 * @return The estimate.
+	 */
+	public StratifiedEstimate getValueWithNeymanAllocation(LookbackPayoff payoff, double strike, int numberOfPaths, int pilotPathsPerStratum) {
+		return getValue(payoff, strike, getNeymanAllocation(payoff, strike, numberOfPaths, pilotPathsPerStratum));
+	}
+
+	/**
+	 * Returns the price with a given number of paths per stratum.
+	 *
+	 * @param payoff          The lookback payoff.
+	 * @param strike          The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param pathsPerStratum The number of paths of every stratum (at least 2).
+	 * @return The estimate.
+	 */
+	public StratifiedEstimate getValue(LookbackPayoff payoff, double strike, int[] pathsPerStratum) {
+		return simulate(new PhiloxRandomNumbers(seed), payoff, strike, pathsPerStratum);
+	}
+
+	/**
+	 * Returns the proportional allocation: {@code n / K} paths per stratum, the remainder to the first strata.
+	 *
+	 * @param numberOfPaths The total number of paths.
+	 * @return The number of paths of every stratum.
+	 */
+	public int[] getProportionalAllocation(int numberOfPaths) {
+		int[] pathsPerStratum = new int[numberOfStrata];
+		for(int stratum = 0; stratum < numberOfStrata; stratum++) {
+			pathsPerStratum[stratum] = numberOfPaths / numberOfStrata + (stratum < numberOfPaths % numberOfStrata ? 1 : 0);
+		}
+		return pathsPerStratum;
+	}
+
+	/**
+	 * Returns the Neyman allocation {@code n_k ∝ p_k s_k}, with the standard deviations {@code s_k} of the strata
+	 * estimated by a pilot run on a stream independent of the one of {@link #getValue(LookbackPayoff, double, int[])}.
+	 * Every stratum gets at least 2 paths: the strata whose share is below 2 paths get 2, and the rest of the paths is
+	 * shared among the other strata, so that the total is {@code numberOfPaths}; the rounding remainder goes to the
+	 * largest fractional parts.
+	 *
+	 * @param payoff               The lookback payoff.
+	 * @param strike               The strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfPaths        The total number of paths (at least 2 per stratum).
+	 * @param pilotPathsPerStratum The number of paths per stratum of the pilot run (at least 2).
+	 * @return The number of paths of every stratum.
+	 */
+	public int[] getNeymanAllocation(LookbackPayoff payoff, double strike, int numberOfPaths, int pilotPathsPerStratum) {
+		if(numberOfPaths < 2 * numberOfStrata) {
+			throw new IllegalArgumentException("The Neyman allocation needs at least 2 paths per stratum.");
+		}
+		int[] pilotAllocation = new int[numberOfStrata];
+		Arrays.fill(pilotAllocation, pilotPathsPerStratum);
+		StratifiedEstimate pilot = simulate(new PhiloxRandomNumbers(~seed), payoff, strike, pilotAllocation);
+
+		double[] weights = new double[numberOfStrata];
+		double sumOfWeights = 0.0;
+		for(int stratum = 0; stratum < numberOfStrata; stratum++) {
+			weights[stratum] = Math.sqrt(pilot.getVariance(stratum)) / numberOfStrata;
+			sumOfWeights += weights[stratum];
+		}
+		if(sumOfWeights == 0.0) {
+			return getProportionalAllocation(numberOfPaths);
+		}
+
+		// Strata held at the minimum of 2 paths, taken out of the budget until the shares of the others are above it
+		int[] pathsPerStratum = new int[numberOfStrata];
+		int budget = numberOfPaths;
+		boolean isMinimumAdded = true;
+		while(isMinimumAdded) {
+			isMinimumAdded = false;
+			for(int stratum = 0; stratum < numberOfStrata; stratum++) {
+				if(pathsPerStratum[stratum] == 0 && budget * weights[stratum] / sumOfWeights < 2.0) {
+					pathsPerStratum[stratum] = 2;
+					budget -= 2;
+					sumOfWeights -= weights[stratum];
+					isMinimumAdded = true;
+				}
+			}
+		}
+
+		double[] fractionalParts = new double[numberOfStrata];
+		Arrays.fill(fractionalParts, -1.0);
+		int remainingPaths = budget;
+		for(int stratum = 0; stratum < numberOfStrata; stratum++) {
+			if(pathsPerStratum[stratum] == 0) {
+				double idealPaths = budget * weights[stratum] / sumOfWeights;
+				pathsPerStratum[stratum] = (int) idealPaths;
+				fractionalParts[stratum] = idealPaths - Math.floor(idealPaths);
+				remainingPaths -= pathsPerStratum[stratum];
+			}
+		}
+		while(remainingPaths > 0) {
+			int largest = 0;
+			for(int stratum = 1; stratum < numberOfStrata; stratum++) {
+				if(fractionalParts[stratum] > fractionalParts[largest]) {
+					largest = stratum;
+				}
+			}
+			pathsPerStratum[largest]++;
+			fractionalParts[largest] = -1.0;
+			remainingPaths--;
+		}
+		return pathsPerStratum;
+	}
+
+	public int getNumberOfStrata() {
+		return numberOfStrata;
+	}
+
+	/*
+	 * Simulates the strata and returns the means and sample variances of the discounted payoffs (Welford's update).
+	 */
+	private StratifiedEstimate simulate(PhiloxRandomNumbers randomNumbers, LookbackPayoff payoff, double strike, int[] pathsPerStratum) {
+		double drift = riskFreeRate - 0.5 * volatility * volatility;
+		double discountFactor = Math.exp(-riskFreeRate * maturity);
+		double sqrtMaturity = Math.sqrt(maturity);
+
+		// Bridge coefficients from the previous monitoring date (or 0) to every date
+		int numberOfDates = monitoringTimes.length;
+		double[] weightsOfTerminal = new double[numberOfDates];
+		double[] standardDeviations = new double[numberOfDates];
+		double previousTime = 0.0;
+		for(int date = 0; date < numberOfDates; date++) {
+			double time = monitoringTimes[date];
+			if(time < maturity) {
+				weightsOfTerminal[date] = (time - previousTime) / (maturity - previousTime);
+				standardDeviations[date] = Math.sqrt((time - previousTime) * (maturity - time) / (maturity - previousTime));
+			}
+			else {
+				weightsOfTerminal[date] = 1.0;
+			}
+			previousTime = time;
+		}
+
+		// Scratch Philox block of the draws
+		int[] block = new int[4];
+
+		double[] probabilities = new double[numberOfStrata];
+		double[] means = new double[numberOfStrata];
+		double[] variances = new double[numberOfStrata];
+		for(int stratum = 0; stratum < numberOfStrata; stratum++) {
+			if(pathsPerStratum[stratum] < 2) {
+				throw new IllegalArgumentException("Every stratum needs at least 2 paths.");
+			}
+			probabilities[stratum] = 1.0 / numberOfStrata;
+			long firstPath = (long) stratum << STRATUM_SHIFT;
+
+			double mean = 0.0;
+			double sumOfSquaredDeviations = 0.0;
+			for(int path = 0; path < pathsPerStratum[stratum]; path++) {
+				// Terminal Brownian value in the stratum
+				double uniform = (stratum + randomNumbers.getUniform(firstPath + path, 0, 0, block)) / numberOfStrata;
+				double terminalBrownian = sqrtMaturity * NormalDistribution.inverseCumulativeDistribution(uniform);
+
+				// Bridge at the monitoring dates
+				double maximum = Double.NEGATIVE_INFINITY;
+				double minimum = Double.POSITIVE_INFINITY;
+				double brownian = 0.0;
+				for(int date = 0; date < numberOfDates; date++) {
+					brownian += weightsOfTerminal[date] * (terminalBrownian - brownian);
+					if(standardDeviations[date] > 0.0) {
+						brownian += standardDeviations[date] * randomNumbers.getStandardNormal(firstPath + path, date + 1, 0, block);
+					}
+					double logValue = drift * monitoringTimes[date] + volatility * brownian;
+					maximum = Math.max(maximum, logValue);
+					minimum = Math.min(minimum, logValue);
+				}
+				double terminalValue = spotPrice * Math.exp(drift * maturity + volatility * terminalBrownian);
+				double value = discountFactor * payoff.getPayoff(terminalValue, spotPrice * Math.exp(maximum), spotPrice * Math.exp(minimum), strike);
+
+				double deviation = value - mean;
+				mean += deviation / (path + 1);
+				sumOfSquaredDeviations += deviation * (value - mean);
+			}
+			means[stratum] = mean;
+			variances[stratum] = sumOfSquaredDeviations / (pathsPerStratum[stratum] - 1);
+		}
+		return new StratifiedEstimate(probabilities, pathsPerStratum, means, variances);
+	}
+}
@@ -0,0 +1,203 @@
+package it.univr.numerics;
+
+/**
+ * Standard normal density, distribution function and complementary error function, accurate to a few units in the
+ * last place, for the closed-form prices.
+ *
+ * <p>All the functions are computed from the Mills ratio {@code R(x) = Φ(-x)/φ(x)}, {@code x >= 0}, and the
+ * density {@code φ(x)}:
+ * <ul>
+ *     <li>{@code R(x)/t}, with {@code t = 4/(4+x)} mapping {@code [0, ∞)} onto {@code (0, 1]}, is a polynomial of
+ *         degree 13 on each quarter of {@code (0, 1]} (the truncated Chebyshev expansion, error below
+ *         {@code 1E-18});</li>
+ *     <li>{@code φ} is computed with the square {@code x^2} split exactly into a double and its rounding error,
+ *         so that the rounding of {@code x^2} (relative error {@code x^2 ε}) does not reach the exponential.</li>
+ * </ul>
+ * The lower tail {@code Φ(-x) = φ(x) R(x)} is computed directly (the tail path of {@code erfc}), never as
+ * {@code 1 - Φ(x)}, so its relative error stays below {@code 1E-15} down to the smallest normal doubles
+ * ({@code x ≈ 37.5}); the upper value is {@code 1 - Φ(-x)}. Every evaluation takes one {@code exp}, and
+ * {@link #evaluate(double, double[])} returns density, distribution function and its complement from the same
+ * intermediates.
+ */
+public final class NormalFunctions {
+
+	/**
+	 * {@code 1/sqrt(2π)}.
+	 */
+	public static final double ONE_OVER_SQRT_TWO_PI = 0.3989422804014327;
+
+	/**
+	 * {@code sqrt(2π)}.
+	 */
+	public static final double SQRT_TWO_PI = 2.5066282746310002;
+
+	/**
+	 * Positions of the results of {@link #evaluate(double, double[])}: {@code φ(x)}, {@code Φ(x)} and {@code Φ(-x)}.
+	 */
+	public static final int DENSITY = 0;
+	public static final int DISTRIBUTION = 1;
+	public static final int COMPLEMENTARY_DISTRIBUTION = 2;
+	/**
+	 * Offset of the results for the shifted argument in {@link #evaluatePair(double, double, double[])}.
+	 */
+	public static final int SHIFTED = 3;
+
+	// Beyond this absolute value the density underflows and the distribution function is 0 or 1
+	private static final double LARGEST_ARGUMENT = 40.0;
+	// Veltkamp splitting constant 2^27 + 1
+	private static final double SPLITTER = 134217729.0;
+	// Scale of the rational transform t = SCALE / (SCALE + x)
+	private static final double SCALE = 4.0;
+	// Number of intervals of t with separate polynomials
+	private static final int NUMBER_OF_INTERVALS = 4;
+	// Polynomial coefficients of R(x)/t in u = 8t - (2k + 1) on the intervals k/4 <= t <= (k+1)/4
+	private static final double[][] COEFFICIENTS = {
+			{ 0.2853512399206061, 0.03993779121632111, 0.005122067653687322, 0.0005899961357583841, 5.900925318517163e-05,
+					4.786755349614609e-06, 2.5824020679445467e-07, -8.868150817969119e-10, -2.0617031698201315e-09, -2.1987464701817475e-10,
+					-3.472292991029069e-12, 2.0024354941017046e-12, 2.2842191615619555e-13, -3.456294782820079e-15 },
+			{ 0.3915481611947248, 0.06982382906013293, 0.01051791150197334, 0.0012895399594195698, 0.00011899044174832917,
+					6.494794343584904e-06, -1.0432477797835825e-07, -5.420981655237408e-08, -2.9399047964062514e-09, 3.0835459636896393e-10,
+					4.30409488585955e-11, -1.6209082184605873e-12, -5.056432392263542e-13, 9.090759576264104e-15 },
+			{ 0.5856812938994406, 0.1316508063610306, 0.021565609605580724, 0.0024511359780456346, 0.0001609036449754267,
+					2.486612680066044e-07, -8.894439121685939e-07, -3.404967552459223e-08, 5.4059860014043155e-09, 2.9227483763664807e-10,
+					-4.417208179794823e-11, -1.7497474701489555e-12, 4.1849111892402616e-13, 1.7595936512139826e-15 },
+			{ 0.9573770520470417, 0.2523156320340339, 0.03992816203255942, 0.003597485335065711, 0.00010710675306558899,
+					-1.0641049623496091e-05, -7.153068489576244e-07, 5.256423963994489e-08, 3.2935569198576777e-09, -3.8342990911683705e-10,
+					-6.777059925805999e-12, 2.7208270045965515e-12, -9.121675383481117e-14, -1.2777112388189059e-14 } };
+
+	private NormalFunctions() {
+	}
+
+	/**
+	 * Returns the standard normal density {@code φ(x)}.
+	 *
+	 * @param x The argument.
+	 * @return The density.
+	 */
+	public static double density(double x) {
+		double absoluteX = Math.abs(x);
+		if(!(absoluteX < LARGEST_ARGUMENT)) {
+			return Double.isNaN(x) ? Double.NaN : 0.0;
+		}
+		return getDensity(absoluteX);
+	}
+
+	/**
+	 * Returns the standard normal distribution function {@code Φ(x)}.
+	 *
+	 * @param x The argument.
+	 * @return The distribution function.
+	 */
+	public static double cumulativeDistribution(double x) {
+		double absoluteX = Math.abs(x);
+		if(!(absoluteX < LARGEST_ARGUMENT)) {
+			return Double.isNaN(x) ? Double.NaN : (x > 0 ? 1.0 : 0.0);
+		}
+		double lowerTail = getDensity(absoluteX) * getMillsRatio(absoluteX);
+		return x > 0 ? 1.0 - lowerTail : lowerTail;
+	}
+
+	/**
+	 * Returns the complementary error function {@code erfc(z) = 2 Φ(-z sqrt(2))}.
+	 *
+	 * @param z The argument.
+	 * @return The complementary error function.
+	 */
+	public static double complementaryErrorFunction(double z) {
+		double absoluteZ = Math.abs(z);
+		if(!(absoluteZ < LARGEST_ARGUMENT / Math.sqrt(2.0))) {
+			return Double.isNaN(z) ? Double.NaN : (z > 0 ? 0.0 : 2.0);
+		}
+		// exp(-z^2) with z^2 split exactly, times 2 R(z sqrt(2)) / sqrt(2π) = R / sqrt(π/2)
+		double square = absoluteZ * absoluteZ;
+		double squareError = getSquareError(absoluteZ, square);
+		double exponential = Math.exp(-square) * (1.0 - squareError);
+		double upperTail = exponential * getMillsRatio(absoluteZ * Math.sqrt(2.0)) * (2.0 * ONE_OVER_SQRT_TWO_PI);
+		return z >= 0 ? upperTail : 2.0 - upperTail;
+	}
+
+	/**
+	 * Evaluates {@code φ(x)}, {@code Φ(x)} and {@code Φ(-x)} from the same intermediates (one exponential).
+	 *
+	 * @param x      The argument.
+	 * @param values Array receiving the results at the positions {@link #DENSITY}, {@link #DISTRIBUTION} and
+	 *               {@link #COMPLEMENTARY_DISTRIBUTION}.
+	 */
+	public static void evaluate(double x, double[] values) {
+		evaluate(x, values, 0);
+	}
+
+	/**
+	 * Evaluates {@code φ}, {@code Φ} and the complement of {@code Φ} at {@code d} and at {@code d - shift}, e.g.
+	 * {@code Φ(d)} and {@code Φ(d - σ sqrt(T))} of the Black–Scholes formulas, in one call.
+	 *
+	 * @param d      The argument.
+	 * @param shift  The shift of the second argument.
+	 * @param values Array of length 6 receiving the results at {@code d} at the positions {@link #DENSITY},
+	 *               {@link #DISTRIBUTION} and {@link #COMPLEMENTARY_DISTRIBUTION}, and the results at
+	 *               {@code d - shift} at the same positions plus {@link #SHIFTED}.
+	 */
+	public static void evaluatePair(double d, double shift, double[] values) {
+		evaluate(d, values, 0);
+		evaluate(d - shift, values, SHIFTED);
+	}
+
+	/*
+	 * Writes φ(x), Φ(x) and Φ(-x) at the given offset.
+	 */
+	private static void evaluate(double x, double[] values, int offset) {
+		double absoluteX = Math.abs(x);
+		double density;
+		double lowerTail;
+		if(absoluteX < LARGEST_ARGUMENT) {
+			density = getDensity(absoluteX);
+			lowerTail = density * getMillsRatio(absoluteX);
+		}
+		else {
+			density = Double.isNaN(x) ? Double.NaN : 0.0;
+			lowerTail = density;
+		}
+		values[offset + DENSITY] = density;
+		values[offset + DISTRIBUTION] = x > 0 ? 1.0 - lowerTail : lowerTail;
+		values[offset + COMPLEMENTARY_DISTRIBUTION] = x > 0 ? lowerTail : 1.0 - lowerTail;
+	}
+
+	/*
+	 * φ(x) for 0 <= x < LARGEST_ARGUMENT: exp(-x^2/2) with x^2 = square + squareError exactly.
+	 */
+	private static double getDensity(double x) {
+		double square = x * x;
+		double squareError = getSquareError(x, square);
+		return ONE_OVER_SQRT_TWO_PI * Math.exp(-0.5 * square) * (1.0 - 0.5 * squareError);
+	}
+
+	/*
+	 * Rounding error x*x - square of the product square = x*x (Dekker's algorithm with Veltkamp's splitting).
+	 */
+	private static double getSquareError(double x, double square) {
+		double split = SPLITTER * x;
+		double high = split - (split - x);
+		double low = x - high;
+		return ((high * high - square) + 2.0 * high * low) + low * low;
+	}
+
+	/*
+	 * Mills ratio R(x) = Φ(-x)/φ(x) for x >= 0: polynomial of R(x)/t on the quarter of (0, 1] containing t, with
+	 * the even and the odd part summed separately (two independent Horner chains of half the length).
+	 */
+	private static double getMillsRatio(double x) {
+		double t = SCALE / (SCALE + x);
+		int interval = Math.min((int) (NUMBER_OF_INTERVALS * t), NUMBER_OF_INTERVALS - 1);
+		double u = 2.0 * NUMBER_OF_INTERVALS * t - (2 * interval + 1);
+		double uSquared = u * u;
+		double[] coefficients = COEFFICIENTS[interval];
+		int last = coefficients.length - 2;
+		double even = coefficients[last];
+		double odd = coefficients[last + 1];
+		for(int i = last - 2; i >= 0; i -= 2) {
+			even = even * uSquared + coefficients[i];
+			odd = odd * uSquared + coefficients[i + 1];
+		}
+		return t * (even + u * odd);
+	}
+}
@@ -0,0 +1,168 @@
+package it.univr.randomnumbers;
+
+import java.util.stream.IntStream;
+
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.RandomVariableFromDoubleArray;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+
+/**
+ * Brownian motion whose increments are generated by the counter-based {@link PhiloxRandomNumbers}: the increment
+ * of factor {@code k} on the time step {@code i} of path {@code p} is {@code sqrt(dt_i) Z(seed, p, i, k)}.
+ *
+ * <p>The Brownian motion may simulate a range {@code [firstPath, firstPath + numberOfPaths)} of the paths of a
+ * larger simulation. The paths of a range are identical to the same paths of the whole simulation, so a valuation
+ * can be split into ranges among threads, processes or nodes, each generating only its own paths, and the
+ * results combined: the sum of the path averages weighted by the number of paths of each range reproduces the
+ * average of the undivided simulation. The result does not depend on the number of ranges or on the order in which
+ * they are simulated.
+ *
+ * <p>As the finmath Brownian motions, the increments are generated on the first request; since every path is
+ * independent of the others, the generation runs in parallel.
+ */
+public class BrownianMotionFromPhiloxRandomNumbers implements BrownianMotion {
+
+	private final TimeDiscretization timeDiscretization;
+	private final int numberOfFactors;
+	private final long firstPath;
+	private final int numberOfPaths;
+	private final long seed;
+
+	// Increments, per time step and factor (null until generated)
+	private volatile RandomVariable[][] brownianIncrements;
+
+	/**
+	 * Creates a Brownian motion simulating the paths {@code [firstPath, firstPath + numberOfPaths)}.
+	 *
+	 * @param timeDiscretization The time discretization.
+	 * @param numberOfFactors    The number of independent factors.
+	 * @param firstPath          Index of the first simulated path in the whole simulation.
+	 * @param numberOfPaths      The number of simulated paths.
+	 * @param seed               The seed of the random numbers.
+	 */
+	public BrownianMotionFromPhiloxRandomNumbers(TimeDiscretization timeDiscretization, int numberOfFactors, long firstPath,
+			int numberOfPaths, long seed) {
+		if(firstPath < 0 || numberOfPaths <= 0) {
+			throw new IllegalArgumentException("The path range must be non-empty and start at a non-negative index.");
+		}
+		this.timeDiscretization=timeDiscretization;
+		this.numberOfFactors=numberOfFactors;
+		this.firstPath=firstPath;
+		this.numberOfPaths=numberOfPaths;
+		this.seed=seed;
+	}
+
+	/**
+	 * Creates a Brownian motion simulating the paths {@code [0, numberOfPaths)}.
+	 *
+	 * @param timeDiscretization The time discretization.
+	 * @param numberOfFactors    The number of independent factors.
+	 * @param numberOfPaths      The number of simulated paths.
+	 * @param seed               The seed of the random numbers.
+	 */
+	public BrownianMotionFromPhiloxRandomNumbers(TimeDiscretization timeDiscretization, int numberOfFactors, int numberOfPaths, long seed) {
+		this(timeDiscretization, numberOfFactors, 0L, numberOfPaths, seed);
+	}
+
+	@Override
+	public RandomVariable getBrownianIncrement(int timeIndex, int factor) {
+		RandomVariable[][] increments = brownianIncrements;
+		if(increments == null) {
+			increments = generate();
+		}
+		return increments[timeIndex][factor];
+	}
+
+	/**
+	 * Returns a Brownian motion on the same time discretization and seed simulating another range of paths.
+	 *
+	 * @param firstPath     Index of the first simulated path in the whole simulation.
+	 * @param numberOfPaths The number of simulated paths.
+	 * @return The Brownian motion of the path range.
+	 */
+	public BrownianMotionFromPhiloxRandomNumbers getCloneForPathRange(long firstPath, int numberOfPaths) {
+		return new BrownianMotionFromPhiloxRandomNumbers(timeDiscretization, numberOfFactors, firstPath, numberOfPaths, seed);
+	}
+
+	@Override
+	public BrownianMotion getCloneWithModifiedSeed(int seed) {
+		return new BrownianMotionFromPhiloxRandomNumbers(timeDiscretization, numberOfFactors, firstPath, numberOfPaths, seed);
+	}
+
+	@Override
+	public BrownianMotion getCloneWithModifiedTimeDiscretization(TimeDiscretization newTimeDiscretization) {
+		return new BrownianMotionFromPhiloxRandomNumbers(newTimeDiscretization, numberOfFactors, firstPath, numberOfPaths, seed);
+	}
+
+	@Override
+	public RandomVariable getRandomVariableForConstant(double value) {
+		return new RandomVariableFromDoubleArray(value);
+	}
+
+	@Override
+	public TimeDiscretization getTimeDiscretization() {
+		return timeDiscretization;
+	}
+
+	@Override
+	public int getNumberOfFactors() {
+		return numberOfFactors;
+	}
+
+	@Override
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	public long getFirstPath() {
+		return firstPath;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/*
+	 * Generates the increments of all paths (in parallel over the paths).
+	 */
+	private synchronized RandomVariable[][] generate() {
+		if(brownianIncrements != null) {
+			return brownianIncrements;
+		}
+
+		final int numberOfTimeSteps = timeDiscretization.getNumberOfTimeSteps();
+		final double[] squareRootOfTimeSteps = new double[numberOfTimeSteps];
+		for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+			squareRootOfTimeSteps[timeIndex] = Math.sqrt(timeDiscretization.getTimeStep(timeIndex));
+		}
+
+		final PhiloxRandomNumbers randomNumbers = new PhiloxRandomNumbers(seed);
+		final double[][][] increments = new double[numberOfTimeSteps][numberOfFactors][numberOfPaths];
+		IntStream.range(0, numberOfPaths).parallel().forEach(path -> {
+			double[] normals = new double[numberOfFactors];
+			int[] block = new int[4];
+			for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+				randomNumbers.getStandardNormals(firstPath + path, timeIndex, normals, block);
+				for(int factor = 0; factor < numberOfFactors; factor++) {
+					increments[timeIndex][factor][path] = squareRootOfTimeSteps[timeIndex] * normals[factor];
+				}
+			}
+		});
+
+		RandomVariable[][] randomVariables = new RandomVariable[numberOfTimeSteps][numberOfFactors];
+		for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex++) {
+			for(int factor = 0; factor < numberOfFactors; factor++) {
+				randomVariables[timeIndex][factor] = new RandomVariableFromDoubleArray(timeDiscretization.getTime(timeIndex + 1), increments[timeIndex][factor]);
+			}
+		}
+		brownianIncrements = randomVariables;
+		return randomVariables;
+	}
+
+	@Override
+	public String toString() {
+		return "BrownianMotionFromPhiloxRandomNumbers [numberOfFactors=" + numberOfFactors + ", firstPath=" + firstPath
+				+ ", numberOfPaths=" + numberOfPaths + ", seed=" + seed + "]";
+	}
+}
@@ -0,0 +1,160 @@
+package it.univr.randomnumbers;
+
+import net.finmath.functions.NormalDistribution;
+
+/**
+ * Counter-based random numbers from the Philox4x32-10 bijection of Salmon, Moraes, Dror and Shaw (2011).
+ *
+ * <p>A counter-based generator has no sequential state: the random numbers are a fixed function of a key (the
+ * seed) and of a counter. Here the counter is made of the path, the time step and the index of the number within
+ * the step, so that the normal draw {@code (path, step, index)} of a simulation is computed directly, in any order
+ * and on any machine. A simulation split into path ranges among threads or processes gives exactly the paths of the
+ * undivided simulation, without generating and skipping the numbers of the other ranges.
+ *
+ * <p>Philox4x32-10 maps a 128-bit counter and a 64-bit key into 128 random bits by ten rounds of 32-bit
+ * multiplications, and passes the BigCrush test battery. Every block gives two uniforms with 53 random bits, which
+ * are mapped to normal draws by inversion.
+ */
+public class PhiloxRandomNumbers {
+
+	// Multipliers and Weyl key increments of Philox4x32
+	private static final long MULTIPLIER_0 = 0xD2511F53L;
+	private static final long MULTIPLIER_1 = 0xCD9E8D57L;
+	private static final int KEY_INCREMENT_0 = 0x9E3779B9;
+	private static final int KEY_INCREMENT_1 = 0xBB67AE85;
+	private static final int NUMBER_OF_ROUNDS = 10;
+
+	// 2^-53
+	private static final double UNIT = 1.0 / (1L << 53);
+
+	private final long seed;
+
+	/**
+	 * Creates the generator.
+	 *
+	 * @param seed The seed (the 64-bit Philox key).
+	 */
+	public PhiloxRandomNumbers(long seed) {
+		this.seed=seed;
+	}
+
+	/**
+	 * Returns the uniform draw number {@code index} of a path at a time step.
+	 *
+	 * @param path  The index of the path.
+	 * @param step  The index of the time step.
+	 * @param index The index of the draw within the time step.
+	 * @return A uniform draw in {@code (0, 1)}.
+	 */
+	public double getUniform(long path, int step, int index) {
+		return getUniform(path, step, index, new int[4]);
+	}
+
+	/**
+	 * Returns the uniform draw number {@code index} of a path at a time step, using a scratch block, so that the
+	 * draws of a loop do not allocate.
+	 *
+	 * @param path  The index of the path.
+	 * @param step  The index of the time step.
+	 * @param index The index of the draw within the time step.
+	 * @param block Scratch array of length 4.
+	 * @return A uniform draw in {@code (0, 1)}.
+	 */
+	public double getUniform(long path, int step, int index, int[] block) {
+		getBlock((int) path, (int) (path >>> 32), step, index >>> 1, (int) seed, (int) (seed >>> 32), block);
+		return (index & 1) == 0 ? toUniform(block[0], block[1]) : toUniform(block[2], block[3]);
+	}
+
+	/**
+	 * Returns the normal draw number {@code index} of a path at a time step.
+	 *
+	 * @param path  The index of the path.
+	 * @param step  The index of the time step.
+	 * @param index The index of the draw within the time step.
+	 * @return A standard normal draw.
+	 */
+	public double getStandardNormal(long path, int step, int index) {
+		return NormalDistribution.inverseCumulativeDistribution(getUniform(path, step, index));
+	}
+
+	/**
+	 * Returns the normal draw number {@code index} of a path at a time step, using a scratch block.
+	 *
+	 * @param path  The index of the path.
+	 * @param step  The index of the time step.
+	 * @param index The index of the draw within the time step.
+	 * @param block Scratch array of length 4.
+	 * @return A standard normal draw.
+	 */
+	public double getStandardNormal(long path, int step, int index, int[] block) {
+		return NormalDistribution.inverseCumulativeDistribution(getUniform(path, step, index, block));
+	}
+
+	/**
+	 * Fills an array with the first normal draws of a path at a time step: {@code normals[i]} is the draw
+	 * {@code (path, step, i)}. Two draws are obtained from each Philox block.
+	 *
+	 * @param path    The index of the path.
+	 * @param step    The index of the time step.
+	 * @param normals The array to fill.
+	 * @param block   Scratch array of length 4.
+	 */
+	public void getStandardNormals(long path, int step, double[] normals, int[] block) {
+		for(int index = 0; index < normals.length; index += 2) {
+			getBlock((int) path, (int) (path >>> 32), step, index >>> 1, (int) seed, (int) (seed >>> 32), block);
+			normals[index] = NormalDistribution.inverseCumulativeDistribution(toUniform(block[0], block[1]));
+			if(index + 1 < normals.length) {
+				normals[index + 1] = NormalDistribution.inverseCumulativeDistribution(toUniform(block[2], block[3]));
+			}
+		}
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Applies the Philox4x32-10 bijection to a counter.
+	 *
+	 * @param counter0 First 32-bit word of the counter.
+	 * @param counter1 Second 32-bit word of the counter.
+	 * @param counter2 Third 32-bit word of the counter.
+	 * @param counter3 Fourth 32-bit word of the counter.
+	 * @param key0     First 32-bit word of the key.
+	 * @param key1     Second 32-bit word of the key.
+	 * @param output   Array of length 4 receiving the 128 random bits.
+	 */
+	public static void getBlock(int counter0, int counter1, int counter2, int counter3, int key0, int key1, int[] output) {
+		for(int round = 0; round < NUMBER_OF_ROUNDS; round++) {
+			if(round > 0) {
+				key0 += KEY_INCREMENT_0;
+				key1 += KEY_INCREMENT_1;
+			}
+			long product0 = MULTIPLIER_0 * (counter0 & 0xFFFFFFFFL);
+			long product1 = MULTIPLIER_1 * (counter2 & 0xFFFFFFFFL);
+			int next0 = (int) (product1 >>> 32) ^ counter1 ^ key0;
+			int next2 = (int) (product0 >>> 32) ^ counter3 ^ key1;
+			counter1 = (int) product1;
+			counter3 = (int) product0;
+			counter0 = next0;
+			counter2 = next2;
+		}
+		output[0] = counter0;
+		output[1] = counter1;
+		output[2] = counter2;
+		output[3] = counter3;
+	}
+
+	/*
+	 * Maps 64 random bits to a uniform in (0, 1): the 53 most significant bits, shifted by half a unit.
+	 */
+	private static double toUniform(int high, int low) {
+		long bits = ((long) high << 32) | (low & 0xFFFFFFFFL);
+		return ((bits >>> 11) + 0.5) * UNIT;
+	}
+
+	@Override
+	public String toString() {
+		return "PhiloxRandomNumbers [seed=" + seed + "]";
+	}
+}
@@ -0,0 +1,59 @@
+package it.univr.service;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of the last requests in a ring buffer and returns their percentiles.
+ */
+public class LatencyRecorder {
+
+	private final long[] latencies;
+	private long numberOfRecords;
+
+	/**
+	 * Creates the recorder.
+	 *
+	 * @param capacity Number of most recent latencies kept.
+	 */
+	public LatencyRecorder(int capacity) {
+		this.latencies=new long[capacity];
+	}
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param latencyNanoseconds The latency in nanoseconds.
+	 */
+	public synchronized void record(long latencyNanoseconds) {
+		latencies[(int) (numberOfRecords % latencies.length)] = latencyNanoseconds;
+		numberOfRecords++;
+	}
+
+	/**
+	 * Returns a percentile of the recorded latencies (nearest-rank method).
+	 *
+	 * @param percentile The percentile, in {@code (0, 100]}.
+	 * @return The latency in nanoseconds, or {@code 0} if nothing has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long[] sortedLatencies;
+		synchronized(this) {
+			sortedLatencies = Arrays.copyOf(latencies, (int) Math.min(numberOfRecords, latencies.length));
+		}
+		if(sortedLatencies.length == 0) {
+			return 0;
+		}
+		Arrays.sort(sortedLatencies);
+		int rank = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length);
+		return sortedLatencies[Math.max(rank, 1) - 1];
+	}
+
+	/**
+	 * Returns the number of latencies recorded since the creation of the recorder.
+	 *
+	 * @return The number of records.
+	 */
+	public synchronized long getNumberOfRecords() {
+		return numberOfRecords;
+	}
+}
@@ -0,0 +1,154 @@
+package it.univr.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP endpoint of a {@link LookbackPricingService}, bound to the loopback address.
+ *
+ * <ul>
+ *   <li>{@code GET /price?method=...&payoff=...&spot=...} prices a request (see {@link PricingRequest#fromQuery(String)})
+ *       and answers {@code {"value": ...}}; a full queue answers {@code 503}, an invalid request {@code 400};</li>
+ *   <li>{@code GET /stats} answers the numbers of requests and simulations and the p50 and p99 latencies.</li>
+ * </ul>
+ *
+ * <p>Every exchange is handled by its own virtual thread when the runtime supports them (Java 21 or later),
+ * otherwise by a fixed pool of platform threads. Handlers block while their request is priced; the bounded queue of
+ * the service, not the thread pool, limits the pending work.
+ */
+public class LookbackPricingServer implements AutoCloseable {
+
+	// Number of platform threads used when virtual threads are not available
+	private static final int NUMBER_OF_FALLBACK_THREADS = 256;
+
+	private final LookbackPricingService service;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates and starts the server.
+	 *
+	 * @param port    The port on the loopback address ({@code 0} for an ephemeral port).
+	 * @param service The pricing service.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public LookbackPricingServer(int port, LookbackPricingService service) throws IOException {
+		this.service=service;
+		this.executor=newRequestExecutor();
+		this.server=HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/price", this::handlePrice);
+		server.createContext("/stats", this::handleStats);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Returns true if the exchanges are handled by virtual threads.
+	 *
+	 * @return True on Java 21 or later.
+	 */
+	public boolean isUsingVirtualThreads() {
+		return !(executor instanceof java.util.concurrent.ThreadPoolExecutor);
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+		service.close();
+	}
+
+	/*
+	 * Returns an executor starting a virtual thread per task if available (Java 21), a fixed pool otherwise.
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch(ReflectiveOperationException exception) {
+			return Executors.newFixedThreadPool(NUMBER_OF_FALLBACK_THREADS);
+		}
+	}
+
+	private void handlePrice(HttpExchange exchange) throws IOException {
+		try {
+			PricingRequest request;
+			try {
+				request = PricingRequest.fromQuery(exchange.getRequestURI().getRawQuery());
+			}
+			catch(RuntimeException exception) {
+				send(exchange, 400, "{\"error\": \"" + exception.getMessage() + "\"}");
+				return;
+			}
+
+			try {
+				double value = service.submit(request).get();
+				send(exchange, 200, "{\"value\": " + value + "}");
+			}
+			catch(ExecutionException exception) {
+				boolean isRejected = exception.getCause() instanceof RejectedExecutionException;
+				send(exchange, isRejected ? 503 : 500, "{\"error\": \"" + exception.getCause().getMessage() + "\"}");
+			}
+			catch(InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				send(exchange, 503, "{\"error\": \"interrupted\"}");
+			}
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private void handleStats(HttpExchange exchange) throws IOException {
+		try {
+			send(exchange, 200, "{\"completed\": " + service.getNumberOfCompletedRequests()
+					+ ", \"rejected\": " + service.getNumberOfRejectedRequests()
+					+ ", \"monteCarloRequests\": " + service.getNumberOfMonteCarloRequests()
+					+ ", \"simulations\": " + service.getNumberOfSimulations()
+					+ ", \"queueLength\": " + service.getQueueLength()
+					+ ", \"p50Microseconds\": " + service.getLatencyPercentile(50) / 1000
+					+ ", \"p99Microseconds\": " + service.getLatencyPercentile(99) / 1000 + "}");
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+
+	/**
+	 * Starts a server on the given port (default 8080) until the process is stopped.
+	 *
+	 * @param args Optional port, queue capacity and batch size.
+	 * @throws IOException If the port cannot be bound.
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		int queueCapacity = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+		int maximumBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+		LookbackPricingServer server = new LookbackPricingServer(port, new LookbackPricingService(queueCapacity, maximumBatchSize));
+		System.out.println("Lookback pricing server listening on http://localhost:" + server.getPort()
+				+ (server.isUsingVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+	}
+}
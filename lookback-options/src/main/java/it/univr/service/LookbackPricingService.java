@@ -0,0 +1,237 @@
+package it.univr.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.montecarlo.LookbackOption;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * In-process pricing service for lookback options.
+ *
+ * <p>Analytic and Fourier requests are priced in the calling thread. Monte Carlo requests are put in a bounded
+ * queue, served by a single dispatcher thread: the dispatcher drains the queue in batches, groups the requests of a
+ * batch by {@link PricingRequest.SimulationKey} and prices every group on one shared simulation, so that concurrent
+ * requests on the same underlying and model cost one simulation. When the queue is full the request is rejected
+ * immediately (backpressure) instead of waiting.
+ *
+ * <p>The latencies of the completed requests are recorded by a {@link LatencyRecorder}.
+ */
+public class LookbackPricingService implements AutoCloseable {
+
+	private final BlockingQueue<PendingRequest> queue;
+	private final int maximumBatchSize;
+	private final LatencyRecorder latencyRecorder = new LatencyRecorder(100000);
+	private final Thread dispatcher;
+
+	// Counters
+	private final AtomicLong numberOfRejectedRequests = new AtomicLong();
+	private final AtomicLong numberOfMonteCarloRequests = new AtomicLong();
+	private final AtomicLong numberOfSimulations = new AtomicLong();
+
+	private volatile boolean isRunning = true;
+
+	/**
+	 * Creates and starts the service.
+	 *
+	 * @param queueCapacity    Maximum number of Monte Carlo requests waiting to be priced.
+	 * @param maximumBatchSize Maximum number of Monte Carlo requests taken from the queue at once.
+	 */
+	public LookbackPricingService(int queueCapacity, int maximumBatchSize) {
+		this.queue=new ArrayBlockingQueue<>(queueCapacity);
+		this.maximumBatchSize=maximumBatchSize;
+		this.dispatcher=new Thread(this::dispatch, "lookback-pricing-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * Submits a request.
+	 *
+	 * @param request The request.
+	 * @return The future price. It fails with a {@link RejectedExecutionException} if the queue is full.
+	 */
+	public CompletableFuture<Double> submit(PricingRequest request) {
+		long startTime = System.nanoTime();
+		CompletableFuture<Double> result = new CompletableFuture<>();
+		if(!isRunning) {
+			result.completeExceptionally(new RejectedExecutionException("The pricing service is closed."));
+			return result;
+		}
+
+		if(request.getMethod() != PricingRequest.Method.MONTE_CARLO) {
+			try {
+				result.complete(getClosedFormValue(request));
+			}
+			catch(RuntimeException exception) {
+				result.completeExceptionally(exception);
+			}
+			latencyRecorder.record(System.nanoTime() - startTime);
+			return result;
+		}
+
+		numberOfMonteCarloRequests.incrementAndGet();
+		if(!queue.offer(new PendingRequest(request, result, startTime))) {
+			numberOfRejectedRequests.incrementAndGet();
+			result.completeExceptionally(new RejectedExecutionException("The pricing queue is full."));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a percentile of the latencies of the recent requests.
+	 *
+	 * @param percentile The percentile, in {@code (0, 100]}.
+	 * @return The latency in nanoseconds.
+	 */
+	public long getLatencyPercentile(double percentile) {
+		return latencyRecorder.getPercentile(percentile);
+	}
+
+	public long getNumberOfCompletedRequests() {
+		return latencyRecorder.getNumberOfRecords();
+	}
+
+	public long getNumberOfRejectedRequests() {
+		return numberOfRejectedRequests.get();
+	}
+
+	public long getNumberOfMonteCarloRequests() {
+		return numberOfMonteCarloRequests.get();
+	}
+
+	/**
+	 * Returns the number of simulations built for the Monte Carlo requests (one per group of coalesced requests).
+	 *
+	 * @return The number of simulations.
+	 */
+	public long getNumberOfSimulations() {
+		return numberOfSimulations.get();
+	}
+
+	/**
+	 * Returns the number of Monte Carlo requests waiting in the queue.
+	 *
+	 * @return The queue length.
+	 */
+	public int getQueueLength() {
+		return queue.size();
+	}
+
+	/**
+	 * Stops the dispatcher. Requests still in the queue are rejected.
+	 */
+	@Override
+	public void close() {
+		isRunning = false;
+		dispatcher.interrupt();
+		PendingRequest pendingRequest;
+		while((pendingRequest = queue.poll()) != null) {
+			pendingRequest.result.completeExceptionally(new RejectedExecutionException("The pricing service is closed."));
+		}
+	}
+
+	/*
+	 * Prices an analytic or Fourier request.
+	 */
+	private static double getClosedFormValue(PricingRequest request) {
+		if(request.getMethod() == PricingRequest.Method.FOURIER) {
+			if(request.getNumberOfFixingDates() == 0) {
+				throw new IllegalArgumentException("The Fourier recursion requires discrete monitoring.");
+			}
+			return DiscretelyMonitoredLookbackPrices.getPrice(request.getPayoff(), request.getSpotPrice(), request.getRiskFreeRate(),
+					request.getVolatility(), request.getMaturity(), request.getStrike(), request.getNumberOfFixingDates());
+		}
+		if(request.getNumberOfFixingDates() == 0) {
+			return request.getPayoff().getContinuouslyMonitoredPrice(request.getSpotPrice(), request.getRiskFreeRate(),
+					request.getVolatility(), request.getMaturity(), request.getStrike());
+		}
+		return request.getPayoff().getDiscretelyMonitoredPrice(request.getSpotPrice(), request.getRiskFreeRate(),
+				request.getVolatility(), request.getMaturity(), request.getStrike(), request.getNumberOfFixingDates());
+	}
+
+	/*
+	 * Loop of the dispatcher: takes batches of Monte Carlo requests and prices them by simulation.
+	 */
+	private void dispatch() {
+		List<PendingRequest> batch = new ArrayList<>(maximumBatchSize);
+		while(isRunning) {
+			try {
+				batch.add(queue.take());
+			}
+			catch(InterruptedException exception) {
+				return;
+			}
+			queue.drainTo(batch, maximumBatchSize - 1);
+
+			// Coalesce the requests on the same simulation
+			Map<PricingRequest.SimulationKey, List<PendingRequest>> groups = new LinkedHashMap<>();
+			for(PendingRequest pendingRequest : batch) {
+				groups.computeIfAbsent(pendingRequest.request.getSimulationKey(), key -> new ArrayList<>()).add(pendingRequest);
+			}
+			groups.values().parallelStream().forEach(this::priceOnSharedSimulation);
+			batch.clear();
+		}
+	}
+
+	/*
+	 * Prices a group of Monte Carlo requests with the same simulation key on one simulation.
+	 */
+	private void priceOnSharedSimulation(List<PendingRequest> group) {
+		PricingRequest first = group.get(0).request;
+		MonteCarloBlackScholesModel model;
+		try {
+			TimeDiscretization times = new TimeDiscretizationFromArray(0.0, first.getNumberOfTimeSteps(),
+					first.getMaturity() / first.getNumberOfTimeSteps());
+			BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times, 1, first.getNumberOfPaths(), first.getSeed());
+			model = new MonteCarloBlackScholesModel(first.getSpotPrice(), first.getRiskFreeRate(), first.getVolatility(), brownianMotion);
+			numberOfSimulations.incrementAndGet();
+		}
+		catch(RuntimeException exception) {
+			for(PendingRequest pendingRequest : group) {
+				pendingRequest.result.completeExceptionally(exception);
+			}
+			return;
+		}
+
+		for(PendingRequest pendingRequest : group) {
+			PricingRequest request = pendingRequest.request;
+			try {
+				LookbackOption product = LookbackOption.of(request.getPayoff(), request.getMaturity(), request.getStrike(), request.getNumberOfFixingDates());
+				pendingRequest.result.complete(product.getValue(model));
+			}
+			catch(Exception exception) {
+				pendingRequest.result.completeExceptionally(exception);
+			}
+			latencyRecorder.record(System.nanoTime() - pendingRequest.startTime);
+		}
+	}
+
+	/*
+	 * Monte Carlo request waiting in the queue.
+	 */
+	private static final class PendingRequest {
+
+		private final PricingRequest request;
+		private final CompletableFuture<Double> result;
+		private final long startTime;
+
+		private PendingRequest(PricingRequest request, CompletableFuture<Double> result, long startTime) {
+			this.request=request;
+			this.result=result;
+			this.startTime=startTime;
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package it.univr.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Request to price a single-asset lookback option under Black–Scholes.
+ *
+ * <p>The pricing method is one of
+ * <ul>
+ *   <li>{@link Method#ANALYTIC}: the formulas of {@link it.univr.analyticprices.AnalyticPrices} (closed form for
+ *       continuous monitoring, Broadie–Glasserman–Kou approximation for discrete monitoring);</li>
+ *   <li>{@link Method#FOURIER}: the Fourier recursion of {@link it.univr.analyticprices.DiscretelyMonitoredLookbackPrices}
+ *       (discrete monitoring only);</li>
+ *   <li>{@link Method#MONTE_CARLO}: the Monte Carlo products of {@code it.univr.montecarlo} on a
+ *       {@code MonteCarloBlackScholesModel}. Requests with the same model and simulation parameters
+ *       ({@link #getSimulationKey()}) are priced on one shared simulation.</li>
+ * </ul>
+ */
+public class PricingRequest {
+
+	/**
+	 * Pricing methods.
+	 */
+	public enum Method {
+		ANALYTIC,
+		FOURIER,
+		MONTE_CARLO
+	}
+
+	private final Method method;
+	private final LookbackPayoff payoff;
+	// Black–Scholes parameters
+	private final double spotPrice;
+	private final double riskFreeRate;
+	private final double volatility;
+	// Contract
+	private final double maturity;
+	private final double strike;
+	private final int numberOfFixingDates;
+	// Simulation (Monte Carlo only)
+	private final int numberOfTimeSteps;
+	private final int numberOfPaths;
+	private final int seed;
+
+	/**
+	 * Creates the request.
+	 *
+	 * @param method              The pricing method.
+	 * @param payoff              The lookback payoff.
+	 * @param spotPrice           Spot {@code S0}.
+	 * @param riskFreeRate        Risk-free rate {@code r}.
+	 * @param volatility          Volatility {@code σ}.
+	 * @param maturity            Maturity {@code T}.
+	 * @param strike              Strike {@code K} (ignored by the floating-strike payoffs).
+	 * @param numberOfFixingDates Number of monitoring intervals ({@code 0} for continuous monitoring).
+	 * @param numberOfTimeSteps   Number of time steps of the simulation (Monte Carlo only).
+	 * @param numberOfPaths       Number of simulated paths (Monte Carlo only).
+	 * @param seed                Seed of the Brownian motion (Monte Carlo only).
+	 */
+	public PricingRequest(Method method, LookbackPayoff payoff, double spotPrice, double riskFreeRate, double volatility,
+			double maturity, double strike, int numberOfFixingDates, int numberOfTimeSteps, int numberOfPaths, int seed) {
+		this.method=method;
+		this.payoff=payoff;
+		this.spotPrice=spotPrice;
+		this.riskFreeRate=riskFreeRate;
+		this.volatility=volatility;
+		this.maturity=maturity;
+		this.strike=strike;
+		this.numberOfFixingDates=numberOfFixingDates;
+		this.numberOfTimeSteps=numberOfTimeSteps;
+		this.numberOfPaths=numberOfPaths;
+		this.seed=seed;
+	}
+
+	/**
+	 * Parses a request from a URL query string, e.g.
+	 * {@code method=ANALYTIC&payoff=CALL_FIXED_STRIKE&spot=100&rate=0.05&volatility=0.3&maturity=1&strike=100&fixings=12}.
+	 * The parameters {@code fixings} (default 0), {@code strike} (default 0), {@code steps} (default 252),
+	 * {@code paths} (default 10000) and {@code seed} (default 3141) are optional.
+	 *
+	 * @param query The query string.
+	 * @return The request.
+	 * @throws IllegalArgumentException If a parameter is missing or malformed.
+	 */
+	public static PricingRequest fromQuery(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if(query != null) {
+			for(String parameter : query.split("&")) {
+				int separator = parameter.indexOf('=');
+				if(separator > 0) {
+					parameters.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+				}
+			}
+		}
+		return new PricingRequest(
+				Method.valueOf(getParameter(parameters, "method", "ANALYTIC").toUpperCase()),
+				LookbackPayoff.valueOf(getParameter(parameters, "payoff", null).toUpperCase()),
+				Double.parseDouble(getParameter(parameters, "spot", null)),
+				Double.parseDouble(getParameter(parameters, "rate", null)),
+				Double.parseDouble(getParameter(parameters, "volatility", null)),
+				Double.parseDouble(getParameter(parameters, "maturity", null)),
+				Double.parseDouble(getParameter(parameters, "strike", "0")),
+				Integer.parseInt(getParameter(parameters, "fixings", "0")),
+				Integer.parseInt(getParameter(parameters, "steps", "252")),
+				Integer.parseInt(getParameter(parameters, "paths", "10000")),
+				Integer.parseInt(getParameter(parameters, "seed", "3141")));
+	}
+
+	/**
+	 * Returns the key of the simulation needed by a Monte Carlo request: requests with equal keys are priced on the
+	 * same simulated paths.
+	 *
+	 * @return The key (spot, rate, volatility, maturity, time steps, paths, seed).
+	 */
+	public SimulationKey getSimulationKey() {
+		return new SimulationKey(spotPrice, riskFreeRate, volatility, maturity, numberOfTimeSteps, numberOfPaths, seed);
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public LookbackPayoff getPayoff() {
+		return payoff;
+	}
+
+	public double getSpotPrice() {
+		return spotPrice;
+	}
+
+	public double getRiskFreeRate() {
+		return riskFreeRate;
+	}
+
+	public double getVolatility() {
+		return volatility;
+	}
+
+	public double getMaturity() {
+		return maturity;
+	}
+
+	public double getStrike() {
+		return strike;
+	}
+
+	public int getNumberOfFixingDates() {
+		return numberOfFixingDates;
+	}
+
+	public int getNumberOfTimeSteps() {
+		return numberOfTimeSteps;
+	}
+
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	public int getSeed() {
+		return seed;
+	}
+
+	@Override
+	public String toString() {
+		return "PricingRequest [method=" + method + ", payoff=" + payoff + ", spotPrice=" + spotPrice + ", riskFreeRate=" + riskFreeRate
+				+ ", volatility=" + volatility + ", maturity=" + maturity + ", strike=" + strike + ", numberOfFixingDates=" + numberOfFixingDates + "]";
+	}
+
+	private static String getParameter(Map<String, String> parameters, String name, String defaultValue) {
+		String value = parameters.get(name);
+		if(value == null) {
+			if(defaultValue == null) {
+				throw new IllegalArgumentException("Missing parameter " + name + ".");
+			}
+			return defaultValue;
+		}
+		return value;
+	}
+
+	/**
+	 * Model and simulation parameters shared by coalesced Monte Carlo requests.
+	 */
+	public static final class SimulationKey {
+
+		private final double[] parameters;
+
+		private SimulationKey(double spotPrice, double riskFreeRate, double volatility, double maturity, int numberOfTimeSteps,
+				int numberOfPaths, int seed) {
+			this.parameters=new double[] { spotPrice, riskFreeRate, volatility, maturity, numberOfTimeSteps, numberOfPaths, seed };
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof SimulationKey && Arrays.equals(parameters, ((SimulationKey) other).parameters);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(parameters);
+		}
+
+		@Override
+		public String toString() {
+			return "SimulationKey " + Arrays.toString(parameters);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package it.univr.surrogate;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.finitedifference.LookbackFiniteDifferencePricer;
+
+/**
+ * Offline builder of {@link LookbackSurrogate} objects.
+ *
+ * <p>The tables are filled with reference prices at the interpolation nodes:
+ * <ul>
+ *   <li>continuous monitoring: the closed-form prices of {@link it.univr.analyticprices.AnalyticPrices} for the
+ *       floating-strike payoffs, the finite-difference prices of {@link LookbackFiniteDifferencePricer} for the
+ *       out-of-the-money fixed-strike payoffs (the closed-form fixed-strike prices are derived by parity for a
+ *       running extremum equal to the spot, i.e. in the money);</li>
+ *   <li>discrete monitoring: the prices of {@link DiscretelyMonitoredLookbackPrices}.</li>
+ * </ul>
+ * The nodes of volatility, rate, square root of maturity and log-moneyness are Chebyshev nodes; the nodes of the
+ * monitoring coordinate {@code u = 1/sqrt(m)} are {@code 0} and the given monitoring counts. The reference prices
+ * are computed in parallel.
+ *
+ * <p>After the tables are filled, the surrogate is compared with the reference prices on random points of the
+ * domain (random monitoring counts included). Twice the largest error observed is stored as error bound, and the
+ * build fails if it exceeds the tolerance, by default {@value #DEFAULT_TOLERANCE} per unit spot.
+ */
+public class LookbackSurrogateBuilder {
+
+	// Safety factor applied to the largest error observed on the validation points
+	private static final double ERROR_BOUND_SAFETY_FACTOR = 2.0;
+	// Maximum error bound per unit spot, unless set
+	private static final double DEFAULT_TOLERANCE = 1E-3;
+
+	// Domains and numbers of Chebyshev nodes
+	private double minimumVolatility = 0.05;
+	private double maximumVolatility = 0.8;
+	private int numberOfVolatilityNodes = 10;
+	private double minimumRiskFreeRate = -0.02;
+	private double maximumRiskFreeRate = 0.10;
+	private int numberOfRiskFreeRateNodes = 5;
+	private double minimumMaturity = 0.1;
+	private double maximumMaturity = 5.0;
+	private int numberOfMaturityNodes = 8;
+	private double maximumLogMoneyness = Math.log(2.0);
+	private int numberOfMoneynessNodes = 8;
+	// Monitoring counts used as nodes, besides continuous monitoring
+	private int[] monitoringCounts = { 1, 2, 4, 8, 16, 32, 64, 128, 256 };
+	// Validation
+	private int numberOfValidationPoints = 200;
+	private double tolerance = DEFAULT_TOLERANCE;
+	private long seed = 3141;
+
+	// Reference pricer for the continuously monitored out-of-the-money fixed-strike payoffs
+	private final LookbackFiniteDifferencePricer finiteDifferencePricer = new LookbackFiniteDifferencePricer(1000, 500);
+
+	public LookbackSurrogateBuilder setVolatilityRange(double minimumVolatility, double maximumVolatility, int numberOfNodes) {
+		this.minimumVolatility=minimumVolatility;
+		this.maximumVolatility=maximumVolatility;
+		this.numberOfVolatilityNodes=numberOfNodes;
+		return this;
+	}
+
+	public LookbackSurrogateBuilder setRiskFreeRateRange(double minimumRiskFreeRate, double maximumRiskFreeRate, int numberOfNodes) {
+		this.minimumRiskFreeRate=minimumRiskFreeRate;
+		this.maximumRiskFreeRate=maximumRiskFreeRate;
+		this.numberOfRiskFreeRateNodes=numberOfNodes;
+		return this;
+	}
+
+	public LookbackSurrogateBuilder setMaturityRange(double minimumMaturity, double maximumMaturity, int numberOfNodes) {
+		this.minimumMaturity=minimumMaturity;
+		this.maximumMaturity=maximumMaturity;
+		this.numberOfMaturityNodes=numberOfNodes;
+		return this;
+	}
+
+	/**
+	 * Sets the range of out-of-the-money strikes of the fixed-strike tables: {@code K/S} in
+	 * {@code [1, e^maximumLogMoneyness]} for the call and in {@code [e^-maximumLogMoneyness, 1]} for the put.
+	 * In-the-money strikes are not limited.
+	 *
+	 * @param maximumLogMoneyness The maximum of {@code |log(K/S)|}.
+	 * @param numberOfNodes       The number of Chebyshev nodes.
+	 * @return This builder.
+	 */
+	public LookbackSurrogateBuilder setMoneynessRange(double maximumLogMoneyness, int numberOfNodes) {
+		this.maximumLogMoneyness=maximumLogMoneyness;
+		this.numberOfMoneynessNodes=numberOfNodes;
+		return this;
+	}
+
+	/**
+	 * Sets the monitoring counts used as interpolation nodes, besides continuous monitoring. The surrogate accepts
+	 * every count from the smallest one on.
+	 *
+	 * @param monitoringCounts The numbers of monitoring intervals.
+	 * @return This builder.
+	 */
+	public LookbackSurrogateBuilder setMonitoringCounts(int... monitoringCounts) {
+		this.monitoringCounts=monitoringCounts.clone();
+		return this;
+	}
+
+	public LookbackSurrogateBuilder setNumberOfValidationPoints(int numberOfValidationPoints) {
+		this.numberOfValidationPoints=numberOfValidationPoints;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum error bound per unit spot accepted by {@link #build(LookbackPayoff)}.
+	 *
+	 * @param tolerance The tolerance, positive and finite.
+	 * @return This builder.
+	 */
+	public LookbackSurrogateBuilder setTolerance(double tolerance) {
+		if(!(tolerance > 0.0) || Double.isInfinite(tolerance)) {
+			throw new IllegalArgumentException("The tolerance must be positive and finite: " + tolerance);
+		}
+		this.tolerance=tolerance;
+		return this;
+	}
+
+	public LookbackSurrogateBuilder setSeed(long seed) {
+		this.seed=seed;
+		return this;
+	}
+
+	/**
+	 * Builds and validates the surrogate of a payoff.
+	 *
+	 * @param payoff The lookback payoff.
+	 * @return The surrogate.
+	 * @throws IllegalStateException If the estimated error bound exceeds the tolerance.
+	 */
+	public LookbackSurrogate build(LookbackPayoff payoff) {
+		double[] volatilityNodes = TensorInterpolation.getChebyshevNodes(minimumVolatility, maximumVolatility, numberOfVolatilityNodes);
+		double[] riskFreeRateNodes = TensorInterpolation.getChebyshevNodes(minimumRiskFreeRate, maximumRiskFreeRate, numberOfRiskFreeRateNodes);
+		double[] maturityNodes = TensorInterpolation.getChebyshevNodes(Math.sqrt(minimumMaturity), Math.sqrt(maximumMaturity), numberOfMaturityNodes);
+
+		// Monitoring coordinate u = 1/sqrt(m), in increasing order (u = 0 is continuous monitoring)
+		int[] sortedCounts = Arrays.stream(monitoringCounts).distinct().sorted().toArray();
+		if(sortedCounts.length == 0 || sortedCounts[0] < 1) {
+			throw new IllegalArgumentException("The monitoring counts must be positive.");
+		}
+		final int[] countsAtNodes = new int[sortedCounts.length + 1];
+		double[] monitoringNodes = new double[sortedCounts.length + 1];
+		for(int i = 0; i < sortedCounts.length; i++) {
+			countsAtNodes[sortedCounts.length - i] = sortedCounts[i];
+			monitoringNodes[sortedCounts.length - i] = 1.0 / Math.sqrt(sortedCounts[i]);
+		}
+
+		// Floating-strike table in (σ, r, sqrt(T), u)
+		LookbackPayoff floatingStrikePayoff = LookbackSurrogate.getFloatingStrikePayoff(payoff);
+		double[][] floatingStrikeNodes = { volatilityNodes, riskFreeRateNodes, maturityNodes, monitoringNodes };
+		TensorInterpolation floatingStrikeTable = fillTable(floatingStrikeNodes, new double[] { minimumVolatility, minimumRiskFreeRate, Math.sqrt(minimumMaturity), 0.0 },
+				new double[] { maximumVolatility, maximumRiskFreeRate, Math.sqrt(maximumMaturity), monitoringNodes[monitoringNodes.length - 1] },
+				point -> getReferenceValue(floatingStrikePayoff, point[1], point[0], point[2] * point[2], 1.0, countsAtNodes[(int) point[4]]));
+
+		// Fixed-strike table in (log(K/S), σ, r, sqrt(T), u), out of the money
+		TensorInterpolation fixedStrikeTable = null;
+		if(payoff.isFixedStrike()) {
+			double lowerLogMoneyness = payoff.isOnMaximum() ? 0.0 : -maximumLogMoneyness;
+			double upperLogMoneyness = payoff.isOnMaximum() ? maximumLogMoneyness : 0.0;
+			double[] moneynessNodes = TensorInterpolation.getChebyshevNodes(lowerLogMoneyness, upperLogMoneyness, numberOfMoneynessNodes);
+			double[][] fixedStrikeNodes = { moneynessNodes, volatilityNodes, riskFreeRateNodes, maturityNodes, monitoringNodes };
+			fixedStrikeTable = fillTable(fixedStrikeNodes,
+					new double[] { lowerLogMoneyness, minimumVolatility, minimumRiskFreeRate, Math.sqrt(minimumMaturity), 0.0 },
+					new double[] { upperLogMoneyness, maximumVolatility, maximumRiskFreeRate, Math.sqrt(maximumMaturity), monitoringNodes[monitoringNodes.length - 1] },
+					point -> getReferenceValue(payoff, point[2], point[1], point[3] * point[3], Math.exp(point[0]), countsAtNodes[(int) point[5]]));
+		}
+
+		double errorBound = ERROR_BOUND_SAFETY_FACTOR * getMaximumValidationError(new LookbackSurrogate(payoff, 0.0, floatingStrikeTable, fixedStrikeTable),
+				sortedCounts[0], sortedCounts[sortedCounts.length - 1]);
+		if(errorBound > tolerance) {
+			throw new IllegalStateException("The estimated error bound " + errorBound + " of the " + payoff
+					+ " surrogate exceeds the tolerance " + tolerance + ": increase the number of nodes or reduce the domain.");
+		}
+		return new LookbackSurrogate(payoff, errorBound, floatingStrikeTable, fixedStrikeTable);
+	}
+
+	/*
+	 * Reference function of a table: receives the coordinates of a node followed by the index of its monitoring node.
+	 */
+	private interface ReferenceFunction {
+		double getValue(double[] point);
+	}
+
+	/*
+	 * Fills a table with the reference values at its nodes, in parallel.
+	 */
+	private static TensorInterpolation fillTable(double[][] nodes, double[] lowerBounds, double[] upperBounds,
+			ReferenceFunction referenceFunction) {
+		final int numberOfDimensions = nodes.length;
+		int numberOfValues = 1;
+		for(double[] nodesOfDimension : nodes) {
+			numberOfValues *= nodesOfDimension.length;
+		}
+
+		double[] values = new double[numberOfValues];
+		IntStream.range(0, numberOfValues).parallel().forEach(index -> {
+			// Coordinates of the node (last dimension running fastest) and index of the monitoring node
+			double[] point = new double[numberOfDimensions + 1];
+			int remainder = index;
+			for(int dimension = numberOfDimensions - 1; dimension >= 0; dimension--) {
+				int nodeIndex = remainder % nodes[dimension].length;
+				remainder /= nodes[dimension].length;
+				point[dimension] = nodes[dimension][nodeIndex];
+				if(dimension == numberOfDimensions - 1) {
+					point[numberOfDimensions] = nodeIndex;
+				}
+			}
+			values[index] = referenceFunction.getValue(point);
+		});
+		return new TensorInterpolation(lowerBounds, upperBounds, nodes, values);
+	}
+
+	/*
+	 * Returns the reference price per unit spot (numberOfFixingDates = 0 for continuous monitoring).
+	 */
+	private double getReferenceValue(LookbackPayoff payoff, double riskFreeRate, double volatility, double maturity, double strike, int numberOfFixingDates) {
+		if(numberOfFixingDates > 0) {
+			return DiscretelyMonitoredLookbackPrices.getPrice(payoff, 1.0, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+		}
+		if(!payoff.isFixedStrike()) {
+			return payoff.getContinuouslyMonitoredPrice(1.0, riskFreeRate, volatility, maturity, strike);
+		}
+		return finiteDifferencePricer.getValue(payoff, 1.0, riskFreeRate, volatility, maturity, strike, 0);
+	}
+
+	/*
+	 * Returns the largest error per unit spot of the surrogate on random points of the domain.
+	 */
+	private double getMaximumValidationError(LookbackSurrogate surrogate, int minimumCount, int maximumCount) {
+		Random random = new Random(seed);
+		double[][] points = new double[numberOfValidationPoints][];
+		for(int i = 0; i < numberOfValidationPoints; i++) {
+			double volatility = minimumVolatility + (maximumVolatility - minimumVolatility) * random.nextDouble();
+			double riskFreeRate = minimumRiskFreeRate + (maximumRiskFreeRate - minimumRiskFreeRate) * random.nextDouble();
+			double maturity = minimumMaturity + (maximumMaturity - minimumMaturity) * random.nextDouble();
+			// Strikes in and out of the money
+			double strike = Math.exp(maximumLogMoneyness * (2.0 * random.nextDouble() - 1.0));
+			// One point in four with continuous monitoring
+			int numberOfFixingDates = random.nextInt(4) == 0 ? 0 : minimumCount + random.nextInt(maximumCount - minimumCount + 1);
+			points[i] = new double[] { volatility, riskFreeRate, maturity, strike, numberOfFixingDates };
+		}
+
+		LookbackPayoff payoff = surrogate.getPayoff();
+		return Arrays.stream(points).parallel().mapToDouble(point -> {
+			int numberOfFixingDates = (int) point[4];
+			double surrogateValue = surrogate.getValue(1.0, point[1], point[0], point[2], point[3], numberOfFixingDates);
+			return Math.abs(surrogateValue - getReferenceValue(payoff, point[1], point[0], point[2], point[3], numberOfFixingDates));
+		}).max().orElse(0.0);
+	}
+}
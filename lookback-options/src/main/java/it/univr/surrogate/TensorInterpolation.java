@@ -0,0 +1,226 @@
+package it.univr.surrogate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tensor-product polynomial interpolation of a function of several variables, in barycentric form.
+ *
+ * <p>Every dimension has its own set of nodes (Chebyshev nodes, see {@link #getChebyshevNodes(double, double, int)},
+ * or arbitrary distinct nodes) and its own domain. The interpolated values are stored in a flat array, the last
+ * dimension running fastest. An evaluation computes the barycentric Lagrange basis of every dimension and contracts
+ * it with the values, which costs a multiplication and an addition per stored value.
+ */
+public class TensorInterpolation {
+
+	// Domain of every dimension
+	private final double[] lowerBounds;
+	private final double[] upperBounds;
+	// Interpolation nodes and barycentric weights of every dimension
+	private final double[][] nodes;
+	private final double[][] weights;
+	// Values at the nodes, last dimension running fastest
+	private final double[] values;
+	// Distance in the flat array between consecutive nodes of a dimension
+	private final int[] strides;
+
+	/**
+	 * Creates the interpolation.
+	 *
+	 * @param lowerBounds Lower bounds of the domain of every dimension.
+	 * @param upperBounds Upper bounds of the domain of every dimension.
+	 * @param nodes       Distinct interpolation nodes of every dimension.
+	 * @param values      Values of the function at the nodes, last dimension running fastest.
+	 */
+	public TensorInterpolation(double[] lowerBounds, double[] upperBounds, double[][] nodes, double[] values) {
+		this.lowerBounds=lowerBounds.clone();
+		this.upperBounds=upperBounds.clone();
+		this.nodes=new double[nodes.length][];
+		this.weights=new double[nodes.length][];
+		this.strides=new int[nodes.length];
+
+		int numberOfValues = 1;
+		for(int dimension = nodes.length - 1; dimension >= 0; dimension--) {
+			this.nodes[dimension] = nodes[dimension].clone();
+			this.weights[dimension] = getBarycentricWeights(nodes[dimension]);
+			strides[dimension] = numberOfValues;
+			numberOfValues *= nodes[dimension].length;
+		}
+		if(values.length != numberOfValues) {
+			throw new IllegalArgumentException("Expected " + numberOfValues + " values, got " + values.length + ".");
+		}
+		this.values=values;
+	}
+
+	/**
+	 * Returns the Chebyshev nodes of the first kind on an interval, in increasing order.
+	 *
+	 * @param lowerBound      Lower bound of the interval.
+	 * @param upperBound      Upper bound of the interval.
+	 * @param numberOfNodes   The number of nodes.
+	 * @return The nodes {@code (a + b)/2 - (b - a)/2 cos((2j + 1) π / (2n))}.
+	 */
+	public static double[] getChebyshevNodes(double lowerBound, double upperBound, int numberOfNodes) {
+		double[] chebyshevNodes = new double[numberOfNodes];
+		for(int j = 0; j < numberOfNodes; j++) {
+			chebyshevNodes[j] = 0.5 * (lowerBound + upperBound) - 0.5 * (upperBound - lowerBound) * Math.cos((2 * j + 1) * Math.PI / (2 * numberOfNodes));
+		}
+		return chebyshevNodes;
+	}
+
+	/**
+	 * Returns the interpolated value at a point of the domain.
+	 *
+	 * @param point The coordinates of the point, one per dimension.
+	 * @return The interpolated value.
+	 */
+	public double getValue(double... point) {
+		double[][] basis = new double[nodes.length][];
+		for(int dimension = 0; dimension < nodes.length; dimension++) {
+			double coordinate = point[dimension];
+			if(!(coordinate >= lowerBounds[dimension] && coordinate <= upperBounds[dimension])) {
+				throw new IllegalArgumentException("Coordinate " + dimension + " = " + coordinate + " is outside the domain ["
+						+ lowerBounds[dimension] + ", " + upperBounds[dimension] + "].");
+			}
+			basis[dimension] = getLagrangeBasis(nodes[dimension], weights[dimension], coordinate);
+		}
+		return contract(basis, 0, 0);
+	}
+
+	public int getNumberOfDimensions() {
+		return nodes.length;
+	}
+
+	public int getNumberOfValues() {
+		return values.length;
+	}
+
+	public double getLowerBound(int dimension) {
+		return lowerBounds[dimension];
+	}
+
+	public double getUpperBound(int dimension) {
+		return upperBounds[dimension];
+	}
+
+	/**
+	 * Writes domain, nodes and values.
+	 *
+	 * @param output The output.
+	 * @throws IOException If the output fails.
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		output.writeInt(nodes.length);
+		for(int dimension = 0; dimension < nodes.length; dimension++) {
+			output.writeDouble(lowerBounds[dimension]);
+			output.writeDouble(upperBounds[dimension]);
+			output.writeInt(nodes[dimension].length);
+			for(double node : nodes[dimension]) {
+				output.writeDouble(node);
+			}
+		}
+		output.writeInt(values.length);
+		for(double value : values) {
+			output.writeDouble(value);
+		}
+	}
+
+	/**
+	 * Reads an interpolation written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param input The input.
+	 * @return The interpolation.
+	 * @throws IOException If the input fails.
+	 */
+	public static TensorInterpolation readFrom(DataInput input) throws IOException {
+		int numberOfDimensions = input.readInt();
+		double[] lowerBounds = new double[numberOfDimensions];
+		double[] upperBounds = new double[numberOfDimensions];
+		double[][] nodes = new double[numberOfDimensions][];
+		for(int dimension = 0; dimension < numberOfDimensions; dimension++) {
+			lowerBounds[dimension] = input.readDouble();
+			upperBounds[dimension] = input.readDouble();
+			nodes[dimension] = new double[input.readInt()];
+			for(int j = 0; j < nodes[dimension].length; j++) {
+				nodes[dimension][j] = input.readDouble();
+			}
+		}
+		double[] values = new double[input.readInt()];
+		for(int i = 0; i < values.length; i++) {
+			values[i] = input.readDouble();
+		}
+		return new TensorInterpolation(lowerBounds, upperBounds, nodes, values);
+	}
+
+	/*
+	 * Sums the values weighted by the basis of the dimensions from the given one on.
+	 */
+	private double contract(double[][] basis, int dimension, int offset) {
+		double[] basisOfDimension = basis[dimension];
+		int stride = strides[dimension];
+		double sum = 0.0;
+		if(dimension == nodes.length - 1) {
+			for(int j = 0; j < basisOfDimension.length; j++) {
+				sum += basisOfDimension[j] * values[offset + j];
+			}
+		}
+		else {
+			for(int j = 0; j < basisOfDimension.length; j++) {
+				if(basisOfDimension[j] != 0.0) {
+					sum += basisOfDimension[j] * contract(basis, dimension + 1, offset + j * stride);
+				}
+			}
+		}
+		return sum;
+	}
+
+	/*
+	 * Returns the values of the Lagrange polynomials of the nodes at a point (second barycentric formula).
+	 */
+	private static double[] getLagrangeBasis(double[] nodesOfDimension, double[] weightsOfDimension, double coordinate) {
+		double[] basis = new double[nodesOfDimension.length];
+		double sum = 0.0;
+		for(int j = 0; j < nodesOfDimension.length; j++) {
+			double difference = coordinate - nodesOfDimension[j];
+			if(difference == 0.0) {
+				// The point is a node
+				Arrays.fill(basis, 0.0);
+				basis[j] = 1.0;
+				return basis;
+			}
+			basis[j] = weightsOfDimension[j] / difference;
+			sum += basis[j];
+		}
+		for(int j = 0; j < basis.length; j++) {
+			basis[j] /= sum;
+		}
+		return basis;
+	}
+
+	/*
+	 * Returns the barycentric weights 1 / prod_(k != j) (x_j - x_k), scaled to a maximum modulus of 1.
+	 */
+	private static double[] getBarycentricWeights(double[] nodesOfDimension) {
+		double[] barycentricWeights = new double[nodesOfDimension.length];
+		double maximumModulus = 0.0;
+		for(int j = 0; j < nodesOfDimension.length; j++) {
+			double product = 1.0;
+			for(int k = 0; k < nodesOfDimension.length; k++) {
+				if(k != j) {
+					product *= nodesOfDimension[j] - nodesOfDimension[k];
+				}
+			}
+			if(product == 0.0) {
+				throw new IllegalArgumentException("The interpolation nodes must be distinct.");
+			}
+			barycentricWeights[j] = 1.0 / product;
+			maximumModulus = Math.max(maximumModulus, Math.abs(barycentricWeights[j]));
+		}
+		for(int j = 0; j < barycentricWeights.length; j++) {
+			barycentricWeights[j] /= maximumModulus;
+		}
+		return barycentricWeights;
+	}
+}
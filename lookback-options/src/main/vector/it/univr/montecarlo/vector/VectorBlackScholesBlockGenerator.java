@@ -0,0 +1,60 @@
+package it.univr.montecarlo.vector;
+
+import it.univr.montecarlo.BlackScholesBlockGenerator;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the {@link BlackScholesBlockGenerator} with the {@code jdk.incubator.vector} API.
+ *
+ * <p>Every time step processes the block in vectors of the preferred width of the platform (4 doubles with AVX2,
+ * 8 with AVX-512): load the log-returns and the Brownian increments, {@code x + (sigma dW + mu)}, and on the
+ * monitoring dates lanewise {@code max}/{@code min} with the running extrema. The operations and their order are
+ * those of the scalar implementation, and none is fused, so the results are bit-identical; the tail of the block
+ * which does not fill a vector is processed by the same scalar loop.
+ *
+ * <p>This class is compiled only by the Maven profile {@code vector} and needs
+ * {@code --add-modules jdk.incubator.vector} at run time.
+ */
+public class VectorBlackScholesBlockGenerator extends BlackScholesBlockGenerator {
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	public boolean isVectorized() {
+		return true;
+	}
+
+	@Override
+	public void generate(double[][] increments, double[] drifts, double[] volatilities, boolean[] isMonitoringEnd,
+			int fromPath, int toPath, double[] logValue, double[] logMaximum, double[] logMinimum) {
+		int vectorEnd = fromPath + SPECIES.loopBound(toPath - fromPath);
+		for(int timeIndex = 0; timeIndex < increments.length; timeIndex++) {
+			double[] brownianIncrement = increments[timeIndex];
+			double drift = drifts[timeIndex];
+			double volatility = volatilities[timeIndex];
+			boolean isMonitoring = isMonitoringEnd[timeIndex];
+
+			int path = fromPath;
+			for(; path < vectorEnd; path += SPECIES.length()) {
+				DoubleVector value = DoubleVector.fromArray(SPECIES, logValue, path)
+						.add(DoubleVector.fromArray(SPECIES, brownianIncrement, path).mul(volatility).add(drift));
+				value.intoArray(logValue, path);
+				if(isMonitoring) {
+					DoubleVector.fromArray(SPECIES, logMaximum, path).max(value).intoArray(logMaximum, path);
+					DoubleVector.fromArray(SPECIES, logMinimum, path).min(value).intoArray(logMinimum, path);
+				}
+			}
+
+			// Tail of the block
+			for(; path < toPath; path++) {
+				double value = logValue[path] + (volatility * brownianIncrement[path] + drift);
+				logValue[path] = value;
+				if(isMonitoring) {
+					logMaximum[path] = Math.max(logMaximum[path], value);
+					logMinimum[path] = Math.min(logMinimum[path], value);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package it.univr.analyticprices;
+
+import it.univr.montecarlo.LookbackCallFixedStrike;
+import it.univr.montecarlo.LookbackCallFloatingStrike;
+import it.univr.montecarlo.LookbackPutFixedStrike;
+import it.univr.montecarlo.LookbackPutFloatingStrike;
+import net.finmath.exception.CalculationException;
+import net.finmath.functions.NormalDistribution;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.montecarlo.assetderivativevaluation.products.AbstractAssetMonteCarloProduct;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for {@link DiscretelyMonitoredLookbackPrices}.
+ *
+ * <p>The class:
+ * <ul>
+ *     <li>checks that with a single monitoring date the floating-strike put reduces to an at-the-money
+ *         Black–Scholes put;</li>
+ *     <li>compares, for monthly fixings, the Fourier recursion with the Broadie–Glasserman–Kou approximation of
+ *         {@link AnalyticPrices} and with the Monte Carlo products monitored on the same dates.</li>
+ * </ul>
+ */
+public class DiscretelyMonitoredLookbackPricesTest {
+
+	public static void main(String[] args) throws CalculationException {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.1;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = 100.0;
+
+		// ==================== SINGLE MONITORING DATE ====================
+		// max(S0, S_T) - S_T = (S0 - S_T)^+: the price is the one of an at-the-money put
+		double d1 = (riskFreeRate + 0.5 * volatility * volatility) * maturity / (volatility * Math.sqrt(maturity));
+		double d2 = d1 - volatility * Math.sqrt(maturity);
+		double blackScholesPut = spotPrice * Math.exp(-riskFreeRate * maturity) * NormalDistribution.cumulativeDistribution(-d2)
+				- spotPrice * NormalDistribution.cumulativeDistribution(-d1);
+		System.out.println("Floating-strike put with one fixing: " + DiscretelyMonitoredLookbackPrices.lookbackPutFloatingStrike(spotPrice, riskFreeRate, volatility, maturity, 1));
+		System.out.println("Black-Scholes at-the-money put:      " + blackScholesPut);
+
+		System.out.println();
+
+		// ==================== MONTHLY FIXINGS ====================
+		int numberOfFixings = 12;
+		int numberOfTimeSteps = 1200;
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+		BrownianMotion ourDriver = new BrownianMotionFromMersenneRandomNumbers(times, 1, 100000, 1897);
+		MonteCarloBlackScholesModel blackScholesProcess = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility, ourDriver);
+
+		AbstractAssetMonteCarloProduct[] products = {
+				new LookbackCallFixedStrike(maturity, strike, numberOfFixings),
+				new LookbackPutFixedStrike(maturity, strike, numberOfFixings),
+				new LookbackCallFloatingStrike(maturity, numberOfFixings),
+				new LookbackPutFloatingStrike(maturity, numberOfFixings)
+		};
+
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			long startTime = System.nanoTime();
+			double fourierPrice = DiscretelyMonitoredLookbackPrices.getPrice(payoff, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixings);
+			long elapsedMicroseconds = (System.nanoTime() - startTime) / 1000;
+
+			System.out.println(payoff + " with " + numberOfFixings + " fixings:");
+			System.out.println("    Fourier recursion: " + fourierPrice + " (" + elapsedMicroseconds + " microseconds)");
+			System.out.println("    Broadie-Glasserman-Kou: " + payoff.getDiscretelyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixings));
+			System.out.println("    Monte Carlo: " + products[payoff.ordinal()].getValue(blackScholesProcess));
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package it.univr.batch;
+
+import java.util.Random;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Test class for the {@link AnalyticLookbackBook}.
+ *
+ * <p>The class builds a book of 200000 random positions on 12 maturities and 4 monitoring frequencies, and compares
+ * value and Greeks of the book with a full revaluation of every position with the analytic formulas, seasoned with
+ * the running extrema of the ticks and of the fixings (the Greeks by central differences), after a sequence of spot
+ * ticks and fixings and after changes of volatility and rate of single maturities. The time of a tick and of a market
+ * data change is compared with the one of a full revaluation.
+ */
+public class AnalyticLookbackBookTest {
+
+	private static final double[] MATURITIES = { 0.1, 0.25, 0.5, 0.75, 1.0, 1.5, 2.0, 3.0, 4.0, 5.0, 7.0, 10.0 };
+	private static final int[] FIXING_DATES = { 0, 12, 52, 252 };
+
+	public static void main(String[] args) {
+		int numberOfTrades = 200000;
+		int numberOfTicks = 1000;
+		int ticksPerFixing = 100;
+		double spotPrice = 100.0;
+		Random random = new Random(1897);
+		LookbackPayoff[] payoffs = LookbackPayoff.values();
+
+		// Volatility and rate by maturity
+		double[] volatilities = new double[MATURITIES.length];
+		double[] riskFreeRates = new double[MATURITIES.length];
+		for(int i = 0; i < MATURITIES.length; i++) {
+			volatilities[i] = 0.15 + 0.2 * random.nextDouble();
+			riskFreeRates[i] = 0.01 + 0.04 * random.nextDouble();
+		}
+
+		// ==================== BOOK ====================
+		LookbackTradeBatch trades = LookbackTradeBatch.allocate(numberOfTrades);
+		double[] quantities = new double[numberOfTrades];
+		for(int i = 0; i < numberOfTrades; i++) {
+			int maturityIndex = random.nextInt(MATURITIES.length);
+			trades.setTrade(i, 1000000L + i, payoffs[random.nextInt(payoffs.length)], spotPrice, 70.0 + 60.0 * random.nextDouble(),
+					MATURITIES[maturityIndex], riskFreeRates[maturityIndex], volatilities[maturityIndex],
+					FIXING_DATES[random.nextInt(FIXING_DATES.length)]);
+			quantities[i] = (random.nextBoolean() ? 1.0 : -1.0) * (1 + random.nextInt(10));
+		}
+
+		long startTime = System.nanoTime();
+		AnalyticLookbackBook book = new AnalyticLookbackBook(trades, quantities);
+		System.out.println("Book of " + book.getNumberOfContracts() + " positions in " + book.getNumberOfGroups() + " groups built in "
+				+ (System.nanoTime() - startTime) / 1000000 + " ms");
+		Extrema extrema = new Extrema(spotPrice);
+		check("Initial market data", book, trades, quantities, spotPrice, extrema, volatilities, riskFreeRates);
+
+		// ==================== SPOT TICKS ====================
+		// Value on every tick, and Greeks on every tick of the second half
+		double sum = 0.0;
+		double[] tickTimes = new double[2];
+		for(int tick = 0; tick < numberOfTicks; tick++) {
+			startTime = System.nanoTime();
+			spotPrice *= Math.exp(0.002 * random.nextGaussian());
+			book.setSpotPrice(spotPrice);
+			if((tick + 1) % ticksPerFixing == 0) {
+				book.setFixing();
+			}
+			sum += book.getValue();
+			if(tick >= numberOfTicks / 2) {
+				sum += book.getDelta() + book.getVega() + book.getRho();
+			}
+			tickTimes[tick < numberOfTicks / 2 ? 0 : 1] += (System.nanoTime() - startTime) / 1000.0 / (numberOfTicks / 2);
+			extrema.setSpotPrice(spotPrice);
+			if((tick + 1) % ticksPerFixing == 0) {
+				extrema.setFixing(spotPrice);
+			}
+		}
+		startTime = System.nanoTime();
+		double fullValue = getFullValue(trades, quantities, spotPrice, extrema, volatilities, riskFreeRates);
+		double revaluationTime = (System.nanoTime() - startTime) / 1000.0;
+		System.out.println(String.format("Spot tick with the value: %.0f microseconds, with value, delta, vega and rho: %.0f microseconds"
+				+ " (full revaluation of the value %.0f microseconds, checksum %.6e)", tickTimes[0], tickTimes[1], revaluationTime, sum));
+		check("After " + numberOfTicks + " ticks (spot " + String.format("%.4f", spotPrice) + ", running extrema " + String.format("%.4f", book.getRunningMinimum())
+				+ " and " + String.format("%.4f", book.getRunningMaximum()) + ")", book, trades, quantities, spotPrice, extrema, volatilities, riskFreeRates);
+
+		// ==================== VOLATILITY AND RATE CHANGES ====================
+		int numberOfChanges = 1000;
+		int numberOfUpdatedContracts = 0;
+		startTime = System.nanoTime();
+		for(int change = 0; change < numberOfChanges; change++) {
+			int maturityIndex = random.nextInt(MATURITIES.length);
+			if(random.nextBoolean()) {
+				volatilities[maturityIndex] = Math.max(0.05, volatilities[maturityIndex] + 0.005 * random.nextGaussian());
+				numberOfUpdatedContracts += book.setVolatility(MATURITIES[maturityIndex], volatilities[maturityIndex]);
+			}
+			else {
+				riskFreeRates[maturityIndex] += 0.0005 * random.nextGaussian();
+				numberOfUpdatedContracts += book.setRiskFreeRate(MATURITIES[maturityIndex], riskFreeRates[maturityIndex]);
+			}
+			sum += book.getValue();
+		}
+		System.out.println(String.format("Change of the volatility or rate of one maturity: %.1f microseconds (%d positions repriced on average)",
+				(System.nanoTime() - startTime) / 1000.0 / numberOfChanges, numberOfUpdatedContracts / numberOfChanges));
+		check("After " + numberOfChanges + " changes", book, trades, quantities, spotPrice, extrema, volatilities, riskFreeRates);
+
+		double incrementalValue = book.getValue();
+		startTime = System.nanoTime();
+		book.revalue();
+		System.out.println(String.format("Revaluation of the book in %.1f ms, drift of the incremental value %.3e",
+				(System.nanoTime() - startTime) / 1E6, incrementalValue - book.getValue()));
+		System.out.println("Full value at the spot of the ticks: " + fullValue);
+	}
+
+	/*
+	 * Prints value and Greeks of the book and of a full revaluation of its positions.
+	 */
+	private static void check(String description, AnalyticLookbackBook book, LookbackTradeBatch trades, double[] quantities, double spotPrice,
+			Extrema extrema, double[] volatilities, double[] riskFreeRates) {
+		double spotShift = 1E-7 * spotPrice;
+		double shift = 1E-5;
+		double[] shiftedUp = new double[volatilities.length];
+		double[] shiftedDown = new double[volatilities.length];
+
+		double value = getFullValue(trades, quantities, spotPrice, extrema, volatilities, riskFreeRates);
+		double delta = (getFullValue(trades, quantities, spotPrice + spotShift, extrema, volatilities, riskFreeRates)
+				- getFullValue(trades, quantities, spotPrice - spotShift, extrema, volatilities, riskFreeRates)) / (2.0 * spotShift);
+		for(int i = 0; i < volatilities.length; i++) {
+			shiftedUp[i] = volatilities[i] + shift;
+			shiftedDown[i] = volatilities[i] - shift;
+		}
+		double vega = (getFullValue(trades, quantities, spotPrice, extrema, shiftedUp, riskFreeRates)
+				- getFullValue(trades, quantities, spotPrice, extrema, shiftedDown, riskFreeRates)) / (2.0 * shift);
+		for(int i = 0; i < riskFreeRates.length; i++) {
+			shiftedUp[i] = riskFreeRates[i] + shift;
+			shiftedDown[i] = riskFreeRates[i] - shift;
+		}
+		double rho = (getFullValue(trades, quantities, spotPrice, extrema, volatilities, shiftedUp)
+				- getFullValue(trades, quantities, spotPrice, extrema, volatilities, shiftedDown)) / (2.0 * shift);
+
+		double sumOfPositions = 0.0;
+		for(int i = 0; i < trades.getNumberOfTrades(); i++) {
+			sumOfPositions += book.getValue(i);
+		}
+
+		System.out.println(description + ":");
+		System.out.println(String.format("  value %.8f (full %.8f, sum of the positions %.8f)", book.getValue(), value, sumOfPositions));
+		System.out.println(String.format("  delta %.8f (full %.8f)", book.getDelta(), delta));
+		System.out.println(String.format("  vega  %.6f (full %.6f)", book.getVega(), vega));
+		System.out.println(String.format("  rho   %.6f (full %.6f)", book.getRho(), rho));
+	}
+
+	/*
+	 * Value of the book from the analytic price of every position, seasoned with the running extrema: a fixed-strike
+	 * call is the call with strike max(M, K) plus (max(M, K) - K) e^{-rT}, a floating-strike put the fixed-strike call
+	 * on M plus M e^{-rT} - S, and symmetrically for the puts and the floating-strike calls.
+	 */
+	private static double getFullValue(LookbackTradeBatch trades, double[] quantities, double spotPrice, Extrema extrema, double[] volatilities,
+			double[] riskFreeRates) {
+		double value = 0.0;
+		for(int i = 0; i < trades.getNumberOfTrades(); i++) {
+			int maturityIndex = getMaturityIndex(trades.getMaturity(i));
+			double maturity = trades.getMaturity(i);
+			double riskFreeRate = riskFreeRates[maturityIndex];
+			double volatility = volatilities[maturityIndex];
+			int numberOfFixingDates = trades.getNumberOfFixingDates(i);
+			double maximum = numberOfFixingDates == 0 ? extrema.maximum : extrema.fixingMaximum;
+			double minimum = numberOfFixingDates == 0 ? extrema.minimum : extrema.fixingMinimum;
+			double discountFactor = Math.exp(-riskFreeRate * maturity);
+			double strike = trades.getStrike(i);
+			double price;
+			switch(trades.getPayoff(i)) {
+			case CALL_FIXED_STRIKE:
+				double callStrike = Math.max(maximum, strike);
+				price = getPrice(LookbackPayoff.CALL_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, callStrike, numberOfFixingDates)
+						+ (callStrike - strike) * discountFactor;
+				break;
+			case PUT_FIXED_STRIKE:
+				double putStrike = Math.min(minimum, strike);
+				price = getPrice(LookbackPayoff.PUT_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, putStrike, numberOfFixingDates)
+						+ (strike - putStrike) * discountFactor;
+				break;
+			case CALL_FLOATING_STRIKE:
+				price = getPrice(LookbackPayoff.PUT_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, minimum, numberOfFixingDates)
+						+ spotPrice - minimum * discountFactor;
+				break;
+			default:
+				price = getPrice(LookbackPayoff.CALL_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, maximum, numberOfFixingDates)
+						+ maximum * discountFactor - spotPrice;
+			}
+			value += quantities[i] * price;
+		}
+		return value;
+	}
+
+	private static double getPrice(LookbackPayoff payoff, double spotPrice, double riskFreeRate, double volatility, double maturity, double strike,
+			int numberOfFixingDates) {
+		return numberOfFixingDates == 0
+				? payoff.getContinuouslyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike)
+				: payoff.getDiscretelyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+	}
+
+	/*
+	 * Running extrema of the spots and of the fixings.
+	 */
+	private static final class Extrema {
+		double maximum;
+		double minimum;
+		double fixingMaximum;
+		double fixingMinimum;
+
+		Extrema(double spotPrice) {
+			this.maximum=spotPrice;
+			this.minimum=spotPrice;
+			this.fixingMaximum=spotPrice;
+			this.fixingMinimum=spotPrice;
+		}
+
+		void setSpotPrice(double spotPrice) {
+			maximum = Math.max(maximum, spotPrice);
+			minimum = Math.min(minimum, spotPrice);
+		}
+
+		void setFixing(double spotPrice) {
+			fixingMaximum = Math.max(fixingMaximum, spotPrice);
+			fixingMinimum = Math.min(fixingMinimum, spotPrice);
+		}
+	}
+
+	private static int getMaturityIndex(double maturity) {
+		for(int i = 0; i < MATURITIES.length; i++) {
+			if(MATURITIES[i] == maturity) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unknown maturity " + maturity);
+	}
+}
@@ -0,0 +1,103 @@
+package it.univr.batch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Test class for the binary batch format.
+ *
+ * <p>The class writes a file of one million random trades, maps it back, prices it in parallel with the
+ * {@link AnalyticBatchPricer}, writes and maps the results, and checks them against the analytic prices of the
+ * original trades. The time of every phase is printed. It then corrupts the file of trades (an invalid payoff, a
+ * number of trades larger than the file) and checks that reading it fails.
+ */
+public class BatchFilesTest {
+
+	public static void main(String[] args) throws IOException {
+		int numberOfTrades = 1000000;
+		Random random = new Random(1897);
+		LookbackPayoff[] payoffs = LookbackPayoff.values();
+
+		// ==================== TRADES ====================
+		LookbackTradeBatch trades = LookbackTradeBatch.allocate(numberOfTrades);
+		for(int i = 0; i < numberOfTrades; i++) {
+			trades.setTrade(i, 1000000L + i, payoffs[random.nextInt(payoffs.length)], 80.0 + 40.0 * random.nextDouble(),
+					80.0 + 40.0 * random.nextDouble(), 0.25 + 2.0 * random.nextDouble(), 0.05 * random.nextDouble(),
+					0.1 + 0.4 * random.nextDouble(), random.nextBoolean() ? 0 : 1 + random.nextInt(252));
+		}
+
+		Path tradeFile = Files.createTempFile("lookback-trades", ".bin");
+		Path resultFile = Files.createTempFile("lookback-results", ".bin");
+		try {
+			long startTime = System.nanoTime();
+			LookbackBatchFiles.writeTrades(tradeFile, trades);
+			System.out.println("Trades written in " + (System.nanoTime() - startTime) / 1000000 + " ms (" + Files.size(tradeFile) + " bytes)");
+
+			startTime = System.nanoTime();
+			LookbackTradeBatch mappedTrades = LookbackBatchFiles.readTrades(tradeFile);
+			System.out.println("Trades mapped in " + (System.nanoTime() - startTime) / 1000 + " microseconds");
+
+			// ==================== PRICING ====================
+			AnalyticBatchPricer pricer = new AnalyticBatchPricer();
+			LookbackResultBatch results = LookbackResultBatch.allocate(numberOfTrades);
+			startTime = System.nanoTime();
+			pricer.priceInParallel(mappedTrades, results, 10000);
+			System.out.println("Trades priced in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+
+			startTime = System.nanoTime();
+			LookbackBatchFiles.writeResults(resultFile, results);
+			LookbackResultBatch mappedResults = LookbackBatchFiles.readResults(resultFile);
+			System.out.println("Results written and mapped in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+
+			// ==================== CHECK ====================
+			int numberOfMismatches = 0;
+			for(int i = 0; i < numberOfTrades; i++) {
+				LookbackPayoff payoff = trades.getPayoff(i);
+				int numberOfFixingDates = trades.getNumberOfFixingDates(i);
+				double expectedValue = numberOfFixingDates == 0
+						? payoff.getContinuouslyMonitoredPrice(trades.getSpotPrice(i), trades.getRiskFreeRate(i), trades.getVolatility(i), trades.getMaturity(i), trades.getStrike(i))
+						: payoff.getDiscretelyMonitoredPrice(trades.getSpotPrice(i), trades.getRiskFreeRate(i), trades.getVolatility(i), trades.getMaturity(i), trades.getStrike(i), numberOfFixingDates);
+				if(mappedResults.getTradeId(i) != trades.getTradeId(i) || Double.compare(mappedResults.getValue(i), expectedValue) != 0) {
+					numberOfMismatches++;
+				}
+			}
+			System.out.println("Mismatches: " + numberOfMismatches + " out of " + numberOfTrades);
+			System.out.println("First trade: " + mappedTrades.getTradeId(0) + " " + mappedTrades.getPayoff(0) + " -> " + mappedResults.getValue(0));
+
+			// ==================== CORRUPT FILES ====================
+			try(FileChannel channel = FileChannel.open(tradeFile, StandardOpenOption.WRITE)) {
+				// Payoff of the last trade (the payoff column is the last one)
+				channel.write(ByteBuffer.wrap(new byte[] { 7 }), Files.size(tradeFile) - 1);
+			}
+			System.out.println("Invalid payoff rejected: " + isRejected(tradeFile));
+			try(FileChannel channel = FileChannel.open(tradeFile, StandardOpenOption.WRITE)) {
+				// Number of trades of the header
+				channel.write(ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, 50000000L), 16);
+			}
+			System.out.println("Number of trades larger than the file rejected: " + isRejected(tradeFile));
+		}
+		finally {
+			Files.deleteIfExists(tradeFile);
+			Files.deleteIfExists(resultFile);
+		}
+	}
+
+	private static boolean isRejected(Path tradeFile) {
+		try {
+			LookbackBatchFiles.readTrades(tradeFile);
+			return false;
+		}
+		catch(IOException e) {
+			System.out.println("  " + e.getMessage());
+			return true;
+		}
+	}
+}
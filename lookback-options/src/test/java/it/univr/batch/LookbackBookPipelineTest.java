@@ -0,0 +1,144 @@
+package it.univr.batch;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.montecarlo.BlackScholesLookbackSimulation;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the {@link LookbackBookPipeline}.
+ *
+ * <p>The class writes two files of random trades on a limited set of market data, maturities and monitoring
+ * frequencies, values them with the analytic group pricer and compares the results with {@link AnalyticBatchPricer}
+ * on the mapped file of trades. For each file it prints the throughput and the peak heap used during the run,
+ * which does not grow with the size of the file. A smaller file is then valued with the Monte Carlo group pricer,
+ * checking the first trades against one simulation per trade and printing the number of simulations (groups)
+ * next to the number of trades.
+ */
+public class LookbackBookPipelineTest {
+
+	private static final double[] SPOT_PRICES = { 90.0, 100.0, 110.0 };
+	private static final double[] MATURITIES = { 0.25, 0.5, 1.0, 2.0, 5.0 };
+	private static final double[] VOLATILITIES = { 0.2, 0.3 };
+	private static final int[] FIXING_DATES = { 0, 12, 52, 252 };
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int numberOfPricingThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+		Path directory = Files.createTempDirectory("lookback-pipeline");
+		Path tradeFile = directory.resolve("trades.bin");
+		Path resultFile = directory.resolve("results.bin");
+
+		// ==================== ANALYTIC PRICES ====================
+		for(int numberOfTrades : new int[] { 500000, 2000000 }) {
+			LookbackBatchFiles.writeTrades(tradeFile, getTrades(numberOfTrades, 1897));
+			LookbackBookPipeline pipeline = new LookbackBookPipeline(LookbackGroupPricer.analytic(), 65536, numberOfPricingThreads, 4);
+			// Warm-up
+			pipeline.run(tradeFile, resultFile);
+
+			System.gc();
+			resetPeakHeapUsage();
+			long startTime = System.nanoTime();
+			long numberOfValuedTrades = pipeline.run(tradeFile, resultFile);
+			double time = (System.nanoTime() - startTime) / 1E9;
+			long peakHeapUsage = getPeakHeapUsage();
+
+			LookbackTradeBatch trades = LookbackBatchFiles.readTrades(tradeFile);
+			LookbackResultBatch results = LookbackBatchFiles.readResults(resultFile);
+			LookbackResultBatch expected = LookbackResultBatch.allocate(numberOfTrades);
+			new AnalyticBatchPricer().price(trades, expected);
+			double largestRelativeDifference = 0.0;
+			int wrongIdentifiers = 0;
+			for(int i = 0; i < numberOfTrades; i++) {
+				if(results.getTradeId(i) != expected.getTradeId(i)) {
+					wrongIdentifiers++;
+				}
+				double difference = Math.abs(results.getValue(i) - expected.getValue(i)) / Math.max(1.0, Math.abs(expected.getValue(i)));
+				largestRelativeDifference = Math.max(largestRelativeDifference, difference);
+			}
+
+			System.out.println(numberOfValuedTrades + " trades (" + Files.size(tradeFile) / (1 << 20) + " MB) in "
+					+ pipeline.getNumberOfGroups() + " chunk groups, " + numberOfPricingThreads + " pricing threads:");
+			System.out.println(String.format("  %.2f s, %.2f million trades per second, peak heap %.1f MB",
+					time, numberOfValuedTrades / time / 1E6, peakHeapUsage / 1048576.0));
+			System.out.println(String.format("  largest relative difference to the batch pricer %.3e, wrong identifiers %d",
+					largestRelativeDifference, wrongIdentifiers));
+		}
+
+		// ==================== MONTE CARLO PRICES ====================
+		int numberOfTrades = 20000;
+		int numberOfTimeSteps = 252;
+		int numberOfPaths = 2000;
+		LookbackBatchFiles.writeTrades(tradeFile, getTrades(numberOfTrades, 3));
+		LookbackBookPipeline pipeline = new LookbackBookPipeline(LookbackGroupPricer.monteCarlo(numberOfTimeSteps, numberOfPaths, 1897),
+				numberOfTrades, numberOfPricingThreads, 1);
+		long startTime = System.nanoTime();
+		pipeline.run(tradeFile, resultFile);
+		double time = (System.nanoTime() - startTime) / 1E9;
+
+		// One simulation per trade, for the first trades
+		int numberOfCheckedTrades = 100;
+		LookbackTradeBatch trades = LookbackBatchFiles.readTrades(tradeFile);
+		LookbackResultBatch results = LookbackBatchFiles.readResults(resultFile);
+		double largestDifference = 0.0;
+		startTime = System.nanoTime();
+		for(int i = 0; i < numberOfCheckedTrades; i++) {
+			BrownianMotionFromMersenneRandomNumbers brownianMotion = new BrownianMotionFromMersenneRandomNumbers(
+					new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, trades.getMaturity(i) / numberOfTimeSteps), 1, numberOfPaths, 1897);
+			double value = new BlackScholesLookbackSimulation(trades.getSpotPrice(i), trades.getRiskFreeRate(i), trades.getVolatility(i),
+					brownianMotion, trades.getNumberOfFixingDates(i)).getValue(trades.getPayoff(i), trades.getStrike(i));
+			largestDifference = Math.max(largestDifference, Math.abs(results.getValue(i) - value));
+		}
+		double timePerTrade = (System.nanoTime() - startTime) / 1E9 / numberOfCheckedTrades;
+		System.out.println(String.format("Monte Carlo: %d trades in %d simulations, %.2f s (%.2f s with one simulation per trade)",
+				numberOfTrades, pipeline.getNumberOfGroups(), time, timePerTrade * numberOfTrades));
+		System.out.println(String.format("  largest difference to one simulation per trade on the first %d trades %.3e",
+				numberOfCheckedTrades, largestDifference));
+
+		Files.delete(tradeFile);
+		Files.delete(resultFile);
+		Files.delete(directory);
+	}
+
+	/*
+	 * Random trades starting at one of the spots, with rate and volatility depending on the maturity.
+	 */
+	private static LookbackTradeBatch getTrades(int numberOfTrades, long seed) {
+		Random random = new Random(seed);
+		LookbackPayoff[] payoffs = LookbackPayoff.values();
+		LookbackTradeBatch trades = LookbackTradeBatch.allocate(numberOfTrades);
+		for(int i = 0; i < numberOfTrades; i++) {
+			double spotPrice = SPOT_PRICES[random.nextInt(SPOT_PRICES.length)];
+			int maturityIndex = random.nextInt(MATURITIES.length);
+			trades.setTrade(i, 1000000L + i, payoffs[random.nextInt(payoffs.length)], spotPrice, spotPrice * (0.7 + 0.6 * random.nextDouble()),
+					MATURITIES[maturityIndex], 0.01 + 0.01 * maturityIndex, VOLATILITIES[random.nextInt(VOLATILITIES.length)],
+					FIXING_DATES[random.nextInt(FIXING_DATES.length)]);
+		}
+		return trades;
+	}
+
+	private static void resetPeakHeapUsage() {
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private static long getPeakHeapUsage() {
+		long peakUsage = 0;
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				peakUsage += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peakUsage;
+	}
+}
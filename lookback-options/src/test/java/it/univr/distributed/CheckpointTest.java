@@ -0,0 +1,121 @@
+package it.univr.distributed;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.montecarlo.LookbackCallFixedWithBSControlVariate;
+import it.univr.randomnumbers.BrownianMotionFromPhiloxRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the checkpointed Monte Carlo valuation.
+ *
+ * <p>The class values a discretely monitored fixed-strike lookback call with the continuously monitored control
+ * variate:
+ * <ul>
+ *     <li>in one uninterrupted run;</li>
+ *     <li>in a separate process which crashes after seven blocks, resumed in the current process from its last
+ *         checkpoint: the result must be identical to the uninterrupted run;</li>
+ *     <li>in two runs on the two halves of the paths, whose checkpoints are combined;</li>
+ *     <li>on fewer paths, against {@link LookbackCallFixedWithBSControlVariate} on the same paths;</li>
+ *     <li>for an out-of-the-money fixed-strike put, against its exact price
+ *         ({@link DiscretelyMonitoredLookbackPrices}).</li>
+ * </ul>
+ */
+public class CheckpointTest {
+
+	public static void main(String[] args) throws Exception {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = 100.0;
+		int numberOfFixingDates = 50;
+		int numberOfTimeSteps = 250;
+		int numberOfPaths = 200000;
+		int pathsPerBlock = 10000;
+		int blocksPerCheckpoint = 3;
+		PricingTask task = new PricingTask(LookbackPayoff.CALL_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, strike,
+				numberOfFixingDates, numberOfTimeSteps, 1897, 0, numberOfPaths);
+		Path directory = Files.createTempDirectory("lookback-checkpoint");
+
+		// ==================== UNINTERRUPTED ====================
+		long startTime = System.nanoTime();
+		CheckpointedPricing pricing = new CheckpointedPricing(task, pathsPerBlock, blocksPerCheckpoint, directory.resolve("uninterrupted.bin"));
+		ControlVariateStatistics statistics = pricing.run();
+		double controlExpectation = pricing.getControlExpectation();
+		System.out.println("Uninterrupted:  " + statistics + " (" + (System.nanoTime() - startTime) / 1000000 + " ms)");
+		System.out.println(String.format("  plain %.6f +/- %.6f, control variate %.6f +/- %.6f", statistics.getTargetStatistics().getMean(),
+				statistics.getTargetStatistics().getStandardError(), statistics.getMean(controlExpectation), statistics.getStandardError()));
+
+		// ==================== CRASH AND RESUME ====================
+		Path checkpointFile = directory.resolve("resumed.bin");
+		List<String> command = new ArrayList<>(Arrays.asList(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+				"-Dit.univr.distributed.failAfterBlocks=7", "-cp", System.getProperty("java.class.path"), CheckpointedPricing.class.getName(),
+				checkpointFile.toString(), task.getPayoff().name()));
+		for(Object argument : new Object[] { spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixingDates, numberOfTimeSteps,
+				task.getSeed(), task.getFirstPath(), numberOfPaths, pathsPerBlock, blocksPerCheckpoint }) {
+			command.add(String.valueOf(argument));
+		}
+		Process process = new ProcessBuilder(command).inheritIO().start();
+		System.out.println("Crashed process exit code: " + process.waitFor() + ", checkpoint at path " + PricingCheckpoint.readFrom(checkpointFile).getNextPath());
+
+		CheckpointedPricing resumedPricing = new CheckpointedPricing(task, pathsPerBlock, blocksPerCheckpoint, checkpointFile);
+		ControlVariateStatistics resumedStatistics = resumedPricing.run();
+		System.out.println("Resumed:        " + resumedStatistics + " (" + resumedPricing.getNumberOfResumedPaths() + " paths from the checkpoint)");
+		System.out.println("Identical to the uninterrupted run: " + (resumedStatistics.getMean(controlExpectation) == statistics.getMean(controlExpectation)
+				&& resumedStatistics.getStandardError() == statistics.getStandardError()
+				&& resumedStatistics.getTargetStatistics().getMean() == statistics.getTargetStatistics().getMean()));
+
+		// A completed checkpoint is not simulated again
+		CheckpointedPricing completedPricing = new CheckpointedPricing(task, pathsPerBlock, blocksPerCheckpoint, checkpointFile);
+		completedPricing.run();
+		System.out.println("Run on the completed checkpoint: " + completedPricing.getNumberOfResumedPaths() + " paths from the checkpoint");
+
+		// ==================== SEPARATE RUNS ====================
+		List<PricingCheckpoint> checkpoints = new ArrayList<>();
+		for(int half = 1; half >= 0; half--) {
+			Path halfFile = directory.resolve("half" + half + ".bin");
+			new CheckpointedPricing(task.getCloneForPathRange(half * numberOfPaths / 2, numberOfPaths / 2), pathsPerBlock, blocksPerCheckpoint, halfFile).run();
+			checkpoints.add(PricingCheckpoint.readFrom(halfFile));
+		}
+		ControlVariateStatistics combinedStatistics = CheckpointedPricing.combine(checkpoints);
+		System.out.println("Combined:       " + combinedStatistics);
+		System.out.println(String.format("  difference to the uninterrupted run %.3e", combinedStatistics.getMean(controlExpectation) - statistics.getMean(controlExpectation)));
+
+		// ==================== CONTROL VARIATE PRODUCT ====================
+		int numberOfProductPaths = 20000;
+		PricingTask productTask = task.getCloneForPathRange(0, numberOfProductPaths);
+		ControlVariateStatistics productStatistics = new CheckpointedPricing(productTask, pathsPerBlock, blocksPerCheckpoint, directory.resolve("product.bin")).run();
+		MonteCarloBlackScholesModel model = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility, new BrownianMotionFromPhiloxRandomNumbers(
+				new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps), 1, 0, numberOfProductPaths, task.getSeed()));
+		double productValue = new LookbackCallFixedWithBSControlVariate(maturity, strike, numberOfFixingDates).getValue(0.0, model).getAverage();
+		System.out.println(String.format("Control variate on %d paths: %.10f (LookbackCallFixedWithBSControlVariate %.10f)",
+				numberOfProductPaths, productStatistics.getMean(controlExpectation), productValue));
+
+		// ==================== OUT-OF-THE-MONEY PUT ====================
+		PricingTask putTask = new PricingTask(LookbackPayoff.PUT_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, 80.0,
+				numberOfFixingDates, numberOfTimeSteps, 1897, 0, numberOfPaths);
+		CheckpointedPricing putPricing = new CheckpointedPricing(putTask, pathsPerBlock, blocksPerCheckpoint, directory.resolve("put.bin"));
+		ControlVariateStatistics putStatistics = putPricing.run();
+		System.out.println(String.format("Put with strike 80: plain %.6f +/- %.6f, control variate %.6f +/- %.6f, exact %.6f",
+				putStatistics.getTargetStatistics().getMean(), putStatistics.getTargetStatistics().getStandardError(),
+				putStatistics.getMean(putPricing.getControlExpectation()), putStatistics.getStandardError(),
+				DiscretelyMonitoredLookbackPrices.getPrice(LookbackPayoff.PUT_FIXED_STRIKE, spotPrice, riskFreeRate, volatility, maturity, 80.0, numberOfFixingDates)));
+
+		try(Stream<Path> files = Files.list(directory)) {
+			for(Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+}
@@ -0,0 +1,82 @@
+package it.univr.distributed;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Test class for the distributed Monte Carlo valuation.
+ *
+ * <p>The class values a discretely monitored floating-strike lookback call:
+ * <ul>
+ *     <li>in the current process, range by range, merging the statistics in the order of the ranges;</li>
+ *     <li>on three local worker processes;</li>
+ *     <li>on three local worker processes, one of which crashes after two ranges, so that its range is reassigned;</li>
+ *     <li>on three local worker processes, one of which stops answering after two ranges, so that its range is
+ *         reassigned when the range timeout expires.</li>
+ * </ul>
+ * The four prices must be identical; they are compared with the exact Fourier price.
+ */
+public class DistributedPricingTest {
+
+	public static void main(String[] args) throws Exception {
+		LookbackPayoff payoff = LookbackPayoff.CALL_FLOATING_STRIKE;
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		int numberOfFixingDates = 252;
+		int numberOfTimeSteps = 252;
+		int numberOfPaths = 200000;
+		int numberOfRanges = 20;
+		PricingTask task = new PricingTask(payoff, spotPrice, riskFreeRate, volatility, maturity, 0.0, numberOfFixingDates,
+				numberOfTimeSteps, 1897, 0, numberOfPaths);
+
+		// ==================== IN PROCESS ====================
+		long startTime = System.nanoTime();
+		PathStatistics localStatistics = null;
+		long firstPath = 0;
+		for(int range = 0; range < numberOfRanges; range++) {
+			int rangeSize = numberOfPaths / numberOfRanges + (range < numberOfPaths % numberOfRanges ? 1 : 0);
+			PathStatistics rangeStatistics = PricingWorker.price(task.getCloneForPathRange(firstPath, rangeSize));
+			localStatistics = localStatistics == null ? rangeStatistics : localStatistics.merge(rangeStatistics);
+			firstPath += rangeSize;
+		}
+		System.out.println("In process:      " + localStatistics + " (" + (System.nanoTime() - startTime) / 1000000 + " ms)");
+
+		// ==================== THREE WORKERS ====================
+		try(PricingCoordinator coordinator = PricingCoordinator.startLocalWorkers(3)) {
+			startTime = System.nanoTime();
+			PathStatistics statistics = coordinator.price(task, numberOfRanges);
+			System.out.println("Three workers:   " + statistics + " (" + (System.nanoTime() - startTime) / 1000000 + " ms)");
+			System.out.println("Identical to the valuation in process: " + (statistics.getMean() == localStatistics.getMean()
+					&& statistics.getStandardError() == localStatistics.getStandardError()));
+		}
+
+		// ==================== WORKER FAILURE ====================
+		try(PricingCoordinator coordinator = PricingCoordinator.startLocalWorkers(2)) {
+			coordinator.addLocalWorker("-Dit.univr.distributed.failAfterTasks=2");
+			startTime = System.nanoTime();
+			PathStatistics statistics = coordinator.price(task, numberOfRanges);
+			System.out.println("Worker failure:  " + statistics + " (" + (System.nanoTime() - startTime) / 1000000 + " ms)");
+			System.out.println("Reassigned ranges: " + coordinator.getNumberOfReassignedRanges() + ", live workers: " + coordinator.getNumberOfLiveWorkers());
+			System.out.println("Identical to the valuation in process: " + (statistics.getMean() == localStatistics.getMean()
+					&& statistics.getStandardError() == localStatistics.getStandardError()));
+		}
+
+		// ==================== HUNG WORKER ====================
+		try(PricingCoordinator coordinator = PricingCoordinator.startLocalWorkers(2)) {
+			coordinator.addLocalWorker("-Dit.univr.distributed.hangAfterTasks=2");
+			coordinator.setRangeTimeout(15000);
+			startTime = System.nanoTime();
+			PathStatistics statistics = coordinator.price(task, numberOfRanges);
+			System.out.println("Hung worker:     " + statistics + " (" + (System.nanoTime() - startTime) / 1000000 + " ms)");
+			System.out.println("Reassigned ranges: " + coordinator.getNumberOfReassignedRanges() + ", live workers: " + coordinator.getNumberOfLiveWorkers());
+			System.out.println("Identical to the valuation in process: " + (statistics.getMean() == localStatistics.getMean()
+					&& statistics.getStandardError() == localStatistics.getStandardError()));
+		}
+
+		System.out.println();
+		System.out.println("Fourier price (" + numberOfFixingDates + " fixings): " + DiscretelyMonitoredLookbackPrices.getPrice(payoff,
+				spotPrice, riskFreeRate, volatility, maturity, 0.0, numberOfFixingDates));
+	}
+}
@@ -0,0 +1,71 @@
+package it.univr.distributed;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Measures the time to the first price of a {@link PricingWorker} process: the time from the launch of the JVM to
+ * the statistics of its first {@link PricingTask}, split into the start of the worker (until it announces its port)
+ * and the first valuation, and the time of a second valuation on the warm worker.
+ *
+ * <p>The configurations are the default JVM, the JVM options of {@link WorkerStartup#getJvmOptions(Path, boolean)}
+ * without and with the warm-up, and, if the class-data sharing archive of the {@code startup} Maven profile is
+ * given as argument (or found in {@code target}), the same options with the archive. The archive is only used if
+ * this class runs on the jar class path of the training run, as in the {@code startup} profile.
+ */
+public class WorkerStartupTest {
+
+	public static void main(String[] args) throws Exception {
+		int numberOfLaunches = 5;
+		Path archive = Paths.get(args.length > 0 ? args[0] : "target/" + WorkerStartup.ARCHIVE_FILE_NAME);
+		PricingTask task = new PricingTask(LookbackPayoff.CALL_FLOATING_STRIKE, 100.0, 0.05, 0.3, 1.0, 0.0, 52, 52, 1897, 0, 5000);
+
+		Map<String, String[]> configurations = new LinkedHashMap<>();
+		configurations.put("default JVM", new String[0]);
+		configurations.put("worker options", WorkerStartup.getJvmOptions(null, false));
+		configurations.put("worker options, warm-up", WorkerStartup.getJvmOptions(null, true));
+		if(Files.exists(archive)) {
+			configurations.put("archive", new String[] { "-XX:SharedArchiveFile=" + archive.toAbsolutePath() });
+			configurations.put("archive, worker options", WorkerStartup.getJvmOptions(archive, false));
+			configurations.put("archive, worker options, warm-up", WorkerStartup.getJvmOptions(archive, true));
+		}
+		else {
+			System.out.println("No class-data sharing archive at " + archive + ": run mvn -Pstartup package to create it.");
+		}
+
+		for(Map.Entry<String, String[]> configuration : configurations.entrySet()) {
+			List<Double> startTimes = new ArrayList<>();
+			List<Double> firstPriceTimes = new ArrayList<>();
+			List<Double> secondPriceTimes = new ArrayList<>();
+			for(int launch = 0; launch < numberOfLaunches; launch++) {
+				long startTime = System.nanoTime();
+				try(PricingCoordinator coordinator = PricingCoordinator.startLocalWorkers(1, configuration.getValue())) {
+					long readyTime = System.nanoTime();
+					coordinator.price(task, 1);
+					long firstPriceTime = System.nanoTime();
+					coordinator.price(task, 1);
+					long secondPriceTime = System.nanoTime();
+					startTimes.add((readyTime - startTime) / 1E6);
+					firstPriceTimes.add((firstPriceTime - startTime) / 1E6);
+					secondPriceTimes.add((secondPriceTime - firstPriceTime) / 1E6);
+				}
+			}
+			System.out.println(String.format("%-34s start %6.0f ms, time to first price %6.0f ms, second price %5.0f ms (medians of %d launches)",
+					configuration.getKey(), getMedian(startTimes), getMedian(firstPriceTimes), getMedian(secondPriceTimes), numberOfLaunches));
+		}
+	}
+
+	private static double getMedian(List<Double> values) {
+		double[] sortedValues = values.stream().mapToDouble(Double::doubleValue).toArray();
+		Arrays.sort(sortedValues);
+		return sortedValues[sortedValues.length / 2];
+	}
+}
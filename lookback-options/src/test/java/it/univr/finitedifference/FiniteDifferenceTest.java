@@ -0,0 +1,76 @@
+package it.univr.finitedifference;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Test class for {@link LookbackFiniteDifferencePricer}.
+ *
+ * <p>The class:
+ * <ul>
+ *     <li>compares the continuously monitored prices with the closed-form prices of
+ *         {@link it.univr.analyticprices.AnalyticPrices};</li>
+ *     <li>compares the prices with monthly fixings with the Fourier recursion of {@link DiscretelyMonitoredLookbackPrices};</li>
+ *     <li>compares delta, gamma and theta read from the grid with central bump-and-revalue differences, with the
+ *         running extremum held fixed, of a lookback that has already been running for a while.</li>
+ * </ul>
+ */
+public class FiniteDifferenceTest {
+
+	public static void main(String[] args) {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.1;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double[] strikes = { 90.0, 110.0 };
+		int numberOfFixings = 12;
+
+		LookbackFiniteDifferencePricer pricer = new LookbackFiniteDifferencePricer(1000, 500);
+
+		for(double strike : strikes) {
+			System.out.println("Strike " + strike);
+			for(LookbackPayoff payoff : LookbackPayoff.values()) {
+				if(!payoff.isFixedStrike() && strike != strikes[0]) {
+					continue;
+				}
+				// ==================== CONTINUOUS MONITORING ====================
+				long startTime = System.nanoTime();
+				FiniteDifferenceResult result = pricer.getResult(payoff, spotPrice, riskFreeRate, volatility, maturity, strike);
+				long elapsedMilliseconds = (System.nanoTime() - startTime) / 1000000;
+
+				double analyticPrice = payoff.getContinuouslyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike);
+				System.out.println(payoff + ", continuous monitoring (" + elapsedMilliseconds + " ms):");
+				System.out.println("    price: " + result.getValue() + " (analytic " + analyticPrice + ")");
+
+				// ==================== MONTHLY FIXINGS ====================
+				startTime = System.nanoTime();
+				double discretePrice = pricer.getValue(payoff, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixings);
+				elapsedMilliseconds = (System.nanoTime() - startTime) / 1000000;
+
+				System.out.println(payoff + ", " + numberOfFixings + " fixings (" + elapsedMilliseconds + " ms):");
+				System.out.println("    price: " + discretePrice + " (Fourier recursion "
+						+ DiscretelyMonitoredLookbackPrices.getPrice(payoff, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfFixings) + ")");
+			}
+			System.out.println();
+		}
+
+		// ==================== GREEKS OF A SEASONED LOOKBACK ====================
+		// The running extremum is held fixed: maximum 115 or minimum 85
+		double bump = 0.01;
+		double strike = 100.0;
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			double runningExtremum = payoff.isOnMaximum() ? 115.0 : 85.0;
+			FiniteDifferenceResult result = pricer.getResult(payoff, spotPrice, runningExtremum, riskFreeRate, volatility, maturity, strike, 0);
+			double priceUp = pricer.getResult(payoff, spotPrice + bump, runningExtremum, riskFreeRate, volatility, maturity, strike, 0).getValue();
+			double priceDown = pricer.getResult(payoff, spotPrice - bump, runningExtremum, riskFreeRate, volatility, maturity, strike, 0).getValue();
+			double priceLater = pricer.getResult(payoff, spotPrice, runningExtremum, riskFreeRate, volatility, maturity - bump, strike, 0).getValue();
+			double priceEarlier = pricer.getResult(payoff, spotPrice, runningExtremum, riskFreeRate, volatility, maturity + bump, strike, 0).getValue();
+
+			System.out.println(payoff + ", running extremum " + runningExtremum + ":");
+			System.out.println("    price: " + result.getValue());
+			System.out.println("    delta: " + result.getDelta() + " (bumped " + (priceUp - priceDown) / (2.0 * bump) + ")");
+			System.out.println("    gamma: " + result.getGamma() + " (bumped " + (priceUp - 2.0 * result.getValue() + priceDown) / (bump * bump) + ")");
+			System.out.println("    theta: " + result.getTheta() + " (bumped " + (priceLater - priceEarlier) / (2.0 * bump) + ")");
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package it.univr.metrics;
+
+import it.univr.analyticprices.LookbackPayoff;
+import it.univr.montecarlo.HestonLookbackPathKernel;
+import it.univr.montecarlo.LookbackCallFixedWithBSControlVariate;
+import it.univr.montecarlo.LookbackOption;
+import it.univr.montecarlo.LookbackPathKernel;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the instrumentation of the Monte Carlo engine.
+ *
+ * <p>The class enables the instrumentation (unless {@code -Dit.univr.metrics=false} is given), prices the four
+ * lookbacks with the finmath products and with the Heston path kernel, with and without control variate, and prints
+ * the metrics report: time per phase, paths per second, allocated bytes per valuation and variance reduction.
+ * Run it with {@code -XX:StartFlightRecording=filename=lookback.jfr} to also record the valuation events.
+ */
+public class MetricsTest {
+
+	public static void main(String[] args) throws CalculationException {
+		// The flag is read when LookbackMetrics is loaded
+		if(System.getProperty("it.univr.metrics") == null) {
+			System.setProperty("it.univr.metrics", "true");
+		}
+		System.out.println("Instrumentation enabled: " + LookbackMetrics.ENABLED);
+
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = 100.0;
+		int numberOfTimeSteps = 252;
+		int numberOfMonitoringIntervals = 12;
+		int numberOfPaths = 20000;
+		int seed = 1897;
+
+		// ==================== FINMATH PRODUCTS ====================
+		MonteCarloBlackScholesModel model = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility,
+				new BrownianMotionFromMersenneRandomNumbers(new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps),
+						1, numberOfPaths, seed));
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			LookbackOption product = LookbackOption.of(payoff, maturity, strike, numberOfMonitoringIntervals);
+			System.out.println(payoff + ": " + product.getValue(model));
+		}
+		System.out.println("Control variate: " + new LookbackCallFixedWithBSControlVariate(maturity, strike, numberOfMonitoringIntervals).getValue(model));
+		System.out.println(LookbackMetrics.getReport());
+		System.out.println();
+		LookbackMetrics.reset();
+
+		// ==================== HESTON PATH KERNEL ====================
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			// A new kernel for every payoff, so that every valuation simulates its paths
+			LookbackPathKernel heston = new HestonLookbackPathKernel(spotPrice, riskFreeRate, 0.04, 1.5, 0.06, 0.5, -0.7,
+					maturity, numberOfTimeSteps, numberOfMonitoringIntervals, numberOfPaths, seed);
+			System.out.println(payoff + ": " + heston.getValueWithControlVariate(payoff, strike));
+		}
+		System.out.println(LookbackMetrics.getReport());
+	}
+}
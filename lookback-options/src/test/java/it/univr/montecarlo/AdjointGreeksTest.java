@@ -0,0 +1,117 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the adjoint Greeks of {@link LookbackAdjointGreeks}.
+ *
+ * <p>The class:
+ * <ul>
+ *     <li>compares, for the four payoffs, the adjoint gradient in a model with 10 volatility and 10 rate buckets
+ *         (21 risk factors) with bump-and-revalue on the same Brownian motion, and the time of the adjoint gradient
+ *         with the ones of one valuation and of bump-and-revalue;</li>
+ *     <li>checks the control variate estimator against {@link LookbackCallFixedWithBSControlVariate} on the finmath
+ *         model and prints its gradient next to the plain one.</li>
+ * </ul>
+ */
+public class AdjointGreeksTest {
+
+	public static void main(String[] args) throws CalculationException {
+		double spotPrice = 100.0;
+		double strike = 105.0;
+		double maturity = 1.0;
+		int numberOfTimeSteps = 250;
+		int numberOfPaths = 100000;
+		int numberOfMonitoringDates = 50;
+
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times, 1, numberOfPaths, 1897);
+		MonitoringSchedule monitoringSchedule = MonitoringSchedule.equidistant(numberOfMonitoringDates);
+
+		// Buckets of 0.1 years
+		int numberOfBuckets = 10;
+		double[] bucketStartTimes = new double[numberOfBuckets];
+		double[] volatilities = new double[numberOfBuckets];
+		double[] riskFreeRates = new double[numberOfBuckets];
+		for(int bucket = 0; bucket < numberOfBuckets; bucket++) {
+			bucketStartTimes[bucket] = 0.1 * bucket;
+			volatilities[bucket] = 0.2 + 0.02 * bucket;
+			riskFreeRates[bucket] = 0.01 + 0.004 * bucket;
+		}
+
+		// ==================== ADJOINT AND BUMPED GRADIENTS ====================
+		double shift = 1E-6;
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			LookbackAdjointGreeks engine = new LookbackAdjointGreeks(spotPrice, bucketStartTimes, volatilities, riskFreeRates, brownianMotion, monitoringSchedule);
+			// Warm-up
+			engine.getGradient(payoff, strike);
+			engine.getValue(payoff, strike);
+
+			long startTime = System.nanoTime();
+			double value = engine.getValue(payoff, strike);
+			double valuationTime = (System.nanoTime() - startTime) / 1E6;
+			startTime = System.nanoTime();
+			LookbackGradient gradient = engine.getGradient(payoff, strike);
+			double adjointTime = (System.nanoTime() - startTime) / 1E6;
+
+			startTime = System.nanoTime();
+			double delta = (new LookbackAdjointGreeks(spotPrice * (1 + shift), bucketStartTimes, volatilities, riskFreeRates, brownianMotion, monitoringSchedule).getValue(payoff, strike)
+					- new LookbackAdjointGreeks(spotPrice * (1 - shift), bucketStartTimes, volatilities, riskFreeRates, brownianMotion, monitoringSchedule).getValue(payoff, strike))
+					/ (2.0 * shift * spotPrice);
+			double largestVegaError = 0.0;
+			double largestRhoError = 0.0;
+			for(int bucket = 0; bucket < numberOfBuckets; bucket++) {
+				double[] shiftedUp = volatilities.clone();
+				double[] shiftedDown = volatilities.clone();
+				shiftedUp[bucket] += shift;
+				shiftedDown[bucket] -= shift;
+				double vega = (new LookbackAdjointGreeks(spotPrice, bucketStartTimes, shiftedUp, riskFreeRates, brownianMotion, monitoringSchedule).getValue(payoff, strike)
+						- new LookbackAdjointGreeks(spotPrice, bucketStartTimes, shiftedDown, riskFreeRates, brownianMotion, monitoringSchedule).getValue(payoff, strike))
+						/ (2.0 * shift);
+				largestVegaError = Math.max(largestVegaError, Math.abs(vega - gradient.getVega(bucket)));
+
+				shiftedUp = riskFreeRates.clone();
+				shiftedDown = riskFreeRates.clone();
+				shiftedUp[bucket] += shift;
+				shiftedDown[bucket] -= shift;
+				double rho = (new LookbackAdjointGreeks(spotPrice, bucketStartTimes, volatilities, shiftedUp, brownianMotion, monitoringSchedule).getValue(payoff, strike)
+						- new LookbackAdjointGreeks(spotPrice, bucketStartTimes, volatilities, shiftedDown, brownianMotion, monitoringSchedule).getValue(payoff, strike))
+						/ (2.0 * shift);
+				largestRhoError = Math.max(largestRhoError, Math.abs(rho - gradient.getRho(bucket)));
+			}
+			double bumpTime = (System.nanoTime() - startTime) / 1E6;
+
+			System.out.println(payoff + ":");
+			System.out.println(String.format("  value %.6f (forward sweep %.6f), delta %.6f (bumped %.6f), vega %.6f, rho %.6f",
+					gradient.getValue(), value, gradient.getDelta(), delta, gradient.getVega(), gradient.getRho()));
+			System.out.println(String.format("  largest difference to the bumped bucket vegas %.2e and rhos %.2e",
+					largestVegaError, largestRhoError));
+			System.out.println(String.format("  valuation %.1f ms, adjoint gradient %.1f ms (%.1f valuations), bump-and-revalue %.1f ms",
+					valuationTime, adjointTime, adjointTime / valuationTime, bumpTime));
+		}
+		System.out.println();
+
+		// ==================== CONTROL VARIATE ====================
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		LookbackAdjointGreeks flatEngine = new LookbackAdjointGreeks(spotPrice, riskFreeRate, volatility, brownianMotion, monitoringSchedule);
+		LookbackGradient plainGradient = flatEngine.getGradient(LookbackPayoff.CALL_FIXED_STRIKE, strike);
+		LookbackGradient controlVariateGradient = flatEngine.getGradientWithControlVariate(strike);
+
+		MonteCarloBlackScholesModel model = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility, brownianMotion);
+		double finmathValue = new LookbackCallFixedWithBSControlVariate(maturity, strike, numberOfMonitoringDates).getValue(0.0, model).getAverage();
+
+		System.out.println("Fixed-strike call with control variate:");
+		System.out.println(String.format("  value %.6f (finmath product %.6f)", controlVariateGradient.getValue(), finmathValue));
+		System.out.println(String.format("  plain estimator:            value %.6f, delta %.6f, vega %.6f, rho %.6f",
+				plainGradient.getValue(), plainGradient.getDelta(), plainGradient.getVega(), plainGradient.getRho()));
+		System.out.println(String.format("  control variate estimator:  value %.6f, delta %.6f, vega %.6f, rho %.6f",
+				controlVariateGradient.getValue(), controlVariateGradient.getDelta(), controlVariateGradient.getVega(), controlVariateGradient.getRho()));
+	}
+}
@@ -0,0 +1,123 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the drawdown, drawup and range options ({@link LookbackStatisticOption}).
+ *
+ * <p>Under Black–Scholes with weekly monitoring, the class:
+ * <ul>
+ *   <li>prices the range option with zero strike against the exact Fourier prices of the floating-strike call and
+ *       put, whose sum it is;</li>
+ *   <li>checks the rolling-window drawdown, drawup and range against a direct computation over every window of
+ *       consecutive dates, and that a window of all the dates gives the statistics of the whole period;</li>
+ *   <li>values a book of the four lookbacks with drawdown, drawup, range and rolling-window notes in one batch
+ *       ({@link LookbackOption#getValues(AssetModelMonteCarloSimulationModel, LookbackOption...)}), and compares its
+ *       time with the time of a single walk over the monitoring dates.</li>
+ * </ul>
+ */
+public class DrawdownTest {
+
+	public static void main(String[] args) throws CalculationException {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = 100.0;
+		int numberOfTimeSteps = 252;
+		int numberOfPaths = 50000;
+		int numberOfFixings = 52;
+		int windowLength = 5;
+
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times, 1, numberOfPaths, 1897);
+		AssetModelMonteCarloSimulationModel model = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility, brownianMotion);
+		MonitoringSchedule weekly = MonitoringSchedule.equidistant(numberOfFixings);
+
+		// ==================== RANGE AGAINST THE FLOATING-STRIKE LOOKBACKS ====================
+		RandomVariable range = new LookbackRangeOption(maturity, 0.0, numberOfFixings).getValue(0.0, model);
+		double exactRange = DiscretelyMonitoredLookbackPrices.getPrice(LookbackPayoff.CALL_FLOATING_STRIKE, spotPrice, riskFreeRate, volatility, maturity, 0.0, numberOfFixings)
+				+ DiscretelyMonitoredLookbackPrices.getPrice(LookbackPayoff.PUT_FLOATING_STRIKE, spotPrice, riskFreeRate, volatility, maturity, 0.0, numberOfFixings);
+		System.out.println(String.format("Range, weekly monitoring: %.5f (standard error %.5f), exact floating call + put %.5f",
+				range.getAverage(), range.getStandardError(), exactRange));
+
+		// ==================== ROLLING WINDOW AGAINST A DIRECT COMPUTATION ====================
+		MonitoringPlan plan = weekly.getPlan(times);
+		RunningExtremaState state = RunningExtremaState.of(plan, model, 0, windowLength);
+		RandomVariable[] underlying = new RandomVariable[plan.getNumberOfDates()];
+		for(int date = 0; date < underlying.length; date++) {
+			underlying[date] = model.getAssetValue(plan.getTimeIndex(date), 0);
+		}
+		int numberOfMismatches = 0;
+		for(int path = 0; path < numberOfPaths; path += 100) {
+			double drawdown = 0.0;
+			double drawup = 0.0;
+			double windowRange = 0.0;
+			for(int end = 0; end < underlying.length; end++) {
+				for(int start = Math.max(0, end - windowLength + 1); start <= end; start++) {
+					double difference = underlying[start].get(path) - underlying[end].get(path);
+					drawdown = Math.max(drawdown, difference);
+					drawup = Math.max(drawup, -difference);
+					windowRange = Math.max(windowRange, Math.abs(difference));
+				}
+			}
+			if(drawdown != state.getMaximumWindowDrawdown(path) || drawup != state.getMaximumWindowDrawup(path) || windowRange != state.getMaximumWindowRange(path)) {
+				numberOfMismatches++;
+			}
+		}
+		System.out.println("Paths whose rolling-window statistics differ from the direct computation: " + numberOfMismatches + " of " + (numberOfPaths / 100));
+
+		RunningExtremaState wholePeriod = RunningExtremaState.of(plan, model, 0, plan.getNumberOfDates());
+		boolean isWholePeriod = wholePeriod.getMaximumWindowDrawdown().sub(wholePeriod.getMaximumDrawdown()).abs().getMax() == 0.0
+				&& wholePeriod.getMaximumWindowDrawup().sub(wholePeriod.getMaximumDrawup()).abs().getMax() == 0.0
+				&& wholePeriod.getMaximumWindowRange().sub(wholePeriod.getRange()).abs().getMax() == 0.0;
+		System.out.println("Window of all the dates equal to the whole period: " + isWholePeriod);
+
+		System.out.println();
+
+		// ==================== BOOK OF LOOKBACKS AND DRAWDOWN NOTES ====================
+		LookbackOption[] book = {
+				new LookbackCallFixedStrike(maturity, 0, strike, weekly),
+				new LookbackPutFixedStrike(maturity, 0, strike, weekly),
+				new LookbackCallFloatingStrike(maturity, 0, weekly),
+				new LookbackPutFloatingStrike(maturity, 0, weekly),
+				new LookbackDrawdownOption(maturity, 0, 0.0, 0, weekly),
+				new LookbackDrawupOption(maturity, 0, 0.0, 0, weekly),
+				new LookbackRangeOption(maturity, 0, 0.0, 0, weekly),
+				new LookbackDrawdownOption(maturity, 0, 10.0, windowLength, weekly),
+				new LookbackDrawupOption(maturity, 0, 10.0, windowLength, weekly)
+		};
+		for(int repetition = 0; repetition < 5; repetition++) {
+			AssetModelMonteCarloSimulationModel repetitionModel = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility,
+					new BrownianMotionFromMersenneRandomNumbers(times, 1, numberOfPaths, 1897 + repetition));
+			repetitionModel.getAssetValue(numberOfTimeSteps, 0);
+
+			long startTime = System.nanoTime();
+			double[] values = LookbackOption.getValues(repetitionModel, book);
+			double batchTime = (System.nanoTime() - startTime) / 1E6;
+
+			AssetModelMonteCarloSimulationModel walkModel = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility,
+					new BrownianMotionFromMersenneRandomNumbers(times, 1, numberOfPaths, 1897 + repetition));
+			walkModel.getAssetValue(numberOfTimeSteps, 0);
+			startTime = System.nanoTime();
+			RunningExtremaState.of(plan, walkModel, 0, windowLength);
+			double walkTime = (System.nanoTime() - startTime) / 1E6;
+
+			if(repetition == 0) {
+				for(int i = 0; i < book.length; i++) {
+					System.out.println(String.format("  %-24s window %d: %.5f", book[i].getClass().getSimpleName(), book[i].getWindowLength(), values[i]));
+				}
+			}
+			System.out.println(String.format("Repetition %d: book of %d products %.1f ms, one walk with window %.1f ms", repetition, book.length, batchTime, walkTime));
+		}
+	}
+}
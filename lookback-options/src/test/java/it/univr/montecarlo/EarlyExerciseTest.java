@@ -0,0 +1,86 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the Longstaff-Schwartz lookback products.
+ *
+ * <p>The class:
+ * <ul>
+ *     <li>checks that the {@link LeastSquaresSolver} recovers the coefficients of an exact combination of the basis functions;</li>
+ *     <li>prices the four lookback payoffs with European and with Bermudan exercise
+ *         ({@link LookbackBermudanOption}) on the same paths. Without dividends early exercise of the floating-strike
+ *         call is never optimal, so its Bermudan and European prices must agree (up to the foresight bias), while the
+ *         other payoffs carry a non-negative early-exercise premium;</li>
+ *     <li>prices the fixed-strike lookback call with a strike reset ({@link LookbackCallFixedStrikeWithReset}),
+ *         which must be worth more than the call without reset.</li>
+ * </ul>
+ */
+public class EarlyExerciseTest {
+
+	public static void main(String[] args) throws CalculationException {
+		// ==================== REGRESSION ====================
+		LeastSquaresSolver solver = new LeastSquaresSolver(LookbackOption.NUMBER_OF_EXTREMUM_BASIS_FUNCTIONS);
+		double[] basisValues = new double[LookbackOption.NUMBER_OF_EXTREMUM_BASIS_FUNCTIONS];
+		double[] coefficients = { 0.5, -1.0, 2.0, 0.25, -0.75, 1.5, 0.1, -0.2, 0.3 };
+		for(int i = 0; i < 1000; i++) {
+			LookbackOption.getExtremumBasisFunctions(0.5 + (i % 37) / 36.0, 0.8 + (i % 11) / 10.0, basisValues);
+			double value = 0.0;
+			for(int j = 0; j < coefficients.length; j++) {
+				value += coefficients[j] * basisValues[j];
+			}
+			solver.add(basisValues, value);
+		}
+		solver.solve();
+		double largestError = 0.0;
+		for(int j = 0; j < coefficients.length; j++) {
+			largestError = Math.max(largestError, Math.abs(solver.getCoefficient(j) - coefficients[j]));
+		}
+		System.out.println("Regression of an exact combination of the basis functions, largest coefficient error: " + largestError);
+		System.out.println();
+
+		// ==================== MODEL ====================
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = 100.0;
+		int numberOfExerciseDates = 50;
+		int numberOfTimeSteps = 250;
+		int numberOfPaths = 100000;
+
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times, 1, numberOfPaths, 1897);
+		MonteCarloBlackScholesModel model = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility, brownianMotion);
+
+		// ==================== BERMUDAN EXERCISE ====================
+		System.out.println("Payoff                  European          Bermudan          Premium (SE)");
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			RandomVariable european = LookbackOption.of(payoff, maturity, strike, numberOfExerciseDates).getValue(0.0, model);
+			long startTime = System.nanoTime();
+			RandomVariable bermudan = new LookbackBermudanOption(payoff, maturity, strike, numberOfExerciseDates).getValue(0.0, model);
+			long elapsed = (System.nanoTime() - startTime) / 1000000;
+			RandomVariable premium = bermudan.sub(european);
+			System.out.println(String.format("%-22s  %-16.6f  %-16.6f  %.6f (%.6f)  %d ms", payoff, european.getAverage(), bermudan.getAverage(),
+					premium.getAverage(), premium.getStandardError(), elapsed));
+		}
+		System.out.println();
+
+		// ==================== STRIKE RESET ====================
+		RandomVariable withoutReset = new LookbackCallFixedStrike(maturity, strike, numberOfExerciseDates).getValue(0.0, model);
+		long startTime = System.nanoTime();
+		RandomVariable withReset = new LookbackCallFixedStrikeWithReset(maturity, strike, numberOfExerciseDates).getValue(0.0, model);
+		long elapsed = (System.nanoTime() - startTime) / 1000000;
+		RandomVariable resetPremium = withReset.sub(withoutReset);
+		System.out.println("Fixed-strike call without reset: " + withoutReset.getAverage());
+		System.out.println("Fixed-strike call with reset:    " + withReset.getAverage() + " (" + elapsed + " ms)");
+		System.out.println("Value of the reset right:        " + resetPremium.getAverage() + " (SE " + resetPremium.getStandardError() + ")");
+	}
+}
@@ -0,0 +1,37 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Test class for the {@link BlackScholesExactExtremumSampler}.
+ *
+ * <p>For the four lookback payoffs, the class compares the "no-grid" Monte Carlo price, obtained by sampling the
+ * continuously monitored extrema exactly, with the analytic price of {@link it.univr.analyticprices.AnalyticPrices}.
+ * Since the sampler has no discretization bias, the difference must be within a few standard errors.
+ */
+public class ExactSamplingTest {
+
+	public static void main(String[] args) {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.1;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = 100.0;
+
+		int numberOfPaths = 1000000;
+		int seed = 1897;
+
+		long startTime = System.currentTimeMillis();
+		BlackScholesExactExtremumSampler sampler = new BlackScholesExactExtremumSampler(spotPrice, riskFreeRate, volatility, maturity, numberOfPaths, seed);
+
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			double monteCarloPrice = sampler.getValue(payoff, strike);
+			double standardError = sampler.getDiscountedPayoff(payoff, strike).getStandardError();
+			double analyticPrice = payoff.getContinuouslyMonitoredPrice(spotPrice, riskFreeRate, volatility, maturity, strike);
+
+			System.out.println(payoff + ": exact sampling " + monteCarloPrice + " (standard error " + standardError + ")"
+					+ ", analytic " + analyticPrice + ", error in standard errors " + (monteCarloPrice - analyticPrice) / standardError);
+		}
+		System.out.println("Elapsed time: " + (System.currentTimeMillis() - startTime) + " ms for " + numberOfPaths + " paths.");
+	}
+}
@@ -0,0 +1,104 @@
+package it.univr.montecarlo;
+
+import java.util.Arrays;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.montecarlo.assetderivativevaluation.products.AbstractAssetMonteCarloProduct;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the {@link MonitoringSchedule} of the lookback products.
+ *
+ * <p>The class prints the time indices produced by the different schedules (showing that dates falling on the
+ * same grid time are observed only once), checks that equal schedules on equal grids share one cached
+ * {@link MonitoringPlan} (also when requested from several threads) and times a cached lookup against a
+ * compilation, and prices partial-period lookbacks: a lookback monitored on the full
+ * period, one whose monitoring starts late and one monitored on a monthly fixing calendar.
+ */
+public class MonitoringScheduleTest {
+
+	public static void main(String[] args) throws CalculationException {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.1;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = 100.0;
+
+		// A coarse grid, so that 100 equidistant dates necessarily fall several times on the same grid time
+		int numberOfTimeSteps = 50;
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+
+		// ==================== SCHEDULE COMPILATION ====================
+		System.out.println("Equidistant (100 dates on 50 steps): " + MonitoringSchedule.equidistant(100).getTimeIndices(times).length + " distinct indices");
+		System.out.println("Window [0.5, 1.0]: " + Arrays.toString(MonitoringSchedule.window(0.5, 1.0, 5).getTimeIndices(times)));
+		System.out.println("Fixings {0.5, 0.25, 0.25, 1.0}: " + Arrays.toString(MonitoringSchedule.fixings(0.5, 0.25, 0.25, 1.0).getTimeIndices(times)));
+
+		System.out.println();
+
+		// ==================== CACHED PLANS ====================
+		TimeDiscretization sameTimes = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+		MonitoringPlan plan = MonitoringSchedule.equidistant(12).getPlan(times);
+		System.out.println(plan);
+		System.out.println("Equal schedule, equal grid, same plan: " + (MonitoringSchedule.equidistant(12).getPlan(sameTimes) == plan));
+		System.out.println("Different schedule, different plan: " + (MonitoringSchedule.equidistant(10).getPlan(times) != plan));
+
+		MonitoringPlan[] concurrentPlans = new MonitoringPlan[8];
+		Thread[] threads = new Thread[concurrentPlans.length];
+		for(int i = 0; i < threads.length; i++) {
+			final int thread = i;
+			threads[i] = new Thread(() -> concurrentPlans[thread] = MonitoringSchedule.window(0.25, 0.75, 3).getPlan(sameTimes));
+			threads[i].start();
+		}
+		boolean isShared = true;
+		for(int i = 0; i < threads.length; i++) {
+			try {
+				threads[i].join();
+			}
+			catch(InterruptedException exception) {
+				Thread.currentThread().interrupt();
+			}
+			isShared &= concurrentPlans[i] == concurrentPlans[0];
+		}
+		System.out.println("Plan requested by " + threads.length + " threads is shared: " + isShared);
+
+		TimeDiscretization dailyTimes = new TimeDiscretizationFromArray(0.0, 252, maturity / 252);
+		int numberOfRepetitions = 100000;
+		long checksum = 0;
+		long startTime = System.nanoTime();
+		for(int i = 0; i < numberOfRepetitions; i++) {
+			checksum += MonitoringSchedule.equidistant(1 + i % 52).getTimeIndices(dailyTimes).length;
+		}
+		long compilationTime = System.nanoTime() - startTime;
+		startTime = System.nanoTime();
+		for(int i = 0; i < numberOfRepetitions; i++) {
+			checksum += MonitoringSchedule.equidistant(1 + i % 52).getPlan(dailyTimes).getNumberOfDates();
+		}
+		long lookupTime = System.nanoTime() - startTime;
+		System.out.println("Compilation: " + compilationTime / numberOfRepetitions + " ns, cached plan: " + lookupTime / numberOfRepetitions
+				+ " ns (checksum " + checksum + ")");
+
+		System.out.println();
+
+		// ==================== PARTIAL-PERIOD LOOKBACKS ====================
+		TimeDiscretization fineTimes = new TimeDiscretizationFromArray(0.0, 1000, maturity / 1000);
+		BrownianMotion ourDriver = new BrownianMotionFromMersenneRandomNumbers(fineTimes, 1, 10000, 1897);
+		MonteCarloBlackScholesModel blackScholesProcess = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility, ourDriver);
+
+		double[] monthlyFixings = new double[12];
+		for(int i = 0; i < monthlyFixings.length; i++) {
+			monthlyFixings[i] = (i + 1) * maturity / 12.0;
+		}
+
+		AbstractAssetMonteCarloProduct fullPeriodCall = new LookbackCallFixedStrike(maturity, strike);
+		AbstractAssetMonteCarloProduct lateStartCall = new LookbackCallFixedStrike(maturity, 0, strike, MonitoringSchedule.window(0.5, maturity, 0));
+		AbstractAssetMonteCarloProduct monthlyCall = new LookbackCallFixedStrike(maturity, 0, strike, MonitoringSchedule.fixings(monthlyFixings));
+
+		System.out.println("MC price of lookback call monitored on [0, T]: " + fullPeriodCall.getValue(blackScholesProcess));
+		System.out.println("MC price of lookback call monitored on [T/2, T]: " + lateStartCall.getValue(blackScholesProcess));
+		System.out.println("MC price of lookback call with monthly fixings: " + monthlyCall.getValue(blackScholesProcess));
+	}
+}
@@ -0,0 +1,64 @@
+package it.univr.montecarlo;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloMultiAssetBlackScholesModel;
+import net.finmath.montecarlo.assetderivativevaluation.products.AbstractAssetMonteCarloProduct;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the multi-asset lookback products (basket, best-of, worst-of).
+ *
+ * <p>The class prices the products on a correlated three-asset Black–Scholes model and checks that,
+ * with all the weight on a single asset, the basket lookback reproduces the single-asset
+ * {@link LookbackCallFixedStrike} on the same paths.
+ */
+public class MultiAssetTest {
+
+	public static void main(String[] args) throws CalculationException {
+		// ========================= MARKET PARAMETERS =========================
+		double[] spotPrices = { 100.0, 80.0, 120.0 };
+		double riskFreeRate = 0.05;
+		double[] volatilities = { 0.3, 0.25, 0.2 };
+		double[][] correlations = {
+				{ 1.0, 0.5, 0.3 },
+				{ 0.5, 1.0, 0.4 },
+				{ 0.3, 0.4, 1.0 }
+		};
+
+		// ========================= OPTION PARAMETERS =========================
+		double maturity = 1.0;
+		int numberOfFixings = 100;
+		double[] basketWeights = { 1.0/3.0, 1.0/3.0, 1.0/3.0 };
+		double[] performanceWeights = { 1.0/spotPrices[0], 1.0/spotPrices[1], 1.0/spotPrices[2] };
+
+		// ==================== TIME DISCRETIZATION ====================
+		int numberOfTimeSteps = 1000;
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+
+		// ===================== MONTE CARLO SIMULATION =====================
+		int numberOfPaths = 10000;
+		int seed = 1897;
+		BrownianMotion ourDriver = new BrownianMotionFromMersenneRandomNumbers(times, spotPrices.length, numberOfPaths, seed);
+		MonteCarloMultiAssetBlackScholesModel multiAssetProcess = new MonteCarloMultiAssetBlackScholesModel(
+				ourDriver, spotPrices, riskFreeRate, volatilities, correlations);
+
+		AbstractAssetMonteCarloProduct basketCall = new LookbackCallFixedStrikeBasket(maturity, basketWeights, 100.0, numberOfFixings);
+		AbstractAssetMonteCarloProduct bestOfCall = new LookbackCallFixedStrikeBestOf(maturity, performanceWeights, 1.0, numberOfFixings);
+		AbstractAssetMonteCarloProduct worstOfPut = new LookbackPutFixedStrikeWorstOf(maturity, performanceWeights, 1.0, numberOfFixings);
+
+		System.out.println("MC price of discretely monitored basket call with fixed strike: " + basketCall.getValue(multiAssetProcess));
+		System.out.println("MC price of discretely monitored best-of call with fixed strike: " + bestOfCall.getValue(multiAssetProcess));
+		System.out.println("MC price of discretely monitored worst-of put with fixed strike: " + worstOfPut.getValue(multiAssetProcess));
+
+		System.out.println();
+
+		// --- Consistency check: a basket concentrated on one asset is a single-asset lookback ---
+		AbstractAssetMonteCarloProduct singleAssetBasket = new LookbackCallFixedStrikeBasket(maturity, new double[] { 0.0, 1.0, 0.0 }, 80.0, numberOfFixings);
+		AbstractAssetMonteCarloProduct singleAssetCall = new LookbackCallFixedStrike(maturity, 1, 80.0, numberOfFixings);
+		System.out.println("Basket on the second asset only: " + singleAssetBasket.getValue(multiAssetProcess));
+		System.out.println("Single-asset lookback on the second asset: " + singleAssetCall.getValue(multiAssetProcess));
+	}
+}
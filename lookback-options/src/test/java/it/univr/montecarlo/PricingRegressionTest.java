@@ -0,0 +1,303 @@
+package it.univr.montecarlo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.exception.CalculationException;
+import net.finmath.functions.NormalDistribution;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Accuracy and speed regression harness of the Monte Carlo lookback products.
+ *
+ * <p>Every {@link LookbackOption} subclass is priced under Black–Scholes on a grid of volatilities, rates,
+ * maturities, strikes and numbers of fixings, with fixed seeds. The harness fails (exit code 1) if
+ * <ul>
+ *   <li>a price is further from its reference, the exact price of {@link DiscretelyMonitoredLookbackPrices} for
+ *       the monitoring dates of the product, than {@code k} standard errors. The bound is not widened by the error
+ *       of any approximation, so a wrong reference fails the check. The factor {@code k} is the Bonferroni quantile
+ *       {@code Φ^{-1}(1 - α / (2 m))} for {@code m} checks and a false alarm probability {@code α = 1%} over the
+ *       whole grid;</li>
+ *   <li>the valuation time of a product (the fastest of {@value #NUMBER_OF_TIMED_PASSES} passes over the grid)
+ *       exceeds the baseline by more than 25% (and 5 ms), its allocated bytes by more than 10% (and 1 MB), or its
+ *       mean standard error by more than 5%.</li>
+ * </ul>
+ * Products without analytic reference (reset, Bermudan, drawdown and drawup options) are checked against the
+ * baseline only.
+ *
+ * <p>The baseline is a properties file, given as argument (default {@code regression-baseline.properties}). It is
+ * written with the argument {@code --record}, or on the first run if it does not exist; times depend on the machine,
+ * so it should be recorded on the machine that runs the harness. The {@code regression} Maven profile runs the
+ * harness in the {@code verify} phase.
+ */
+public class PricingRegressionTest {
+
+	private static final int NUMBER_OF_TIMED_PASSES = 3;
+	private static final double FALSE_ALARM_PROBABILITY = 0.01;
+	private static final double TIME_TOLERANCE = 0.25;
+	private static final double MINIMUM_TIME_TOLERANCE = 5.0;
+	private static final double ALLOCATION_TOLERANCE = 0.10;
+	private static final double MINIMUM_ALLOCATION_TOLERANCE = 1 << 20;
+	private static final double STANDARD_ERROR_TOLERANCE = 0.05;
+
+	private static final double SPOT_PRICE = 100.0;
+	private static final double[] VOLATILITIES = { 0.2, 0.4 };
+	private static final double[] RISK_FREE_RATES = { 0.01, 0.08 };
+	private static final double[] MATURITIES = { 0.5, 1.0 };
+	private static final double[] STRIKES = { 90.0, 110.0 };
+	private static final int[] NUMBERS_OF_FIXINGS = { 12, 52 };
+	// Multiple of the numbers of fixings
+	private static final int NUMBER_OF_TIME_STEPS = 312;
+	private static final int NUMBER_OF_PATHS = 20000;
+
+	public static void main(String[] args) throws CalculationException, IOException {
+		boolean isRecording = false;
+		Path baselineFile = Paths.get("regression-baseline.properties");
+		for(String arg : args) {
+			if(arg.equals("--record")) {
+				isRecording = true;
+			}
+			else {
+				baselineFile = Paths.get(arg);
+			}
+		}
+
+		List<ProductCase> productCases = getProductCases();
+		int numberOfChecks = 0;
+		for(ProductCase productCase : productCases) {
+			if(productCase.hasReference()) {
+				numberOfChecks += VOLATILITIES.length * RISK_FREE_RATES.length * MATURITIES.length * NUMBERS_OF_FIXINGS.length
+						* (productCase.isStrikeDependent ? STRIKES.length : 1);
+			}
+		}
+		double k = NormalDistribution.inverseCumulativeDistribution(1.0 - FALSE_ALARM_PROBABILITY / (2 * numberOfChecks));
+		System.out.println(String.format("%d accuracy checks, bound %.2f standard errors", numberOfChecks, k));
+
+		// Models of the grid, with the paths generated before the timed valuations
+		List<AssetModelMonteCarloSimulationModel> models = new ArrayList<>();
+		List<double[]> modelParameters = new ArrayList<>();
+		int seed = 1897;
+		for(double volatility : VOLATILITIES) {
+			for(double riskFreeRate : RISK_FREE_RATES) {
+				for(double maturity : MATURITIES) {
+					TimeDiscretization times = new TimeDiscretizationFromArray(0.0, NUMBER_OF_TIME_STEPS, maturity / NUMBER_OF_TIME_STEPS);
+					AssetModelMonteCarloSimulationModel model = new MonteCarloBlackScholesModel(SPOT_PRICE, riskFreeRate, volatility,
+							new BrownianMotionFromMersenneRandomNumbers(times, 1, NUMBER_OF_PATHS, seed++));
+					model.getAssetValue(NUMBER_OF_TIME_STEPS, 0);
+					models.add(model);
+					modelParameters.add(new double[] { volatility, riskFreeRate, maturity });
+				}
+			}
+		}
+
+		// ==================== ACCURACY (FIRST PASS) AND TIMING ====================
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocationCounter = threadBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported() ? (com.sun.management.ThreadMXBean) threadBean : null;
+		long threadId = Thread.currentThread().getId();
+
+		List<String> failures = new ArrayList<>();
+		for(int pass = 0; pass < NUMBER_OF_TIMED_PASSES; pass++) {
+			for(int modelIndex = 0; modelIndex < models.size(); modelIndex++) {
+				AssetModelMonteCarloSimulationModel model = models.get(modelIndex);
+				double volatility = modelParameters.get(modelIndex)[0];
+				double riskFreeRate = modelParameters.get(modelIndex)[1];
+				double maturity = modelParameters.get(modelIndex)[2];
+				for(ProductCase productCase : productCases) {
+					for(int numberOfFixings : NUMBERS_OF_FIXINGS) {
+						for(double strike : productCase.isStrikeDependent ? STRIKES : new double[] { STRIKES[0] }) {
+							LookbackOption product = productCase.factory.create(maturity, strike, numberOfFixings);
+							long allocatedBytes = allocationCounter != null ? allocationCounter.getThreadAllocatedBytes(threadId) : 0L;
+							long startTime = System.nanoTime();
+							RandomVariable values = product.getValue(0.0, model);
+							double value = values.getAverage();
+							long time = System.nanoTime() - startTime;
+							allocatedBytes = allocationCounter != null ? allocationCounter.getThreadAllocatedBytes(threadId) - allocatedBytes : 0L;
+							productCase.addValuation(pass, time, allocatedBytes);
+							if(pass > 0) {
+								continue;
+							}
+
+							double standardError = values.getStandardError();
+							productCase.sumOfStandardErrors += standardError;
+							productCase.numberOfValuations++;
+							if(!productCase.hasReference()) {
+								continue;
+							}
+							double reference = productCase.reference.getPrice(SPOT_PRICE, riskFreeRate, volatility, maturity, strike, numberOfFixings);
+							double error = Math.abs(value - reference);
+							double bound = k * standardError;
+							productCase.maximumErrorInBounds = Math.max(productCase.maximumErrorInBounds, error / bound);
+							if(error > bound) {
+								failures.add(String.format("%s (sigma %.2f, r %.2f, T %.1f, K %.0f, %d fixings): price %.5f, reference %.5f, error %.5f above the bound %.5f",
+										productCase.name, volatility, riskFreeRate, maturity, strike, numberOfFixings, value, reference, error, bound));
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// ==================== REPORT AND BASELINE ====================
+		Properties baseline = new Properties();
+		boolean hasBaseline = !isRecording && Files.exists(baselineFile);
+		if(hasBaseline) {
+			try(InputStream input = Files.newInputStream(baselineFile)) {
+				baseline.load(input);
+			}
+		}
+		Properties measurements = new Properties();
+		System.out.println(String.format("%-38s %10s %12s %14s %12s", "Product", "time [ms]", "alloc [MB]", "mean std. err.", "max err/bound"));
+		for(ProductCase productCase : productCases) {
+			double time = productCase.getTime() / 1E6;
+			double allocatedBytes = productCase.getAllocatedBytes();
+			double standardError = productCase.sumOfStandardErrors / productCase.numberOfValuations;
+			System.out.println(String.format("%-38s %10.1f %12.1f %14.5f %12s", productCase.name, time, allocatedBytes / (1 << 20), standardError,
+					productCase.hasReference() ? String.format("%.2f", productCase.maximumErrorInBounds) : "-"));
+			measurements.setProperty(productCase.name + ".time", Double.toString(time));
+			measurements.setProperty(productCase.name + ".allocatedBytes", Double.toString(allocatedBytes));
+			measurements.setProperty(productCase.name + ".standardError", Double.toString(standardError));
+
+			if(hasBaseline) {
+				checkBaseline(failures, baseline, productCase.name + ".time", time, TIME_TOLERANCE, MINIMUM_TIME_TOLERANCE, "ms");
+				if(allocationCounter != null) {
+					checkBaseline(failures, baseline, productCase.name + ".allocatedBytes", allocatedBytes, ALLOCATION_TOLERANCE, MINIMUM_ALLOCATION_TOLERANCE, "bytes");
+				}
+				checkBaseline(failures, baseline, productCase.name + ".standardError", standardError, STANDARD_ERROR_TOLERANCE, 0.0, "");
+			}
+		}
+
+		if(!hasBaseline) {
+			try(OutputStream output = Files.newOutputStream(baselineFile)) {
+				measurements.store(output, "Lookback pricing regression baseline (" + System.getProperty("java.vm.name") + " "
+						+ System.getProperty("java.version") + ", " + Runtime.getRuntime().availableProcessors() + " processors)");
+			}
+			System.out.println("Baseline written to " + baselineFile.toAbsolutePath());
+		}
+
+		if(!failures.isEmpty()) {
+			System.out.println("Regressions (" + failures.size() + "):");
+			for(String failure : failures) {
+				System.out.println("  " + failure);
+			}
+			System.exit(1);
+		}
+		System.out.println("No regressions.");
+	}
+
+	/*
+	 * Adds a failure if a measurement exceeds its baseline by more than the relative and absolute tolerances.
+	 */
+	private static void checkBaseline(List<String> failures, Properties baseline, String key, double value, double relativeTolerance,
+			double absoluteTolerance, String unit) {
+		String baselineValue = baseline.getProperty(key);
+		if(baselineValue == null) {
+			return;
+		}
+		double limit = Double.parseDouble(baselineValue);
+		if(value > limit * (1.0 + relativeTolerance) && value > limit + absoluteTolerance) {
+			failures.add(String.format("%s: %.6g %s against the baseline %.6g %s", key, value, unit, limit, unit));
+		}
+	}
+
+	/*
+	 * The products of the grid and their exact references.
+	 */
+	private static List<ProductCase> getProductCases() {
+		PriceFunction callFixed = (s, r, v, t, k, n) -> DiscretelyMonitoredLookbackPrices.getPrice(LookbackPayoff.CALL_FIXED_STRIKE, s, r, v, t, k, n);
+		PriceFunction putFixed = (s, r, v, t, k, n) -> DiscretelyMonitoredLookbackPrices.getPrice(LookbackPayoff.PUT_FIXED_STRIKE, s, r, v, t, k, n);
+		PriceFunction callFloating = (s, r, v, t, k, n) -> DiscretelyMonitoredLookbackPrices.getPrice(LookbackPayoff.CALL_FLOATING_STRIKE, s, r, v, t, k, n);
+		PriceFunction putFloating = (s, r, v, t, k, n) -> DiscretelyMonitoredLookbackPrices.getPrice(LookbackPayoff.PUT_FLOATING_STRIKE, s, r, v, t, k, n);
+
+		List<ProductCase> productCases = new ArrayList<>();
+		productCases.add(new ProductCase("LookbackCallFixedStrike", true, (t, k, n) -> new LookbackCallFixedStrike(t, k, n), callFixed));
+		productCases.add(new ProductCase("LookbackPutFixedStrike", true, (t, k, n) -> new LookbackPutFixedStrike(t, k, n), putFixed));
+		productCases.add(new ProductCase("LookbackCallFloatingStrike", false, (t, k, n) -> new LookbackCallFloatingStrike(t, n), callFloating));
+		productCases.add(new ProductCase("LookbackPutFloatingStrike", false, (t, k, n) -> new LookbackPutFloatingStrike(t, n), putFloating));
+		// The expectation of the control is its exact price on the time grid, so the estimator is unbiased
+		productCases.add(new ProductCase("LookbackCallFixedWithBSControlVariate", true, (t, k, n) -> new LookbackCallFixedWithBSControlVariate(t, k, n), callFixed));
+		productCases.add(new ProductCase("LookbackCallFixedStrikeBasket", true, (t, k, n) -> new LookbackCallFixedStrikeBasket(t, new double[] { 1.0 }, k, n), callFixed));
+		productCases.add(new ProductCase("LookbackCallFixedStrikeBestOf", true, (t, k, n) -> new LookbackCallFixedStrikeBestOf(t, new double[] { 1.0 }, k, n), callFixed));
+		productCases.add(new ProductCase("LookbackPutFixedStrikeWorstOf", true, (t, k, n) -> new LookbackPutFixedStrikeWorstOf(t, new double[] { 1.0 }, k, n), putFixed));
+		// The range is the sum of the floating-strike call and put
+		productCases.add(new ProductCase("LookbackRangeOption", false, (t, k, n) -> new LookbackRangeOption(t, 0.0, n),
+				(s, r, v, t, k, n) -> callFloating.getPrice(s, r, v, t, k, n) + putFloating.getPrice(s, r, v, t, k, n)));
+		productCases.add(new ProductCase("LookbackCallFixedStrikeWithReset", true, (t, k, n) -> new LookbackCallFixedStrikeWithReset(t, k, n), null));
+		productCases.add(new ProductCase("LookbackBermudanOption", true, (t, k, n) -> new LookbackBermudanOption(LookbackPayoff.CALL_FIXED_STRIKE, t, k, n), null));
+		productCases.add(new ProductCase("LookbackDrawdownOption", false, (t, k, n) -> new LookbackDrawdownOption(t, 0.0, n), null));
+		productCases.add(new ProductCase("LookbackDrawupOption", false, (t, k, n) -> new LookbackDrawupOption(t, 0.0, n), null));
+		return productCases;
+	}
+
+	private interface ProductFactory {
+		LookbackOption create(double maturity, double strike, int numberOfFixings);
+	}
+
+	private interface PriceFunction {
+		double getPrice(double spotPrice, double riskFreeRate, double volatility, double maturity, double strike, int numberOfFixings);
+	}
+
+	/*
+	 * A product of the grid, its reference price and its measurements.
+	 */
+	private static final class ProductCase {
+
+		private final String name;
+		private final boolean isStrikeDependent;
+		private final ProductFactory factory;
+		private final PriceFunction reference;
+
+		// Time and allocated bytes of every pass over the grid
+		private final long[] times = new long[NUMBER_OF_TIMED_PASSES];
+		private final long[] allocatedBytes = new long[NUMBER_OF_TIMED_PASSES];
+		private double sumOfStandardErrors;
+		private int numberOfValuations;
+		private double maximumErrorInBounds;
+
+		private ProductCase(String name, boolean isStrikeDependent, ProductFactory factory, PriceFunction reference) {
+			this.name=name;
+			this.isStrikeDependent=isStrikeDependent;
+			this.factory=factory;
+			this.reference=reference;
+		}
+
+		private boolean hasReference() {
+			return reference != null;
+		}
+
+		private void addValuation(int pass, long time, long allocated) {
+			times[pass] += time;
+			allocatedBytes[pass] += allocated;
+		}
+
+		// The fastest pass, which excludes the compilation of the first one
+		private long getTime() {
+			long time = Long.MAX_VALUE;
+			for(long passTime : times) {
+				time = Math.min(time, passTime);
+			}
+			return time;
+		}
+
+		// The allocations of the last pass
+		private long getAllocatedBytes() {
+			return allocatedBytes[NUMBER_OF_TIMED_PASSES - 1];
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package it.univr.montecarlo;
+
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.AssetModelMonteCarloSimulationModel;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloAssetModel;
+import net.finmath.montecarlo.assetderivativevaluation.models.BachelierModel;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the {@link RunningExtremaState} of the lookback products.
+ *
+ * <p>Under a Bachelier model with a negative initial value (a spread), whose paths often stay below zero, the class
+ * compares the running state (extrema, dates of the extrema, last value, drawdown and drawup) with a direct
+ * computation path by path, and shows the error of the former seeds of the running extrema ({@code 0} for the
+ * maximum, {@code Integer.MAX_VALUE} for the minimum) on the fixed-strike call. It then times the four lookbacks
+ * valued on the same simulation, whose extrema are accumulated on the random variables of the model.
+ */
+public class RunningExtremaTest {
+
+	public static void main(String[] args) throws CalculationException {
+		double spotPrice = -0.2;
+		double riskFreeRate = 0.0;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = -0.5;
+		int numberOfTimeSteps = 252;
+		int numberOfPaths = 20000;
+
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times, 1, numberOfPaths, 3141);
+		AssetModelMonteCarloSimulationModel model = new MonteCarloAssetModel(new BachelierModel(spotPrice, riskFreeRate, volatility), brownianMotion);
+
+		// ==================== STATE AGAINST A DIRECT COMPUTATION ====================
+		MonitoringPlan plan = MonitoringSchedule.equidistant(52).getPlan(times);
+		RunningExtremaState state = RunningExtremaState.of(plan, model, 0);
+		RandomVariable[] underlying = new RandomVariable[plan.getNumberOfDates()];
+		for(int date = 0; date < underlying.length; date++) {
+			underlying[date] = model.getAssetValue(plan.getTimeIndex(date), 0);
+		}
+		int numberOfMismatches = 0;
+		int numberOfNegativePaths = 0;
+		for(int path = 0; path < numberOfPaths; path++) {
+			double maximum = underlying[0].get(path);
+			double minimum = maximum;
+			int dateOfMaximum = 0;
+			int dateOfMinimum = 0;
+			double maximumDrawdown = 0.0;
+			double maximumDrawup = 0.0;
+			for(int date = 0; date < underlying.length; date++) {
+				double value = underlying[date].get(path);
+				if(value > maximum) {
+					maximum = value;
+					dateOfMaximum = date;
+				}
+				if(value < minimum) {
+					minimum = value;
+					dateOfMinimum = date;
+				}
+				maximumDrawdown = Math.max(maximumDrawdown, maximum - value);
+				maximumDrawup = Math.max(maximumDrawup, value - minimum);
+			}
+			if(maximum != state.getMaximum(path) || minimum != state.getMinimum(path) || dateOfMaximum != state.getDateOfMaximum(path)
+					|| dateOfMinimum != state.getDateOfMinimum(path) || maximumDrawdown != state.getMaximumDrawdown(path)
+					|| maximumDrawup != state.getMaximumDrawup(path) || underlying[underlying.length - 1].get(path) != state.getLastValue(path)) {
+				numberOfMismatches++;
+			}
+			if(maximum < 0.0) {
+				numberOfNegativePaths++;
+			}
+		}
+		System.out.println("Paths whose running state differs from the direct computation: " + numberOfMismatches + " of " + numberOfPaths);
+		System.out.println("Paths whose maximum is negative: " + numberOfNegativePaths);
+		System.out.println("Mean time of the maximum: " + String.format("%.4f", state.getTimeOfMaximum().getAverage())
+				+ ", mean maximum drawdown: " + String.format("%.4f", state.getMaximumDrawdown().getAverage()));
+
+		// ==================== FORMER SEEDS ====================
+		RandomVariable seededMaximum = model.getRandomVariableForConstant(0.0);
+		RandomVariable seededMinimum = model.getRandomVariableForConstant(Integer.MAX_VALUE);
+		for(int date = 0; date < underlying.length; date++) {
+			seededMaximum = seededMaximum.floor(underlying[date]);
+			seededMinimum = seededMinimum.cap(underlying[date]);
+		}
+		double discountFactor = Math.exp(-riskFreeRate * maturity);
+		double seededPrice = seededMaximum.sub(strike).floor(0.0).getAverage() * discountFactor;
+		double price = new LookbackCallFixedStrike(maturity, 0, strike, MonitoringSchedule.equidistant(52)).getValue(model);
+		System.out.println(String.format("Fixed-strike call, strike %.2f: %.5f (maximum seeded with 0: %.5f)", strike, price, seededPrice));
+		System.out.println("Minimum seeded with Integer.MAX_VALUE equal to the running minimum: "
+				+ (seededMinimum.sub(state.getMinimum()).getAverage() == 0.0));
+
+		System.out.println();
+
+		// ==================== THE FOUR LOOKBACKS ON ONE SIMULATION ====================
+		LookbackOption[] products = {
+				new LookbackCallFixedStrike(maturity, 0, strike, 0),
+				new LookbackPutFixedStrike(maturity, 0, strike, 0),
+				new LookbackCallFloatingStrike(maturity, 0, 0),
+				new LookbackPutFloatingStrike(maturity, 0, 0)
+		};
+		for(int repetition = 0; repetition < 5; repetition++) {
+			// A new simulation for every repetition, with the paths generated before the timings
+			AssetModelMonteCarloSimulationModel repetitionModel = new MonteCarloAssetModel(new BachelierModel(spotPrice, riskFreeRate, volatility),
+					new BrownianMotionFromMersenneRandomNumbers(times, 1, numberOfPaths, 3141 + repetition));
+			repetitionModel.getAssetValue(numberOfTimeSteps, 0);
+			StringBuilder line = new StringBuilder("Repetition " + repetition + ":");
+			for(LookbackOption product : products) {
+				long startTime = System.nanoTime();
+				double value = product.getValue(repetitionModel);
+				line.append(String.format(" %s %.4f (%.1f ms)", product.getClass().getSimpleName(), value, (System.nanoTime() - startTime) / 1E6));
+			}
+			System.out.println(line);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.stochastic.RandomVariable;
+
+/**
+ * Test class for the local and stochastic volatility path kernels.
+ *
+ * <p>The class:
+ * <ul>
+ *     <li>checks that the Heston kernel with zero volatility of variance reproduces the Black–Scholes prices of
+ *         {@link DiscretelyMonitoredLookbackPrices};</li>
+ *     <li>prices the four lookbacks under Heston and under a skewed local volatility surface, with and without the
+ *         shadow Black–Scholes control variate, and prints the variance reduction factors.</li>
+ * </ul>
+ */
+public class StochasticVolatilityTest {
+
+	public static void main(String[] args) {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double maturity = 1.0;
+		double strike = 100.0;
+		int numberOfTimeSteps = 252;
+		int numberOfMonitoringIntervals = 12;
+		int numberOfPaths = 100000;
+		int seed = 1897;
+
+		// ==================== HESTON WITHOUT VOLATILITY OF VARIANCE ====================
+		LookbackPathKernel degenerateHeston = new HestonLookbackPathKernel(spotPrice, riskFreeRate, 0.09, 2.0, 0.09, 0.0, -0.7,
+				maturity, numberOfTimeSteps, numberOfMonitoringIntervals, numberOfPaths, seed);
+		System.out.println("Heston with xi = 0 (Black-Scholes with sigma = 0.3)");
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			RandomVariable standardEstimator = degenerateHeston.getDiscountedPayoff(payoff, strike);
+			System.out.println(payoff + ": Monte Carlo " + standardEstimator.getAverage() + " +- " + standardEstimator.getStandardError()
+					+ ", with control variate " + degenerateHeston.getValueWithControlVariate(payoff, strike)
+					+ ", Fourier recursion " + DiscretelyMonitoredLookbackPrices.getPrice(payoff, spotPrice, riskFreeRate, 0.3, maturity, strike, numberOfMonitoringIntervals));
+		}
+
+		System.out.println();
+
+		// ==================== HESTON ====================
+		LookbackPathKernel heston = new HestonLookbackPathKernel(spotPrice, riskFreeRate, 0.04, 1.5, 0.06, 0.5, -0.7,
+				maturity, numberOfTimeSteps, numberOfMonitoringIntervals, numberOfPaths, seed);
+		System.out.println("Heston (effective volatility " + heston.getEffectiveVolatility() + ")");
+		printPrices(heston, strike);
+
+		System.out.println();
+
+		// ==================== LOCAL VOLATILITY ====================
+		LocalVolatilitySurface skew = (time, spot) -> Math.min(0.25 * Math.pow(spot / spotPrice, -0.6), 1.0);
+		LookbackPathKernel localVolatility = new LocalVolatilityLookbackPathKernel(spotPrice, riskFreeRate, skew,
+				maturity, numberOfTimeSteps, numberOfMonitoringIntervals, numberOfPaths, seed);
+		System.out.println("Local volatility (effective volatility " + localVolatility.getEffectiveVolatility() + ")");
+		printPrices(localVolatility, strike);
+	}
+
+	private static void printPrices(LookbackPathKernel kernel, double strike) {
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			RandomVariable standardEstimator = kernel.getDiscountedPayoff(payoff, strike);
+			RandomVariable controlVariateEstimator = kernel.getControlVariateEstimator(payoff, strike);
+			double varianceReduction = standardEstimator.variance().doubleValue() / controlVariateEstimator.variance().doubleValue();
+
+			System.out.println(payoff + ":");
+			System.out.println("    Monte Carlo: " + standardEstimator.getAverage() + " +- " + standardEstimator.getStandardError());
+			System.out.println("    With control variate: " + controlVariateEstimator.getAverage() + " +- " + controlVariateEstimator.getStandardError());
+			System.out.println("    Variance reduction factor: " + varianceReduction);
+		}
+	}
+}
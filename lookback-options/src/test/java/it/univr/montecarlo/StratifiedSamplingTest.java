@@ -0,0 +1,79 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the {@link StratifiedLookbackSampler}.
+ *
+ * <p>For the four payoffs with daily monitoring, the class compares plain Monte Carlo (one stratum) with the
+ * stratification of the terminal value in 64 strata, with proportional and Neyman allocation, on the same number of
+ * paths. It prints the prices with their standard errors, the exact Fourier price of
+ * {@link DiscretelyMonitoredLookbackPrices}, and the variance reduction factor, which is the factor of paths saved
+ * for the same standard error. For the stratified estimators, the standard error is also compared with the spread
+ * of the prices over independent seeds, which checks the stratified variance estimator.
+ */
+public class StratifiedSamplingTest {
+
+	public static void main(String[] args) {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		double strike = 100.0;
+		int numberOfTimeSteps = 252;
+		int numberOfPaths = 100000;
+		int numberOfStrata = 64;
+		int pilotPathsPerStratum = 100;
+
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+		MonitoringSchedule monitoringSchedule = MonitoringSchedule.equidistant(numberOfTimeSteps);
+		StratifiedLookbackSampler plainSampler = new StratifiedLookbackSampler(spotPrice, riskFreeRate, volatility, times, monitoringSchedule, 1, 1897);
+		StratifiedLookbackSampler sampler = new StratifiedLookbackSampler(spotPrice, riskFreeRate, volatility, times, monitoringSchedule, numberOfStrata, 1897);
+
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			double exactPrice = DiscretelyMonitoredLookbackPrices.getPrice(payoff, spotPrice, riskFreeRate, volatility, maturity, strike, numberOfTimeSteps);
+
+			long startTime = System.currentTimeMillis();
+			StratifiedEstimate plain = plainSampler.getValue(payoff, strike, numberOfPaths);
+			long plainTime = System.currentTimeMillis() - startTime;
+			StratifiedEstimate proportional = sampler.getValue(payoff, strike, numberOfPaths);
+			startTime = System.currentTimeMillis();
+			StratifiedEstimate neyman = sampler.getValueWithNeymanAllocation(payoff, strike, numberOfPaths, pilotPathsPerStratum);
+			long neymanTime = System.currentTimeMillis() - startTime;
+
+			System.out.println(payoff + " (exact " + String.format("%.5f", exactPrice) + "):");
+			print("plain", plain, plain, exactPrice);
+			print("proportional", proportional, plain, exactPrice);
+			print("Neyman", neyman, plain, exactPrice);
+			System.out.println("  time plain " + plainTime + " ms, Neyman with pilot run " + neymanTime + " ms");
+		}
+
+		// ==================== STANDARD ERROR AGAINST THE SPREAD OVER SEEDS ====================
+		LookbackPayoff payoff = LookbackPayoff.CALL_FLOATING_STRIKE;
+		int numberOfSeeds = 40;
+		int pathsPerSeed = 10000;
+		double sum = 0.0;
+		double sumOfSquares = 0.0;
+		double sumOfStandardErrors = 0.0;
+		for(int seed = 0; seed < numberOfSeeds; seed++) {
+			StratifiedEstimate estimate = new StratifiedLookbackSampler(spotPrice, riskFreeRate, volatility, times, monitoringSchedule, numberOfStrata, seed)
+					.getValueWithNeymanAllocation(payoff, strike, pathsPerSeed, pilotPathsPerStratum);
+			sum += estimate.getValue();
+			sumOfSquares += estimate.getValue() * estimate.getValue();
+			sumOfStandardErrors += estimate.getStandardError();
+		}
+		double mean = sum / numberOfSeeds;
+		double spread = Math.sqrt((sumOfSquares - numberOfSeeds * mean * mean) / (numberOfSeeds - 1));
+		System.out.println(String.format("%s over %d seeds of %d paths: standard deviation of the prices %.5f, mean standard error %.5f",
+				payoff, numberOfSeeds, pathsPerSeed, spread, sumOfStandardErrors / numberOfSeeds));
+	}
+
+	private static void print(String name, StratifiedEstimate estimate, StratifiedEstimate plain, double exactPrice) {
+		double varianceReduction = Math.pow(plain.getStandardError() / estimate.getStandardError(), 2);
+		System.out.println(String.format("  %-12s %.5f (standard error %.5f, error %+.2f standard errors), variance reduction %.1f",
+				name, estimate.getValue(), estimate.getStandardError(), (estimate.getValue() - exactPrice) / estimate.getStandardError(), varianceReduction));
+	}
+}
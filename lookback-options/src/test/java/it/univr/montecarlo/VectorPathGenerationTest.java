@@ -0,0 +1,84 @@
+package it.univr.montecarlo;
+
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.exception.CalculationException;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.montecarlo.BrownianMotionFromMersenneRandomNumbers;
+import net.finmath.montecarlo.assetderivativevaluation.MonteCarloBlackScholesModel;
+import net.finmath.stochastic.RandomVariable;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the block path generation of {@link BlackScholesLookbackSimulation}.
+ *
+ * <p>The class simulates the same Brownian motion with the scalar and with the default generator (SIMD when the
+ * program runs with {@code --add-modules jdk.incubator.vector} and the Maven profile {@code vector}), checks that
+ * terminal values and extrema are bit-identical, compares the timings, and compares the price of a floating-strike
+ * lookback call with the one of the finmath model ({@link LookbackCallFloatingStrike}).
+ */
+public class VectorPathGenerationTest {
+
+	public static void main(String[] args) throws CalculationException {
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		int numberOfTimeSteps = 252;
+		int numberOfPaths = 100000;
+		int numberOfRepetitions = 20;
+
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+		BrownianMotion brownianMotion = new BrownianMotionFromMersenneRandomNumbers(times, 1, numberOfPaths, 1897);
+		MonitoringSchedule monitoringSchedule = MonitoringSchedule.continuous();
+
+		BlackScholesBlockGenerator scalarGenerator = BlackScholesBlockGenerator.getScalarInstance();
+		BlackScholesBlockGenerator defaultGenerator = BlackScholesBlockGenerator.getInstance();
+		System.out.println("Default generator vectorized: " + defaultGenerator.isVectorized());
+
+		// ==================== IDENTICAL RESULTS ====================
+		BlackScholesLookbackSimulation scalarSimulation = new BlackScholesLookbackSimulation(spotPrice, riskFreeRate, volatility, brownianMotion,
+				monitoringSchedule, scalarGenerator);
+		BlackScholesLookbackSimulation defaultSimulation = new BlackScholesLookbackSimulation(spotPrice, riskFreeRate, volatility, brownianMotion,
+				monitoringSchedule, defaultGenerator);
+		boolean isIdentical = true;
+		for(int path = 0; path < numberOfPaths; path++) {
+			isIdentical &= scalarSimulation.getTerminalValue().get(path) == defaultSimulation.getTerminalValue().get(path)
+					&& scalarSimulation.getMaximum().get(path) == defaultSimulation.getMaximum().get(path)
+					&& scalarSimulation.getMinimum().get(path) == defaultSimulation.getMinimum().get(path);
+		}
+		System.out.println("Scalar and default generator bit-identical: " + isIdentical);
+		System.out.println();
+
+		// ==================== TIMINGS ====================
+		double scalarTime = getGenerationTime(spotPrice, riskFreeRate, volatility, brownianMotion, monitoringSchedule, scalarGenerator, numberOfRepetitions);
+		double defaultTime = getGenerationTime(spotPrice, riskFreeRate, volatility, brownianMotion, monitoringSchedule, defaultGenerator, numberOfRepetitions);
+		System.out.println("Scalar generation:  " + scalarTime + " ms");
+		System.out.println("Default generation: " + defaultTime + " ms (speed-up " + scalarTime / defaultTime + ")");
+
+		long startTime = System.nanoTime();
+		MonteCarloBlackScholesModel model = new MonteCarloBlackScholesModel(spotPrice, riskFreeRate, volatility, brownianMotion);
+		RandomVariable finmathValues = new LookbackCallFloatingStrike(maturity).getValue(0.0, model);
+		System.out.println("Finmath model and product: " + (System.nanoTime() - startTime) / 1E6 + " ms");
+		System.out.println();
+
+		// ==================== PRICES ====================
+		System.out.println("Floating-strike call, block generation: " + defaultSimulation.getValue(LookbackPayoff.CALL_FLOATING_STRIKE, 0.0));
+		System.out.println("Floating-strike call, finmath model:     " + finmathValues.getAverage());
+	}
+
+	/*
+	 * Average time of the generation of the paths, in milliseconds, after a warm-up.
+	 */
+	private static double getGenerationTime(double spotPrice, double riskFreeRate, double volatility, BrownianMotion brownianMotion,
+			MonitoringSchedule monitoringSchedule, BlackScholesBlockGenerator generator, int numberOfRepetitions) {
+		for(int i = 0; i < numberOfRepetitions; i++) {
+			new BlackScholesLookbackSimulation(spotPrice, riskFreeRate, volatility, brownianMotion, monitoringSchedule, generator).getTerminalValue();
+		}
+		long startTime = System.nanoTime();
+		for(int i = 0; i < numberOfRepetitions; i++) {
+			new BlackScholesLookbackSimulation(spotPrice, riskFreeRate, volatility, brownianMotion, monitoringSchedule, generator).getTerminalValue();
+		}
+		return (System.nanoTime() - startTime) / 1E6 / numberOfRepetitions;
+	}
+}
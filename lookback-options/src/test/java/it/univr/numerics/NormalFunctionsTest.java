@@ -0,0 +1,99 @@
+package it.univr.numerics;
+
+import it.univr.analyticprices.AnalyticPrices;
+import net.finmath.functions.NormalDistribution;
+
+/**
+ * Test class for the normal density and distribution functions.
+ *
+ * <p>The class:
+ * <ul>
+ *     <li>compares {@link NormalFunctions#cumulativeDistribution(double)} and
+ *         {@link NormalFunctions#complementaryErrorFunction(double)} with reference values computed in 60-digit
+ *         arithmetic, and prints the largest relative errors (also of finmath's {@link NormalDistribution});</li>
+ *     <li>checks that {@link NormalFunctions#evaluate(double, double[])} agrees with the single functions;</li>
+ *     <li>times the distribution function and the continuously monitored {@link AnalyticPrices}.</li>
+ * </ul>
+ */
+public class NormalFunctionsTest {
+
+	// Arguments and reference values of Φ
+	private static final double[][] DISTRIBUTION_REFERENCES = {
+			{ -37.5, 4.605353009581954843828e-308 }, { -30, 4.906713927148187059534e-198 }, { -20, 2.753624118606233695076e-89 },
+			{ -12.5, 3.732564298877713377226e-36 }, { -8, 6.220960574271784123516e-16 }, { -6, 9.865876450376981407009e-10 },
+			{ -5, 2.866515718791939116738e-7 }, { -3.75, 8.841728520080386781775e-5 }, { -2.5, 6.209665325776135166978e-3 },
+			{ -1.96, 2.499789514822043413658e-2 }, { -1, 1.586552539314570514148e-1 }, { -0.5, 3.085375387259868963623e-1 },
+			{ -0.1, 4.601721627229710185346e-1 }, { -1e-8, 4.999999960105771959857e-1 }, { 0, 0.5 },
+			{ 0.3, 6.179114221889526373065e-1 }, { 1, 8.413447460685429485852e-1 }, { 2.5, 9.937903346742238648330e-1 },
+			{ 5, 9.999997133484281208061e-1 }, { 8, 9.999999999999993779039e-1 } };
+
+	// Arguments and reference values of erfc
+	private static final double[][] COMPLEMENTARY_ERROR_FUNCTION_REFERENCES = {
+			{ -2, 1.995322265018952734162 }, { -0.5, 1.520499877813046537683 }, { 0.01, 9.887165844441503830841e-1 },
+			{ 0.5, 4.795001221869534623173e-1 }, { 1, 1.572992070502851306588e-1 }, { 2, 4.677734981047265837931e-3 },
+			{ 3.5, 7.430983723414127455237e-7 }, { 6, 2.151973671249891311659e-17 }, { 10, 2.088487583762544757001e-45 },
+			{ 25, 8.300172571196522752044e-274 } };
+
+	public static void main(String[] args) {
+		// ==================== ACCURACY ====================
+		double largestError = 0.0;
+		double largestFinmathError = 0.0;
+		for(double[] reference : DISTRIBUTION_REFERENCES) {
+			largestError = Math.max(largestError, Math.abs(NormalFunctions.cumulativeDistribution(reference[0]) / reference[1] - 1.0));
+			largestFinmathError = Math.max(largestFinmathError, Math.abs(NormalDistribution.cumulativeDistribution(reference[0]) / reference[1] - 1.0));
+		}
+		System.out.println("Distribution function, largest relative error:          " + largestError);
+		System.out.println("Distribution function (finmath), largest relative error: " + largestFinmathError);
+
+		largestError = 0.0;
+		for(double[] reference : COMPLEMENTARY_ERROR_FUNCTION_REFERENCES) {
+			largestError = Math.max(largestError, Math.abs(NormalFunctions.complementaryErrorFunction(reference[0]) / reference[1] - 1.0));
+		}
+		System.out.println("Complementary error function, largest relative error:   " + largestError);
+
+		// ==================== JOINT EVALUATION ====================
+		double[] values = new double[2 * NormalFunctions.SHIFTED];
+		boolean isConsistent = true;
+		for(double x = -10.0; x <= 10.0; x += 0.01) {
+			NormalFunctions.evaluatePair(x, 0.3, values);
+			isConsistent &= values[NormalFunctions.DENSITY] == NormalFunctions.density(x)
+					&& values[NormalFunctions.DISTRIBUTION] == NormalFunctions.cumulativeDistribution(x)
+					&& values[NormalFunctions.COMPLEMENTARY_DISTRIBUTION] == NormalFunctions.cumulativeDistribution(-x)
+					&& values[NormalFunctions.SHIFTED + NormalFunctions.DISTRIBUTION] == NormalFunctions.cumulativeDistribution(x - 0.3);
+		}
+		System.out.println("Joint evaluation consistent with the single functions:  " + isConsistent);
+		System.out.println();
+
+		// ==================== TIMINGS ====================
+		int numberOfEvaluations = 10000000;
+		for(int repetition = 0; repetition < 3; repetition++) {
+			long startTime = System.nanoTime();
+			double sum = 0.0;
+			for(int i = 0; i < numberOfEvaluations; i++) {
+				sum += NormalFunctions.cumulativeDistribution(-8.0 + 16.0 * i / numberOfEvaluations);
+			}
+			double time = (System.nanoTime() - startTime) / (double) numberOfEvaluations;
+
+			startTime = System.nanoTime();
+			double finmathSum = 0.0;
+			for(int i = 0; i < numberOfEvaluations; i++) {
+				finmathSum += NormalDistribution.cumulativeDistribution(-8.0 + 16.0 * i / numberOfEvaluations);
+			}
+			double finmathTime = (System.nanoTime() - startTime) / (double) numberOfEvaluations;
+			System.out.println(String.format("Distribution function: %.1f ns (finmath %.1f ns), sums %.12f %.12f", time, finmathTime, sum, finmathSum));
+		}
+
+		int numberOfPrices = 2000000;
+		for(int repetition = 0; repetition < 3; repetition++) {
+			long startTime = System.nanoTime();
+			double sum = 0.0;
+			for(int i = 0; i < numberOfPrices; i++) {
+				double volatility = 0.1 + 0.4 * i / numberOfPrices;
+				sum += AnalyticPrices.continuouslyMonitoredLookbackCallFloatingStrike(100.0, 0.05, volatility, 1.0)
+						+ AnalyticPrices.continuouslyMonitoredLookbackPutFloatingStrike(100.0, 0.05, volatility, 1.0);
+			}
+			System.out.println(String.format("Floating-strike call and put: %.1f ns per price (sum %.6f)",
+					(System.nanoTime() - startTime) / (2.0 * numberOfPrices), sum));
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package it.univr.randomnumbers;
+
+import java.util.Arrays;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+import net.finmath.montecarlo.BrownianMotion;
+import net.finmath.time.TimeDiscretization;
+import net.finmath.time.TimeDiscretizationFromArray;
+
+/**
+ * Test class for the counter-based random numbers.
+ *
+ * <p>The class:
+ * <ul>
+ *     <li>checks the Philox4x32-10 bijection against the known-answer vectors of the Random123 library;</li>
+ *     <li>prints mean and variance of a sample of normal draws;</li>
+ *     <li>simulates a Brownian motion at once and split in three path ranges, checks that the increments are
+ *         identical, and prices a discretely monitored floating-strike lookback call on both: the weighted average
+ *         of the ranges equals the undivided price, which is compared with the exact Fourier price.</li>
+ * </ul>
+ */
+public class RandomNumbersTest {
+
+	public static void main(String[] args) {
+		// ==================== KNOWN ANSWERS ====================
+		int[][] counters = { { 0, 0, 0, 0 }, { -1, -1, -1, -1 }, { 0x243f6a88, 0x85a308d3, 0x13198a2e, 0x03707344 } };
+		int[][] keys = { { 0, 0 }, { -1, -1 }, { 0xa4093822, 0x299f31d0 } };
+		int[][] expected = { { 0x6627e8d5, 0xe169c58d, 0xbc57ac4c, 0x9b00dbd8 }, { 0x408f276d, 0x41c83b0e, 0xa20bc7c6, 0x6d5451fd },
+			{ 0xd16cfe09, 0x94fdcceb, 0x5001e420, 0x24126ea1 } };
+		int[] block = new int[4];
+		for(int i = 0; i < counters.length; i++) {
+			PhiloxRandomNumbers.getBlock(counters[i][0], counters[i][1], counters[i][2], counters[i][3], keys[i][0], keys[i][1], block);
+			System.out.println("Known answer " + i + ": " + (Arrays.equals(block, expected[i]) ? "passed" : "FAILED"));
+		}
+
+		// ==================== MOMENTS ====================
+		PhiloxRandomNumbers randomNumbers = new PhiloxRandomNumbers(3141);
+		int numberOfDraws = 1000000;
+		double sum = 0.0;
+		double sumOfSquares = 0.0;
+		for(int i = 0; i < numberOfDraws; i++) {
+			double normal = randomNumbers.getStandardNormal(i / 10, i % 10, 0);
+			sum += normal;
+			sumOfSquares += normal * normal;
+		}
+		double mean = sum / numberOfDraws;
+		System.out.println("Normal draws: mean " + mean + ", variance " + (sumOfSquares / numberOfDraws - mean * mean));
+		System.out.println();
+
+		// ==================== SPLIT SIMULATION ====================
+		double spotPrice = 100.0;
+		double riskFreeRate = 0.05;
+		double volatility = 0.3;
+		double maturity = 1.0;
+		int numberOfTimeSteps = 252;
+		int numberOfPaths = 100000;
+		long seed = 1897;
+		TimeDiscretization times = new TimeDiscretizationFromArray(0.0, numberOfTimeSteps, maturity / numberOfTimeSteps);
+
+		long startTime = System.nanoTime();
+		BrownianMotionFromPhiloxRandomNumbers wholeSimulation = new BrownianMotionFromPhiloxRandomNumbers(times, 1, numberOfPaths, seed);
+		double wholePrice = getFloatingStrikeCallPrice(wholeSimulation, spotPrice, riskFreeRate, volatility, maturity);
+		System.out.println("Undivided simulation: " + wholePrice + " (" + (System.nanoTime() - startTime) / 1000000 + " ms)");
+
+		int[] rangeEnds = { 17000, 60001, numberOfPaths };
+		double splitPrice = 0.0;
+		boolean isIdentical = true;
+		int rangeStart = 0;
+		for(int rangeEnd : rangeEnds) {
+			BrownianMotionFromPhiloxRandomNumbers range = wholeSimulation.getCloneForPathRange(rangeStart, rangeEnd - rangeStart);
+			splitPrice += getFloatingStrikeCallPrice(range, spotPrice, riskFreeRate, volatility, maturity) * (rangeEnd - rangeStart) / numberOfPaths;
+			for(int timeIndex = 0; timeIndex < numberOfTimeSteps; timeIndex += 50) {
+				for(int path = 0; path < range.getNumberOfPaths(); path++) {
+					isIdentical &= range.getBrownianIncrement(timeIndex, 0).get(path) == wholeSimulation.getBrownianIncrement(timeIndex, 0).get(rangeStart + path);
+				}
+			}
+			rangeStart = rangeEnd;
+		}
+		System.out.println("Simulation in " + rangeEnds.length + " path ranges: " + splitPrice + " (difference " + (splitPrice - wholePrice) + ")");
+		System.out.println("Increments of the ranges identical to the undivided simulation: " + isIdentical);
+		System.out.println("Fourier price (" + numberOfTimeSteps + " fixings): " + DiscretelyMonitoredLookbackPrices.getPrice(LookbackPayoff.CALL_FLOATING_STRIKE,
+				spotPrice, riskFreeRate, volatility, maturity, 0.0, numberOfTimeSteps));
+	}
+
+	/*
+	 * Monte Carlo price of the floating-strike lookback call monitored on every time of the grid, under Black-Scholes.
+	 */
+	private static double getFloatingStrikeCallPrice(BrownianMotion brownianMotion, double spotPrice, double riskFreeRate, double volatility,
+			double maturity) {
+		TimeDiscretization times = brownianMotion.getTimeDiscretization();
+		int numberOfPaths = brownianMotion.getNumberOfPaths();
+		double[] logValue = new double[numberOfPaths];
+		double[] logMinimum = new double[numberOfPaths];
+		for(int timeIndex = 0; timeIndex < times.getNumberOfTimeSteps(); timeIndex++) {
+			double drift = (riskFreeRate - 0.5 * volatility * volatility) * times.getTimeStep(timeIndex);
+			for(int path = 0; path < numberOfPaths; path++) {
+				logValue[path] += drift + volatility * brownianMotion.getBrownianIncrement(timeIndex, 0).get(path);
+				logMinimum[path] = Math.min(logMinimum[path], logValue[path]);
+			}
+		}
+		double sum = 0.0;
+		for(int path = 0; path < numberOfPaths; path++) {
+			sum += spotPrice * (Math.exp(logValue[path]) - Math.exp(logMinimum[path]));
+		}
+		return Math.exp(-riskFreeRate * maturity) * sum / numberOfPaths;
+	}
+}
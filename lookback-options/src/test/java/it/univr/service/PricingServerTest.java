@@ -0,0 +1,123 @@
+package it.univr.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for the local pricing server.
+ *
+ * <p>The class starts a server on an ephemeral port and sends it concurrent requests from many client threads:
+ * analytic and Fourier requests, Monte Carlo requests on a few underlyings (which the service coalesces on shared
+ * simulations) and finally a burst of Monte Carlo requests larger than the queue, part of which is rejected. It
+ * prints the numbers of answered and rejected requests, the number of simulations and the server-side latencies.
+ */
+public class PricingServerTest {
+
+	public static void main(String[] args) throws Exception {
+		int numberOfClients = 64;
+
+		try(LookbackPricingServer server = new LookbackPricingServer(0, new LookbackPricingService(64, 256))) {
+			String baseUrl = "http://localhost:" + server.getPort();
+			System.out.println("Server on " + baseUrl + (server.isUsingVirtualThreads() ? " (virtual threads)" : " (platform threads)"));
+			ExecutorService clients = Executors.newFixedThreadPool(numberOfClients);
+
+			// ==================== ANALYTIC AND FOURIER ====================
+			List<String> queries = new ArrayList<>();
+			for(int i = 0; i < 400; i++) {
+				String method = i % 4 == 0 ? "FOURIER" : "ANALYTIC";
+				queries.add("method=" + method + "&payoff=CALL_FIXED_STRIKE&spot=" + (90 + i % 20) + "&rate=0.05&volatility=0.3"
+						+ "&maturity=1&strike=100&fixings=" + (i % 4 == 0 ? 12 : i % 2 * 52));
+			}
+			long startTime = System.nanoTime();
+			int[] answers = send(clients, baseUrl, queries);
+			System.out.println("Closed-form requests: " + answers[0] + " answered, " + answers[1] + " rejected, "
+					+ answers[2] + " failed in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+			printStatistics(baseUrl);
+
+			// ==================== MONTE CARLO ====================
+			queries.clear();
+			String[] payoffs = { "CALL_FLOATING_STRIKE", "PUT_FLOATING_STRIKE", "CALL_FIXED_STRIKE", "PUT_FIXED_STRIKE" };
+			for(int i = 0; i < 200; i++) {
+				queries.add("method=MONTE_CARLO&payoff=" + payoffs[i % 4] + "&spot=" + (100 + i % 2 * 10)
+						+ "&rate=0.05&volatility=0.3&maturity=1&strike=" + (90 + i % 5 * 5) + "&steps=100&paths=2000");
+			}
+			startTime = System.nanoTime();
+			answers = send(clients, baseUrl, queries);
+			System.out.println("Monte Carlo requests: " + answers[0] + " answered, " + answers[1] + " rejected, "
+					+ answers[2] + " failed in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+			printStatistics(baseUrl);
+
+			// ==================== OVERLOAD ====================
+			queries.clear();
+			for(int i = 0; i < 1000; i++) {
+				queries.add("method=MONTE_CARLO&payoff=CALL_FLOATING_STRIKE&spot=100&rate=0.05&volatility=" + (0.1 + 0.001 * i)
+						+ "&maturity=1&steps=100&paths=2000");
+			}
+			ExecutorService burstClients = Executors.newFixedThreadPool(4 * numberOfClients);
+			startTime = System.nanoTime();
+			answers = send(burstClients, baseUrl, queries);
+			System.out.println("Overload: " + answers[0] + " answered, " + answers[1] + " rejected, "
+					+ answers[2] + " failed in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+			printStatistics(baseUrl);
+
+			burstClients.shutdown();
+			clients.shutdown();
+		}
+	}
+
+	/*
+	 * Sends the queries from the client threads and returns the numbers of answered, rejected and failed requests.
+	 */
+	private static int[] send(ExecutorService clients, String baseUrl, List<String> queries) throws Exception {
+		AtomicInteger answered = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<>();
+		for(String query : queries) {
+			futures.add(clients.submit(() -> {
+				try {
+					int status = get(baseUrl + "/price?" + query, new StringBuilder());
+					(status == 200 ? answered : status == 503 ? rejected : failed).incrementAndGet();
+				}
+				catch(IOException exception) {
+					failed.incrementAndGet();
+				}
+			}));
+		}
+		for(Future<?> future : futures) {
+			future.get();
+		}
+		return new int[] { answered.get(), rejected.get(), failed.get() };
+	}
+
+	private static void printStatistics(String baseUrl) throws IOException {
+		StringBuilder body = new StringBuilder();
+		get(baseUrl + "/stats", body);
+		System.out.println("  " + body);
+	}
+
+	private static int get(String url, StringBuilder body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		int status = connection.getResponseCode();
+		try(InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int length;
+			while((length = input.read(buffer)) > 0) {
+				bytes.write(buffer, 0, length);
+			}
+			body.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		}
+		return status;
+	}
+}
@@ -0,0 +1,71 @@
+package it.univr.surrogate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import it.univr.analyticprices.DiscretelyMonitoredLookbackPrices;
+import it.univr.analyticprices.LookbackPayoff;
+
+/**
+ * Test class for {@link LookbackSurrogate}.
+ *
+ * <p>For every payoff the class builds a surrogate on a small domain, saves it to a file and loads it back, then
+ * compares the loaded surrogate with the Fourier recursion of {@link DiscretelyMonitoredLookbackPrices} on random
+ * points and measures the evaluation time.
+ */
+public class SurrogateTest {
+
+	public static void main(String[] args) throws IOException {
+		LookbackSurrogateBuilder builder = new LookbackSurrogateBuilder()
+				.setVolatilityRange(0.15, 0.45, 7)
+				.setRiskFreeRateRange(0.0, 0.08, 4)
+				.setMaturityRange(0.5, 2.0, 6)
+				.setMoneynessRange(Math.log(1.4), 7)
+				.setMonitoringCounts(4, 8, 16, 32, 64)
+				.setNumberOfValidationPoints(100)
+				.setTolerance(1E-3);
+
+		Random random = new Random(1897);
+		for(LookbackPayoff payoff : LookbackPayoff.values()) {
+			long startTime = System.nanoTime();
+			LookbackSurrogate builtSurrogate = builder.build(payoff);
+			long buildMilliseconds = (System.nanoTime() - startTime) / 1000000;
+
+			// Round trip through the on-disk format
+			Path file = Files.createTempFile("lookback-surrogate", ".bin");
+			builtSurrogate.save(file);
+			LookbackSurrogate surrogate = LookbackSurrogate.load(file);
+			long fileSize = Files.size(file);
+			Files.delete(file);
+
+			System.out.println(payoff + ": built in " + buildMilliseconds + " ms, " + fileSize + " bytes, estimated error bound per unit spot "
+					+ surrogate.getErrorBound());
+
+			// Comparison with the Fourier recursion, spot 100
+			double maximumError = 0.0;
+			for(int i = 0; i < 20; i++) {
+				double volatility = 0.15 + 0.3 * random.nextDouble();
+				double riskFreeRate = 0.08 * random.nextDouble();
+				double maturity = 0.5 + 1.5 * random.nextDouble();
+				double strike = 75.0 + 50.0 * random.nextDouble();
+				int numberOfFixingDates = 4 + random.nextInt(61);
+				double error = surrogate.getValue(100.0, riskFreeRate, volatility, maturity, strike, numberOfFixingDates)
+						- DiscretelyMonitoredLookbackPrices.getPrice(payoff, 100.0, riskFreeRate, volatility, maturity, strike, numberOfFixingDates);
+				maximumError = Math.max(maximumError, Math.abs(error));
+			}
+			System.out.println("    largest error against the Fourier recursion (spot 100): " + maximumError);
+
+			// Evaluation time
+			int numberOfEvaluations = 200000;
+			double sum = 0.0;
+			startTime = System.nanoTime();
+			for(int i = 0; i < numberOfEvaluations; i++) {
+				sum += surrogate.getValue(100.0, 0.05, 0.3, 1.0, 100.0 + (i % 20), 12);
+			}
+			double microseconds = (System.nanoTime() - startTime) / 1000.0 / numberOfEvaluations;
+			System.out.println("    evaluation time: " + microseconds + " microseconds (checksum " + sum + ")");
+		}
+	}
+}